@@ -75,6 +75,10 @@ public class AuthenticatorWebConsolePlugin extends HttpServlet {
 
         printAuthenticationConfiguration(pw);
 
+        pw.println("<tr><td colspan='2'>&nbsp;</td></tr>");
+
+        printResolverCache(pw);
+
         pw.println("</table>");
     }
 
@@ -143,4 +147,33 @@ public class AuthenticatorWebConsolePlugin extends HttpServlet {
         pw.printf("<td class='content' colspan='2'>%s</td>%n", (anonUser == null) ? "(default)" : ResponseUtil.escapeXml(anonUser));
         pw.println("</tr>");
     }
+
+    private void printResolverCache(final PrintWriter pw) {
+        final ResolverCache cache = slingAuthenticator.getResolverCache();
+
+        pw.println("<tr>");
+        pw.println("<th class='content container' colspan='3'>Resource Resolver Cache</td>");
+        pw.println("</tr>");
+        if (cache == null) {
+            pw.println("<tr>");
+            pw.println("<td class='content' colspan='3'>Disabled</td>");
+            pw.println("</tr>");
+            return;
+        }
+        printRow(pw, "Cached Resolvers", cache.size() + " / " + cache.getMaxSize());
+        printRow(pw, "Time to Live", (cache.getTimeToLive() / 1000) + "s");
+        printRow(pw, "Hits", String.valueOf(cache.getHits()));
+        printRow(pw, "Misses", String.valueOf(cache.getMisses()));
+        printRow(pw, "Busy", String.valueOf(cache.getBusy()));
+        printRow(pw, "Uncacheable Credentials", String.valueOf(cache.getUncacheable()));
+        printRow(pw, "Evictions", String.valueOf(cache.getEvictions()));
+        printRow(pw, "Invalidations", String.valueOf(cache.getInvalidations()));
+    }
+
+    private void printRow(final PrintWriter pw, final String name, final String value) {
+        pw.println("<tr>");
+        pw.printf("<td class='content'>%s</td>%n", name);
+        pw.printf("<td class='content' colspan='2'>%s</td>%n", ResponseUtil.escapeXml(value));
+        pw.println("</tr>");
+    }
 }
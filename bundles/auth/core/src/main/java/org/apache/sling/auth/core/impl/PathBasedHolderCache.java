@@ -23,122 +23,279 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.TreeMap;
 
 import javax.servlet.http.HttpServletRequest;
 
+/**
+ * The <code>PathBasedHolderCache</code> keeps the {@link PathBasedHolder}s by
+ * protocol and host in a path trie such that the holders applicable to a
+ * request are found by walking the request path once.
+ * <p>
+ * The tries are immutable and replaced on each modification. Lookups thus
+ * read a snapshot without locking while modifications are serialized.
+ */
 public class PathBasedHolderCache<Type extends PathBasedHolder> {
 
-    private final Map<String, Map<String, List<Type>>> cache = new HashMap<String, Map<String, List<Type>>>();
+    /** The holders by protocol and host, only accessed when synchronized on this */
+    private final Map<String, Map<String, List<Type>>> holders = new HashMap<String, Map<String, List<Type>>>();
+
+    /** The immutable tries by protocol and host replaced on modification */
+    private volatile Map<String, Map<String, Node<Type>>> cache = Collections.emptyMap();
 
-    /** Read/write lock to synchronize the cache access. */
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    public synchronized void clear() {
+        holders.clear();
+        cache = Collections.emptyMap();
+    }
 
-    public void clear() {
-        this.rwLock.writeLock().lock();
-        try {
-            cache.clear();
-        } finally {
-            this.rwLock.writeLock().unlock();
+    public synchronized void addHolder(final Type holder) {
+        Map<String, List<Type>> byHostMap = holders.get(holder.protocol);
+        if (byHostMap == null) {
+            byHostMap = new HashMap<String, List<Type>>();
+            holders.put(holder.protocol, byHostMap);
+        }
+
+        List<Type> byPathList = byHostMap.get(holder.host);
+        if (byPathList == null) {
+            byPathList = new ArrayList<Type>();
+            byHostMap.put(holder.host, byPathList);
+        }
+        byPathList.add(holder);
+
+        update(holder.protocol, holder.host, byPathList);
+    }
+
+    public synchronized void removeHolder(final Type holder) {
+        final Map<String, List<Type>> byHostMap = holders.get(holder.protocol);
+        if (byHostMap != null) {
+            final List<Type> byPathList = byHostMap.get(holder.host);
+            if (byPathList != null && byPathList.remove(holder)) {
+                if (byPathList.isEmpty()) {
+                    byHostMap.remove(holder.host);
+                    if (byHostMap.isEmpty()) {
+                        holders.remove(holder.protocol);
+                    }
+                }
+                update(holder.protocol, holder.host, byPathList);
+            }
         }
     }
 
-    public void addHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
+    /**
+     * Returns the holders applicable to the request path in the order in
+     * which they are to be used: the holders registered for the protocol and
+     * host of the request first, then the holders for the protocol, for the
+     * host and finally the holders registered without protocol and host.
+     * Within each of these groups, holders with longer paths come first.
+     * <p>
+     * A holder is applicable if the path starts with the path of the holder.
+     *
+     * @param request The request providing the protocol and host
+     * @param path The path for which the holders are selected
+     * @return The applicable holders, which may be empty
+     */
+    public List<Type> findApplicableHolders(final HttpServletRequest request, final String path) {
+        final Map<String, Map<String, Node<Type>>> cache = this.cache;
+        final List<Type> result = new ArrayList<Type>();
 
-            Map<String, List<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap == null) {
-                byHostMap = new HashMap<String, List<Type>>();
-                cache.put(holder.protocol, byHostMap);
+        final int port = request.getServerPort();
+        final String hostname = (port != 80 && port != 443)
+                ? request.getServerName() + ":" + port
+                : request.getServerName();
+
+        final Map<String, Node<Type>> byHostMap = cache.get(request.getScheme());
+        if (byHostMap != null) {
+            collect(byHostMap.get(hostname), path, result);
+            collect(byHostMap.get(""), path, result);
+        }
+        final Map<String, Node<Type>> defaultByHostMap = cache.get("");
+        if (defaultByHostMap != null) {
+            collect(defaultByHostMap.get(hostname), path, result);
+            collect(defaultByHostMap.get(""), path, result);
+        }
+        return result;
+    }
+
+    public synchronized List<Type> getHolders() {
+        final List<Type> result = new ArrayList<Type>();
+        for (Map<String, List<Type>> byHostEntry : holders.values()) {
+            for (List<Type> holderList : byHostEntry.values()) {
+                final List<Type> sorted = new ArrayList<Type>(holderList);
+                Collections.sort(sorted);
+                result.addAll(sorted);
             }
+        }
+        return result;
+    }
 
-            final List<Type> byPathList = new ArrayList<Type>();
+    /**
+     * Rebuilds the trie for the protocol and host and publishes a new
+     * snapshot of the cache.
+     */
+    private void update(final String protocol, final String host, final List<Type> byPathList) {
+        final Map<String, Map<String, Node<Type>>> newCache = new HashMap<String, Map<String, Node<Type>>>(cache);
+        final Map<String, Node<Type>> current = newCache.get(protocol);
+        final Map<String, Node<Type>> byHostMap = (current == null)
+                ? new HashMap<String, Node<Type>>()
+                : new HashMap<String, Node<Type>>(current);
+        if (byPathList.isEmpty()) {
+            byHostMap.remove(host);
+        } else {
+            byHostMap.put(host, build(byPathList));
+        }
+        if (byHostMap.isEmpty()) {
+            newCache.remove(protocol);
+        } else {
+            newCache.put(protocol, byHostMap);
+        }
+        cache = newCache;
+    }
 
-            // preset with current list
-            final List<Type> currentPathList = byHostMap.get(holder.host);
-            if (currentPathList != null) {
-                byPathList.addAll(currentPathList);
+    /**
+     * Adds the holders of the nodes on the path, longest path first.
+     */
+    private static <Type extends PathBasedHolder> void collect(Node<Type> node, final String path,
+            final List<Type> result) {
+        final int start = result.size();
+        while (node != null) {
+            // add the holders of the node in reverse order, the list is reversed below
+            for (int i = node.holders.length - 1; i >= 0; i--) {
+                result.add(node.holders[i]);
             }
+            node = node.getChild(path);
+        }
+        Collections.reverse(result.subList(start, result.size()));
+    }
 
-            // add the new holder
-            byPathList.add(holder);
+    /**
+     * Builds the trie of the holders with the root node for the empty path.
+     */
+    private static <Type extends PathBasedHolder> Node<Type> build(final List<Type> holders) {
+        final NodeBuilder<Type> root = new NodeBuilder<Type>("");
+        for (final Type holder : holders) {
+            root.add(holder);
+        }
+        return root.build();
+    }
 
-            // sort the list according to the path length (longest path first)
-            Collections.sort(byPathList);
+    /**
+     * An immutable node of the trie. The path of a node is either the path of
+     * holders or the longest common prefix of the paths of its children.
+     */
+    private static final class Node<Type extends PathBasedHolder> {
 
-            // replace old list with new list
-            byHostMap.put(holder.host, byPathList);
-        } finally {
-            this.rwLock.writeLock().unlock();
+        final String path;
+
+        final Type[] holders;
+
+        final char[] childChars;
+
+        final Node<Type>[] children;
+
+        Node(final String path, final Type[] holders, final char[] childChars, final Node<Type>[] children) {
+            this.path = path;
+            this.holders = holders;
+            this.childChars = childChars;
+            this.children = children;
+        }
+
+        /**
+         * Returns the child whose path is a prefix of the given path or
+         * <code>null</code> if there is no such child.
+         */
+        Node<Type> getChild(final String path) {
+            final int length = this.path.length();
+            if (path.length() <= length) {
+                return null;
+            }
+
+            // binary search the child by the next character
+            final char c = path.charAt(length);
+            int low = 0;
+            int high = this.childChars.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (this.childChars[mid] < c) {
+                    low = mid + 1;
+                } else if (this.childChars[mid] > c) {
+                    high = mid - 1;
+                } else {
+                    final Node<Type> child = this.children[mid];
+                    return path.startsWith(child.path) ? child : null;
+                }
+            }
+            return null;
         }
     }
 
-    public void removeHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
-            final Map<String, List<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap != null) {
-                final List<Type> byPathList = byHostMap.get(holder.host);
-                if (byPathList != null) {
-
-                    // create a new list without the removed holder
-                    final List<Type> list = new ArrayList<Type>();
-                    list.addAll(byPathList);
-                    list.remove(holder);
-
-                    // replace the old list with the new one (or remove if empty)
-                    if (list.isEmpty()) {
-                        byHostMap.remove(holder.host);
+    /**
+     * The mutable node used to build the trie.
+     */
+    private static final class NodeBuilder<Type extends PathBasedHolder> {
+
+        final String path;
+
+        final List<Type> holders = new ArrayList<Type>();
+
+        final TreeMap<Character, NodeBuilder<Type>> children = new TreeMap<Character, NodeBuilder<Type>>();
+
+        NodeBuilder(final String path) {
+            this.path = path;
+        }
+
+        /**
+         * Adds the holder to this node or a node below. The path of the
+         * holder must start with the path of this node.
+         */
+        void add(final Type holder) {
+            NodeBuilder<Type> node = this;
+            while (!node.path.equals(holder.path)) {
+                final Character c = Character.valueOf(holder.path.charAt(node.path.length()));
+                final NodeBuilder<Type> child = node.children.get(c);
+                if (child == null) {
+                    final NodeBuilder<Type> leaf = new NodeBuilder<Type>(holder.path);
+                    node.children.put(c, leaf);
+                    node = leaf;
+                } else {
+                    final int common = getCommonPrefixLength(child.path, holder.path);
+                    if (common == child.path.length()) {
+                        node = child;
                     } else {
-                        byHostMap.put(holder.host, list);
+                        // split the edge to the child at the common prefix
+                        final NodeBuilder<Type> split = new NodeBuilder<Type>(holder.path.substring(0, common));
+                        split.children.put(Character.valueOf(child.path.charAt(common)), child);
+                        node.children.put(c, split);
+                        node = split;
                     }
                 }
             }
-        } finally {
-            this.rwLock.writeLock().unlock();
+            node.holders.add(holder);
         }
-    }
 
-    public List<Type>[] findApplicableHolder(final HttpServletRequest request) {
-        this.rwLock.readLock().lock();
-        try {
-            final String hostname = request.getServerName()
-                  + (request.getServerPort() != 80 && request.getServerPort() != 443
-                    ? ":" + request.getServerPort()
-                    : "");
-
-            @SuppressWarnings("unchecked")
-            final List<Type>[] result = new ArrayList[4];
-
-            final Map<String, List<Type>> byHostMap = cache.get(request.getScheme());
-            if ( byHostMap != null ) {
-                result[0] = byHostMap.get(hostname);
-                result[1] = byHostMap.get("");
-            }
-            final Map<String, List<Type>> defaultByHostMap = cache.get("");
-            if ( defaultByHostMap != null ) {
-                result[2] = defaultByHostMap.get(hostname);
-                result[3] = defaultByHostMap.get("");
+        @SuppressWarnings("unchecked")
+        Node<Type> build() {
+            // sort the holders of the same path by the provider
+            Collections.sort(this.holders);
+            final Type[] holderArray = (Type[]) this.holders.toArray(new PathBasedHolder[this.holders.size()]);
+
+            final char[] childChars = new char[this.children.size()];
+            final Node<Type>[] childArray = new Node[this.children.size()];
+            int i = 0;
+            for (final Map.Entry<Character, NodeBuilder<Type>> entry : this.children.entrySet()) {
+                childChars[i] = entry.getKey().charValue();
+                childArray[i] = entry.getValue().build();
+                i++;
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
+            return new Node<Type>(this.path, holderArray, childChars, childArray);
         }
-    }
 
-    public List<Type> getHolders() {
-        this.rwLock.readLock().lock();
-        try {
-            final List<Type> result = new ArrayList<Type>();
-            for (Map<String, List<Type>> byHostEntry : cache.values()) {
-                for (List<Type> holderList : byHostEntry.values()) {
-                    result.addAll(holderList);
-                }
+        private static int getCommonPrefixLength(final String a, final String b) {
+            final int max = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
+            return i;
         }
     }
 }
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResolverCache</code> keeps the JCR session of a resource resolver
+ * for recently validated credentials. For further requests with the same
+ * credentials a resource resolver is created on the cached session instead of
+ * logging in to the repository again.
+ * <p>
+ * A cached session is used by one request at a time. It is leased to the
+ * request by {@link #getResourceResolver(ResourceResolverFactory, AuthenticationInfo)}
+ * and returned to the cache by {@link #release(ResourceResolver)} once the
+ * resource resolver is closed. Transient changes left by the request are
+ * discarded when the session is returned. Further concurrent requests with the
+ * same credentials log in as usual.
+ * <p>
+ * The credentials are identified by a SHA-256 digest of the authentication
+ * info, such that no passwords are kept in the cache. Only authentication
+ * infos whose values are strings, character arrays, numbers or booleans are
+ * cached, other credential objects are always used to log in.
+ * <p>
+ * Entries expire after the configured time to live, such that credentials
+ * revoked or expired in the repository are accepted for at most this time.
+ * All entries are dropped if users or groups are changed, that is on resource
+ * events for paths below the configured invalidation paths. If the cache is
+ * full, the least recently used entry is evicted.
+ */
+class ResolverCache implements EventHandler {
+
+    /**
+     * The authentication info property providing the session of the resource
+     * resolver, see <code>JcrResourceConstants.AUTHENTICATION_INFO_SESSION</code>.
+     */
+    private static final String AUTH_INFO_SESSION = "user.jcr.session";
+
+    /** default logger */
+    private final Logger log = LoggerFactory.getLogger(ResolverCache.class);
+
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    private final String[] invalidationPaths;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** the entries whose sessions are used by the resolvers of running requests */
+    private final ConcurrentMap<ResourceResolver, Entry> leases = new ConcurrentHashMap<ResourceResolver, Entry>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong busy = new AtomicLong();
+
+    private final AtomicLong uncacheable = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize The maximum number of cached resolvers
+     * @param timeToLive The time in milliseconds after which an entry expires
+     * @param invalidationPaths The paths below which changes drop all entries
+     */
+    ResolverCache(final int maxSize, final long timeToLive, final String[] invalidationPaths) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.invalidationPaths = invalidationPaths;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                if (size() > ResolverCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a resource resolver for the authentication info, either a
+     * resolver on a cached session or a resolver freshly logged in with the
+     * factory. The resolver must be passed to {@link #release(ResourceResolver)}
+     * after it has been closed.
+     */
+    ResourceResolver getResourceResolver(final ResourceResolverFactory factory, final AuthenticationInfo authInfo)
+    throws LoginException {
+        final String key = getKey(authInfo);
+        if (key == null) {
+            this.uncacheable.incrementAndGet();
+            return factory.getResourceResolver(authInfo);
+        }
+
+        final Entry entry = this.get(key);
+        if (entry != null) {
+            final Session session = entry.acquire();
+            if (session == null) {
+                // used by a concurrent request or not usable any longer
+                if (entry.isClosed()) {
+                    this.remove(key, entry);
+                } else {
+                    this.busy.incrementAndGet();
+                    return factory.getResourceResolver(authInfo);
+                }
+            } else {
+                try {
+                    final Map<String, Object> sessionInfo = new HashMap<String, Object>();
+                    sessionInfo.put(AUTH_INFO_SESSION, session);
+                    final ResourceResolver resolver = factory.getResourceResolver(sessionInfo);
+                    this.leases.put(resolver, entry);
+                    this.hits.incrementAndGet();
+                    return resolver;
+                } catch (final LoginException le) {
+                    log.debug("getResourceResolver: Cannot use cached session, logging in again", le);
+                    entry.release();
+                    this.remove(key, entry);
+                }
+            }
+        }
+
+        this.misses.incrementAndGet();
+        final ResourceResolver resolver = factory.getResourceResolver(authInfo);
+        try {
+            final ResourceResolver master = resolver.clone(null);
+            final Session session = master.adaptTo(Session.class);
+            if (session == null) {
+                master.close();
+            } else {
+                this.put(key, new Entry(master, session, authInfo.getUser(),
+                    System.currentTimeMillis() + this.timeToLive));
+            }
+        } catch (final LoginException le) {
+            log.debug("getResourceResolver: Cannot clone resolver for caching", le);
+        }
+        return resolver;
+    }
+
+    /**
+     * Returns the cached session used by the closed resource resolver to the
+     * cache. Nothing is done if the resolver has not been created on a cached
+     * session.
+     */
+    void release(final ResourceResolver resolver) {
+        final Entry entry = this.leases.remove(resolver);
+        if (entry != null) {
+            entry.release();
+        }
+    }
+
+    /**
+     * Drops the entries for the user, for example after logging out.
+     */
+    void invalidateUser(final String userId) {
+        if (userId == null) {
+            return;
+        }
+        final List<Entry> removed = new ArrayList<Entry>();
+        synchronized (this.entries) {
+            final Iterator<Entry> i = this.entries.values().iterator();
+            while (i.hasNext()) {
+                final Entry entry = i.next();
+                if (userId.equals(entry.user) || userId.equals(entry.userId)) {
+                    removed.add(entry);
+                    i.remove();
+                }
+            }
+        }
+        close(removed);
+    }
+
+    /**
+     * Drops all entries.
+     */
+    void clear() {
+        final List<Entry> removed;
+        synchronized (this.entries) {
+            removed = new ArrayList<Entry>(this.entries.values());
+            this.entries.clear();
+        }
+        close(removed);
+    }
+
+    /**
+     * Drops all entries if a resource below one of the invalidation paths,
+     * that is a user or group, has been changed.
+     *
+     * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+     */
+    public void handleEvent(final Event event) {
+        final Object path = event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (path instanceof String) {
+            for (final String invalidationPath : this.invalidationPaths) {
+                if (((String) path).startsWith(invalidationPath)) {
+                    log.debug("handleEvent: Dropping cached resolvers on change of {}", path);
+                    this.invalidations.incrementAndGet();
+                    this.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+    int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    long getHits() {
+        return this.hits.get();
+    }
+
+    long getMisses() {
+        return this.misses.get();
+    }
+
+    long getBusy() {
+        return this.busy.get();
+    }
+
+    long getUncacheable() {
+        return this.uncacheable.get();
+    }
+
+    long getEvictions() {
+        return this.evictions.get();
+    }
+
+    long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    private Entry get(final String key) {
+        final Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            if (entry == null || entry.expires > System.currentTimeMillis()) {
+                return entry;
+            }
+            this.entries.remove(key);
+        }
+        entry.close();
+        return null;
+    }
+
+    private void put(final String key, final Entry entry) {
+        final Entry old;
+        synchronized (this.entries) {
+            old = this.entries.put(key, entry);
+        }
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    private void remove(final String key, final Entry entry) {
+        synchronized (this.entries) {
+            if (this.entries.get(key) == entry) {
+                this.entries.remove(key);
+            }
+        }
+        entry.close();
+    }
+
+    private static void close(final List<Entry> entries) {
+        for (final Entry entry : entries) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Returns the digest of the authentication info or <code>null</code> if
+     * the info contains values which cannot be used as cache key.
+     */
+    static String getKey(final AuthenticationInfo authInfo) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final Map.Entry<String, Object> entry : new TreeMap<String, Object>(authInfo).entrySet()) {
+                final Object value = entry.getValue();
+                digest.update(entry.getKey().getBytes("UTF-8"));
+                digest.update((byte) 0);
+                if (value instanceof String) {
+                    digest.update((byte) 's');
+                    digest.update(((String) value).getBytes("UTF-8"));
+                } else if (value instanceof char[]) {
+                    digest.update((byte) 'c');
+                    for (final char c : (char[]) value) {
+                        digest.update((byte) (c >> 8));
+                        digest.update((byte) c);
+                    }
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    digest.update((byte) 'n');
+                    digest.update(value.toString().getBytes("UTF-8"));
+                } else if (value != null) {
+                    // unknown credentials, do not cache
+                    return null;
+                }
+                digest.update((byte) 0);
+            }
+
+            final StringBuilder key = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (final NoSuchAlgorithmException nsae) {
+            return null;
+        } catch (final UnsupportedEncodingException uee) {
+            return null;
+        }
+    }
+
+    /**
+     * A cached session. The session is owned by the master resolver, which is
+     * closed once the entry is dropped from the cache and the session is not
+     * used by a request any longer.
+     */
+    private static final class Entry {
+
+        private static final int IDLE = 0;
+
+        private static final int USED = 1;
+
+        /** closed while used, the master is closed on release */
+        private static final int CLOSING = 2;
+
+        private static final int CLOSED = 3;
+
+        private final ResourceResolver master;
+
+        private final Session session;
+
+        /** the user name of the authentication info */
+        final String user;
+
+        /** the user of the resolver, which differs from the user when impersonating */
+        final String userId;
+
+        final long expires;
+
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        Entry(final ResourceResolver master, final Session session, final String user, final long expires) {
+            this.master = master;
+            this.session = session;
+            this.user = user;
+            this.userId = master.getUserID();
+            this.expires = expires;
+        }
+
+        /**
+         * Returns the session for exclusive use by a request or
+         * <code>null</code> if it is used by another request or is not usable
+         * any longer.
+         */
+        Session acquire() {
+            if (!this.state.compareAndSet(IDLE, USED)) {
+                return null;
+            }
+            if (!this.session.isLive()) {
+                this.state.set(CLOSED);
+                this.master.close();
+                return null;
+            }
+            return this.session;
+        }
+
+        /**
+         * Discards transient changes of the request and makes the session
+         * available to further requests.
+         */
+        void release() {
+            try {
+                if (this.state.get() == USED && this.session.hasPendingChanges()) {
+                    this.session.refresh(false);
+                }
+            } catch (final RepositoryException re) {
+                this.close();
+            }
+            if (!this.state.compareAndSet(USED, IDLE) && this.state.compareAndSet(CLOSING, CLOSED)) {
+                this.master.close();
+            }
+        }
+
+        boolean isClosed() {
+            return this.state.get() >= CLOSING;
+        }
+
+        void close() {
+            for (;;) {
+                final int current = this.state.get();
+                if (current == IDLE) {
+                    if (this.state.compareAndSet(IDLE, CLOSED)) {
+                        this.master.close();
+                        return;
+                    }
+                } else if (current == USED) {
+                    if (this.state.compareAndSet(USED, CLOSING)) {
+                        return;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -70,6 +70,8 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.http.HttpContext;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
@@ -181,6 +183,46 @@ public class SlingAuthenticator implements Authenticator,
     @Property(value = DEFAULT_AUTH_URI_SUFFIX, unbounded = PropertyUnbounded.ARRAY)
     public static final String PAR_AUTH_URI_SUFFIX = "auth.uri.suffix";
 
+    /**
+     * The default maximum number of cached resource resolvers, which is 0 and
+     * thus disables the cache.
+     */
+    private static final int DEFAULT_RESOLVER_CACHE_SIZE = 0;
+
+    /**
+     * The name of the configuration property setting the maximum number of
+     * resource resolvers cached for validated credentials. The cache is
+     * disabled if this is 0 or negative.
+     */
+    @Property(intValue = DEFAULT_RESOLVER_CACHE_SIZE)
+    public static final String PAR_RESOLVER_CACHE_SIZE = "auth.resolver.cache.size";
+
+    /**
+     * The default time in seconds a cached resource resolver may be used.
+     */
+    private static final long DEFAULT_RESOLVER_CACHE_TTL = 60;
+
+    /**
+     * The name of the configuration property setting the time in seconds a
+     * cached resource resolver may be used.
+     */
+    @Property(longValue = DEFAULT_RESOLVER_CACHE_TTL)
+    public static final String PAR_RESOLVER_CACHE_TTL = "auth.resolver.cache.ttl";
+
+    /**
+     * The default paths below which changes drop all cached resource
+     * resolvers.
+     */
+    private static final String[] DEFAULT_RESOLVER_CACHE_INVALIDATION_PATHS = { "/home/users", "/home/groups" };
+
+    /**
+     * The name of the configuration property listing the paths below which
+     * changes, for example of users or groups, drop all cached resource
+     * resolvers.
+     */
+    @Property(value = { "/home/users", "/home/groups" }, unbounded = PropertyUnbounded.ARRAY)
+    public static final String PAR_RESOLVER_CACHE_INVALIDATION_PATHS = "auth.resolver.cache.invalidation.paths";
+
     /**
      * The name of the {@link AuthenticationInfo} property providing the option
      * {@link org.apache.sling.auth.core.spi.AuthenticationFeedbackHandler}
@@ -258,6 +300,27 @@ public class SlingAuthenticator implements Authenticator,
      */
     private ServiceTracker authInfoPostProcessorTracker;
 
+    /**
+     * The cache of resource resolvers for validated credentials or
+     * <code>null</code> if disabled.
+     */
+    private volatile ResolverCache resolverCache;
+
+    /**
+     * The request attribute referring to the resolver cache which provided
+     * the resource resolver of the request, such that the cached session is
+     * returned to it even if the cache has been replaced in the meantime.
+     */
+    private static final String REQUEST_ATTRIBUTE_RESOLVER_CACHE = ResolverCache.class.getName();
+
+    /**
+     * The registration of the resolver cache as event handler to drop the
+     * cached resolvers on user or group changes.
+     */
+    private ServiceRegistration resolverCacheRegistration;
+
+    private BundleContext bundleContext;
+
     /**
      * The event admin service.
      */
@@ -270,6 +333,7 @@ public class SlingAuthenticator implements Authenticator,
     @Activate
     private void activate(final BundleContext bundleContext,
             final Map<String, Object> properties) {
+        this.bundleContext = bundleContext;
         modified(properties);
 
         AuthenticatorWebConsolePlugin plugin = new AuthenticatorWebConsolePlugin(
@@ -376,6 +440,47 @@ public class SlingAuthenticator implements Authenticator,
             final String realm = OsgiUtil.toString(properties.get(PAR_REALM_NAME), DEFAULT_REALM);
             httpBasicHandler = new HttpBasicAuthenticationHandler(realm, HTTP_AUTH_ENABLED.equals(http));
         }
+
+        updateResolverCache(properties);
+    }
+
+    /**
+     * Replaces the resolver cache according to the configuration.
+     */
+    private void updateResolverCache(final Map<String, Object> properties) {
+        closeResolverCache();
+
+        final int size = OsgiUtil.toInteger(properties.get(PAR_RESOLVER_CACHE_SIZE), DEFAULT_RESOLVER_CACHE_SIZE);
+        if (size <= 0) {
+            return;
+        }
+        final long ttl = OsgiUtil.toLong(properties.get(PAR_RESOLVER_CACHE_TTL), DEFAULT_RESOLVER_CACHE_TTL);
+        final String[] paths = OsgiUtil.toStringArray(properties.get(PAR_RESOLVER_CACHE_INVALIDATION_PATHS),
+            DEFAULT_RESOLVER_CACHE_INVALIDATION_PATHS);
+
+        final ResolverCache cache = new ResolverCache(size, ttl * 1000L, paths);
+        if (bundleContext != null) {
+            final Hashtable<String, Object> props = new Hashtable<String, Object>();
+            props.put(EventConstants.EVENT_TOPIC, new String[] { SlingConstants.TOPIC_RESOURCE_ADDED,
+                SlingConstants.TOPIC_RESOURCE_CHANGED, SlingConstants.TOPIC_RESOURCE_REMOVED });
+            props.put(Constants.SERVICE_DESCRIPTION, "Sling Request Authenticator Resolver Cache Invalidation");
+            props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+            resolverCacheRegistration = bundleContext.registerService(EventHandler.class.getName(), cache, props);
+        }
+        resolverCache = cache;
+        log.info("modified: Caching up to {} resource resolvers for {} seconds", size, ttl);
+    }
+
+    private void closeResolverCache() {
+        if (resolverCacheRegistration != null) {
+            resolverCacheRegistration.unregister();
+            resolverCacheRegistration = null;
+        }
+        final ResolverCache cache = resolverCache;
+        if (cache != null) {
+            resolverCache = null;
+            cache.clear();
+        }
     }
 
     @SuppressWarnings("unused")
@@ -400,6 +505,9 @@ public class SlingAuthenticator implements Authenticator,
             webConsolePlugin.unregister();
             webConsolePlugin = null;
         }
+
+        closeResolverCache();
+        this.bundleContext = null;
     }
 
     // --------- AuthenticationSupport interface
@@ -511,28 +619,21 @@ public class SlingAuthenticator implements Authenticator,
         }
 
         // select path used for authentication handler selection
-        final List<AbstractAuthenticationHandlerHolder>[] holderListArray = this.authHandlerCache.findApplicableHolder(request);
         final String path = getHandlerSelectionPath(request);
+        final List<AbstractAuthenticationHandlerHolder> holderList = this.authHandlerCache.findApplicableHolders(request, path);
         boolean done = false;
-        for(int m = 0; !done && m < holderListArray.length; m++) {
-            final List<AbstractAuthenticationHandlerHolder> holderList = holderListArray[m];
-            if ( holderList != null ) {
-                for (int i = 0; !done && i < holderList.size(); i++) {
-                    final AbstractAuthenticationHandlerHolder holder = holderList.get(i);
-                    if (path.startsWith(holder.path)) {
-                        log.debug("login: requesting authentication using handler: {}",
-                            holder);
-
-                        try {
-                            done = holder.requestCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "login: Failed sending authentication request through handler "
-                                    + holder + ", access forbidden", ioe);
-                            done = true;
-                        }
-                    }
-                }
+        for (int i = 0; !done && i < holderList.size(); i++) {
+            final AbstractAuthenticationHandlerHolder holder = holderList.get(i);
+            log.debug("login: requesting authentication using handler: {}",
+                holder);
+
+            try {
+                done = holder.requestCredentials(request, response);
+            } catch (IOException ioe) {
+                log.error(
+                    "login: Failed sending authentication request through handler "
+                        + holder + ", access forbidden", ioe);
+                done = true;
             }
         }
 
@@ -543,13 +644,7 @@ public class SlingAuthenticator implements Authenticator,
 
         // no handler could send an authentication request, throw
         if (!done) {
-            int size = 0;
-            for (int m = 0; m < holderListArray.length; m++) {
-                if ( holderListArray[m] != null ) {
-                    size += holderListArray[m].size();
-                }
-            }
-            log.info("login: No handler for request ({} handlers available)", size);
+            log.info("login: No handler for request ({} handlers applicable)", holderList.size());
             throw new NoAuthenticationHandlerException();
         }
     }
@@ -569,26 +664,25 @@ public class SlingAuthenticator implements Authenticator,
         // make sure impersonation is dropped
         setSudoCookie(request, response, new AuthenticationInfo("dummy", request.getRemoteUser()));
 
+        // make sure the credentials are validated again
+        final ResolverCache cache = resolverCache;
+        if (cache != null) {
+            cache.invalidateUser(request.getRemoteUser());
+        }
+
         final String path = getHandlerSelectionPath(request);
-        final List<AbstractAuthenticationHandlerHolder>[] holderListArray = this.authHandlerCache.findApplicableHolder(request);
-        for (int m = 0; m < holderListArray.length; m++) {
-            final List<AbstractAuthenticationHandlerHolder> holderList = holderListArray[m];
-            if (holderList != null) {
-                for (int i = 0; i < holderList.size(); i++) {
-                    AbstractAuthenticationHandlerHolder holder = holderList.get(i);
-                    if (path.startsWith(holder.path)) {
-                        log.debug("logout: dropping authentication using handler: {}",
-                            holder);
-
-                        try {
-                            holder.dropCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "logout: Failed dropping authentication through handler "
-                                    + holder, ioe);
-                        }
-                    }
-                }
+        final List<AbstractAuthenticationHandlerHolder> holderList = this.authHandlerCache.findApplicableHolders(request, path);
+        for (int i = 0; i < holderList.size(); i++) {
+            AbstractAuthenticationHandlerHolder holder = holderList.get(i);
+            log.debug("logout: dropping authentication using handler: {}",
+                holder);
+
+            try {
+                holder.dropCredentials(request, response);
+            } catch (IOException ioe) {
+                log.error(
+                    "logout: Failed dropping authentication through handler "
+                        + holder, ioe);
             }
         }
 
@@ -609,11 +703,24 @@ public class SlingAuthenticator implements Authenticator,
         ServletRequest request = sre.getServletRequest();
         Object resolverAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         if (resolverAttr instanceof ResourceResolver) {
-            ((ResourceResolver) resolverAttr).close();
+            closeResolver(request, (ResourceResolver) resolverAttr);
             request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         }
     }
 
+    /**
+     * Closes the resource resolver and returns its session to the resolver
+     * cache it has been taken from, if any.
+     */
+    private void closeResolver(final ServletRequest request, final ResourceResolver resolver) {
+        resolver.close();
+        final Object cache = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER_CACHE);
+        if (cache instanceof ResolverCache) {
+            ((ResolverCache) cache).release(resolver);
+            request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER_CACHE);
+        }
+    }
+
     // ---------- WebConsolePlugin support
 
     /**
@@ -664,6 +771,13 @@ public class SlingAuthenticator implements Authenticator,
         return sudoParameterName;
     }
 
+    /**
+     * Returns the resolver cache or <code>null</code> if disabled.
+     */
+    ResolverCache getResolverCache() {
+        return resolverCache;
+    }
+
     // ---------- internal
 
     private String getPath(HttpServletRequest request) {
@@ -687,25 +801,18 @@ public class SlingAuthenticator implements Authenticator,
             path = "/";
         }
 
-        final List<AbstractAuthenticationHandlerHolder>[] localArray = this.authHandlerCache.findApplicableHolder(request);
-        for (int m = 0; m < localArray.length; m++) {
-            final List<AbstractAuthenticationHandlerHolder> local = localArray[m];
-            if (local != null) {
-                for (int i = 0; i < local.size(); i++) {
-                    AbstractAuthenticationHandlerHolder holder = local.get(i);
-                    if (path.startsWith(holder.path)) {
-                        final AuthenticationInfo authInfo = holder.extractCredentials(
-                            request, response);
+        final List<AbstractAuthenticationHandlerHolder> local = this.authHandlerCache.findApplicableHolders(request, path);
+        for (int i = 0; i < local.size(); i++) {
+            AbstractAuthenticationHandlerHolder holder = local.get(i);
+            final AuthenticationInfo authInfo = holder.extractCredentials(
+                request, response);
 
-                        if (authInfo != null) {
-                            // add the feedback handler to the info (may be null)
-                            authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
-                                holder.getFeedbackHandler());
+            if (authInfo != null) {
+                // add the feedback handler to the info (may be null)
+                authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
+                    holder.getFeedbackHandler());
 
-                            return authInfo;
-                        }
-                    }
-                }
+                return authInfo;
             }
         }
 
@@ -757,7 +864,14 @@ public class SlingAuthenticator implements Authenticator,
         // try to connect
         try {
             handleImpersonation(request, authInfo);
-            ResourceResolver resolver = resourceResolverFactory.getResourceResolver(authInfo);
+            final ResolverCache cache = resolverCache;
+            final ResourceResolver resolver;
+            if (cache == null) {
+                resolver = resourceResolverFactory.getResourceResolver(authInfo);
+            } else {
+                resolver = cache.getResourceResolver(resourceResolverFactory, authInfo);
+                request.setAttribute(REQUEST_ATTRIBUTE_RESOLVER_CACHE, cache);
+            }
             final boolean impersChanged = setSudoCookie(request, response, authInfo);
 
             if (sendLoginEvent != null) {
@@ -788,7 +902,7 @@ public class SlingAuthenticator implements Authenticator,
                 setAttributes(resolver, authInfo.getAuthType(), request);
             } else {
                 // terminate: cleanup
-                resolver.close();
+                closeResolver(request, resolver);
             }
 
             return processRequest;
@@ -880,17 +994,9 @@ public class SlingAuthenticator implements Authenticator,
             return false;
         }
 
-        final List<AuthenticationRequirementHolder>[] holderListArray = authRequiredCache.findApplicableHolder(request);
-        for(int m = 0; m < holderListArray.length; m++) {
-            final List<AuthenticationRequirementHolder> holderList = holderListArray[m];
-            if ( holderList != null ) {
-                for (int i = 0; i < holderList.size(); i++) {
-                    final AuthenticationRequirementHolder holder = holderList.get(i);
-                    if (path.startsWith(holder.path)) {
-                        return !holder.requiresAuthentication();
-                    }
-                }
-            }
+        final List<AuthenticationRequirementHolder> holderList = authRequiredCache.findApplicableHolders(request, path);
+        if (!holderList.isEmpty()) {
+            return !holderList.get(0).requiresAuthentication();
         }
 
         // fallback to anonymous not allowed (aka authentication required)
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PathBasedHolderCacheTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private PathBasedHolderCache<AuthenticationRequirementHolder> cache;
+
+    @Before
+    public void setup() {
+        cache = new PathBasedHolderCache<AuthenticationRequirementHolder>();
+        add("/");
+        add("/content");
+        add("/content/foo");
+        add("/content/foobar");
+        add("/content/foo/bar");
+        add("/libs");
+        add("http://");
+        add("https:///secure");
+        add("//www.example.com/content");
+        add("//www.example.com:8080/content/foo");
+        add("http://www.example.com/content/foo/bar/baz");
+    }
+
+    @Test
+    public void testPathOrder() {
+        assertHolders("https", "localhost", 443, "/content/foo/bar/x",
+            "/content/foo/bar", "/content/foo", "/content", "/");
+        assertHolders("https", "localhost", 443, "/content/foobar",
+            "/content/foobar", "/content/foo", "/content", "/");
+        assertHolders("https", "localhost", 443, "/content/fo",
+            "/content", "/");
+        assertHolders("https", "localhost", 443, "/", "/");
+        assertHolders("https", "localhost", 443, "");
+    }
+
+    @Test
+    public void testProtocolAndHostOrder() {
+        assertHolders("http", "www.example.com", 80, "/content/foo/bar/baz",
+            "http://www.example.com/content/foo/bar/baz", "http://", "//www.example.com/content",
+            "/content/foo/bar", "/content/foo", "/content", "/");
+        assertHolders("https", "www.example.com", 8080, "/secure/content/foo",
+            "https:///secure", "/");
+        assertHolders("https", "www.example.com", 8080, "/content/foo/x",
+            "//www.example.com:8080/content/foo", "/content/foo", "/content", "/");
+        assertHolders("https", "www.example.com", 443, "/content/foo",
+            "//www.example.com/content", "/content/foo", "/content", "/");
+    }
+
+    @Test
+    public void testRemoveHolder() {
+        for (final AuthenticationRequirementHolder holder : cache.getHolders()) {
+            if (holder.fullPath.equals("/content/foo") || holder.fullPath.equals("http://")) {
+                cache.removeHolder(holder);
+            }
+        }
+        assertHolders("http", "localhost", 80, "/content/foo/bar/x",
+            "/content/foo/bar", "/content", "/");
+        assertHolders("http", "www.example.com", 80, "/content/foo",
+            "//www.example.com/content", "/content", "/");
+        assertEquals(9, cache.getHolders().size());
+
+        cache.clear();
+        assertTrue(cache.getHolders().isEmpty());
+        assertHolders("http", "localhost", 80, "/content/foo");
+    }
+
+    private void add(final String url) {
+        cache.addHolder(new AuthenticationRequirementHolder(url, true, null));
+    }
+
+    private void assertHolders(final String scheme, final String host, final int port, final String path,
+            final String... expected) {
+        final HttpServletRequest request = context.mock(HttpServletRequest.class, scheme + host + port + path);
+        context.checking(new Expectations() {
+            {
+                allowing(request).getScheme();
+                will(returnValue(scheme));
+                allowing(request).getServerName();
+                will(returnValue(host));
+                allowing(request).getServerPort();
+                will(returnValue(port));
+            }
+        });
+
+        final List<String> actual = new ArrayList<String>();
+        for (final AuthenticationRequirementHolder holder : cache.findApplicableHolders(request, path)) {
+            actual.add(holder.fullPath);
+        }
+        final List<String> expectedList = new ArrayList<String>();
+        for (final String url : expected) {
+            expectedList.add(url);
+        }
+        assertEquals(expectedList, actual);
+    }
+}
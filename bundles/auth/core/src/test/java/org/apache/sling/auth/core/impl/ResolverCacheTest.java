@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Session;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class ResolverCacheTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private final ResourceResolverFactory factory = context.mock(ResourceResolverFactory.class);
+
+    /** the sessions logged in to the repository */
+    private final Set<Session> sessions = new HashSet<Session>();
+
+    /** the sessions logged out again */
+    private final Set<Session> loggedOut = new HashSet<Session>();
+
+    /** the sessions with transient changes */
+    private final Set<Session> pendingChanges = new HashSet<Session>();
+
+    private int mocks;
+
+    /**
+     * Lets the factory log in to the repository unless a session is provided
+     * in the authentication info, like the JCR resource provider does.
+     */
+    @Before
+    public void setUp() throws Exception {
+        context.checking(new Expectations() {
+            {
+                allowing(factory).getResourceResolver(with(any(Map.class)));
+                will(new CustomAction("getResourceResolver") {
+                    public Object invoke(final Invocation invocation) {
+                        final Map<?, ?> authInfo = (Map<?, ?>) invocation.getParameter(0);
+                        final Object session = authInfo.get("user.jcr.session");
+                        if (session instanceof Session) {
+                            return resolver((Session) session, false);
+                        }
+                        return resolver(login((String) authInfo.get(ResourceResolverFactory.USER)), true);
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testKey() {
+        final AuthenticationInfo info = new AuthenticationInfo("BASIC", "admin", "admin".toCharArray());
+        final String key = ResolverCache.getKey(info);
+        assertNotNull(key);
+        assertEquals(key, ResolverCache.getKey(new AuthenticationInfo("BASIC", "admin", "admin".toCharArray())));
+        assertFalse(key.equals(ResolverCache.getKey(new AuthenticationInfo("BASIC", "admin", "other".toCharArray()))));
+        assertFalse(key.contains("admin"));
+
+        info.put(ResourceResolverFactory.USER_IMPERSONATION, "other");
+        assertFalse(key.equals(ResolverCache.getKey(info)));
+
+        info.put("user.jcr.credentials", new Object());
+        assertNull(ResolverCache.getKey(info));
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[] { "/home/users" });
+
+        // the first request logs in and a second session is cached
+        final ResourceResolver first = cache.getResourceResolver(factory, basic("admin"));
+        assertEquals(2, sessions.size());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMisses());
+        close(cache, first);
+        assertTrue(loggedOut.contains(first.adaptTo(Session.class)));
+
+        // further requests use the cached session without logging in
+        final ResourceResolver second = cache.getResourceResolver(factory, basic("admin"));
+        final Session cached = second.adaptTo(Session.class);
+        assertFalse(loggedOut.contains(cached));
+        close(cache, second);
+        final ResourceResolver third = cache.getResourceResolver(factory, basic("admin"));
+        assertSame(cached, third.adaptTo(Session.class));
+        close(cache, third);
+        assertEquals(2, sessions.size());
+        assertEquals(2, cache.getHits());
+        assertFalse(loggedOut.contains(cached));
+
+        // changing a user drops the cache
+        cache.handleEvent(resourceEvent("/content/admin"));
+        assertEquals(1, cache.size());
+        cache.handleEvent(resourceEvent("/home/users/a/admin"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+        assertTrue(loggedOut.contains(cached));
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[0]);
+        close(cache, cache.getResourceResolver(factory, basic("admin")));
+
+        // the cached session is used by one request at a time
+        final ResourceResolver first = cache.getResourceResolver(factory, basic("admin"));
+        final ResourceResolver second = cache.getResourceResolver(factory, basic("admin"));
+        assertFalse(first.adaptTo(Session.class) == second.adaptTo(Session.class));
+        assertEquals(3, sessions.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getBusy());
+        close(cache, second);
+        close(cache, first);
+
+        final ResourceResolver third = cache.getResourceResolver(factory, basic("admin"));
+        assertSame(first.adaptTo(Session.class), third.adaptTo(Session.class));
+        assertEquals(3, sessions.size());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testPendingChangesDiscarded() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[0]);
+        close(cache, cache.getResourceResolver(factory, basic("admin")));
+
+        final ResourceResolver resolver = cache.getResourceResolver(factory, basic("admin"));
+        final Session session = resolver.adaptTo(Session.class);
+        pendingChanges.add(session);
+        context.checking(new Expectations() {
+            {
+                oneOf(session).refresh(false);
+            }
+        });
+        close(cache, resolver);
+    }
+
+    @Test
+    public void testInvalidationWhileUsed() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[] { "/home/users" });
+        close(cache, cache.getResourceResolver(factory, basic("admin")));
+
+        // the session is logged out once the request is done with it
+        final ResourceResolver resolver = cache.getResourceResolver(factory, basic("admin"));
+        final Session session = resolver.adaptTo(Session.class);
+        cache.handleEvent(resourceEvent("/home/users/a/admin"));
+        assertEquals(0, cache.size());
+        assertFalse(loggedOut.contains(session));
+        close(cache, resolver);
+        assertTrue(loggedOut.contains(session));
+    }
+
+    @Test
+    public void testSessionNotLive() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[0]);
+        final ResourceResolver first = cache.getResourceResolver(factory, basic("admin"));
+        close(cache, first);
+        final ResourceResolver second = cache.getResourceResolver(factory, basic("admin"));
+        close(cache, second);
+        loggedOut.add(second.adaptTo(Session.class));
+
+        cache.getResourceResolver(factory, basic("admin"));
+        assertEquals(4, sessions.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, -1, new String[0]);
+        close(cache, cache.getResourceResolver(factory, basic("admin")));
+        close(cache, cache.getResourceResolver(factory, basic("admin")));
+        assertEquals(4, sessions.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, loggedOut.size());
+    }
+
+    @Test
+    public void testEvictionAndLogout() throws Exception {
+        final ResolverCache cache = new ResolverCache(1, 60000, new String[0]);
+        close(cache, cache.getResourceResolver(factory, basic("user1")));
+        close(cache, cache.getResourceResolver(factory, basic("user2")));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, loggedOut.size());
+
+        cache.invalidateUser("user1");
+        assertEquals(1, cache.size());
+
+        cache.invalidateUser("user2");
+        assertEquals(0, cache.size());
+        assertEquals(4, loggedOut.size());
+    }
+
+    @Test
+    public void testUncacheable() throws Exception {
+        final ResolverCache cache = new ResolverCache(10, 60000, new String[0]);
+        final AuthenticationInfo info = basic("admin");
+        info.put("user.jcr.credentials", new Object());
+        close(cache, cache.getResourceResolver(factory, info));
+        close(cache, cache.getResourceResolver(factory, info));
+        assertEquals(2, sessions.size());
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getUncacheable());
+    }
+
+    private AuthenticationInfo basic(final String user) {
+        return new AuthenticationInfo("BASIC", user, "secret".toCharArray());
+    }
+
+    /**
+     * Closes the resolver at the end of a request like the authenticator does.
+     */
+    private void close(final ResolverCache cache, final ResourceResolver resolver) {
+        resolver.close();
+        cache.release(resolver);
+    }
+
+    /**
+     * Returns a new session of the user, that is a login to the repository.
+     */
+    private Session login(final String userId) {
+        final Session session = context.mock(Session.class, "session" + (++mocks));
+        try {
+            context.checking(new Expectations() {
+                {
+                    allowing(session).getUserID();
+                    will(returnValue(userId));
+                    allowing(session).isLive();
+                    will(new CustomAction("isLive") {
+                        public Object invoke(final Invocation invocation) {
+                            return !loggedOut.contains(session);
+                        }
+                    });
+                    allowing(session).hasPendingChanges();
+                    will(new CustomAction("hasPendingChanges") {
+                        public Object invoke(final Invocation invocation) {
+                            return pendingChanges.contains(session);
+                        }
+                    });
+                }
+            });
+        } catch (final Exception e) {
+            throw new AssertionError(e);
+        }
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Returns a resolver on the session, which logs out the session on close
+     * if the resolver has logged in itself and logs in again on clone.
+     */
+    private ResourceResolver resolver(final Session session, final boolean logout) {
+        final ResourceResolver resolver = context.mock(ResourceResolver.class, "resolver" + (++mocks));
+        try {
+            context.checking(new Expectations() {
+                {
+                    allowing(resolver).adaptTo(Session.class);
+                    will(returnValue(session));
+                    allowing(resolver).getUserID();
+                    will(returnValue(session.getUserID()));
+                    allowing(resolver).clone(null);
+                    will(new CustomAction("clone") {
+                        public Object invoke(final Invocation invocation) {
+                            return resolver(login(session.getUserID()), true);
+                        }
+                    });
+                    allowing(resolver).close();
+                    will(new CustomAction("close") {
+                        public Object invoke(final Invocation invocation) {
+                            if (logout) {
+                                loggedOut.add(session);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            });
+        } catch (final Exception e) {
+            throw new AssertionError(e);
+        }
+        return resolver;
+    }
+
+    private Event resourceEvent(final String path) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        return new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, props);
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.sling.engine.impl;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
@@ -25,177 +27,157 @@ import org.apache.sling.engine.jmx.RequestProcessorMBean;
 /**
  * This is the implementation of the management interface for the
  * RequestProcessor.
+ * <p>
+ * The statistics are collected without locking in {@link StripedStatistics}
+ * of the current statistics window. Resetting the statistics starts a new
+ * window.
  */
 class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcessorMBean {
 
-    // number of requests
-    private volatile long n;
-
-    // shortest request
-    private volatile long durationMsecMin;
-
-    // longest request
-    private volatile long durationMsecMax;
-
-    // sum of request durations
-    private volatile double durationMsecSumX;
-
-    // sum of squared request durations
-    private volatile double durationMsecSumX2;
-
-    private volatile int servletCallCountMin;
-
-    private volatile int servletCallCountMax;
-
-    private volatile double servletCallCountSumX;
-
-    private volatile double servletCallCountSumX2;
-
-    private volatile int peakRecursionDepthMin;
-
-    private volatile int peakRecursionDepthMax;
+    /** Durations up to about two years are tracked exactly by the histogram. */
+    private static final int DURATION_BITS = 36;
 
-    private volatile double peakRecursionDepthSumX;
+    /** Servlet call counts and recursion depths up to about a million are tracked exactly. */
+    private static final int COUNT_BITS = 20;
 
-    private volatile double peakRecursionDepthSumX2;
+    private final AtomicReference<Window> window = new AtomicReference<Window>();
 
     RequestProcessorMBeanImpl() throws NotCompliantMBeanException {
         super(RequestProcessorMBean.class);
         resetStatistics();
     }
 
-    synchronized void addRequestData(final RequestData data) {
-        this.n++;
-        
-        final long duration = data.getElapsedTimeMsec();
-        final int servletCallCount = data.getServletCallCount();
-        final int peakRecursionDepth = data.getPeakRecusionDepth();
-
-        if (duration < this.durationMsecMin) {
-            this.durationMsecMin = duration;
-        }
-        if (duration > this.durationMsecMax) {
-            this.durationMsecMax = duration;
-        }
-
-        this.durationMsecSumX += duration;
-        this.durationMsecSumX2 += (duration * duration);
-        
-        if (servletCallCount < this.servletCallCountMin) {
-            this.servletCallCountMin = servletCallCount;
-        }
-        if (servletCallCount > this.servletCallCountMax) {
-            this.servletCallCountMax = servletCallCount;
-        }
-        this.servletCallCountSumX += servletCallCount;
-        this.servletCallCountSumX2 += (servletCallCount * servletCallCount);
-        
-        if (peakRecursionDepth < this.peakRecursionDepthMin) {
-            this.peakRecursionDepthMin = peakRecursionDepth;
-        }
-        if (peakRecursionDepth > this.peakRecursionDepthMax) {
-            this.peakRecursionDepthMax = peakRecursionDepth;
-        }
-        this.peakRecursionDepthSumX += peakRecursionDepth;
-        this.peakRecursionDepthSumX2 += (peakRecursionDepth * peakRecursionDepth);
+    void addRequestData(final RequestData data) {
+        final Window current = this.window.get();
+        current.duration.add(data.getElapsedTimeMsec());
+        current.servletCallCount.add(data.getServletCallCount());
+        current.peakRecursionDepth.add(data.getPeakRecusionDepth());
     }
 
     public long getRequestsCount() {
-        return this.n;
+        return this.window.get().duration.getCount();
     }
 
     public long getMinRequestDurationMsec() {
-        return this.durationMsecMin;
+        return this.window.get().duration.getMin();
     }
 
     public long getMaxRequestDurationMsec() {
-        return this.durationMsecMax;
+        return this.window.get().duration.getMax();
     }
 
-    public synchronized double getStandardDeviationDurationMsec() {
-        if (this.n > 1) {
-            // algorithm taken from
-            // http://de.wikipedia.org/wiki/Standardabweichung section
-            // "Berechnung fuer auflaufende Messwerte"
-            return Math.sqrt((this.durationMsecSumX2 - this.durationMsecSumX * this.durationMsecSumX / this.n) / (this.n - 1));
-        }
+    public double getStandardDeviationDurationMsec() {
+        return this.window.get().duration.getStandardDeviation();
+    }
+
+    public double getMeanRequestDurationMsec() {
+        return this.window.get().duration.getMean();
+    }
+
+    public long getRequestDurationMsecP50() {
+        return this.window.get().duration.getPercentile(50);
+    }
 
-        // single data point has no deviation
-        return 0;
+    public long getRequestDurationMsecP95() {
+        return this.window.get().duration.getPercentile(95);
     }
 
-    public synchronized double getMeanRequestDurationMsec() {
-        if (this.n > 0) {
-            return this.durationMsecSumX / this.n;
-        } else {
-            return 0;
-        }
+    public long getRequestDurationMsecP99() {
+        return this.window.get().duration.getPercentile(99);
     }
 
-    public synchronized void resetStatistics() {
-        this.durationMsecMin = Long.MAX_VALUE;
-        this.durationMsecMax = 0;
-        this.servletCallCountMin = Integer.MAX_VALUE;
-        this.servletCallCountMax = 0;
-        this.peakRecursionDepthMin = Integer.MAX_VALUE;
-        this.peakRecursionDepthMax = 0;
-        this.durationMsecSumX=0d;
-        this.durationMsecSumX2=0d;
-        this.peakRecursionDepthSumX=0d;
-        this.peakRecursionDepthSumX2=0d;
-        this.servletCallCountSumX=0d;
-        this.servletCallCountSumX2=0d;
-        this.n = 0;
+    public long getRequestDurationMsecP999() {
+        return this.window.get().duration.getPercentile(99.9);
+    }
+
+    public void resetStatistics() {
+        this.window.set(new Window());
+    }
+
+    public long getStatisticsStartTime() {
+        return this.window.get().startTime;
     }
 
     public int getMaxPeakRecursionDepth() {
-        return peakRecursionDepthMax;
+        return (int) this.window.get().peakRecursionDepth.getMax();
     }
 
     public int getMinPeakRecursionDepth() {
-        return peakRecursionDepthMin;
+        return toInt(this.window.get().peakRecursionDepth.getMin());
     }
 
     public double getMeanPeakRecursionDepth() {
-        if (this.n > 0) {
-            return this.peakRecursionDepthSumX / this.n;
-        } else {
-            return 0;
-        }
+        return this.window.get().peakRecursionDepth.getMean();
     }
 
     public double getStandardDeviationPeakRecursionDepth() {
-        if (this.n > 1) {
-            return Math.sqrt((this.peakRecursionDepthSumX2 - this.peakRecursionDepthSumX * this.peakRecursionDepthSumX / this.n) / (this.n - 1));
-        }
+        return this.window.get().peakRecursionDepth.getStandardDeviation();
+    }
 
-        // single data point has no deviation
-        return 0;
+    public int getPeakRecursionDepthP50() {
+        return (int) this.window.get().peakRecursionDepth.getPercentile(50);
+    }
+
+    public int getPeakRecursionDepthP95() {
+        return (int) this.window.get().peakRecursionDepth.getPercentile(95);
+    }
+
+    public int getPeakRecursionDepthP99() {
+        return (int) this.window.get().peakRecursionDepth.getPercentile(99);
+    }
+
+    public int getPeakRecursionDepthP999() {
+        return (int) this.window.get().peakRecursionDepth.getPercentile(99.9);
     }
 
     public int getMaxServletCallCount() {
-        return this.servletCallCountMax;
+        return (int) this.window.get().servletCallCount.getMax();
     }
 
     public int getMinServletCallCount() {
-        return this.servletCallCountMin;
+        return toInt(this.window.get().servletCallCount.getMin());
     }
 
     public double getMeanServletCallCount() {
-        if (this.n > 0) {
-            return this.servletCallCountSumX / this.n;
-        } else {
-            return 0;
-        }
+        return this.window.get().servletCallCount.getMean();
     }
 
     public double getStandardDeviationServletCallCount() {
-        if (this.n > 1) {
-            return Math.sqrt((this.servletCallCountSumX2 - this.servletCallCountSumX * this.servletCallCountSumX / this.n) / (this.n - 1));
-        }
+        return this.window.get().servletCallCount.getStandardDeviation();
+    }
+
+    public int getServletCallCountP50() {
+        return (int) this.window.get().servletCallCount.getPercentile(50);
+    }
+
+    public int getServletCallCountP95() {
+        return (int) this.window.get().servletCallCount.getPercentile(95);
+    }
+
+    public int getServletCallCountP99() {
+        return (int) this.window.get().servletCallCount.getPercentile(99);
+    }
+
+    public int getServletCallCountP999() {
+        return (int) this.window.get().servletCallCount.getPercentile(99.9);
+    }
 
-        // single data point has no deviation
-        return 0;
+    /**
+     * Convert a minimum to an int keeping "no value" as <code>Integer.MAX_VALUE</code>.
+     */
+    private static int toInt(final long min) {
+        return (int) Math.min(min, Integer.MAX_VALUE);
     }
 
+    /** The statistics collected since the last reset. */
+    private static final class Window {
+
+        final long startTime = System.currentTimeMillis();
+
+        final StripedStatistics duration = new StripedStatistics(DURATION_BITS);
+
+        final StripedStatistics servletCallCount = new StripedStatistics(COUNT_BITS);
+
+        final StripedStatistics peakRecursionDepth = new StripedStatistics(COUNT_BITS);
+    }
 }
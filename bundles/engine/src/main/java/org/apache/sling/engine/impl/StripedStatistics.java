@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>StripedStatistics</code> collects the count, minimum, maximum,
+ * sum, sum of squares and a histogram of non-negative values without
+ * locking.
+ * <p>
+ * To avoid contention between threads adding values concurrently, the
+ * values are collected in a number of stripes selected by the id of the
+ * adding thread. The statistics are computed by combining the stripes.
+ * <p>
+ * The histogram keeps {@link #SUB_BUCKETS} linear buckets per power of two
+ * (like an HDR histogram with one significant digit), such that percentiles
+ * are reported with a relative error of less than 7%.
+ */
+final class StripedStatistics {
+
+    /** The number of buckets per power of two. */
+    static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** The maximum number of stripes. */
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    private final int mask;
+
+    private final int bucketCount;
+
+    private final long maxTrackableValue;
+
+    /**
+     * @param maxValueBits The number of bits of the largest value tracked
+     *            exactly by the histogram. Larger values are counted in
+     *            the last bucket.
+     */
+    StripedStatistics(final int maxValueBits) {
+        int count = 1;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        while (count < processors && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        this.mask = count - 1;
+        this.maxTrackableValue = (1L << maxValueBits) - 1;
+        this.bucketCount = getBucketIndex(this.maxTrackableValue) + 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(this.bucketCount);
+        }
+    }
+
+    void add(final long value) {
+        final long v = (value < 0 ? 0 : value);
+        final Stripe stripe = this.stripes[(int) Thread.currentThread().getId() & this.mask];
+        stripe.count.incrementAndGet();
+        stripe.sum.addAndGet(v);
+        stripe.sumOfSquares.addAndGet(v * v);
+        long current;
+        while (v < (current = stripe.min.get()) && !stripe.min.compareAndSet(current, v)) {
+            // retry
+        }
+        while (v > (current = stripe.max.get()) && !stripe.max.compareAndSet(current, v)) {
+            // retry
+        }
+        stripe.histogram.incrementAndGet(getBucketIndex(Math.min(v, this.maxTrackableValue)));
+    }
+
+    long getCount() {
+        long count = 0;
+        for (final Stripe stripe : this.stripes) {
+            count += stripe.count.get();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the minimum value or <code>Long.MAX_VALUE</code> if no value has been added.
+     */
+    long getMin() {
+        long min = Long.MAX_VALUE;
+        for (final Stripe stripe : this.stripes) {
+            min = Math.min(min, stripe.min.get());
+        }
+        return min;
+    }
+
+    /**
+     * Returns the maximum value or 0 if no value has been added.
+     */
+    long getMax() {
+        long max = 0;
+        for (final Stripe stripe : this.stripes) {
+            max = Math.max(max, stripe.max.get());
+        }
+        return max;
+    }
+
+    double getMean() {
+        long n = 0;
+        double sum = 0;
+        for (final Stripe stripe : this.stripes) {
+            n += stripe.count.get();
+            sum += stripe.sum.get();
+        }
+        return n > 0 ? sum / n : 0;
+    }
+
+    double getStandardDeviation() {
+        long n = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (final Stripe stripe : this.stripes) {
+            n += stripe.count.get();
+            sum += stripe.sum.get();
+            sumOfSquares += stripe.sumOfSquares.get();
+        }
+        if (n > 1) {
+            // algorithm taken from
+            // http://de.wikipedia.org/wiki/Standardabweichung section
+            // "Berechnung fuer auflaufende Messwerte"
+            return Math.sqrt(Math.max(0, (sumOfSquares - sum * sum / n) / (n - 1)));
+        }
+
+        // single data point has no deviation
+        return 0;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the
+     * values are or 0 if no value has been added.
+     *
+     * @param percentile The percentile between 0 and 100
+     */
+    long getPercentile(final double percentile) {
+        final long[] counts = new long[this.bucketCount];
+        long total = 0;
+        for (final Stripe stripe : this.stripes) {
+            for (int i = 0; i < this.bucketCount; i++) {
+                final long c = stripe.histogram.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < this.bucketCount; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Returns the histogram bucket of the value.
+     */
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the histogram bucket.
+     */
+    static long getHighestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        final long lowest = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static final class Stripe {
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong sum = new AtomicLong();
+
+        final AtomicLong sumOfSquares = new AtomicLong();
+
+        final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+        final AtomicLong max = new AtomicLong();
+
+        final AtomicLongArray histogram;
+
+        Stripe(final int buckets) {
+            this.histogram = new AtomicLongArray(buckets);
+        }
+    }
+}
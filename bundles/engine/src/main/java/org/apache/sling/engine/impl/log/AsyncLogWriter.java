@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AsyncLogWriter</code> writes log lines to a
+ * <code>PrintWriter</code> in a background thread. The lines are handed over
+ * through a bounded queue and written in batches. The writer is flushed after
+ * a configurable number of lines and at the latest after the flush interval.
+ * <p>
+ * If the queue is full, lines are either dropped or the writing thread is
+ * blocked until there is space again, depending on the configuration.
+ */
+class AsyncLogWriter implements Runnable {
+
+    /** default number of lines which may be queued */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** default time in milliseconds after which written lines are flushed */
+    static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /** default number of lines after which the writer is flushed */
+    static final int DEFAULT_FLUSH_SIZE = 512;
+
+    private final Logger log = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    private final PrintWriter output;
+
+    private final BlockingQueue<String> queue;
+
+    private final int bufferSize;
+
+    private final long flushInterval;
+
+    private final int flushSize;
+
+    private final boolean blockOnOverflow;
+
+    private final AtomicLong writtenLines = new AtomicLong();
+
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    AsyncLogWriter(final String name, final PrintWriter output, final int bufferSize,
+            final long flushInterval, final int flushSize, final boolean blockOnOverflow) {
+        this.output = output;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.queue = new ArrayBlockingQueue<String>(this.bufferSize);
+        this.flushInterval = Math.max(1, flushInterval);
+        this.flushSize = Math.max(1, flushSize);
+        this.blockOnOverflow = blockOnOverflow;
+        this.thread = new Thread(this, "Apache Sling Request Log Writer " + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue the line for writing.
+     *
+     * @return <code>false</code> if the line has been dropped.
+     */
+    boolean write(final String line) {
+        if (this.running) {
+            if (this.blockOnOverflow) {
+                try {
+                    this.queue.put(line);
+                    return true;
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (this.queue.offer(line)) {
+                return true;
+            }
+        }
+        this.droppedLines.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Stop the background thread after writing all queued lines.
+     */
+    void close() {
+        this.running = false;
+        this.thread.interrupt();
+        try {
+            this.thread.join(this.flushInterval + 1000);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this writer has been created with the
+     * given settings.
+     */
+    boolean hasSettings(final int bufferSize, final long flushInterval, final int flushSize,
+            final boolean blockOnOverflow) {
+        return this.bufferSize == Math.max(1, bufferSize) && this.flushInterval == Math.max(1, flushInterval)
+            && this.flushSize == Math.max(1, flushSize) && this.blockOnOverflow == blockOnOverflow;
+    }
+
+    int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    long getFlushInterval() {
+        return this.flushInterval;
+    }
+
+    int getFlushSize() {
+        return this.flushSize;
+    }
+
+    boolean isBlockOnOverflow() {
+        return this.blockOnOverflow;
+    }
+
+    long getWrittenLines() {
+        return this.writtenLines.get();
+    }
+
+    long getDroppedLines() {
+        return this.droppedLines.get();
+    }
+
+    int getQueuedLines() {
+        return this.queue.size();
+    }
+
+    public void run() {
+        final List<String> batch = new ArrayList<String>(this.flushSize);
+        long unflushed = 0;
+        long lastFlush = System.currentTimeMillis();
+        long reportedDrops = 0;
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                final String first = this.running
+                        ? this.queue.poll(this.flushInterval, TimeUnit.MILLISECONDS)
+                        : this.queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch, this.flushSize - 1);
+                }
+            } catch (final InterruptedException ie) {
+                // closing, write the remaining lines
+                continue;
+            }
+
+            synchronized (this.output) {
+                for (final String line : batch) {
+                    this.output.println(line);
+                }
+                unflushed += batch.size();
+                final long now = System.currentTimeMillis();
+                if (unflushed > 0 && (unflushed >= this.flushSize || now - lastFlush >= this.flushInterval)) {
+                    this.output.flush();
+                    unflushed = 0;
+                    lastFlush = now;
+                }
+            }
+            this.writtenLines.addAndGet(batch.size());
+            batch.clear();
+
+            final long dropped = this.droppedLines.get();
+            if (dropped != reportedDrops) {
+                log.warn("{} request log lines dropped as the buffer of {} lines is full", dropped - reportedDrops,
+                    this.bufferSize);
+                reportedDrops = dropped;
+            }
+        }
+        synchronized (this.output) {
+            this.output.flush();
+        }
+    }
+}
@@ -19,11 +19,9 @@
 package org.apache.sling.engine.impl.log;
 
 import java.text.CharacterIterator;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
@@ -50,7 +48,23 @@ class CustomLogFormat {
      */
 
     /**
-     * The parsed list of log format parts whose <code>print</code> method is
+     * The maximum capacity of the per-thread buffer kept between log messages.
+     * Larger buffers grown by very long messages are dropped after use.
+     */
+    private static final int MAX_BUFFER_CAPACITY = 8192;
+
+    /**
+     * The per-thread buffer into which the log messages are rendered.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /**
+     * The parsed list of log format parts whose <code>append</code> method is
      * called when building the log message line.
      */
     Parameter[] logParameters;
@@ -82,11 +96,16 @@ class CustomLogFormat {
      */
     String format(RequestLoggerRequest request, RequestLoggerResponse response) {
         if (this.logParameters != null) {
-            StringBuilder buf = new StringBuilder();
+            StringBuilder buf = BUFFER.get();
+            buf.setLength(0);
             for (int i = 0; i < this.logParameters.length; i++) {
-                this.logParameters[i].print(buf, request, response);
+                this.logParameters[i].append(buf, request, response);
             }
-            return buf.toString();
+            String message = buf.toString();
+            if (buf.capacity() > MAX_BUFFER_CAPACITY) {
+                BUFFER.remove();
+            }
+            return message;
         }
 
         return null;
@@ -358,18 +377,26 @@ class CustomLogFormat {
     // ---------- Parameter support --------------------------------------------
 
     static interface Parameter {
-        void print(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response);
+
+        /**
+         * Appends the value to the buffer without creating intermediate
+         * objects where possible.
+         */
+        void append(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response);
     }
 
     static class PlainTextParameter implements Parameter {
         private String value;
 
+        private char[] chars;
+
         PlainTextParameter(String value) {
             this.value = value;
+            this.chars = value.toCharArray();
         }
 
-        public void print(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response) {
-            dest.append(this.value);
+        public void append(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response) {
+            dest.append(this.chars);
         }
 
         public String toString() {
@@ -405,17 +432,42 @@ class CustomLogFormat {
             this.required = required;
         }
 
+        boolean isRequest() {
+            return this.isRequest;
+        }
+
         protected abstract String getValue(RequestLoggerRequest request);
 
         protected abstract String getValue(RequestLoggerResponse response);
 
-        public final void print(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response) {
+        public final void append(StringBuilder dest, RequestLoggerRequest request, RequestLoggerResponse response) {
             if (this.printOk(response.getStatus())) {
-                String value = this.isRequest ? this.getValue(request) : this.getValue(response);
-                dest.append((value == null) ? "-" : value);
+                if (this.isRequest) {
+                    this.appendValue(dest, request);
+                } else {
+                    this.appendValue(dest, response);
+                }
             }
         }
 
+        /**
+         * Appends the request value. Parameters whose value can be appended
+         * without creating a string overwrite this method.
+         */
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            String value = this.getValue(request);
+            dest.append((value == null) ? "-" : value);
+        }
+
+        /**
+         * Appends the response value. Parameters whose value can be appended
+         * without creating a string overwrite this method.
+         */
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            String value = this.getValue(response);
+            dest.append((value == null) ? "-" : value);
+        }
+
         protected boolean printOk(int status) {
             if (this.statusLimits == null) {
                 return true;
@@ -468,6 +520,23 @@ class CustomLogFormat {
             return c >= 0x20 && c < 0x7f && c != '\\' && c != '"';
         }
 
+        /**
+         * Appends the escaped value or "-" if the value is <code>null</code>.
+         */
+        static void appendEscaped(StringBuilder dest, String value) {
+            if (value == null) {
+                dest.append('-');
+                return;
+            }
+
+            // find the first non-printable
+            int i = 0;
+            while (i < value.length() && isPrint(value.charAt(i))) {
+                i++;
+            }
+            escape(dest, value, i);
+        }
+
         static String escape(String value) {
             // nothing to do for empty values
             if (value == null || value.length() == 0) {
@@ -487,7 +556,19 @@ class CustomLogFormat {
 
             // otherwise copy the printable first part in a string buffer
             // and start encoding
-            StringBuilder buf = new StringBuilder(value.substring(0, i));
+            StringBuilder buf = new StringBuilder(value.length() + 16);
+            escape(buf, value, i);
+
+            // return the encoded string value
+            return buf.toString();
+        }
+
+        /**
+         * Appends the value escaping the characters from the given index on.
+         * The characters before the index are known to be printable.
+         */
+        private static void escape(StringBuilder buf, String value, int i) {
+            buf.append(value, 0, i);
             while (i < value.length()) {
                 char c = value.charAt(i);
                 if (isPrint(c)) {
@@ -521,9 +602,6 @@ class CustomLogFormat {
                 }
                 i++;
             }
-
-            // return the encoded string value
-            return buf.toString();
         }
 
     }
@@ -583,6 +661,11 @@ class CustomLogFormat {
         protected String getValue(RequestLoggerResponse response) {
             return String.valueOf(response.getRequestId());
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            dest.append(response.getRequestId());
+        }
     }
 
     static class ByteCountParameter extends BaseParameter {
@@ -602,6 +685,16 @@ class CustomLogFormat {
 
             return String.valueOf(count);
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            int count = response.getCount();
+            if (count == 0) {
+                dest.append((this.getParName() == 'b') ? '-' : '0');
+            } else {
+                dest.append(count);
+            }
+        }
     }
 
     static class TimeParameter extends BaseParameter {
@@ -609,21 +702,8 @@ class CustomLogFormat {
         /** date format - see access logging in service() */
         private static final SimpleDateFormat accessLogFmt = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss ", Locale.US);
 
-        /** time format for GMT offset - see access logging in service() */
-        private static final DecimalFormat dfmt = new DecimalFormat("+0000;-0000");
-
-        /** the timezone for the timezone offset calculation */
-        private static final Calendar calendar = Calendar.getInstance();
-
-        /** last zone offset (cached by hours) */
-        private static String lastZoneOffset = "";
-
-        private static long lastZoneOffsetHour = -1;
-
         /** last formatted time (cached in seconds) */
-        private static String lastTimeFormatted = "";
-
-        private static long lastTimeFormattedSeconds = -1;
+        private static volatile FormattedTime lastTimeFormatted = new FormattedTime(Long.MIN_VALUE, "");
 
         private final boolean requestStart;
 
@@ -645,24 +725,61 @@ class CustomLogFormat {
         // ---------- internal
         // -----------------------------------------------------
 
+        /**
+         * Returns the formatted time. The formatted time is cached for the
+         * current second such that the time is formatted at most once a
+         * second as long as the logged times are increasing.
+         */
         static String timeFormatted(long time) {
-            if (time / 1000 != lastTimeFormattedSeconds) {
-                lastTimeFormattedSeconds = time / 1000;
-                Date date = new Date(time);
-                StringBuilder buf = new StringBuilder(accessLogFmt.format(date));
-                if (time / 3600000 != lastZoneOffsetHour) {
-                    lastZoneOffsetHour = time / 3600000;
-                    calendar.setTime(date);
-                    int tzOffset = calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
-                    tzOffset /= (60 * 1000);
-                    tzOffset = ((tzOffset / 60) * 100) + (tzOffset % 60);
-
-                    lastZoneOffset = dfmt.format(tzOffset);
-                }
-                buf.append(lastZoneOffset);
-                lastTimeFormatted = buf.toString();
+            final long seconds = time / 1000;
+            FormattedTime formatted = lastTimeFormatted;
+            if (formatted.seconds != seconds) {
+                formatted = new FormattedTime(seconds, format(time));
+                lastTimeFormatted = formatted;
+            }
+            return formatted.value;
+        }
+
+        private static String format(long time) {
+            StringBuilder buf = new StringBuilder(32);
+            synchronized (accessLogFmt) {
+                buf.append(accessLogFmt.format(new Date(time)));
+            }
+
+            // the zone offset as [+-]hhmm
+            int tzOffset = accessLogFmt.getTimeZone().getOffset(time) / (60 * 1000);
+            if (tzOffset < 0) {
+                buf.append('-');
+                tzOffset = -tzOffset;
+            } else {
+                buf.append('+');
+            }
+            tzOffset = ((tzOffset / 60) * 100) + (tzOffset % 60);
+            if (tzOffset < 1000) {
+                buf.append('0');
+            }
+            if (tzOffset < 100) {
+                buf.append('0');
+            }
+            if (tzOffset < 10) {
+                buf.append('0');
+            }
+            buf.append(tzOffset);
+
+            return buf.toString();
+        }
+
+        /** The immutable time formatted for a second */
+        private static final class FormattedTime {
+
+            final long seconds;
+
+            final String value;
+
+            FormattedTime(final long seconds, final String value) {
+                this.seconds = seconds;
+                this.value = value;
             }
-            return lastTimeFormatted;
         }
     }
 
@@ -685,6 +802,15 @@ class CustomLogFormat {
             }
             return String.valueOf(time);
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            long time = response.getRequestDuration();
+            if (this.seconds) {
+                time /= 1000;
+            }
+            dest.append(time);
+        }
     }
 
     static class RemoteIPParameter extends BaseParameter {
@@ -738,6 +864,11 @@ class CustomLogFormat {
             return String.valueOf(request.getServerPort());
         }
 
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            dest.append(request.getServerPort());
+        }
+
         protected String getValue(RequestLoggerResponse response) {
             return null;
         }
@@ -787,6 +918,16 @@ class CustomLogFormat {
             return request.getMethod() + " " + request.getRequestURI() + query + " " + request.getProtocol();
         }
 
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            dest.append(request.getMethod()).append(' ').append(request.getRequestURI());
+            String query = request.getQueryString();
+            if (query != null && query.length() > 0) {
+                dest.append('?').append(query);
+            }
+            dest.append(' ').append(request.getProtocol());
+        }
+
         protected String getValue(RequestLoggerResponse response) {
             return null;
         }
@@ -844,6 +985,14 @@ class CustomLogFormat {
             return (query == null || query.length() == 0) ? "" : "?" + query;
         }
 
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            String query = request.getQueryString();
+            if (query != null && query.length() > 0) {
+                dest.append('?').append(query);
+            }
+        }
+
         protected String getValue(RequestLoggerResponse response) {
             return null;
         }
@@ -859,6 +1008,11 @@ class CustomLogFormat {
             return (user == null) ? null : escape(user);
         }
 
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            appendEscaped(dest, request.getRemoteUser());
+        }
+
         protected String getValue(RequestLoggerResponse response) {
             return null;
         }
@@ -874,6 +1028,11 @@ class CustomLogFormat {
             return (authType == null) ? null : escape(authType);
         }
 
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            appendEscaped(dest, request.getAuthType());
+        }
+
         protected String getValue(RequestLoggerResponse response) {
             return null;
         }
@@ -891,6 +1050,11 @@ class CustomLogFormat {
         protected String getValue(RequestLoggerResponse response) {
             return String.valueOf(response.getStatus());
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            dest.append(response.getStatus());
+        }
     }
 
     static class CookieParameter extends BaseParameter {
@@ -913,6 +1077,20 @@ class CustomLogFormat {
         private String getValue(final Cookie cookie) {
             return (cookie == null) ? null : escape(cookie.getValue());
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            appendValue(dest, request.getCookie(this.cookieName));
+        }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            appendValue(dest, response.getCookie(this.cookieName));
+        }
+
+        private void appendValue(StringBuilder dest, final Cookie cookie) {
+            appendEscaped(dest, (cookie == null) ? null : cookie.getValue());
+        }
     }
 
     static class HeaderParameter extends BaseParameter {
@@ -939,5 +1117,27 @@ class CustomLogFormat {
         protected String getValue(RequestLoggerResponse response) {
             return escape(response.getHeadersString(this.headerName));
         }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerRequest request) {
+            Enumeration<?> values = request.getHeaders(this.headerName);
+            if (values == null || !values.hasMoreElements()) {
+                dest.append('-');
+                return;
+            }
+
+            // escaping each value is the same as escaping the joined
+            // values as the separating comma is never escaped
+            appendEscaped(dest, (String) values.nextElement());
+            while (values.hasMoreElements()) {
+                dest.append(',');
+                appendEscaped(dest, (String) values.nextElement());
+            }
+        }
+
+        @Override
+        protected void appendValue(StringBuilder dest, RequestLoggerResponse response) {
+            appendEscaped(dest, response.getHeadersString(this.headerName));
+        }
     }
 }
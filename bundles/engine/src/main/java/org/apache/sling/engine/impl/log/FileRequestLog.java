@@ -18,15 +18,23 @@
  */
 package org.apache.sling.engine.impl.log;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.Writer;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Map;
 
+import javax.management.ObjectName;
+
 import org.apache.sling.engine.RequestLog;
+import org.apache.sling.engine.jmx.RequestLogMBean;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The <code>FileRequestLog</code> class is an implementation of the
@@ -46,41 +54,82 @@ import org.apache.sling.engine.RequestLog;
  * last user has closed the log, (3) optimize the first strategy by keeping the
  * files open for some time.
  * <p>
- * Note: Currently, the <code>PrintWriter</code> used to log the message is
- * flushed after each log message written. Future development should probably
- * implement better buffering in conjunction with the temporary open/close
- * cycles of the files.
+ * Note: By default the <code>PrintWriter</code> used to log the message is
+ * flushed after each log message written. Asynchronous logs queue the
+ * messages instead, which are written and flushed in batches by an
+ * {@link AsyncLogWriter}. The writer of a file is shared by all open
+ * asynchronous logs of the file and is stopped when the last of them is
+ * closed, such that a changed configuration takes effect when the logs are
+ * opened again. The writer is registered as a {@link RequestLogMBean}.
  */
 class FileRequestLog implements RequestLog {
 
-    // The map of shared open files (actually PrintWriter instances)
-    private static Map<String, PrintWriter> logFiles = new HashMap<String, PrintWriter>();
+    private static final Logger log = LoggerFactory.getLogger(FileRequestLog.class);
+
+    // The map of shared open files
+    private static Map<String, LogFile> logFiles = new HashMap<String, LogFile>();
 
-    // Dispose class by closing all open PrintWeiter instances
+    // Dispose class by writing the queued messages and closing all open PrintWriter instances
     static void dispose() {
-        for (final Writer w : logFiles.values()) {
-            try {
-                w.close();
-            } catch (IOException ioe) {
-                // don't care
+        synchronized (logFiles) {
+            for (final LogFile logFile : logFiles.values()) {
+                logFile.close();
             }
+            logFiles.clear();
         }
-        logFiles.clear();
     }
 
-    // The PrintWriter used by this instance to write the messages
-    private PrintWriter output;
+    // The shared file used by this instance to write the messages
+    private LogFile output;
+
+    // Whether the messages are written by the background writer of the file
+    private final boolean async;
 
     FileRequestLog(File logFile) throws IOException {
+        this(null, logFile, false, AsyncLogWriter.DEFAULT_BUFFER_SIZE, AsyncLogWriter.DEFAULT_FLUSH_INTERVAL,
+            AsyncLogWriter.DEFAULT_FLUSH_SIZE, false);
+    }
+
+    /**
+     * Creates a log writing to the file. If <code>async</code> is
+     * <code>true</code>, the messages are queued and written by a background
+     * writer shared by all open asynchronous logs of the file. The writer is
+     * created with the settings of the first of these logs; other settings
+     * are ignored until all asynchronous logs of the file have been closed.
+     *
+     * @param bundleContext The bundle context to register the writer as a
+     *            {@link RequestLogMBean}, may be <code>null</code>
+     * @param bufferSize The maximum number of queued messages
+     * @param flushInterval The maximum time in milliseconds before written
+     *            messages are flushed to the file
+     * @param flushSize The number of messages after which the messages are
+     *            flushed to the file
+     * @param blockOnOverflow Whether to wait for space in the queue instead of
+     *            dropping the message if the queue is full
+     */
+    FileRequestLog(BundleContext bundleContext, File logFile, boolean async, int bufferSize, long flushInterval,
+            int flushSize, boolean blockOnOverflow) throws IOException {
         synchronized (logFiles) {
             final String fileName = logFile.getAbsolutePath();
-            this.output = logFiles.get(fileName);
-            if (this.output == null) {
+            LogFile file = logFiles.get(fileName);
+            if (file == null) {
                 logFile.getParentFile().mkdirs();
                 FileWriter fw = new FileWriter(logFile, true);
-                this.output = new PrintWriter(fw);
-                logFiles.put(fileName, this.output);
+                file = new LogFile(fileName, new PrintWriter(new BufferedWriter(fw)));
+                logFiles.put(fileName, file);
             }
+            if (async) {
+                if (file.asyncWriter == null) {
+                    file.openAsyncWriter(bundleContext, logFile.getName(), bufferSize, flushInterval, flushSize,
+                        blockOnOverflow);
+                } else if (!file.asyncWriter.hasSettings(bufferSize, flushInterval, flushSize, blockOnOverflow)) {
+                    log.warn("Request log {} is already written asynchronously with other settings,"
+                        + " which are used until all its asynchronous logs are closed", fileName);
+                }
+                file.asyncUsers++;
+            }
+            this.output = file;
+            this.async = async;
         }
     }
 
@@ -91,17 +140,108 @@ class FileRequestLog implements RequestLog {
         // use a local copy of the reference to not encounter NPE when this
         // log happens to be closed asynchronously while at the same time not
         // requiring synchronization
-        PrintWriter writer = this.output;
-        if (writer != null) {
-            synchronized (writer) {
-                writer.println(message);
-                writer.flush();
+        LogFile file = this.output;
+        if (file != null) {
+            AsyncLogWriter asyncWriter = this.async ? file.asyncWriter : null;
+            if (asyncWriter != null) {
+                asyncWriter.write(message);
+            } else {
+                PrintWriter writer = file.writer;
+                synchronized (writer) {
+                    writer.println(message);
+                    writer.flush();
+                }
             }
         }
     }
 
     public void close() {
-        // just drop the reference to the output
-        this.output = null;
+        // drop the reference to the output and stop the background writer
+        // if this is the last asynchronous log of the file
+        synchronized (logFiles) {
+            LogFile file = this.output;
+            this.output = null;
+            if (file != null && this.async && --file.asyncUsers == 0) {
+                file.closeAsyncWriter();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue of the
+     * background writer was full or 0 if this log is not asynchronous.
+     */
+    long getDroppedMessages() {
+        LogFile file = this.output;
+        AsyncLogWriter asyncWriter = (this.async && file != null) ? file.asyncWriter : null;
+        return (asyncWriter != null) ? asyncWriter.getDroppedLines() : 0;
+    }
+
+    /**
+     * Returns the number of messages written by the background writer or 0
+     * if this log is not asynchronous.
+     */
+    long getWrittenMessages() {
+        LogFile file = this.output;
+        AsyncLogWriter asyncWriter = (this.async && file != null) ? file.asyncWriter : null;
+        return (asyncWriter != null) ? asyncWriter.getWrittenLines() : 0;
+    }
+
+    // A shared open file with the optional background writer
+    private static final class LogFile {
+
+        final String fileName;
+
+        final PrintWriter writer;
+
+        volatile AsyncLogWriter asyncWriter;
+
+        // The number of open asynchronous logs of the file
+        int asyncUsers;
+
+        private ServiceRegistration mbeanRegistration;
+
+        LogFile(final String fileName, final PrintWriter writer) {
+            this.fileName = fileName;
+            this.writer = writer;
+        }
+
+        void openAsyncWriter(final BundleContext bundleContext, final String name, final int bufferSize,
+                final long flushInterval, final int flushSize, final boolean blockOnOverflow) {
+            final AsyncLogWriter asyncWriter = new AsyncLogWriter(name, this.writer, bufferSize, flushInterval,
+                flushSize, blockOnOverflow);
+            if (bundleContext != null) {
+                try {
+                    final Hashtable<String, Object> mbeanProps = new Hashtable<String, Object>();
+                    mbeanProps.put("jmx.objectname",
+                        "org.apache.sling:type=engine,service=RequestLog,name=" + ObjectName.quote(this.fileName));
+                    this.mbeanRegistration = bundleContext.registerService(RequestLogMBean.class.getName(),
+                        new RequestLogMBeanImpl(this.fileName, asyncWriter), mbeanProps);
+                } catch (final Throwable t) {
+                    log.debug("Unable to register request log MBean", t);
+                }
+            }
+            this.asyncWriter = asyncWriter;
+        }
+
+        void closeAsyncWriter() {
+            if (this.mbeanRegistration != null) {
+                try {
+                    this.mbeanRegistration.unregister();
+                } catch (final IllegalStateException ise) {
+                    // bundle already stopped
+                }
+                this.mbeanRegistration = null;
+            }
+            if (this.asyncWriter != null) {
+                this.asyncWriter.close();
+                this.asyncWriter = null;
+            }
+        }
+
+        void close() {
+            this.closeAsyncWriter();
+            this.writer.close();
+        }
     }
 }
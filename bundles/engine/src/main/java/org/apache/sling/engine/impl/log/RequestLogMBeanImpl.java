@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import org.apache.sling.engine.jmx.RequestLogMBean;
+
+/**
+ * This is the implementation of the management interface for the
+ * {@link AsyncLogWriter} of a request log file.
+ */
+class RequestLogMBeanImpl extends StandardMBean implements RequestLogMBean {
+
+    private final String fileName;
+
+    private final AsyncLogWriter writer;
+
+    RequestLogMBeanImpl(final String fileName, final AsyncLogWriter writer) throws NotCompliantMBeanException {
+        super(RequestLogMBean.class);
+        this.fileName = fileName;
+        this.writer = writer;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public long getWrittenMessages() {
+        return this.writer.getWrittenLines();
+    }
+
+    public long getDroppedMessages() {
+        return this.writer.getDroppedLines();
+    }
+
+    public int getQueuedMessages() {
+        return this.writer.getQueuedLines();
+    }
+
+    public int getBufferSize() {
+        return this.writer.getBufferSize();
+    }
+
+    public long getFlushInterval() {
+        return this.writer.getFlushInterval();
+    }
+
+    public int getFlushSize() {
+        return this.writer.getFlushSize();
+    }
+
+    public boolean isBlockOnOverflow() {
+        return this.writer.isBlockOnOverflow();
+    }
+}
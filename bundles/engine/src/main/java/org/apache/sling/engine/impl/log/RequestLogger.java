@@ -55,6 +55,9 @@ public class RequestLogger {
     @Property(boolValue = true)
     public static final String PROP_REQUEST_LOG_ENABLED = "request.log.enabled";
 
+    @Property(boolValue = false)
+    public static final String PROP_REQUEST_LOG_ASYNC = "request.log.async";
+
     @Property(value = "logs/access.log")
     public static final String PROP_ACCESS_LOG_OUTPUT = "access.log.output";
 
@@ -67,6 +70,9 @@ public class RequestLogger {
     @Property(boolValue = true)
     public static final String PROP_ACCESS_LOG_ENABLED = "access.log.enabled";
 
+    @Property(boolValue = false)
+    public static final String PROP_ACCESS_LOG_ASYNC = "access.log.async";
+
     /**
      * The log format string for the request log entry message (value is "%t
      * [%R] -> %m %U%q %H").
@@ -104,10 +110,11 @@ public class RequestLogger {
         if (requestLogName != null && requestLogEnabled instanceof Boolean
             && ((Boolean) requestLogEnabled).booleanValue()) {
             Object requestLogType = props.get(PROP_REQUEST_LOG_OUTPUT_TYPE);
+            Object requestLogAsync = props.get(PROP_REQUEST_LOG_ASYNC);
             createRequestLoggerService(services, bundleContext, true, REQUEST_LOG_ENTRY_FORMAT, requestLogName,
-                requestLogType);
+                requestLogType, requestLogAsync);
             createRequestLoggerService(services, bundleContext, false, REQUEST_LOG_EXIT_FORMAT, requestLogName,
-                requestLogType);
+                requestLogType, requestLogAsync);
         }
 
         // prepare the access logger if a name is configured and the
@@ -116,7 +123,9 @@ public class RequestLogger {
         Object accessLogEnabled = props.get(PROP_ACCESS_LOG_ENABLED);
         if (accessLogName != null && accessLogEnabled instanceof Boolean && ((Boolean) accessLogEnabled).booleanValue()) {
             Object accessLogType = props.get(PROP_ACCESS_LOG_OUTPUT_TYPE);
-            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, accessLogName, accessLogType);
+            Object accessLogAsync = props.get(PROP_ACCESS_LOG_ASYNC);
+            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, accessLogName, accessLogType,
+                accessLogAsync);
         }
     }
 
@@ -130,12 +139,16 @@ public class RequestLogger {
     }
 
     private static void createRequestLoggerService(Map<ServiceRegistration, RequestLoggerService> services,
-            BundleContext bundleContext, boolean onEntry, Object format, Object output, Object outputType) {
+            BundleContext bundleContext, boolean onEntry, Object format, Object output, Object outputType,
+            Object async) {
         final Hashtable<String, Object> config = new Hashtable<String, Object>();
         config.put(RequestLoggerService.PARAM_ON_ENTRY, onEntry ? Boolean.TRUE : Boolean.FALSE);
         config.put(RequestLoggerService.PARAM_FORMAT, format);
         config.put(RequestLoggerService.PARAM_OUTPUT, output);
         config.put(RequestLoggerService.PARAM_OUTPUT_TYPE, outputType);
+        if (async != null) {
+            config.put(RequestLoggerService.PARAM_ASYNC, async);
+        }
 
         final RequestLoggerService service = new RequestLoggerService(bundleContext, config);
         final ServiceRegistration reg = bundleContext.registerService(service.getClass().getName(), service, config);
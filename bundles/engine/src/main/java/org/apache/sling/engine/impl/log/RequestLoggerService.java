@@ -30,6 +30,7 @@ import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.engine.RequestLog;
 import org.osgi.framework.BundleContext;
 
@@ -65,6 +66,28 @@ public class RequestLoggerService {
     @Property(boolValue = false)
     public static final String PARAM_ON_ENTRY = "request.log.service.onentry";
 
+    static final String OVERFLOW_DROP = "drop";
+
+    static final String OVERFLOW_BLOCK = "block";
+
+    @Property(boolValue = false)
+    public static final String PARAM_ASYNC = "request.log.service.async";
+
+    @Property(intValue = AsyncLogWriter.DEFAULT_BUFFER_SIZE)
+    public static final String PARAM_ASYNC_BUFFER_SIZE = "request.log.service.async.buffersize";
+
+    @Property(longValue = AsyncLogWriter.DEFAULT_FLUSH_INTERVAL)
+    public static final String PARAM_ASYNC_FLUSH_INTERVAL = "request.log.service.async.flushinterval";
+
+    @Property(intValue = AsyncLogWriter.DEFAULT_FLUSH_SIZE)
+    public static final String PARAM_ASYNC_FLUSH_SIZE = "request.log.service.async.flushsize";
+
+    @Property(value = OVERFLOW_DROP, options = {
+        @PropertyOption(name = OVERFLOW_DROP, value = "Drop Message"),
+        @PropertyOption(name = OVERFLOW_BLOCK, value = "Wait for Space")
+    })
+    public static final String PARAM_ASYNC_OVERFLOW = "request.log.service.async.overflow";
+
     private static final int OUTPUT_TYPE_LOGGER = 0;
 
     private static final int OUTPUT_TYPE_FILE = 1;
@@ -106,7 +129,7 @@ public class RequestLoggerService {
             int outputType = (outputTypeObject instanceof Number)
                     ? ((Number) outputTypeObject).intValue()
                     : OUTPUT_TYPE_LOGGER;
-            this.log = this.getLog(bundleContext, output.toString(), outputType);
+            this.log = this.getLog(bundleContext, output.toString(), outputType, configuration);
         }
     }
 
@@ -130,7 +153,8 @@ public class RequestLoggerService {
         return this.onEntry;
     }
 
-    private RequestLog getLog(BundleContext bundleContext, String output, int outputType) {
+    private RequestLog getLog(BundleContext bundleContext, String output, int outputType,
+            Map<String, Object> configuration) {
         switch (outputType) {
             case OUTPUT_TYPE_FILE:
                 // file logging
@@ -145,7 +169,14 @@ public class RequestLoggerService {
                         file = file.getAbsoluteFile();
                     }
 
-                    return new FileRequestLog(file);
+                    return new FileRequestLog(bundleContext, file, OsgiUtil.toBoolean(configuration.get(PARAM_ASYNC), false),
+                        OsgiUtil.toInteger(configuration.get(PARAM_ASYNC_BUFFER_SIZE),
+                            AsyncLogWriter.DEFAULT_BUFFER_SIZE),
+                        OsgiUtil.toLong(configuration.get(PARAM_ASYNC_FLUSH_INTERVAL),
+                            AsyncLogWriter.DEFAULT_FLUSH_INTERVAL),
+                        OsgiUtil.toInteger(configuration.get(PARAM_ASYNC_FLUSH_SIZE),
+                            AsyncLogWriter.DEFAULT_FLUSH_SIZE),
+                        OVERFLOW_BLOCK.equals(configuration.get(PARAM_ASYNC_OVERFLOW)));
                 } catch (IOException ioe) {
                     // TODO: log
                 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.jmx;
+
+/**
+ * This is the management interface for a request log file written
+ * asynchronously. The counters start when the background writer of the
+ * file is created, that is when the first asynchronous log of the file is
+ * opened after all previous asynchronous logs of the file have been closed.
+ *
+ * @since 1.1
+ */
+public interface RequestLogMBean {
+
+    /**
+     * Returns the absolute path of the log file.
+     */
+    String getFileName();
+
+    /**
+     * Returns the number of messages written to the file.
+     */
+    long getWrittenMessages();
+
+    /**
+     * Returns the number of messages dropped because the buffer was full.
+     */
+    long getDroppedMessages();
+
+    /**
+     * Returns the number of messages currently waiting to be written.
+     */
+    int getQueuedMessages();
+
+    /**
+     * Returns the maximum number of messages waiting to be written.
+     */
+    int getBufferSize();
+
+    /**
+     * Returns the maximum time in milliseconds before written messages are
+     * flushed to the file.
+     */
+    long getFlushInterval();
+
+    /**
+     * Returns the number of messages after which the messages are flushed to
+     * the file.
+     */
+    int getFlushSize();
+
+    /**
+     * Returns <code>true</code> if writing waits for space in the buffer and
+     * <code>false</code> if the message is dropped if the buffer is full.
+     */
+    boolean isBlockOnOverflow();
+}
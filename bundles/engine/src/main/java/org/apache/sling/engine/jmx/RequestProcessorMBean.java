@@ -62,6 +62,42 @@ public interface RequestProcessorMBean {
      */
     double getStandardDeviationDurationMsec();
 
+    /**
+     * Returns the 50th percentile of the request durations in milliseconds since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    long getRequestDurationMsecP50();
+
+    /**
+     * Returns the 95th percentile of the request durations in milliseconds since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    long getRequestDurationMsecP95();
+
+    /**
+     * Returns the 99th percentile of the request durations in milliseconds since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    long getRequestDurationMsecP99();
+
+    /**
+     * Returns the 99.9th percentile of the request durations in milliseconds since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    long getRequestDurationMsecP999();
+
     /**
      * Returns the maximum peak recursive execution depth since last
      * resetting the statistics.
@@ -96,6 +132,42 @@ public interface RequestProcessorMBean {
      * @see #resetStatistics()
      */
     double getStandardDeviationPeakRecursionDepth();
+
+    /**
+     * Returns the 50th percentile of the peak recursive execution depths since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getPeakRecursionDepthP50();
+
+    /**
+     * Returns the 95th percentile of the peak recursive execution depths since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getPeakRecursionDepthP95();
+
+    /**
+     * Returns the 99th percentile of the peak recursive execution depths since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getPeakRecursionDepthP99();
+
+    /**
+     * Returns the 99.9th percentile of the peak recursive execution depths since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getPeakRecursionDepthP999();
     
     /**
      * Returns the maximum servlet call count since last
@@ -130,6 +202,52 @@ public interface RequestProcessorMBean {
      */
     double getStandardDeviationServletCallCount();
 
+    /**
+     * Returns the 50th percentile of the servlet call counts since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getServletCallCountP50();
+
+    /**
+     * Returns the 95th percentile of the servlet call counts since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getServletCallCountP95();
+
+    /**
+     * Returns the 99th percentile of the servlet call counts since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getServletCallCountP99();
+
+    /**
+     * Returns the 99.9th percentile of the servlet call counts since last resetting the
+     * statistics. The value is accurate to about 7%.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    int getServletCallCountP999();
+
+    /**
+     * Returns the time in milliseconds since the epoch the statistics
+     * have been reset last, that is the start of the current statistics
+     * window.
+     *
+     * @see #resetStatistics()
+     * @since 1.1
+     */
+    long getStatisticsStartTime();
+
     /**
      * Resets all statistics values and restarts from zero.
      */
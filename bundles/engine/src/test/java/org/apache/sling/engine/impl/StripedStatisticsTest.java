@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StripedStatisticsTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            final int index = StripedStatistics.getBucketIndex(value);
+            final long highest = StripedStatistics.getHighestValue(index);
+            assertTrue(value <= highest);
+            assertTrue(highest - value <= value / StripedStatistics.SUB_BUCKETS);
+            if (index > 0) {
+                assertTrue(StripedStatistics.getHighestValue(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final StripedStatistics stats = new StripedStatistics(36);
+        assertEquals(0, stats.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            stats.add(i);
+        }
+        assertEquals(1000, stats.getCount());
+        assertEquals(1, stats.getMin());
+        assertEquals(1000, stats.getMax());
+        assertAccurate(500, stats.getPercentile(50));
+        assertAccurate(950, stats.getPercentile(95));
+        assertAccurate(990, stats.getPercentile(99));
+        assertEquals(1000, stats.getPercentile(99.9));
+        assertEquals(1000, stats.getPercentile(100));
+    }
+
+    @Test
+    public void testLargeValues() {
+        final StripedStatistics stats = new StripedStatistics(8);
+        stats.add(100000);
+        stats.add(-1);
+        assertEquals(2, stats.getCount());
+        assertEquals(0, stats.getMin());
+        assertEquals(100000, stats.getMax());
+        assertEquals(255, stats.getPercentile(100));
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final StripedStatistics stats = new StripedStatistics(36);
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        stats.add(i % 100);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, stats.getCount());
+        assertEquals(0, stats.getMin());
+        assertEquals(99, stats.getMax());
+        assertEquals(49.5, stats.getMean(), 0.0001);
+    }
+
+    private static void assertAccurate(final long expected, final long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+            actual >= expected && actual - expected <= expected / StripedStatistics.SUB_BUCKETS);
+    }
+}
@@ -66,4 +66,33 @@ public class CustomLogFormatTest extends TestCase {
         assertEquals("This is a special character \\u1234", CustomLogFormat.HeaderParameter.escape("This is a special character \u1234"));
     }
 
+    public void testCompiledFormat() {
+        final LogFormatFixture fixture = new LogFormatFixture();
+        final String[] formats = {
+            LogFormatFixture.ACCESS_LOG_FORMAT, LogFormatFixture.REQUEST_LOG_EXIT_FORMAT,
+            "%t [%R] -> %m %U%q %H", "%A %h %p %v %f %y %b %B %T %{foo}M %!200s %404s %{cookie}C %%"
+        };
+        for (final String format : formats) {
+            final CustomLogFormat clf = new CustomLogFormat(format);
+            assertEquals(format,
+                CustomLogFormatUncompiledDriver.formatUncompiled(clf, fixture.getRequest(), fixture.getResponse()),
+                clf.format(fixture.getRequest(), fixture.getResponse()));
+        }
+    }
+
+    public void testCompiledEscape() {
+        final LogFormatFixture fixture = new LogFormatFixture();
+        final CustomLogFormat clf = new CustomLogFormat("%u \"%{User-Agent}i\"");
+        assertEquals("j\\u00f6rg \\\"admin\\\" \"Mozilla/5.0 (X11; Linux x86_64),Gecko/20100101\\tFirefox/24.0\"",
+            clf.format(fixture.getRequest(), fixture.getResponse()));
+    }
+
+    public void testTimeFormatted() {
+        final String time = CustomLogFormat.TimeParameter.timeFormatted(1000000000000L);
+        assertTrue(time, time.matches("\\d\\d/Sep/2001:\\d\\d:\\d\\d:40 [+-]\\d{4}"));
+
+        // cached within the second
+        assertSame(time, CustomLogFormat.TimeParameter.timeFormatted(1000000000999L));
+        assertNotSame(time, CustomLogFormat.TimeParameter.timeFormatted(1000000001000L));
+    }
 }
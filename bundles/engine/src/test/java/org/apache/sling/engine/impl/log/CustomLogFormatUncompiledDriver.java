@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Renders an access log message appending the values to intermediate strings
+ * as the log format did before the values were appended directly.
+ */
+public class CustomLogFormatUncompiledDriver extends JapexDriverBase {
+
+    private CustomLogFormat format;
+
+    private LogFormatFixture fixture;
+
+    @Override
+    public void prepare(TestCase tc) {
+        this.format = new CustomLogFormat(LogFormatFixture.ACCESS_LOG_FORMAT);
+        this.fixture = new LogFormatFixture();
+    }
+
+    @Override
+    public void run(TestCase tc) {
+        formatUncompiled(this.format, this.fixture.getRequest(), this.fixture.getResponse());
+    }
+
+    /**
+     * Creates the log message by getting the value of each parameter as a
+     * string.
+     */
+    static String formatUncompiled(final CustomLogFormat format, final RequestLoggerRequest request,
+            final RequestLoggerResponse response) {
+        if (format.logParameters == null) {
+            return null;
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (final CustomLogFormat.Parameter parameter : format.logParameters) {
+            if (parameter instanceof CustomLogFormat.BaseParameter) {
+                final CustomLogFormat.BaseParameter base = (CustomLogFormat.BaseParameter) parameter;
+                if (base.printOk(response.getStatus())) {
+                    final String value = base.isRequest() ? base.getValue(request) : base.getValue(response);
+                    buf.append((value == null) ? "-" : value);
+                }
+            } else {
+                buf.append(parameter.toString());
+            }
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * The <code>FileRequestLogTest</code> class tests the synchronous and
+ * asynchronous writing of the <code>FileRequestLog</code> class.
+ */
+public class FileRequestLogTest extends TestCase {
+
+    private File logFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        logFile = File.createTempFile("request", ".log");
+        logFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileRequestLog.dispose();
+        logFile.delete();
+        super.tearDown();
+    }
+
+    public void testSynchronous() throws IOException {
+        final FileRequestLog log = new FileRequestLog(logFile);
+        log.write("line 1");
+        log.write("line 2");
+
+        // flushed after each message
+        assertEquals(2, readLines().size());
+        assertEquals(0, log.getWrittenMessages());
+    }
+
+    public void testAsynchronous() throws Exception {
+        final FileRequestLog log = new FileRequestLog(null, logFile, true, 100, 50, 10, true);
+        for (int i = 0; i < 1000; i++) {
+            log.write("line " + i);
+        }
+
+        // all lines are written and flushed within the flush interval
+        final long end = System.currentTimeMillis() + 5000;
+        while (readLines().size() < 1000 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        final List<String> lines = readLines();
+        assertEquals(1000, lines.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("line " + i, lines.get(i));
+        }
+        assertEquals(1000, log.getWrittenMessages());
+        assertEquals(0, log.getDroppedMessages());
+    }
+
+    public void testAsynchronousDrop() throws Exception {
+        final FileRequestLog log = new FileRequestLog(null, logFile, true, 1, 1000, 1000, false);
+        for (int i = 0; i < 1000; i++) {
+            log.write("line " + i);
+        }
+        final long written = log.getWrittenMessages();
+        final long dropped = log.getDroppedMessages();
+
+        // dispose writes the queued messages
+        FileRequestLog.dispose();
+        final int lines = readLines().size();
+        assertTrue(dropped > 0);
+        assertTrue(lines >= written);
+        assertEquals(1000, lines + dropped);
+    }
+
+    public void testSharedFile() throws IOException {
+        final FileRequestLog async = new FileRequestLog(null, logFile, true, 100, 1000, 100, true);
+        final FileRequestLog sync = new FileRequestLog(logFile);
+        async.write("async");
+        sync.write("sync");
+        FileRequestLog.dispose();
+
+        final List<String> lines = readLines();
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("async"));
+        assertTrue(lines.contains("sync"));
+    }
+
+    public void testAsyncWriterSettings() throws Exception {
+        // a second log of the file uses the writer of the first one
+        final FileRequestLog first = new FileRequestLog(null, logFile, true, 100, 1000, 100, true);
+        final FileRequestLog second = new FileRequestLog(null, logFile, true, 1, 1000, 1000, false);
+        for (int i = 0; i < 1000; i++) {
+            second.write("line " + i);
+        }
+        assertEquals(0, second.getDroppedMessages());
+
+        // the writer is kept while one of the logs is open
+        first.close();
+        second.write("line 1000");
+        assertEquals(0, second.getDroppedMessages());
+
+        // the writer is rebuilt with the settings of the next log
+        second.close();
+        assertEquals(1001, readLines().size());
+        final FileRequestLog third = new FileRequestLog(null, logFile, true, 1, 1000, 1000, false);
+        for (int i = 0; i < 1000; i++) {
+            third.write("line " + i);
+        }
+        assertTrue(third.getDroppedMessages() > 0);
+    }
+
+    private List<String> readLines() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        if (logFile.exists()) {
+            final BufferedReader reader = new BufferedReader(new FileReader(logFile));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The <code>LogFormatFixture</code> provides the request and response of a
+ * typical request for formatting log messages without a servlet container.
+ */
+class LogFormatFixture {
+
+    /** The format of the access log */
+    static final String ACCESS_LOG_FORMAT = "%a %l %u %t \"%r\" %>s %b \"%{Referer}i\" \"%{User-Agent}i\"";
+
+    /** The format of the request log exit message */
+    static final String REQUEST_LOG_EXIT_FORMAT = "%{end}t [%R] <- %s %{Content-Type}o %Dms";
+
+    private final RequestLoggerRequest request;
+
+    private final RequestLoggerResponse response;
+
+    LogFormatFixture() {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put("getMethod", "GET");
+        values.put("getRequestURI", "/content/sling/en/products.html");
+        values.put("getQueryString", "page=2&sort=name");
+        values.put("getProtocol", "HTTP/1.1");
+        values.put("getRemoteAddr", "192.168.0.17");
+        values.put("getRemoteHost", "client.example.com");
+        values.put("getRemoteUser", "j\u00f6rg \"admin\"");
+        values.put("getServerName", "www.example.com");
+        values.put("getServerPort", Integer.valueOf(8080));
+
+        final Map<String, Vector<String>> headers = new HashMap<String, Vector<String>>();
+        headers.put("Referer", new Vector<String>(Collections.singletonList("http://www.example.com/")));
+        final Vector<String> agents = new Vector<String>();
+        agents.add("Mozilla/5.0 (X11; Linux x86_64)");
+        agents.add("Gecko/20100101\tFirefox/24.0");
+        headers.put("User-Agent", agents);
+
+        final HttpServletRequest req = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getHeaders")) {
+                        final Vector<String> header = headers.get(args[0]);
+                        final Enumeration<String> empty = new Vector<String>().elements();
+                        return (header == null) ? empty : header.elements();
+                    }
+                    return values.get(method.getName());
+                }
+            });
+        final HttpServletResponse res = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return null;
+                }
+            });
+
+        this.request = new RequestLoggerRequest(req);
+        this.response = new RequestLoggerResponse(res);
+        this.response.setStatus(200);
+        this.response.setContentType("text/html;charset=utf-8");
+        this.response.requestEnd();
+    }
+
+    RequestLoggerRequest getRequest() {
+        return this.request;
+    }
+
+    RequestLoggerResponse getResponse() {
+        return this.response;
+    }
+}
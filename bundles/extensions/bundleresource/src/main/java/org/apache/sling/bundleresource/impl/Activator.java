@@ -37,6 +37,21 @@ public class Activator implements BundleActivator, BundleListener {
      */
     public static final String BUNDLE_RESOURCE_ROOTS = "Sling-Bundle-Resources";
 
+    /**
+     * The name of the framework property setting the maximum number of
+     * entries indexed per bundle (value is "sling.bundleresource.index.max").
+     * The entries of bundles with more entries below their resource roots are
+     * not indexed but looked up in the bundle through a limited cache. Setting
+     * this property to zero disables indexing.
+     */
+    public static final String INDEX_MAX_SIZE_PROPERTY = "sling.bundleresource.index.max";
+
+    /**
+     * The default maximum number of entries indexed per bundle (value is
+     * 10000).
+     */
+    private static final int DEFAULT_INDEX_MAX_SIZE = 10000;
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -44,6 +59,8 @@ public class Activator implements BundleActivator, BundleListener {
 
     private BundleContext bundleContext;
 
+    private int maxIndexSize = DEFAULT_INDEX_MAX_SIZE;
+
     /**
      * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
      */
@@ -51,6 +68,15 @@ public class Activator implements BundleActivator, BundleListener {
 
         this.bundleContext = context;
 
+        final String maxIndexSizeProp = context.getProperty(INDEX_MAX_SIZE_PROPERTY);
+        if (maxIndexSizeProp != null) {
+            try {
+                this.maxIndexSize = Integer.parseInt(maxIndexSizeProp.trim());
+            } catch (NumberFormatException nfe) {
+                log.warn("start: Ignoring invalid value {} of {}", maxIndexSizeProp, INDEX_MAX_SIZE_PROPERTY);
+            }
+        }
+
         context.addBundleListener(this);
 
         try {
@@ -114,7 +140,7 @@ public class Activator implements BundleActivator, BundleListener {
                     bundle.getBundleId() });
 
             BundleResourceProvider brp = new BundleResourceProvider(bundle,
-                prefixes);
+                prefixes, maxIndexSize);
             long id = brp.registerService(bundleContext);
             bundleResourceProviderMap.put(bundle.getBundleId(), brp);
 
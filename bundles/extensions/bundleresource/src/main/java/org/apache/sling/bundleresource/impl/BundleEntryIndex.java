@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.bundleresource.impl;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * The <code>BundleEntryIndex</code> is an immutable index of the entries of
+ * a bundle below a set of root paths. It holds the URL of each entry and the
+ * child entry paths of each folder entry, such that looking up entries does
+ * neither access the bundle nor require any locking.
+ * <p>
+ * The index is built once by walking the entries with the
+ * <code>Bundle.getEntryPaths(String)</code> and
+ * <code>Bundle.getEntry(String)</code> methods and thus returns the same
+ * results as these methods for all paths below the root paths.
+ * <p>
+ * All paths in the index start with a slash and folder paths end with a
+ * slash. The child entry paths are stored as returned by the bundle.
+ */
+final class BundleEntryIndex {
+
+    /** The root paths without trailing slash */
+    private final String[] roots;
+
+    /** The root paths with trailing slash */
+    private final String[] rootPrefixes;
+
+    /** The entries by path */
+    private final Map<String, URL> entries;
+
+    /** The child entry paths by folder path */
+    private final Map<String, List<String>> children;
+
+    private BundleEntryIndex(final String[] roots, final Map<String, URL> entries,
+            final Map<String, List<String>> children) {
+        this.roots = roots;
+        this.rootPrefixes = new String[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            this.rootPrefixes[i] = toFolder(roots[i]);
+        }
+        this.entries = entries;
+        this.children = children;
+    }
+
+    /**
+     * Creates the index of the entries of the bundle below the given root
+     * paths.
+     *
+     * @param bundle The bundle whose entries are indexed
+     * @param rootPaths The entry paths of the roots
+     * @param maxEntries The maximum number of entries to index
+     * @return The index or <code>null</code> if the bundle contains more
+     *         than <code>maxEntries</code> entries below the roots.
+     */
+    static BundleEntryIndex create(final Bundle bundle, final String[] rootPaths, final int maxEntries) {
+        final List<String> roots = new ArrayList<String>();
+        for (final String rootPath : rootPaths) {
+            String root = normalize(rootPath);
+            while (root.length() > 1 && root.endsWith("/")) {
+                root = root.substring(0, root.length() - 1);
+            }
+            if (!roots.contains(root)) {
+                roots.add(root);
+            }
+        }
+
+        final Map<String, URL> entries = new HashMap<String, URL>();
+        final Map<String, List<String>> children = new HashMap<String, List<String>>();
+        for (final String root : roots) {
+            final String folder = toFolder(root);
+            addEntry(bundle, root, entries);
+            addEntry(bundle, folder, entries);
+            if (!addChildren(bundle, folder, entries, children, maxEntries)) {
+                return null;
+            }
+        }
+
+        return new BundleEntryIndex(roots.toArray(new String[roots.size()]), entries, children);
+    }
+
+    /**
+     * Returns <code>true</code> if the path is one of the root paths or
+     * below one of them and can thus be looked up in this index.
+     */
+    boolean covers(final String path) {
+        final String key = normalize(path);
+        for (int i = 0; i < roots.length; i++) {
+            if (key.startsWith(rootPrefixes[i]) || key.equals(roots[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the URL of the entry at the given path, which must be covered
+     * by this index, or <code>null</code> if there is no such entry.
+     */
+    URL getEntry(final String path) {
+        return entries.get(normalize(path));
+    }
+
+    /**
+     * Returns the paths of the child entries of the folder at the given path,
+     * which must be covered by this index, or <code>null</code> if there is
+     * no such folder or the folder has no children.
+     */
+    List<String> getEntryPaths(final String path) {
+        return children.get(toFolder(normalize(path)));
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     */
+    int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of folders with child entries in the index.
+     */
+    int getFolderCount() {
+        return children.size();
+    }
+
+    private static void addEntry(final Bundle bundle, final String path, final Map<String, URL> entries) {
+        final URL url = bundle.getEntry(path);
+        if (url != null) {
+            entries.put(path, url);
+        }
+    }
+
+    /**
+     * Recursively adds the child entries of the folder at the given path.
+     *
+     * @return <code>false</code> if the maximum number of entries is exceeded.
+     */
+    private static boolean addChildren(final Bundle bundle, final String folder, final Map<String, URL> entries,
+            final Map<String, List<String>> children, final int maxEntries) {
+        if (children.containsKey(folder)) {
+            // already indexed for an enclosing root
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        final Enumeration<String> paths = bundle.getEntryPaths(folder);
+        if (paths == null || !paths.hasMoreElements()) {
+            return true;
+        }
+
+        final List<String> list = new ArrayList<String>();
+        while (paths.hasMoreElements()) {
+            list.add(paths.nextElement());
+        }
+        children.put(folder, Collections.unmodifiableList(list));
+
+        for (final String childPath : list) {
+            final String child = normalize(childPath);
+            addEntry(bundle, child, entries);
+            if (entries.size() > maxEntries) {
+                return false;
+            }
+            if (child.endsWith("/") && !addChildren(bundle, child, entries, children, maxEntries)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /** Returns the path with a trailing slash */
+    private static String toFolder(final String path) {
+        return path.endsWith("/") ? path : path.concat("/");
+    }
+
+    /** Returns the path with a leading slash */
+    private static String normalize(final String path) {
+        return path.startsWith("/") ? path : "/".concat(path);
+    }
+}
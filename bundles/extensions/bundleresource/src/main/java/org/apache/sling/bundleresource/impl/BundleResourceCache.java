@@ -37,12 +37,20 @@ import org.osgi.framework.Bundle;
  * instance uses an instance of this class to access the bundle resources (or
  * bundle entries) through the cache.
  * <p>
- * The cache on the one hand caches single entries as URLs. The other part of
- * the cache is for the child entries of a given bundle entry path. This caches
- * lists of strings (entry path).
+ * The entries below the resource roots of the bundle are indexed on the
+ * first lookup rather than when the bundle is started, such that starting
+ * many bundles does not walk all their entries on the framework thread.
+ * Once created, lookups of these entries are served from the immutable
+ * {@link BundleEntryIndex} without locking and without accessing the bundle.
  * <p>
- * Currently the cache limits are fixed at {@value #CACHE_SIZE} for the entries
- * cache and at {@value #LIST_CACHE_SIZE} for the child entries cache.
+ * If the bundle contains more entries than the configured maximum size of
+ * the index or if indexing is disabled, entries are looked up in the bundle
+ * and cached in limited caches: the cache on the one hand caches single
+ * entries as URLs. The other part of the cache is for the child entries of a
+ * given bundle entry path. This caches lists of strings (entry path).
+ * Currently the cache limits are fixed at {@value #CACHE_SIZE} for the
+ * entries cache and at {@value #LIST_CACHE_SIZE} for the child entries cache.
+ * These caches are also used for entries outside of the resource roots.
  */
 class BundleResourceCache {
 
@@ -85,6 +93,29 @@ class BundleResourceCache {
      */
     private final Bundle bundle;
 
+    /**
+     * The entry paths of the resource roots to index or <code>null</code> if
+     * the entries are not indexed.
+     */
+    private final String[] indexRoots;
+
+    /**
+     * The maximum number of entries to index.
+     */
+    private final int maxIndexSize;
+
+    /**
+     * The index of the entries below the resource roots or <code>null</code>
+     * if the entries are not indexed or the index is not created yet.
+     */
+    private volatile BundleEntryIndex index;
+
+    /**
+     * Whether the index has been created. Set after the {@link #index} field
+     * such that reading <code>true</code> guarantees to see the index.
+     */
+    private volatile boolean indexCreated;
+
     // static initializer setting the NOT_FOUND_URL. Because the
     // constructor may throw an exception we use a static initializer
     // which fails the class initialization in the unlikely case
@@ -104,7 +135,25 @@ class BundleResourceCache {
      * @param bundle
      */
     BundleResourceCache(Bundle bundle) {
+        this(bundle, null, 0);
+    }
+
+    /**
+     * Creates a new instance of this class providing access to the entries in
+     * the given <code>bundle</code> and indexing the entries below the given
+     * root entry paths.
+     *
+     * @param bundle
+     * @param roots The entry paths of the resource roots
+     * @param maxIndexSize The maximum number of entries to index. If the bundle
+     *            contains more entries below the roots or if this is zero or
+     *            negative, the entries are not indexed.
+     */
+    BundleResourceCache(Bundle bundle, String[] roots, int maxIndexSize) {
         this.bundle = bundle;
+        this.indexRoots = (maxIndexSize > 0) ? roots : null;
+        this.maxIndexSize = maxIndexSize;
+        this.indexCreated = (this.indexRoots == null);
 
         // create the limited maps wrapping in synchronized maps
         this.cache = Collections.synchronizedMap(new BundleResourceMap<String, URL>(
@@ -133,6 +182,11 @@ class BundleResourceCache {
      *         bundle does not contain the request entry.
      */
     URL getEntry(String path) {
+        final BundleEntryIndex index = getIndex();
+        if (index != null && index.covers(path)) {
+            return index.getEntry(path);
+        }
+
         URL url = cache.get(path);
         if (url == null) {
             url = bundle.getEntry(path);
@@ -163,6 +217,12 @@ class BundleResourceCache {
      *         or <code>null</code> if the parent entry does not exist.
      */
     Iterator<String> getEntryPaths(String path) {
+        final BundleEntryIndex index = getIndex();
+        if (index != null && index.covers(path)) {
+            List<String> list = index.getEntryPaths(path);
+            return (list == null) ? null : list.iterator();
+        }
+
         List<String> list = listCache.get(path);
         if (list == null) {
 
@@ -185,8 +245,58 @@ class BundleResourceCache {
         return (list == NOT_FOUND_CHILDREN) ? null : list.iterator();
     }
 
+    /**
+     * Returns the index of the entries below the resource roots, creating it
+     * on the first call, or <code>null</code> if the entries are not indexed.
+     */
+    private BundleEntryIndex getIndex() {
+        if (!indexCreated) {
+            synchronized (this) {
+                if (!indexCreated) {
+                    index = BundleEntryIndex.create(bundle, indexRoots, maxIndexSize);
+                    indexCreated = true;
+                }
+            }
+        }
+        return index;
+    }
+
     // ---------- Management API
 
+    /**
+     * Returns <code>true</code> if the entries below the resource roots are
+     * indexed. This is <code>false</code> until the index has been created
+     * on the first lookup.
+     */
+    boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Returns <code>true</code> if the entries are not to be indexed or the
+     * index has been created, possibly without indexing the entries because
+     * the bundle contains too many of them.
+     */
+    boolean isIndexCreated() {
+        return indexCreated;
+    }
+
+    /**
+     * Returns the number of entries in the index or zero if the entries are
+     * not indexed.
+     */
+    int getIndexEntryCount() {
+        return (index == null) ? 0 : index.getEntryCount();
+    }
+
+    /**
+     * Returns the number of folders with child entries in the index or zero
+     * if the entries are not indexed.
+     */
+    int getIndexFolderCount() {
+        return (index == null) ? 0 : index.getFolderCount();
+    }
+
     /**
      * Returns the current number of entries stored in the entry cache. This
      * number includes "negative" entries, which are requested entries not found
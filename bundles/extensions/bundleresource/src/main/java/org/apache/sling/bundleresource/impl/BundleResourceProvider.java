@@ -53,7 +53,17 @@ public class BundleResourceProvider implements ResourceProvider {
      * comma (and whitespace) separated list of absolute paths.
      */
     public BundleResourceProvider(Bundle bundle, String rootList) {
-        this.bundle = new BundleResourceCache(bundle);
+        this(bundle, rootList, 0);
+    }
+
+    /**
+     * Creates Bundle resource provider accessing entries in the given Bundle an
+     * supporting resources below root paths given by the rootList which is a
+     * comma (and whitespace) separated list of absolute paths. The entries
+     * below the root paths are indexed on the first lookup unless the bundle
+     * contains more than <code>maxIndexSize</code> entries below them.
+     */
+    BundleResourceProvider(Bundle bundle, String rootList, int maxIndexSize) {
         List<MappedPath> prefixList = new ArrayList<MappedPath>();
 
         final ManifestHeader header = ManifestHeader.parse(rootList);
@@ -67,6 +77,12 @@ public class BundleResourceProvider implements ResourceProvider {
             }
         }
         this.roots = prefixList.toArray(new MappedPath[prefixList.size()]);
+
+        String[] entryRoots = new String[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            entryRoots[i] = roots[i].getEntryPath(roots[i].getResourceRoot());
+        }
+        this.bundle = new BundleResourceCache(bundle, entryRoots, maxIndexSize);
     }
 
     //---------- Service Registration
@@ -127,6 +127,18 @@ class BundleResourceWebConsolePlugin extends HttpServlet {
             pw.println("</td>");
             pw.println("</tr>");
 
+            pw.println("<tr>");
+            pw.println("<td>Entry Index</td>");
+            if (cache.isIndexed()) {
+                pw.printf("<td>Entries: %d, Folders: %d</td>%n",
+                    cache.getIndexEntryCount(), cache.getIndexFolderCount());
+            } else if (cache.isIndexCreated()) {
+                pw.println("<td>Not indexed</td>");
+            } else {
+                pw.println("<td>Not created yet</td>");
+            }
+            pw.println("</tr>");
+
             pw.println("<tr>");
             pw.println("<td>Entry Cache</td>");
             pw.printf("<td>Size: %d, Limit: %d</td>%n",
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.bundleresource.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+
+public class BundleEntryIndexTest {
+
+    /** The entries of the bundle as returned by Bundle.getEntryPaths */
+    private static final String[] ENTRIES = { "META-INF/", "META-INF/MANIFEST.MF", "libs/", "libs/a.txt",
+        "libs/b/", "libs/b/c.txt", "libs/b/d/", "libs/b/d/e.txt", "libsx/", "libsx/f.txt" };
+
+    /** The number of entries below and including /libs and /libs/ */
+    private static final int LIBS_ENTRIES = 7;
+
+    @Test
+    public void testRootWithoutTrailingSlash() {
+        assertLibsIndex(BundleEntryIndex.create(createBundle(), new String[] { "/libs" }, 100));
+    }
+
+    @Test
+    public void testRootWithTrailingSlash() {
+        assertLibsIndex(BundleEntryIndex.create(createBundle(), new String[] { "/libs/" }, 100));
+    }
+
+    @Test
+    public void testRelativeRoot() {
+        assertLibsIndex(BundleEntryIndex.create(createBundle(), new String[] { "libs" }, 100));
+    }
+
+    @Test
+    public void testNestedRoots() {
+        final Bundle bundle = createBundle();
+        final BundleEntryIndex index = BundleEntryIndex.create(bundle, new String[] { "/libs", "/libs/b/d",
+            "/libs/b/" }, 100);
+
+        // the nested roots are also indexed without trailing slash
+        assertLibsIndex(index, LIBS_ENTRIES + 2);
+
+        // the folders below the enclosing root are only walked once
+        verify(bundle, times(1)).getEntryPaths("/libs/b/");
+        verify(bundle, times(1)).getEntryPaths("/libs/b/d/");
+    }
+
+    @Test
+    public void testOverflow() {
+        assertNull(BundleEntryIndex.create(createBundle(), new String[] { "/libs" }, LIBS_ENTRIES - 1));
+        assertNull(BundleEntryIndex.create(createBundle(), new String[] { "/libs", "/libsx" }, LIBS_ENTRIES));
+
+        final BundleEntryIndex index = BundleEntryIndex.create(createBundle(), new String[] { "/libs" },
+            LIBS_ENTRIES);
+        assertNotNull(index);
+        assertEquals(LIBS_ENTRIES, index.getEntryCount());
+    }
+
+    @Test
+    public void testMissingRoot() {
+        final BundleEntryIndex index = BundleEntryIndex.create(createBundle(), new String[] { "/apps" }, 100);
+
+        assertTrue(index.covers("/apps/a.txt"));
+        assertNull(index.getEntry("/apps"));
+        assertNull(index.getEntry("/apps/a.txt"));
+        assertNull(index.getEntryPaths("/apps"));
+        assertEquals(0, index.getEntryCount());
+    }
+
+    @Test
+    public void testCacheCreatesIndexOnFirstLookup() {
+        final Bundle bundle = createBundle();
+        final BundleResourceCache cache = new BundleResourceCache(bundle, new String[] { "/libs" }, 100);
+
+        assertFalse(cache.isIndexCreated());
+        verifyZeroInteractions(bundle);
+
+        assertNotNull(cache.getEntry("/libs/a.txt"));
+        assertTrue(cache.isIndexCreated());
+        assertTrue(cache.isIndexed());
+        assertEquals(LIBS_ENTRIES, cache.getIndexEntryCount());
+
+        // entries below the roots are served from the index
+        assertEquals(Arrays.asList("libs/b/c.txt", "libs/b/d/"), toList(cache.getEntryPaths("/libs/b")));
+        verify(bundle, times(1)).getEntry("/libs/a.txt");
+        verify(bundle, times(1)).getEntryPaths("/libs/b/");
+    }
+
+    @Test
+    public void testCacheWithoutIndex() {
+        final Bundle bundle = createBundle();
+        final BundleResourceCache cache = new BundleResourceCache(bundle, new String[] { "/libs" }, 0);
+
+        assertTrue(cache.isIndexCreated());
+        assertFalse(cache.isIndexed());
+        assertNotNull(cache.getEntry("/libs/a.txt"));
+        assertNull(cache.getEntry("/libs/missing.txt"));
+        verify(bundle, times(1)).getEntry("/libs/a.txt");
+        verify(bundle, times(1)).getEntry("/libs/missing.txt");
+    }
+
+    @Test
+    public void testCacheOverflow() {
+        final BundleResourceCache cache = new BundleResourceCache(createBundle(), new String[] { "/libs" },
+            LIBS_ENTRIES - 1);
+
+        assertNotNull(cache.getEntry("/libs/a.txt"));
+        assertTrue(cache.isIndexCreated());
+        assertFalse(cache.isIndexed());
+    }
+
+    private void assertLibsIndex(final BundleEntryIndex index) {
+        assertLibsIndex(index, LIBS_ENTRIES);
+    }
+
+    private void assertLibsIndex(final BundleEntryIndex index, final int entryCount) {
+        assertNotNull(index);
+        assertEquals(entryCount, index.getEntryCount());
+        assertEquals(3, index.getFolderCount());
+
+        assertTrue(index.covers("/libs"));
+        assertTrue(index.covers("/libs/"));
+        assertTrue(index.covers("/libs/b/d/e.txt"));
+        assertTrue(index.covers("libs/a.txt"));
+        assertFalse(index.covers("/libsx/f.txt"));
+        assertFalse(index.covers("/META-INF/MANIFEST.MF"));
+
+        assertNotNull(index.getEntry("/libs"));
+        assertNotNull(index.getEntry("/libs/"));
+        assertNotNull(index.getEntry("/libs/a.txt"));
+        assertNotNull(index.getEntry("libs/b/d/e.txt"));
+        assertNotNull(index.getEntry("/libs/b/d/"));
+        assertNull(index.getEntry("/libs/missing.txt"));
+
+        final List<String> children = Arrays.asList("libs/a.txt", "libs/b/");
+        assertEquals(children, index.getEntryPaths("/libs"));
+        assertEquals(children, index.getEntryPaths("/libs/"));
+        assertEquals(Arrays.asList("libs/b/d/e.txt"), index.getEntryPaths("/libs/b/d"));
+        assertNull(index.getEntryPaths("/libs/a.txt"));
+        assertNull(index.getEntryPaths("/libs/missing"));
+    }
+
+    /**
+     * Returns a mock bundle with the {@link #ENTRIES}, looking up entries
+     * like the framework does with or without leading slash and folders
+     * with or without trailing slash.
+     */
+    private Bundle createBundle() {
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getEntry(anyString())).thenAnswer(new Answer<URL>() {
+            public URL answer(InvocationOnMock invocation) throws Throwable {
+                final String path = toEntryPath((String) invocation.getArguments()[0]);
+                final List<String> entries = Arrays.asList(ENTRIES);
+                if (entries.contains(path)) {
+                    return new URL("file:/bundle/" + path);
+                } else if (entries.contains(path + "/")) {
+                    return new URL("file:/bundle/" + path + "/");
+                }
+                return null;
+            }
+        });
+        when(bundle.getEntryPaths(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                String folder = toEntryPath((String) invocation.getArguments()[0]);
+                if (!folder.endsWith("/")) {
+                    folder = folder.concat("/");
+                }
+                final List<String> paths = new ArrayList<String>();
+                for (final String entry : ENTRIES) {
+                    if (entry.startsWith(folder) && entry.length() > folder.length()) {
+                        final int slash = entry.indexOf('/', folder.length());
+                        if (slash < 0 || slash == entry.length() - 1) {
+                            paths.add(entry);
+                        }
+                    }
+                }
+                return paths.isEmpty() ? null : Collections.enumeration(paths);
+            }
+        });
+        return bundle;
+    }
+
+    private static String toEntryPath(final String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static List<String> toList(final Iterator<String> paths) {
+        final List<String> list = new ArrayList<String>();
+        while (paths.hasNext()) {
+            list.add(paths.next());
+        }
+        return list;
+    }
+}
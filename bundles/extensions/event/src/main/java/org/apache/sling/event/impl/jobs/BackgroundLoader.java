@@ -19,6 +19,7 @@
 package org.apache.sling.event.impl.jobs;
 
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -407,6 +408,24 @@ public class BackgroundLoader implements Runnable {
         }
     }
 
+    /**
+     * Add several jobs to the load job queue if the instance is running.
+     */
+    public void addJobs(final Collection<JobImpl> jobs) {
+        synchronized ( loadLock ) {
+            if ( isRunning() ) {
+                try {
+                    for(final JobImpl job : jobs) {
+                        this.actionQueue.put(job);
+                    }
+                } catch (final InterruptedException e) {
+                    this.ignoreException(e);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
     /**
      * Add a job to the load job queue if the instance is running.
      */
@@ -48,6 +48,7 @@ import org.apache.sling.api.resource.QuerySyntaxException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.commons.threads.ThreadPoolManager;
@@ -1278,27 +1279,14 @@ public class JobManagerImpl
             final List<String> errors) {
         final QueueInfo info = this.queueConfigManager.getQueueInfo(jobTopic);
         if ( info.queueConfiguration.getType() == QueueConfiguration.Type.DROP ) {
-            if ( logger.isDebugEnabled() ) {
-                logger.debug("Dropping job due to configuration of queue {} : {}", info.queueName, Utility.toString(jobTopic, jobName, jobProperties));
-            }
-            Utility.sendNotification(this.eventAdmin, NotificationConstants.TOPIC_JOB_CANCELLED, jobTopic, jobName, jobProperties, null);
+            this.dropJob(info, jobTopic, jobName, jobProperties);
         } else {
             // check for unique jobs
             if ( jobName != null && !this.lock(jobTopic, jobName) ) {
                 logger.debug("Discarding duplicate job {}", Utility.toString(jobTopic, jobName, jobProperties));
                 return null;
             } else {
-                if ( info.queueConfiguration.getType() != QueueConfiguration.Type.IGNORE ) {
-                    final TopologyCapabilities caps = this.topologyCapabilities;
-                    info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
-                }
-                if ( logger.isDebugEnabled() ) {
-                    if ( info.targetId != null ) {
-                        logger.debug("Persisting job {} into queue {}, target={}", new Object[] {Utility.toString(jobTopic, jobName, jobProperties), info.queueName, info.targetId});
-                    } else {
-                        logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobName, jobProperties), info.queueName);
-                    }
-                }
+                this.detectTarget(info, jobTopic, jobName, jobProperties);
                 ResourceResolver resolver = null;
                 try {
                     resolver = this.resourceResolverFactory.getAdministrativeResourceResolver(null);
@@ -1307,7 +1295,8 @@ public class JobManagerImpl
                             jobTopic,
                             jobName,
                             jobProperties,
-                            info);
+                            info,
+                            true);
                     if ( job != null ) {
                         if ( configuration.isLocalJob(job.getResourcePath()) ) {
                             this.backgroundLoader.addJob(job);
@@ -1333,18 +1322,115 @@ public class JobManagerImpl
         return null;
     }
 
+    /**
+     * Drop a job as the queue is configured to drop it.
+     */
+    private void dropJob(final QueueInfo info,
+            final String jobTopic,
+            final String jobName,
+            final Map<String, Object> jobProperties) {
+        if ( logger.isDebugEnabled() ) {
+            logger.debug("Dropping job due to configuration of queue {} : {}", info.queueName, Utility.toString(jobTopic, jobName, jobProperties));
+        }
+        Utility.sendNotification(this.eventAdmin, NotificationConstants.TOPIC_JOB_CANCELLED, jobTopic, jobName, jobProperties, null);
+    }
+
+    /**
+     * Detect the target instance of a new job and store it in the queue info.
+     */
+    private void detectTarget(final QueueInfo info,
+            final String jobTopic,
+            final String jobName,
+            final Map<String, Object> jobProperties) {
+        if ( info.queueConfiguration.getType() != QueueConfiguration.Type.IGNORE ) {
+            final TopologyCapabilities caps = this.topologyCapabilities;
+            info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
+        }
+        if ( logger.isDebugEnabled() ) {
+            if ( info.targetId != null ) {
+                logger.debug("Persisting job {} into queue {}, target={}", new Object[] {Utility.toString(jobTopic, jobName, jobProperties), info.queueName, info.targetId});
+            } else {
+                logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobName, jobProperties), info.queueName);
+            }
+        }
+    }
+
+    /**
+     * Persist a batch of jobs in the resource tree with a single commit.
+     * @param builders The job builders
+     * @param infos The queue information for each builder, <code>null</code> for
+     *              jobs which should not be persisted.
+     * @return The persisted jobs, <code>null</code> entries for jobs not persisted.
+     * @throws PersistenceException If the jobs could not be persisted
+     * @throws LoginException If no resource resolver is available
+     */
+    private List<JobImpl> writeJobs(final List<JobBuilder> builders,
+            final List<QueueInfo> infos)
+    throws PersistenceException, LoginException {
+        ResourceResolver resolver = null;
+        try {
+            resolver = this.resourceResolverFactory.getAdministrativeResourceResolver(null);
+            // concurrent writes might let the commit fail, so we retry (see ResourceHelper)
+            for(int i=0;;i++) {
+                final List<JobImpl> jobs = new ArrayList<JobImpl>(builders.size());
+                final List<String> paths = new ArrayList<String>();
+                try {
+                    for(int index=0; index<builders.size(); index++) {
+                        final QueueInfo info = infos.get(index);
+                        if ( info == null ) {
+                            jobs.add(null);
+                        } else {
+                            final JobBuilderImpl builder = (JobBuilderImpl)builders.get(index);
+                            final JobImpl job = this.writeJob(resolver,
+                                    builder.getTopic(),
+                                    null,
+                                    builder.getProperties(),
+                                    info,
+                                    false);
+                            jobs.add(job);
+                            paths.add(job.getResourcePath());
+                        }
+                    }
+                    synchronized ( this.directlyAddedPaths ) {
+                        this.directlyAddedPaths.addAll(paths);
+                    }
+                    resolver.commit();
+                    return jobs;
+                } catch ( final PersistenceException pe ) {
+                    synchronized ( this.directlyAddedPaths ) {
+                        this.directlyAddedPaths.removeAll(paths);
+                    }
+                    resolver.revert();
+                    resolver.refresh();
+                    if ( i == 4 ) {
+                        throw pe;
+                    }
+                    this.ignoreException(pe);
+                }
+            }
+        } finally {
+            if ( resolver != null ) {
+                resolver.close();
+            }
+        }
+    }
+
     /**
      * Write a job to the resource tree.
      * @param resolver The resolver resolver
      * @param event The event
      * @param info The queue information (queue name etc.)
+     * @param commit Whether the job should be committed. If not, the caller
+     *               is responsible for the commit and for registering the
+     *               path as a directly added path.
      * @throws PersistenceException
      */
     private JobImpl writeJob(final ResourceResolver resolver,
             final String jobTopic,
             final String jobName,
             final Map<String, Object> jobProperties,
-            final QueueInfo info)
+            final QueueInfo info,
+            final boolean commit)
     throws PersistenceException {
         final String jobId = this.configuration.getUniqueId(jobTopic);
         final String path = this.configuration.getUniquePath(info.targetId, jobTopic, jobId, jobProperties);
@@ -1383,12 +1469,20 @@ public class JobManagerImpl
         if ( logger.isDebugEnabled() ) {
             logger.debug("Storing new job {} at {}", properties, path);
         }
-        synchronized ( this.directlyAddedPaths ) {
-            this.directlyAddedPaths.add(path);
+        if ( commit ) {
+            synchronized ( this.directlyAddedPaths ) {
+                this.directlyAddedPaths.add(path);
+            }
+            ResourceHelper.getOrCreateResource(resolver,
+                    path,
+                    properties);
+        } else {
+            ResourceUtil.getOrCreateResource(resolver,
+                    path,
+                    properties,
+                    ResourceHelper.RESOURCE_TYPE_FOLDER,
+                    false);
         }
-        ResourceHelper.getOrCreateResource(resolver,
-                path,
-                properties);
 
         // update property types - priority, add path and create job
         properties.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
@@ -1499,6 +1593,70 @@ public class JobManagerImpl
         return new JobBuilderImpl(this, topic);
     }
 
+    /**
+     * @see org.apache.sling.event.jobs.JobManager#addJobs(java.util.List, java.util.List)
+     */
+    @Override
+    public List<Job> addJobs(final List<JobBuilder> builders, final List<String> errors) {
+        // check the jobs and get the queue information
+        final List<QueueInfo> infos = new ArrayList<QueueInfo>(builders.size());
+        boolean hasJobs = false;
+        for(final JobBuilder b : builders) {
+            final JobBuilderImpl builder = (JobBuilderImpl)b;
+            final String errorMessage = Utility.checkJob(builder.getTopic(), builder.getProperties());
+            QueueInfo info = null;
+            if ( errorMessage != null ) {
+                logger.warn("{}", errorMessage);
+                if ( errors != null ) {
+                    errors.add(errorMessage);
+                }
+            } else {
+                info = this.queueConfigManager.getQueueInfo(builder.getTopic());
+                if ( info.queueConfiguration.getType() == QueueConfiguration.Type.DROP ) {
+                    this.dropJob(info, builder.getTopic(), null, builder.getProperties());
+                    info = null;
+                } else {
+                    this.detectTarget(info, builder.getTopic(), null, builder.getProperties());
+                    hasJobs = true;
+                }
+            }
+            infos.add(info);
+        }
+
+        final List<Job> result = new ArrayList<Job>(builders.size());
+        List<JobImpl> jobs = null;
+        if ( hasJobs ) {
+            try {
+                jobs = this.writeJobs(builders, infos);
+            } catch (final PersistenceException pe ) {
+                this.logger.error("Exception during persisting " + builders.size() + " new jobs", pe);
+            } catch (final LoginException le) {
+                this.logger.error("Exception during persisting " + builders.size() + " new jobs", le);
+            }
+            if ( jobs == null && errors != null ) {
+                errors.add("Unable to persist new jobs.");
+            }
+        }
+        if ( jobs == null ) {
+            for(int i=0; i<builders.size(); i++) {
+                result.add(null);
+            }
+        } else {
+            // hand over the local jobs in bulk
+            final List<JobImpl> localJobs = new ArrayList<JobImpl>();
+            for(final JobImpl job : jobs) {
+                if ( job != null && configuration.isLocalJob(job.getResourcePath()) ) {
+                    localJobs.add(job);
+                }
+            }
+            if ( !localJobs.isEmpty() ) {
+                this.backgroundLoader.addJobs(localJobs);
+            }
+            result.addAll(jobs);
+        }
+        return result;
+    }
+
     /**
      * @see org.apache.sling.event.jobs.JobManager#getScheduledJobs()
      */
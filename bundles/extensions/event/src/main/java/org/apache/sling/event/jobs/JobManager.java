@@ -19,6 +19,7 @@
 package org.apache.sling.event.jobs;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.osgi.service.event.Event;
@@ -197,6 +198,25 @@ public interface JobManager {
      */
     JobBuilder createJob(final String topic);
 
+    /**
+     * Add all jobs created with the given builders in one operation.
+     *
+     * This is equivalent to calling {@link JobBuilder#add(List)} for each
+     * builder, however all jobs are persisted together which is considerably
+     * faster when adding a large number of jobs. The jobs are checked individually:
+     * if a job has an illegal topic or non serializable properties or if the queue
+     * for processing the job is configured to drop it, only this job is not added.
+     * If persisting the jobs fails, none of them is added.
+     *
+     * @param builders The job builders retrieved with {@link #createJob(String)}.
+     * @param errors Optional list which will be filled with error messages.
+     * @return A list containing the new job for each builder, in the same order
+     *         as the builders. For each job which could not be added the list
+     *         contains <code>null</code>.
+     * @since 1.5
+     */
+    List<Job> addJobs(final List<JobBuilder> builders, final List<String> errors);
+
     /**
      * Return all available job schedules.
      * @since 1.3
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.it;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobBuilder;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.apache.sling.testing.tools.retry.RetryLoop;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerMethod;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests adding jobs in a batch and checks that adding jobs in a batch
+ * is faster than adding them one by one.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerMethod.class)
+public class JobBatchTest extends AbstractJobHandlingTest {
+
+    private static final String TOPIC = "sling/test/batch";
+
+    private static final int NUM_JOBS = 200;
+
+    private static final int CONDITION_INTERVAL_MILLIS = 50;
+
+    private static final int CONDITION_TIMEOUT_SECONDS = 60;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testAddJobs() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ServiceRegistration reg = this.registerJobConsumer(TOPIC,
+                new JobConsumer() {
+
+                    @Override
+                    public JobResult process(final Job job) {
+                        count.incrementAndGet();
+                        return JobResult.OK;
+                    }
+                });
+        try {
+            final JobManager jobManager = this.getJobManager();
+
+            final List<JobBuilder> builders = new ArrayList<JobBuilder>();
+            builders.add(jobManager.createJob(TOPIC).properties(Collections.singletonMap("index", (Object)"0")));
+            // invalid topic
+            builders.add(jobManager.createJob("/invalid"));
+            builders.add(jobManager.createJob(TOPIC).properties(Collections.singletonMap("index", (Object)"2")));
+
+            final List<String> errors = new ArrayList<String>();
+            final List<Job> jobs = jobManager.addJobs(builders, errors);
+            assertEquals(3, jobs.size());
+            assertNotNull(jobs.get(0));
+            assertNull(jobs.get(1));
+            assertNotNull(jobs.get(2));
+            assertEquals("0", jobs.get(0).getProperty("index"));
+            assertEquals("2", jobs.get(2).getProperty("index"));
+            assertEquals(1, errors.size());
+
+            while ( count.get() < 2 ) {
+                this.sleep(50);
+            }
+        } finally {
+            reg.unregister();
+        }
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testThroughput() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ServiceRegistration reg = this.registerJobConsumer(TOPIC,
+                new JobConsumer() {
+
+                    @Override
+                    public JobResult process(final Job job) {
+                        count.incrementAndGet();
+                        return JobResult.OK;
+                    }
+                });
+        try {
+            final JobManager jobManager = this.getJobManager();
+
+            // add jobs one by one
+            long start = System.currentTimeMillis();
+            for(int i = 0; i < NUM_JOBS; i++) {
+                assertNotNull(jobManager.addJob(TOPIC, null));
+            }
+            final long singleTime = System.currentTimeMillis() - start;
+
+            // add jobs in a batch
+            final List<JobBuilder> builders = new ArrayList<JobBuilder>();
+            for(int i = 0; i < NUM_JOBS; i++) {
+                builders.add(jobManager.createJob(TOPIC));
+            }
+            start = System.currentTimeMillis();
+            final List<Job> jobs = jobManager.addJobs(builders, null);
+            final long batchTime = System.currentTimeMillis() - start;
+            assertEquals(NUM_JOBS, jobs.size());
+            for(final Job job : jobs) {
+                assertNotNull(job);
+            }
+
+            // the timings depend on the machine, they are only logged
+            logger.info("Added {} jobs one by one with {} jobs/sec", NUM_JOBS, getThroughput(singleTime));
+            logger.info("Added {} jobs in a batch with {} jobs/sec", NUM_JOBS, getThroughput(batchTime));
+
+            // wait until all jobs are processed and removed
+            new RetryLoop(new RetryLoop.Condition() {
+
+                @Override
+                public String getDescription() {
+                    return "Waiting for all jobs to be processed and removed";
+                }
+
+                @Override
+                public boolean isTrue() throws Exception {
+                    return count.get() == 2 * NUM_JOBS
+                            && jobManager.findJobs(JobManager.QueryType.ALL, TOPIC, -1, (Map<String, Object>[]) null)
+                                    .size() == 0;
+                }
+            }, CONDITION_TIMEOUT_SECONDS, CONDITION_INTERVAL_MILLIS);
+        } finally {
+            reg.unregister();
+        }
+    }
+
+    private static long getThroughput(final long time) {
+        return NUM_JOBS * 1000L / Math.max(1, time);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+/**
+ * The base class of the accessors generated by the
+ * {@link ModelClassGenerator} for a model type, which create and populate
+ * the models without reflection.
+ * <p>
+ * The class is public as the accessors are defined by a class loader of
+ * their own; the methods not generated for a model throw an
+ * <code>UnsupportedOperationException</code>.
+ */
+public abstract class GeneratedModelAccessor {
+
+    protected GeneratedModelAccessor() {
+    }
+
+    /**
+     * Create a model class instance.
+     *
+     * @param constructor the index of the constructor as returned by
+     *            {@link ModelDescriptor#getConstructorIndex(Object)}
+     * @param adaptable the adaptable passed to a single parameter constructor
+     */
+    public Object newInstance(int constructor, Object adaptable) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Set an injectable field of a model class instance.
+     *
+     * @param field the index of the field in {@link ModelDescriptor#getInjectableElements()}
+     */
+    public void setField(Object target, int field, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Invoke a post construct method of a model class instance.
+     *
+     * @param method the index of the method in {@link ModelDescriptor#getPostConstructMethods()}
+     */
+    public void invokePostConstruct(Object target, int method) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Create a model interface implementation.
+     *
+     * @param values the values returned by the methods of the
+     *            {@link ModelDescriptor#getInjectableElements()} with the same index
+     */
+    public Object newInterfaceInstance(Object[] values) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -16,7 +16,6 @@
  */
 package org.apache.sling.models.impl;
 
-import java.lang.annotation.Annotation;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.AnnotatedElement;
@@ -28,13 +27,13 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,25 +41,20 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-import javax.annotation.PostConstruct;
-import javax.inject.Inject;
-import javax.inject.Named;
-
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.sling.api.adapter.Adaptable;
 import org.apache.sling.api.adapter.AdapterFactory;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.commons.osgi.ServiceUtil;
+import org.apache.sling.models.impl.ModelDescriptor.InjectableElement;
 import org.apache.sling.models.annotations.Default;
-import org.apache.sling.models.annotations.Model;
-import org.apache.sling.models.annotations.Optional;
-import org.apache.sling.models.annotations.Source;
-import org.apache.sling.models.annotations.Via;
 import org.apache.sling.models.spi.DisposalCallback;
 import org.apache.sling.models.spi.DisposalCallbackRegistry;
 import org.apache.sling.models.spi.Injector;
@@ -71,26 +65,10 @@ import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Component
+@Component(metatype = true, label = "Apache Sling Model Adapter Factory",
+        description = "Adapts adaptables to the Sling Models of the bundles declaring model packages.")
 public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
-    /**
-     * Comparator which sorts constructors by the number of parameters
-     * in reverse order (most params to least params).
-     */
-    public class ParameterCountComparator implements Comparator<Constructor<?>> {
-
-        @Override
-        public int compare(Constructor<?> o1, Constructor<?> o2) {
-            return compare(o2.getParameterTypes().length, o1.getParameterTypes().length);
-        }
-
-        public int compare(int x, int y) {
-            return (x < y) ? -1 : ((x == y) ? 0 : 1);
-        }
-
-    }
-
     private static class DisposalCallbackRegistryImpl implements DisposalCallbackRegistry {
 
         private List<DisposalCallback> callbacks = new ArrayList<DisposalCallback>();
@@ -142,12 +120,25 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(ModelAdapterFactory.class);
 
+    private static final boolean DEFAULT_GENERATED_INJECTION = false;
+
+    @Property(boolValue = DEFAULT_GENERATED_INJECTION, label = "Generated Injection",
+            description = "If enabled, classes are generated for the registered models to create and inject "
+                    + "them without reflection and to implement model interfaces without dynamic proxies. "
+                    + "Private fields and methods are still accessed reflectively.")
+    private static final String PROP_GENERATED_INJECTION = "models.generated.injection";
+
+    private boolean generatedInjection = DEFAULT_GENERATED_INJECTION;
+
     @Reference(name = "injector", referenceInterface = Injector.class,
             cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     private final Map<Object, Injector> injectors = new TreeMap<Object, Injector>();
 
     private volatile Injector[] sortedInjectors = new Injector[0];
 
+    /** The descriptors of the registered models by model type */
+    private final ConcurrentMap<Class<?>, ModelDescriptor> descriptors = new ConcurrentHashMap<Class<?>, ModelDescriptor>();
+
     private ModelPackageBundleListener listener;
 
     private ServiceRegistration jobRegistration;
@@ -156,24 +147,16 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
     @SuppressWarnings("unchecked")
     public <AdapterType> AdapterType getAdapter(Object adaptable, Class<AdapterType> type) {
-        Model modelAnnotation = type.getAnnotation(Model.class);
-        if (modelAnnotation == null) {
-            return null;
-        }
-        boolean isAdaptable = false;
-
-        Class<?>[] declaredAdaptable = modelAnnotation.adaptables();
-        for (Class<?> clazz : declaredAdaptable) {
-            if (clazz.isInstance(adaptable)) {
-                isAdaptable = true;
-            }
-        }
-        if (!isAdaptable) {
+        ModelDescriptor descriptor = getDescriptor(type);
+        if (descriptor == null || !descriptor.isAdaptable(adaptable)) {
             return null;
         }
 
         if (type.isInterface()) {
-            InvocationHandler handler = createInvocationHandler(adaptable, type);
+            if (descriptor.getAccessor() != null) {
+                return (AdapterType) createGeneratedInterfaceModel(adaptable, descriptor);
+            }
+            InvocationHandler handler = createInvocationHandler(adaptable, descriptor);
             if (handler != null) {
                 return (AdapterType) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
                         handler);
@@ -182,7 +165,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
             }
         } else {
             try {
-                return createObject(adaptable, type);
+                return (AdapterType) createObject(adaptable, descriptor);
             } catch (Exception e) {
                 log.error("unable to create object", e);
                 return null;
@@ -190,55 +173,95 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
         }
     }
 
-    private Set<Field> collectInjectableFields(Class<?> type) {
-        Set<Field> result = new HashSet<Field>();
-        while (type != null) {
-            Field[] fields = type.getDeclaredFields();
-            for (Field field : fields) {
-                Inject injection = field.getAnnotation(Inject.class);
-                if (injection != null) {
-                    result.add(field);
-                }
-            }
-            type = type.getSuperclass();
+    /**
+     * Get the descriptor of a model type, created when the model has been
+     * registered by the {@link ModelPackageBundleListener}. The descriptor
+     * of a type which has not been registered is created on each call.
+     *
+     * @return the descriptor or <code>null</code> if the type is not a model
+     */
+    ModelDescriptor getDescriptor(Class<?> type) {
+        ModelDescriptor descriptor = descriptors.get(type);
+        if (descriptor == null) {
+            descriptor = ModelDescriptor.create(type);
         }
-        return result;
+        return descriptor;
     }
 
-    private Set<Method> collectInjectableMethods(Class<?> type) {
-        Set<Method> result = new HashSet<Method>();
-        while (type != null) {
-            Method[] methods = type.getDeclaredMethods();
-            for (Method method : methods) {
-                Inject injection = method.getAnnotation(Inject.class);
-                if (injection != null) {
-                    result.add(method);
-                }
-            }
-            type = type.getSuperclass();
+    /**
+     * Create and cache the descriptor of a model type.
+     */
+    void registerModel(Class<?> type) {
+        ModelDescriptor descriptor = ModelDescriptor.create(type, generatedInjection);
+        if (descriptor != null) {
+            descriptors.put(type, descriptor);
         }
-        return result;
     }
 
-    private InvocationHandler createInvocationHandler(final Object adaptable, final Class<?> type) {
-        Set<Method> injectableMethods = collectInjectableMethods(type);
+    /**
+     * Drop the cached descriptor of a model type.
+     */
+    void unregisterModel(Class<?> type) {
+        descriptors.remove(type);
+    }
+
+    private InvocationHandler createInvocationHandler(final Object adaptable, final ModelDescriptor descriptor) {
         Map<Method, Object> methods = new HashMap<Method, Object>();
         MapBackedInvocationHandler handler = new MapBackedInvocationHandler(methods);
 
         DisposalCallbackRegistryImpl registry = createAndRegisterCallbackRegistry(handler);
 
+        InjectableElement[] injectableMethods = descriptor.getInjectableElements();
+        Object[] values = new Object[injectableMethods.length];
+        if (!injectMethods(adaptable, descriptor, values, registry)) {
+            return null;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                methods.put((Method) injectableMethods[i].getElement(), values[i]);
+            }
+        }
+        return handler;
+    }
+
+    private Object createGeneratedInterfaceModel(final Object adaptable, final ModelDescriptor descriptor) {
+        Object[] values = new Object[descriptor.getInjectableElements().length];
+
+        // the generated model holds the values
+        DisposalCallbackRegistryImpl registry = createAndRegisterCallbackRegistry(values);
+
+        if (!injectMethods(adaptable, descriptor, values, registry)) {
+            return null;
+        }
+        return descriptor.getAccessor().newInterfaceInstance(values);
+    }
+
+    /**
+     * Collect the values of the injectable methods of a model interface.
+     *
+     * @param values the values by index of the injectable method
+     * @return <code>false</code> if a required value is missing
+     */
+    private boolean injectMethods(final Object adaptable, final ModelDescriptor descriptor, final Object[] values,
+            final DisposalCallbackRegistryImpl registry) {
+        InjectableElement[] injectableElements = descriptor.getInjectableElements();
+        List<Integer> injectableMethods = new LinkedList<Integer>();
+        for (int i = 0; i < injectableElements.length; i++) {
+            injectableMethods.add(i);
+        }
+
         for (Injector injector : sortedInjectors) {
-            Iterator<Method> it = injectableMethods.iterator();
+            Iterator<Integer> it = injectableMethods.iterator();
             while (it.hasNext()) {
-                Method method = it.next();
-                String source = getSource(method);
+                int index = it.next();
+                InjectableElement method = injectableElements[index];
+                String source = method.getSource();
                 if (source == null || source.equals(injector.getName())) {
-                    String name = getName(method);
-                    Type returnType = mapPrimitiveClasses(method.getGenericReturnType());
                     Object injectionAdaptable = getAdaptable(adaptable, method);
                     if (injectionAdaptable != null) {
-                        Object value = injector.getValue(injectionAdaptable, name, returnType, method, registry);
-                        if (setMethod(method, methods, value)) {
+                        Object value = injector.getValue(injectionAdaptable, method.getName(), method.getType(),
+                                method.getElement(), registry);
+                        if (setMethod(method, values, index, value)) {
                             it.remove();
                         }
                     }
@@ -248,35 +271,35 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
         registry.seal();
 
-        Iterator<Method> it = injectableMethods.iterator();
+        Iterator<Integer> it = injectableMethods.iterator();
         while (it.hasNext()) {
-            Method method = it.next();
-            Default defaultAnnotation = method.getAnnotation(Default.class);
+            int index = it.next();
+            InjectableElement method = injectableElements[index];
+            Default defaultAnnotation = method.getDefaultAnnotation();
             if (defaultAnnotation != null) {
-                Type returnType = mapPrimitiveClasses(method.getGenericReturnType());
-                Object value = getDefaultValue(defaultAnnotation, returnType);
-                if (setMethod(method, methods, value)) {
+                Object value = getDefaultValue(defaultAnnotation, method.getType());
+                if (setMethod(method, values, index, value)) {
                     it.remove();
                 }
             }
         }
 
         if (injectableMethods.isEmpty()) {
-            return handler;
+            return true;
         } else {
-            Set<Method> requiredMethods = new HashSet<Method>();
-            for (Method method : injectableMethods) {
-                if (method.getAnnotation(Optional.class) == null) {
-                    requiredMethods.add(method);
+            Set<AnnotatedElement> requiredMethods = new HashSet<AnnotatedElement>();
+            for (int index : injectableMethods) {
+                if (!injectableElements[index].isOptional()) {
+                    requiredMethods.add(injectableElements[index].getElement());
                 }
             }
 
             if (!requiredMethods.isEmpty()) {
                 log.warn("Required methods {} on model class {} were not able to be injected.", requiredMethods,
-                        type);
-                return null;
+                        descriptor.getType());
+                return false;
             } else {
-                return handler;
+                return true;
             }
         }
     }
@@ -288,98 +311,52 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
         return registry;
     }
 
-    private String getSource(AnnotatedElement element) {
-        Source source = getAnnotation(element, Source.class);
-        if (source != null) {
-            return source.value();
-        } else {
-            return null;
-        }
-    }
-
-    /**
-     * Get an annotation from either the element itself or on any of the
-     * element's annotations (meta-annotations).
-     * 
-     * @param element the element
-     * @param annotationClass the annotation class
-     * @return the found annotation or null
-     */
-    private <T extends Annotation> T getAnnotation(AnnotatedElement element, Class<T> annotationClass) {
-        T annotation = element.getAnnotation(annotationClass);
-        if (annotation != null) {
-            return annotation;
-        } else {
-            for (Annotation ann : element.getAnnotations()) {
-                annotation = ann.annotationType().getAnnotation(annotationClass);
-                if (annotation != null) {
-                    return annotation;
-                }
-            }
-        }
-        return null;
-    }
-
-    @SuppressWarnings("unchecked")
-    private <AdapterType> AdapterType createObject(Object adaptable, Class<AdapterType> type)
+    private Object createObject(Object adaptable, ModelDescriptor descriptor)
             throws InstantiationException, InvocationTargetException, IllegalAccessException {
-        Set<Field> injectableFields = collectInjectableFields(type);
-
-        Constructor<?>[] constructors = type.getConstructors();
-        if (constructors.length == 0) {
+        Class<?> type = descriptor.getType();
+        if (!descriptor.hasPublicConstructor()) {
             log.warn("Model class {} does not have a public constructor.", type.getName());
             return null;
         }
 
-        // sort the constructor list in order from most params to least params
-        Arrays.sort(constructors, new ParameterCountComparator());
-
-        Constructor<AdapterType> constructorToUse = null;
-        boolean constructorHasParam = false;
-        for (Constructor<?> constructor : constructors) {
-            final Class<?>[] paramTypes = constructor.getParameterTypes();
-            if (paramTypes.length == 1) {
-                Class<?> paramType = constructor.getParameterTypes()[0];
-                if (paramType.isInstance(adaptable)) {
-                    constructorToUse = (Constructor<AdapterType>) constructor;
-                    constructorHasParam = true;
-                    break;
-                }
-            }
-
-            if (constructor.getParameterTypes().length == 0) {
-                constructorToUse = (Constructor<AdapterType>) constructor;
-                constructorHasParam = false;
-                break;
-            }
-        }
-
-        if (constructorToUse == null) {
+        int constructorIndex = descriptor.getConstructorIndex(adaptable);
+        if (constructorIndex < 0) {
             log.warn("Model class {} does not have a usable constructor", type.getName());
             return null;
         }
 
-        final AdapterType object;
-        if (constructorHasParam) {
-            object = constructorToUse.newInstance(adaptable);
+        final GeneratedModelAccessor accessor = descriptor.getAccessor();
+        final Object object;
+        if (accessor != null) {
+            object = accessor.newInstance(constructorIndex, adaptable);
         } else {
-            object = constructorToUse.newInstance();
+            Constructor<?> constructorToUse = descriptor.getConstructor(constructorIndex);
+            if (constructorToUse.getParameterTypes().length == 1) {
+                object = constructorToUse.newInstance(adaptable);
+            } else {
+                object = constructorToUse.newInstance();
+            }
         }
 
         DisposalCallbackRegistryImpl registry = createAndRegisterCallbackRegistry(object);
 
+        InjectableElement[] injectableElements = descriptor.getInjectableElements();
+        List<Integer> injectableFields = new LinkedList<Integer>();
+        for (int i = 0; i < injectableElements.length; i++) {
+            injectableFields.add(i);
+        }
         for (Injector injector : sortedInjectors) {
-            Iterator<Field> it = injectableFields.iterator();
+            Iterator<Integer> it = injectableFields.iterator();
             while (it.hasNext()) {
-                Field field = it.next();
-                String source = getSource(field);
+                int index = it.next();
+                InjectableElement field = injectableElements[index];
+                String source = field.getSource();
                 if (source == null || source.equals(injector.getName())) {
-                    String name = getName(field);
-                    Type fieldType = mapPrimitiveClasses(field.getGenericType());
                     Object injectionAdaptable = getAdaptable(adaptable, field);
                     if (injectionAdaptable != null) {
-                        Object value = injector.getValue(injectionAdaptable, name, fieldType, field, registry);
-                        if (setField(field, object, value)) {
+                        Object value = injector.getValue(injectionAdaptable, field.getName(), field.getType(),
+                                field.getElement(), registry);
+                        if (setField(descriptor, index, object, value)) {
                             it.remove();
                         }
                     }
@@ -389,14 +366,14 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
         registry.seal();
 
-        Iterator<Field> it = injectableFields.iterator();
+        Iterator<Integer> it = injectableFields.iterator();
         while (it.hasNext()) {
-            Field field = it.next();
-            Default defaultAnnotation = field.getAnnotation(Default.class);
+            int index = it.next();
+            InjectableElement field = injectableElements[index];
+            Default defaultAnnotation = field.getDefaultAnnotation();
             if (defaultAnnotation != null) {
-                Type fieldType = mapPrimitiveClasses(field.getGenericType());
-                Object value = getDefaultValue(defaultAnnotation, fieldType);
-                if (setField(field, object, value)) {
+                Object value = getDefaultValue(defaultAnnotation, field.getType());
+                if (setField(descriptor, index, object, value)) {
                     it.remove();
                 }
             }
@@ -404,17 +381,17 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
 
         if (injectableFields.isEmpty()) {
             try {
-                invokePostConstruct(object);
+                invokePostConstruct(object, descriptor);
                 return object;
             } catch (Exception e) {
                 log.error("Unable to invoke post construct method.", e);
                 return null;
             }
         } else {
-            Set<Field> requiredFields = new HashSet<Field>();
-            for (Field field : injectableFields) {
-                if (field.getAnnotation(Optional.class) == null) {
-                    requiredFields.add(field);
+            Set<AnnotatedElement> requiredFields = new HashSet<AnnotatedElement>();
+            for (int index : injectableFields) {
+                if (!injectableElements[index].isOptional()) {
+                    requiredFields.add(injectableElements[index].getElement());
                 }
             }
 
@@ -424,7 +401,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
                 return null;
             } else {
                 try {
-                    invokePostConstruct(object);
+                    invokePostConstruct(object, descriptor);
                     return object;
                 } catch (Exception e) {
                     log.error("Unable to invoke post construct method.", e);
@@ -495,12 +472,11 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
         }
     }
 
-    private Object getAdaptable(Object adaptable, AnnotatedElement point) {
-        Via viaAnnotation = point.getAnnotation(Via.class);
-        if (viaAnnotation == null) {
+    private Object getAdaptable(Object adaptable, InjectableElement point) {
+        String viaPropertyName = point.getVia();
+        if (viaPropertyName == null) {
             return adaptable;
         }
-        String viaPropertyName = viaAnnotation.value();
         try {
             return PropertyUtils.getProperty(adaptable, viaPropertyName);
         } catch (Exception e) {
@@ -509,120 +485,54 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
         }
     }
 
-    private String getName(Field field) {
-        Named named = field.getAnnotation(Named.class);
-        if (named != null) {
-            return named.value();
-        }
-        return field.getName();
-    }
-
-    private String getName(Method method) {
-        Named named = method.getAnnotation(Named.class);
-        if (named != null) {
-            return named.value();
-        }
-        String methodName = method.getName();
-        if (methodName.startsWith("get")) {
-            return methodName.substring(3, 4).toLowerCase() + methodName.substring(4);
-        } else if (methodName.startsWith("is")) {
-            return methodName.substring(2, 3).toLowerCase() + methodName.substring(3);
-        } else {
-            return methodName;
-        }
-    }
-
-    private void invokePostConstruct(Object object) throws Exception {
-        Class<?> clazz = object.getClass();
-        List<Method> postConstructMethods = new ArrayList<Method>();
-        while (clazz != null) {
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                if (method.isAnnotationPresent(PostConstruct.class)) {
-                    postConstructMethods.add(method);
-                }
-            }
-            clazz = clazz.getSuperclass();
-        }
-        Collections.reverse(postConstructMethods);
-        for (Method method : postConstructMethods) {
-            boolean accessible = method.isAccessible();
-            try {
-                if (!accessible) {
-                    method.setAccessible(true);
-                }
-                method.invoke(object);
-            } finally {
-                if (!accessible) {
-                    method.setAccessible(false);
-                }
+    private void invokePostConstruct(Object object, ModelDescriptor descriptor) throws Exception {
+        Method[] methods = descriptor.getPostConstructMethods();
+        for (int i = 0; i < methods.length; i++) {
+            if (descriptor.isGeneratedPostConstructMethod(i)) {
+                descriptor.getAccessor().invokePostConstruct(object, i);
+            } else {
+                methods[i].invoke(object);
             }
         }
     }
 
-    private Type mapPrimitiveClasses(Type type) {
-        if (type == Integer.TYPE) {
-            return Integer.class;
-        }
-        if (type == Long.TYPE) {
-            return Long.class;
-        }
-        if (type == Boolean.TYPE) {
-            return Boolean.class;
-        }
-        if (type == Double.TYPE) {
-            return Double.class;
-        }
-        if (type == Float.TYPE) {
-            return Float.class;
-        }
-        if (type == Short.TYPE) {
-            return Short.class;
-        }
-        if (type == Character.TYPE) {
-            return Character.class;
-        }
-
-        return type;
-    }
-
-    private boolean setField(Field field, Object createdObject, Object value) {
+    private boolean setField(ModelDescriptor descriptor, int index, Object createdObject, Object value) {
+        InjectableElement field = descriptor.getInjectableElements()[index];
         if (value != null) {
-            if (!isAcceptableType(field.getType(), value) && value instanceof Adaptable) {
-                value = ((Adaptable) value).adaptTo(field.getType());
+            if (!isAcceptableType(field.getRawType(), value) && value instanceof Adaptable) {
+                value = ((Adaptable) value).adaptTo(field.getRawType());
                 if (value == null) {
                     return false;
                 }
             }
-            boolean accessible = field.isAccessible();
             try {
-                if (!accessible) {
-                    field.setAccessible(true);
+                // primitive fields are set reflectively if widening is required
+                if (descriptor.isGeneratedField(index)
+                        && (!field.getRawType().isPrimitive() || isAcceptableType(field.getRawType(), value))) {
+                    descriptor.getAccessor().setField(createdObject, index, value);
+                } else {
+                    // accessible since collected by the descriptor
+                    ((Field) field.getElement()).set(createdObject, value);
                 }
-                field.set(createdObject, value);
                 return true;
             } catch (Exception e) {
                 log.error("unable to inject field", e);
                 return false;
-            } finally {
-                if (!accessible) {
-                    field.setAccessible(false);
-                }
             }
         } else {
             return false;
         }
     }
 
-    private boolean setMethod(Method method, Map<Method, Object> methods, Object value) {
+    private boolean setMethod(InjectableElement method, Object[] values, int index, Object value) {
         if (value != null) {
-            if (!isAcceptableType(method.getReturnType(), value) && value instanceof Adaptable) {
-                value = ((Adaptable) value).adaptTo(method.getReturnType());
+            if (!isAcceptableType(method.getRawType(), value) && value instanceof Adaptable) {
+                value = ((Adaptable) value).adaptTo(method.getRawType());
                 if (value == null) {
                     return false;
                 }
             }
-            methods.put(method, value);
+            values[index] = value;
             return true;
         } else {
             return false;
@@ -662,6 +572,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
     @Activate
     protected void activate(final ComponentContext ctx) {
         BundleContext bundleContext = ctx.getBundleContext();
+        Dictionary<?, ?> props = ctx.getProperties();
+        this.generatedInjection = props != null
+                && PropertiesUtil.toBoolean(props.get(PROP_GENERATED_INJECTION), DEFAULT_GENERATED_INJECTION);
         this.queue = new ReferenceQueue<Object>();
         this.disposalCallbacks = new ConcurrentHashMap<java.lang.ref.Reference<Object>, DisposalCallbackRegistryImpl>();
         Hashtable<Object, Object> properties = new Hashtable<Object, Object>();
@@ -689,6 +602,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable {
     @Deactivate
     protected void deactivate() {
         this.listener.unregisterAll();
+        this.descriptors.clear();
         if (jobRegistration != null) {
             jobRegistration.unregister();
             jobRegistration = null;
@@ -0,0 +1,429 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates the {@link GeneratedModelAccessor} of a model type, which
+ * creates and populates the models with plain bytecode instead of
+ * reflection, and for model interfaces a class implementing the interface
+ * instead of a <code>java.lang.reflect.Proxy</code>.
+ * <p>
+ * Generated code can only access public members of public classes, as it
+ * is defined by a class loader of its own: the model descriptor checks
+ * this with the <code>isAccessible</code> methods and keeps using
+ * reflection for the other members.
+ */
+final class ModelClassGenerator implements Opcodes {
+
+    private static final String ACCESSOR_SUFFIX = "$$SlingModelAccessor";
+
+    private static final String IMPLEMENTATION_SUFFIX = "$$SlingModel";
+
+    private static final String ACCESSOR_BASE = Type.getInternalName(GeneratedModelAccessor.class);
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+
+    private static final String VALUES_FIELD = "values";
+
+    private static final String VALUES_DESC = "[Ljava/lang/Object;";
+
+    private ModelClassGenerator() {
+    }
+
+    /**
+     * Generate the accessor of a model class.
+     *
+     * @param constructors the constructors by index, <code>null</code> for
+     *            an index without constructor
+     * @param fields the injectable fields by index, <code>null</code> for the
+     *            fields to set reflectively
+     * @param postConstructMethods the post construct methods by index,
+     *            <code>null</code> for the methods to invoke reflectively
+     */
+    static GeneratedModelAccessor generateClassAccessor(Class<?> type, Constructor<?>[] constructors,
+            Field[] fields, Method[] postConstructMethods) throws Exception {
+        String name = Type.getInternalName(type) + ACCESSOR_SUFFIX;
+        ClassWriter cw = startAccessor(name);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "newInstance", "(ILjava/lang/Object;)Ljava/lang/Object;",
+                null, null);
+        mv.visitCode();
+        Map<Integer, Label> labels = createLabels(constructors);
+        Label defaultLabel = visitSwitch(mv, 1, labels);
+        for (Map.Entry<Integer, Label> entry : labels.entrySet()) {
+            Constructor<?> constructor = constructors[entry.getKey()];
+            String owner = Type.getInternalName(constructor.getDeclaringClass());
+            mv.visitLabel(entry.getValue());
+            mv.visitTypeInsn(NEW, owner);
+            mv.visitInsn(DUP);
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length == 1) {
+                mv.visitVarInsn(ALOAD, 2);
+                convert(mv, parameterTypes[0]);
+            }
+            mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", Type.getConstructorDescriptor(constructor));
+            mv.visitInsn(ARETURN);
+        }
+        mv.visitLabel(defaultLabel);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKESPECIAL, ACCESSOR_BASE, "newInstance", "(ILjava/lang/Object;)Ljava/lang/Object;");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        labels = createLabels(fields);
+        if (!labels.isEmpty()) {
+            mv = cw.visitMethod(ACC_PUBLIC, "setField", "(Ljava/lang/Object;ILjava/lang/Object;)V", null, null);
+            mv.visitCode();
+            defaultLabel = visitSwitch(mv, 2, labels);
+            for (Map.Entry<Integer, Label> entry : labels.entrySet()) {
+                Field field = fields[entry.getKey()];
+                String owner = Type.getInternalName(field.getDeclaringClass());
+                mv.visitLabel(entry.getValue());
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, owner);
+                mv.visitVarInsn(ALOAD, 3);
+                convert(mv, field.getType());
+                mv.visitFieldInsn(PUTFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(defaultLabel);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKESPECIAL, ACCESSOR_BASE, "setField", "(Ljava/lang/Object;ILjava/lang/Object;)V");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        labels = createLabels(postConstructMethods);
+        if (!labels.isEmpty()) {
+            mv = cw.visitMethod(ACC_PUBLIC, "invokePostConstruct", "(Ljava/lang/Object;I)V", null, null);
+            mv.visitCode();
+            defaultLabel = visitSwitch(mv, 2, labels);
+            for (Map.Entry<Integer, Label> entry : labels.entrySet()) {
+                Method method = postConstructMethods[entry.getKey()];
+                String owner = Type.getInternalName(method.getDeclaringClass());
+                mv.visitLabel(entry.getValue());
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, owner);
+                mv.visitMethodInsn(INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+                int size = Type.getType(method.getReturnType()).getSize();
+                if (size > 0) {
+                    mv.visitInsn(size == 2 ? POP2 : POP);
+                }
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(defaultLabel);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitMethodInsn(INVOKESPECIAL, ACCESSOR_BASE, "invokePostConstruct", "(Ljava/lang/Object;I)V");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        GeneratedClassLoader loader = new GeneratedClassLoader(type);
+        return (GeneratedModelAccessor) loader.define(name, cw.toByteArray()).newInstance();
+    }
+
+    /**
+     * Generate the implementation of a model interface and its accessor.
+     * The methods of the implementation return the value with the index of
+     * the method in the injectable methods and the default value of the
+     * return type for the other methods of the interface.
+     *
+     * @param injectableMethods the injectable methods by index
+     */
+    static GeneratedModelAccessor generateInterfaceAccessor(Class<?> type, Method[] injectableMethods)
+            throws Exception {
+        Map<Method, Integer> indexes = new HashMap<Method, Integer>();
+        for (int i = 0; i < injectableMethods.length; i++) {
+            indexes.put(injectableMethods[i], i);
+        }
+
+        String implementationName = Type.getInternalName(type) + IMPLEMENTATION_SUFFIX;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, implementationName, null, OBJECT,
+                new String[] { Type.getInternalName(type) });
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, VALUES_FIELD, VALUES_DESC, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + VALUES_DESC + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, implementationName, VALUES_FIELD, VALUES_DESC);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        Set<String> signatures = new HashSet<String>();
+        for (Method method : type.getMethods()) {
+            String descriptor = Type.getMethodDescriptor(method);
+            Integer index = indexes.get(method);
+            if (Modifier.isStatic(method.getModifiers()) || !signatures.add(method.getName() + descriptor)
+                    || (index == null && isObjectMethod(method))) {
+                continue;
+            }
+            mv = cw.visitMethod(ACC_PUBLIC, method.getName(), descriptor, null, null);
+            mv.visitCode();
+            Class<?> returnType = method.getReturnType();
+            if (index != null) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, implementationName, VALUES_FIELD, VALUES_DESC);
+                push(mv, index);
+                mv.visitInsn(AALOAD);
+                if (returnType == Void.TYPE) {
+                    mv.visitInsn(POP);
+                } else if (returnType.isPrimitive()) {
+                    // a missing optional value is returned as the default value
+                    Label isNull = new Label();
+                    mv.visitInsn(DUP);
+                    mv.visitJumpInsn(IFNULL, isNull);
+                    convert(mv, returnType);
+                    mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+                    mv.visitLabel(isNull);
+                    mv.visitInsn(POP);
+                    pushDefault(mv, returnType);
+                } else {
+                    convert(mv, returnType);
+                }
+            } else {
+                pushDefault(mv, returnType);
+            }
+            mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        byte[] implementation = cw.toByteArray();
+
+        String name = Type.getInternalName(type) + ACCESSOR_SUFFIX;
+        cw = startAccessor(name);
+        mv = cw.visitMethod(ACC_PUBLIC, "newInterfaceInstance", "(" + VALUES_DESC + ")Ljava/lang/Object;", null,
+                null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, implementationName);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, implementationName, "<init>", "(" + VALUES_DESC + ")V");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        GeneratedClassLoader loader = new GeneratedClassLoader(type);
+        loader.define(implementationName, implementation);
+        return (GeneratedModelAccessor) loader.define(name, cw.toByteArray()).newInstance();
+    }
+
+    /**
+     * @return <code>true</code> if generated code can refer to the class
+     */
+    static boolean isAccessible(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        return clazz.isPrimitive() || Modifier.isPublic(clazz.getModifiers());
+    }
+
+    /**
+     * @return <code>true</code> if generated code can set the field
+     */
+    static boolean isAccessible(Field field) {
+        int modifiers = field.getModifiers();
+        return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+                && isAccessible(field.getDeclaringClass()) && isAccessible(field.getType());
+    }
+
+    /**
+     * @return <code>true</code> if generated code can invoke the method without parameters
+     */
+    static boolean isAccessible(Method method) {
+        int modifiers = method.getModifiers();
+        return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers)
+                && method.getParameterTypes().length == 0 && isAccessible(method.getDeclaringClass());
+    }
+
+    private static ClassWriter startAccessor(String name) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, ACCESSOR_BASE, null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, ACCESSOR_BASE, "<init>", "()V");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return cw;
+    }
+
+    private static Map<Integer, Label> createLabels(Object[] members) {
+        Map<Integer, Label> labels = new TreeMap<Integer, Label>();
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] != null) {
+                labels.put(i, new Label());
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Switch on the int local variable to the labels.
+     *
+     * @return the label of the default case
+     */
+    private static Label visitSwitch(MethodVisitor mv, int var, Map<Integer, Label> labels) {
+        Label defaultLabel = new Label();
+        int[] keys = new int[labels.size()];
+        Label[] targets = new Label[labels.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Label> entry : labels.entrySet()) {
+            keys[i] = entry.getKey();
+            targets[i] = entry.getValue();
+            i++;
+        }
+        mv.visitVarInsn(ILOAD, var);
+        mv.visitLookupSwitchInsn(defaultLabel, keys, targets);
+        return defaultLabel;
+    }
+
+    /**
+     * Cast the object on the stack to the type, unboxing primitive types.
+     */
+    private static void convert(MethodVisitor mv, Class<?> type) {
+        if (type.isPrimitive()) {
+            Class<?> wrapper = getWrapper(type);
+            String owner = Type.getInternalName(wrapper);
+            mv.visitTypeInsn(CHECKCAST, owner);
+            mv.visitMethodInsn(INVOKEVIRTUAL, owner, type.getName() + "Value", "()" + Type.getDescriptor(type));
+        } else if (type != Object.class) {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+        }
+    }
+
+    private static void pushDefault(MethodVisitor mv, Class<?> type) {
+        if (type == Void.TYPE) {
+            return;
+        } else if (type == Long.TYPE) {
+            mv.visitInsn(LCONST_0);
+        } else if (type == Float.TYPE) {
+            mv.visitInsn(FCONST_0);
+        } else if (type == Double.TYPE) {
+            mv.visitInsn(DCONST_0);
+        } else if (type.isPrimitive()) {
+            mv.visitInsn(ICONST_0);
+        } else {
+            mv.visitInsn(ACONST_NULL);
+        }
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> getWrapper(Class<?> type) {
+        if (type == Integer.TYPE) {
+            return Integer.class;
+        }
+        if (type == Long.TYPE) {
+            return Long.class;
+        }
+        if (type == Boolean.TYPE) {
+            return Boolean.class;
+        }
+        if (type == Double.TYPE) {
+            return Double.class;
+        }
+        if (type == Float.TYPE) {
+            return Float.class;
+        }
+        if (type == Short.TYPE) {
+            return Short.class;
+        }
+        if (type == Byte.TYPE) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+
+    /**
+     * Defines the generated classes of a model type, resolving the model
+     * classes with the class loader of the model and the accessor base class
+     * with the class loader of this bundle.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader(Class<?> type) {
+            super(type.getClassLoader() == null ? ModelClassGenerator.class.getClassLoader() : type
+                    .getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (GeneratedModelAccessor.class.getName().equals(name)) {
+                return GeneratedModelAccessor.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String internalName, byte[] bytes) {
+            return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+        }
+    }
+}
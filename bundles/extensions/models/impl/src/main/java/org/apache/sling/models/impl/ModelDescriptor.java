@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.sling.models.annotations.Default;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.Optional;
+import org.apache.sling.models.annotations.Source;
+import org.apache.sling.models.annotations.Via;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The immutable injection metadata of a model class or interface: the
+ * adaptables, the injectable fields or methods with their annotations
+ * resolved, the usable constructors and the post construct methods.
+ * <p>
+ * Descriptors are created once per model type, when the model is
+ * registered, such that adapting only executes the precomputed steps.
+ * <p>
+ * If requested, the descriptor also holds a {@link GeneratedModelAccessor}
+ * to create and populate the models without reflection, see
+ * {@link ModelClassGenerator}.
+ */
+final class ModelDescriptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelDescriptor.class);
+
+    /**
+     * Comparator which sorts constructors by the number of parameters
+     * in reverse order (most params to least params).
+     */
+    private static class ParameterCountComparator implements Comparator<Constructor<?>> {
+
+        @Override
+        public int compare(Constructor<?> o1, Constructor<?> o2) {
+            return compare(o2.getParameterTypes().length, o1.getParameterTypes().length);
+        }
+
+        public int compare(int x, int y) {
+            return (x < y) ? -1 : ((x == y) ? 0 : 1);
+        }
+
+    }
+
+    /**
+     * An injectable field of a model class or method of a model interface.
+     */
+    static final class InjectableElement {
+
+        private final AnnotatedElement element;
+
+        private final String name;
+
+        private final Type type;
+
+        private final Class<?> rawType;
+
+        private final String source;
+
+        private final String via;
+
+        private final Default defaultAnnotation;
+
+        private final boolean optional;
+
+        private InjectableElement(Field field) {
+            this(field, ModelDescriptor.getName(field), field.getGenericType(), field.getType());
+        }
+
+        private InjectableElement(Method method) {
+            this(method, ModelDescriptor.getName(method), method.getGenericReturnType(), method.getReturnType());
+        }
+
+        private InjectableElement(AnnotatedElement element, String name, Type genericType, Class<?> rawType) {
+            this.element = element;
+            this.name = name;
+            this.type = mapPrimitiveClasses(genericType);
+            this.rawType = rawType;
+            Source sourceAnnotation = getAnnotation(element, Source.class);
+            this.source = sourceAnnotation == null ? null : sourceAnnotation.value();
+            Via viaAnnotation = element.getAnnotation(Via.class);
+            this.via = viaAnnotation == null ? null : viaAnnotation.value();
+            this.defaultAnnotation = element.getAnnotation(Default.class);
+            this.optional = element.getAnnotation(Optional.class) != null;
+        }
+
+        /**
+         * @return the field or method
+         */
+        AnnotatedElement getElement() {
+            return element;
+        }
+
+        /**
+         * @return the name to inject, from the {@link Named} annotation or
+         *         derived from the field or method name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the generic type to inject, primitives mapped to their wrappers
+         */
+        Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the declared type of the field or the return type of the method
+         */
+        Class<?> getRawType() {
+            return rawType;
+        }
+
+        /**
+         * @return the name of the injector from the {@link Source} annotation or <code>null</code>
+         */
+        String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the property of the adaptable to inject from or <code>null</code>
+         */
+        String getVia() {
+            return via;
+        }
+
+        Default getDefaultAnnotation() {
+            return defaultAnnotation;
+        }
+
+        boolean isOptional() {
+            return optional;
+        }
+
+        @Override
+        public String toString() {
+            return element.toString();
+        }
+    }
+
+    private final Class<?> type;
+
+    private final Class<?>[] adaptables;
+
+    private final InjectableElement[] injectableElements;
+
+    private final boolean hasPublicConstructor;
+
+    private final Constructor<?>[] adaptableConstructors;
+
+    private final Class<?>[] adaptableConstructorTypes;
+
+    private final Constructor<?> defaultConstructor;
+
+    private final Method[] postConstructMethods;
+
+    private final GeneratedModelAccessor accessor;
+
+    private final boolean[] generatedFields;
+
+    private final boolean[] generatedPostConstructMethods;
+
+    private ModelDescriptor(Class<?> type, Model modelAnnotation, boolean generate) {
+        this.type = type;
+        this.adaptables = modelAnnotation.adaptables();
+        if (type.isInterface()) {
+            this.injectableElements = collectInjectableMethods(type);
+            this.hasPublicConstructor = false;
+            this.adaptableConstructors = new Constructor<?>[0];
+            this.adaptableConstructorTypes = new Class<?>[0];
+            this.defaultConstructor = null;
+            this.postConstructMethods = new Method[0];
+            this.generatedFields = new boolean[0];
+            this.generatedPostConstructMethods = new boolean[0];
+            this.accessor = generate ? generateInterfaceAccessor() : null;
+        } else {
+            this.injectableElements = collectInjectableFields(type);
+
+            Constructor<?>[] constructors = type.getConstructors();
+            this.hasPublicConstructor = constructors.length > 0;
+
+            // sort the constructor list in order from most params to least params
+            Arrays.sort(constructors, new ParameterCountComparator());
+
+            List<Constructor<?>> singleParamConstructors = new ArrayList<Constructor<?>>();
+            Constructor<?> noParamConstructor = null;
+            for (Constructor<?> constructor : constructors) {
+                final Class<?>[] paramTypes = constructor.getParameterTypes();
+                if (paramTypes.length == 1) {
+                    singleParamConstructors.add(constructor);
+                } else if (paramTypes.length == 0) {
+                    noParamConstructor = constructor;
+                    break;
+                }
+            }
+            this.adaptableConstructors = singleParamConstructors.toArray(new Constructor<?>[singleParamConstructors
+                    .size()]);
+            this.adaptableConstructorTypes = new Class<?>[adaptableConstructors.length];
+            for (int i = 0; i < adaptableConstructors.length; i++) {
+                adaptableConstructorTypes[i] = adaptableConstructors[i].getParameterTypes()[0];
+            }
+            this.defaultConstructor = noParamConstructor;
+            this.postConstructMethods = collectPostConstructMethods(type);
+            this.generatedFields = new boolean[injectableElements.length];
+            this.generatedPostConstructMethods = new boolean[postConstructMethods.length];
+            this.accessor = generate ? generateClassAccessor() : null;
+        }
+    }
+
+    private GeneratedModelAccessor generateInterfaceAccessor() {
+        if (!ModelClassGenerator.isAccessible(type)) {
+            log.debug("Not generating an implementation of the non public model interface {}", type);
+            return null;
+        }
+        Method[] methods = new Method[injectableElements.length];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = (Method) injectableElements[i].getElement();
+            if (!ModelClassGenerator.isAccessible(methods[i].getReturnType())) {
+                log.debug("Not generating an implementation of the model interface {} returning a non public type",
+                        type);
+                return null;
+            }
+        }
+        try {
+            return ModelClassGenerator.generateInterfaceAccessor(type, methods);
+        } catch (Throwable t) {
+            log.warn("Unable to generate the implementation of model interface " + type.getName()
+                    + ", using a proxy", t);
+            return null;
+        }
+    }
+
+    private GeneratedModelAccessor generateClassAccessor() {
+        if (!ModelClassGenerator.isAccessible(type) || Modifier.isAbstract(type.getModifiers())) {
+            log.debug("Not generating an accessor for the non public or abstract model class {}", type);
+            return null;
+        }
+        Constructor<?>[] constructors = new Constructor<?>[adaptableConstructors.length + 1];
+        for (int i = 0; i < adaptableConstructors.length; i++) {
+            if (!ModelClassGenerator.isAccessible(adaptableConstructorTypes[i])) {
+                log.debug("Not generating an accessor for the model class {} with a non public constructor parameter",
+                        type);
+                return null;
+            }
+            constructors[i] = adaptableConstructors[i];
+        }
+        constructors[adaptableConstructors.length] = defaultConstructor;
+
+        Field[] fields = new Field[injectableElements.length];
+        for (int i = 0; i < fields.length; i++) {
+            Field field = (Field) injectableElements[i].getElement();
+            if (ModelClassGenerator.isAccessible(field)) {
+                fields[i] = field;
+            }
+        }
+        Method[] methods = new Method[postConstructMethods.length];
+        for (int i = 0; i < methods.length; i++) {
+            if (ModelClassGenerator.isAccessible(postConstructMethods[i])) {
+                methods[i] = postConstructMethods[i];
+            }
+        }
+        try {
+            GeneratedModelAccessor generated = ModelClassGenerator.generateClassAccessor(type, constructors, fields,
+                    methods);
+            for (int i = 0; i < fields.length; i++) {
+                generatedFields[i] = fields[i] != null;
+            }
+            for (int i = 0; i < methods.length; i++) {
+                generatedPostConstructMethods[i] = methods[i] != null;
+            }
+            return generated;
+        } catch (Throwable t) {
+            log.warn("Unable to generate the accessor of model class " + type.getName() + ", using reflection", t);
+            return null;
+        }
+    }
+
+    /**
+     * Create the descriptor of a model type.
+     *
+     * @return the descriptor or <code>null</code> if the type is not annotated with {@link Model}
+     */
+    static ModelDescriptor create(Class<?> type) {
+        return create(type, false);
+    }
+
+    /**
+     * Create the descriptor of a model type.
+     *
+     * @param generate whether to generate the {@link GeneratedModelAccessor}
+     * @return the descriptor or <code>null</code> if the type is not annotated with {@link Model}
+     */
+    static ModelDescriptor create(Class<?> type, boolean generate) {
+        Model modelAnnotation = type.getAnnotation(Model.class);
+        if (modelAnnotation == null) {
+            return null;
+        }
+        return new ModelDescriptor(type, modelAnnotation, generate);
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return <code>true</code> if the object is an instance of one of the
+     *         adaptables declared by the model
+     */
+    boolean isAdaptable(Object adaptable) {
+        for (Class<?> clazz : adaptables) {
+            if (clazz.isInstance(adaptable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the injectable fields of a model class or the injectable
+     *         methods of a model interface; the fields are accessible
+     */
+    InjectableElement[] getInjectableElements() {
+        return injectableElements;
+    }
+
+    boolean hasPublicConstructor() {
+        return hasPublicConstructor;
+    }
+
+    /**
+     * Get the index of the constructor to create the model for the
+     * adaptable: the public constructor with the most specific single
+     * parameter accepting the adaptable or else the public no-arg
+     * constructor.
+     *
+     * @return the index or -1 if there is no usable constructor
+     */
+    int getConstructorIndex(Object adaptable) {
+        for (int i = 0; i < adaptableConstructors.length; i++) {
+            if (adaptableConstructorTypes[i].isInstance(adaptable)) {
+                return i;
+            }
+        }
+        return defaultConstructor == null ? -1 : adaptableConstructors.length;
+    }
+
+    /**
+     * @param index the index returned by {@link #getConstructorIndex(Object)}
+     */
+    Constructor<?> getConstructor(int index) {
+        return index < adaptableConstructors.length ? adaptableConstructors[index] : defaultConstructor;
+    }
+
+    /**
+     * @return the generated accessor or <code>null</code> if the model is
+     *         created and populated reflectively
+     */
+    GeneratedModelAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return <code>true</code> if the generated accessor sets the
+     *         injectable field with the index
+     */
+    boolean isGeneratedField(int index) {
+        return generatedFields[index];
+    }
+
+    /**
+     * @return <code>true</code> if the generated accessor invokes the post
+     *         construct method with the index
+     */
+    boolean isGeneratedPostConstructMethod(int index) {
+        return generatedPostConstructMethods[index];
+    }
+
+    /**
+     * @return the accessible {@link PostConstruct} methods, superclass methods first
+     */
+    Method[] getPostConstructMethods() {
+        return postConstructMethods;
+    }
+
+    private static InjectableElement[] collectInjectableFields(Class<?> type) {
+        List<InjectableElement> result = new ArrayList<InjectableElement>();
+        while (type != null) {
+            Field[] fields = type.getDeclaredFields();
+            for (Field field : fields) {
+                Inject injection = field.getAnnotation(Inject.class);
+                if (injection != null) {
+                    makeAccessible(field);
+                    result.add(new InjectableElement(field));
+                }
+            }
+            type = type.getSuperclass();
+        }
+        return result.toArray(new InjectableElement[result.size()]);
+    }
+
+    private static InjectableElement[] collectInjectableMethods(Class<?> type) {
+        List<InjectableElement> result = new ArrayList<InjectableElement>();
+        while (type != null) {
+            Method[] methods = type.getDeclaredMethods();
+            for (Method method : methods) {
+                Inject injection = method.getAnnotation(Inject.class);
+                if (injection != null) {
+                    result.add(new InjectableElement(method));
+                }
+            }
+            type = type.getSuperclass();
+        }
+        return result.toArray(new InjectableElement[result.size()]);
+    }
+
+    private static Method[] collectPostConstructMethods(Class<?> type) {
+        Class<?> clazz = type;
+        List<Method> postConstructMethods = new ArrayList<Method>();
+        while (clazz != null) {
+            Method[] methods = clazz.getDeclaredMethods();
+            for (Method method : methods) {
+                if (method.isAnnotationPresent(PostConstruct.class)) {
+                    makeAccessible(method);
+                    postConstructMethods.add(method);
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        Collections.reverse(postConstructMethods);
+        return postConstructMethods.toArray(new Method[postConstructMethods.size()]);
+    }
+
+    /**
+     * The fields and methods are copies private to the descriptor, so they
+     * are made accessible once instead of on every injection.
+     */
+    private static void makeAccessible(AccessibleObject object) {
+        if (!object.isAccessible()) {
+            object.setAccessible(true);
+        }
+    }
+
+    /**
+     * Get an annotation from either the element itself or on any of the
+     * element's annotations (meta-annotations).
+     * 
+     * @param element the element
+     * @param annotationClass the annotation class
+     * @return the found annotation or null
+     */
+    private static <T extends Annotation> T getAnnotation(AnnotatedElement element, Class<T> annotationClass) {
+        T annotation = element.getAnnotation(annotationClass);
+        if (annotation != null) {
+            return annotation;
+        } else {
+            for (Annotation ann : element.getAnnotations()) {
+                annotation = ann.annotationType().getAnnotation(annotationClass);
+                if (annotation != null) {
+                    return annotation;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String getName(Field field) {
+        Named named = field.getAnnotation(Named.class);
+        if (named != null) {
+            return named.value();
+        }
+        return field.getName();
+    }
+
+    private static String getName(Method method) {
+        Named named = method.getAnnotation(Named.class);
+        if (named != null) {
+            return named.value();
+        }
+        String methodName = method.getName();
+        if (methodName.startsWith("get")) {
+            return methodName.substring(3, 4).toLowerCase() + methodName.substring(4);
+        } else if (methodName.startsWith("is")) {
+            return methodName.substring(2, 3).toLowerCase() + methodName.substring(3);
+        } else {
+            return methodName;
+        }
+    }
+
+    private static Type mapPrimitiveClasses(Type type) {
+        if (type == Integer.TYPE) {
+            return Integer.class;
+        }
+        if (type == Long.TYPE) {
+            return Long.class;
+        }
+        if (type == Boolean.TYPE) {
+            return Boolean.class;
+        }
+        if (type == Double.TYPE) {
+            return Double.class;
+        }
+        if (type == Float.TYPE) {
+            return Float.class;
+        }
+        if (type == Short.TYPE) {
+            return Short.class;
+        }
+        if (type == Character.TYPE) {
+            return Character.class;
+        }
+
+        return type;
+    }
+}
@@ -46,9 +46,25 @@ public class ModelPackageBundleListener implements BundleTrackerCustomizer {
 
     private final BundleTracker bundleTracker;
 
-    private final AdapterFactory factory;
+    private final ModelAdapterFactory factory;
+
+    /**
+     * The adapter factory registrations and the models of a bundle, whose
+     * descriptors are dropped when the bundle is stopped or updated.
+     */
+    private static class BundleModels {
+
+        private final ServiceRegistration[] registrations;
+
+        private final Class<?>[] modelClasses;
+
+        BundleModels(List<ServiceRegistration> registrations, List<Class<?>> modelClasses) {
+            this.registrations = registrations.toArray(new ServiceRegistration[registrations.size()]);
+            this.modelClasses = modelClasses.toArray(new Class<?>[modelClasses.size()]);
+        }
+    }
     
-    public ModelPackageBundleListener(BundleContext bundleContext, AdapterFactory factory) {
+    public ModelPackageBundleListener(BundleContext bundleContext, ModelAdapterFactory factory) {
         this.bundleContext = bundleContext;
         this.factory = factory;
         this.bundleTracker = new BundleTracker(bundleContext, Bundle.ACTIVE, this);
@@ -58,6 +74,7 @@ public class ModelPackageBundleListener implements BundleTrackerCustomizer {
     @Override
     public Object addingBundle(Bundle bundle, BundleEvent event) {
 List<ServiceRegistration> regs = new ArrayList<ServiceRegistration>();
+        List<Class<?>> modelClasses = new ArrayList<Class<?>>();
         
         Dictionary<?, ?> headers = bundle.getHeaders();
         String packageList = PropertiesUtil.toString(headers.get(HEADER), null);
@@ -76,6 +93,13 @@ List<ServiceRegistration> regs = new ArrayList<ServiceRegistration>();
                         Class<?> clazz = bundle.loadClass(className);
                         Model annotation = clazz.getAnnotation(Model.class);
                         if (annotation != null) {
+                            // build the injection metadata once instead of on each adaptation
+                            try {
+                                factory.registerModel(clazz);
+                                modelClasses.add(clazz);
+                            } catch (LinkageError e) {
+                                log.warn("Unable to collect the injection points of model " + className, e);
+                            }
                             Class<?>[] adaptables = annotation.adaptables();
                             String[] classNames = toStringArray(adaptables);
                             Dictionary<String, Object> registrationProps = new Hashtable<String, Object>();
@@ -92,7 +116,7 @@ List<ServiceRegistration> regs = new ArrayList<ServiceRegistration>();
                 }
             }
         }
-        return regs.toArray(new ServiceRegistration[0]);
+        return new BundleModels(regs, modelClasses);
     }
 
     @Override
@@ -101,10 +125,14 @@ List<ServiceRegistration> regs = new ArrayList<ServiceRegistration>();
 
     @Override
     public void removedBundle(Bundle bundle, BundleEvent event, Object object) {
-        if (object instanceof ServiceRegistration[]) {
-            for (ServiceRegistration reg : (ServiceRegistration[]) object) {
+        if (object instanceof BundleModels) {
+            BundleModels models = (BundleModels) object;
+            for (ServiceRegistration reg : models.registrations) {
                 reg.unregister();
             }
+            for (Class<?> modelClass : models.modelClasses) {
+                factory.unregisterModel(modelClass);
+            }
         }
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.models.impl.injectors.ChildResourceInjector;
+import org.apache.sling.models.impl.injectors.ValueMapInjector;
+import org.apache.sling.models.testmodels.classes.PublicFieldModel;
+import org.apache.sling.models.testmodels.classes.SimplePropertyModel;
+import org.apache.sling.models.testmodels.interfaces.ChildResourceModel;
+import org.apache.sling.models.testmodels.interfaces.ResourceModelWithRequiredField;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.ComponentContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeneratedInjectionTest {
+
+    @Mock
+    private ComponentContext componentCtx;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    private ModelAdapterFactory factory;
+
+    @Before
+    public void setup() {
+        Hashtable<Object, Object> properties = new Hashtable<Object, Object>();
+        properties.put("models.generated.injection", Boolean.TRUE);
+        when(componentCtx.getBundleContext()).thenReturn(bundleContext);
+        when(componentCtx.getProperties()).thenReturn(properties);
+        factory = new ModelAdapterFactory();
+        factory.activate(componentCtx);
+        factory.bindInjector(new ValueMapInjector(),
+                Collections.<String, Object> singletonMap(Constants.SERVICE_ID, 1L));
+        factory.bindInjector(new ChildResourceInjector(),
+                Collections.<String, Object> singletonMap(Constants.SERVICE_ID, 0L));
+        factory.registerModel(PublicFieldModel.class);
+        factory.registerModel(SimplePropertyModel.class);
+        factory.registerModel(org.apache.sling.models.testmodels.interfaces.SimplePropertyModel.class);
+        factory.registerModel(ChildResourceModel.class);
+        factory.registerModel(ResourceModelWithRequiredField.class);
+    }
+
+    @Test
+    public void testPublicFieldModel() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("first", "first-value");
+        map.put("third", "third-value");
+        map.put("intProperty", new Integer(3));
+        map.put("privateProperty", "private-value");
+        Resource res = mockResource(map);
+
+        assertNotNull(factory.getDescriptor(PublicFieldModel.class).getAccessor());
+
+        PublicFieldModel model = factory.getAdapter(res, PublicFieldModel.class);
+        assertNotNull(model);
+        assertEquals(res, model.getResource());
+        assertEquals("first-value", model.first);
+        assertNull(model.second);
+        assertEquals("third-value", model.thirdProperty);
+        assertEquals(3, model.intProperty);
+        assertEquals("default-value", model.defaultProperty);
+        assertEquals("private-value", model.getPrivateProperty());
+        assertTrue(model.postConstructCalled);
+    }
+
+    @Test
+    public void testPrivateFieldModel() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("first", "first-value");
+        map.put("third", "third-value");
+        map.put("intProperty", new Integer(3));
+        map.put("arrayProperty", new String[] { "three", "four" });
+        Resource res = mockResource(map);
+
+        SimplePropertyModel model = factory.getAdapter(res, SimplePropertyModel.class);
+        assertNotNull(model);
+        assertEquals("first-value", model.getFirst());
+        assertNull(model.getSecond());
+        assertEquals("third-value", model.getThirdProperty());
+        assertEquals(3, model.getIntProperty());
+        assertArrayEquals(new String[] { "three", "four" }, model.getArrayProperty());
+        assertTrue(model.isPostConstructCalled());
+    }
+
+    @Test
+    public void testInterfaceModel() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("first", "first-value");
+        map.put("third", "third-value");
+        map.put("fourth", true);
+        Resource res = mockResource(map);
+
+        org.apache.sling.models.testmodels.interfaces.SimplePropertyModel model = factory.getAdapter(res,
+                org.apache.sling.models.testmodels.interfaces.SimplePropertyModel.class);
+        assertNotNull(model);
+        assertFalse(Proxy.isProxyClass(model.getClass()));
+        assertEquals("first-value", model.getFirst());
+        assertNull(model.getSecond());
+        assertEquals("third-value", model.getThirdProperty());
+        assertTrue(model.isFourth());
+    }
+
+    @Test
+    public void testInterfaceModelWithMissingPrimitive() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("first", "first-value");
+        map.put("third", "third-value");
+        Resource res = mockResource(map);
+
+        // a required primitive which can not be injected
+        assertNull(factory.getAdapter(res, org.apache.sling.models.testmodels.interfaces.SimplePropertyModel.class));
+        assertNull(factory.getAdapter(res, ResourceModelWithRequiredField.class));
+    }
+
+    @Test
+    public void testInterfaceChildResource() {
+        Resource child = mock(Resource.class);
+
+        Resource res = mock(Resource.class);
+        when(res.getChild("firstChild")).thenReturn(child);
+
+        ChildResourceModel model = factory.getAdapter(res, ChildResourceModel.class);
+        assertNotNull(model);
+        assertFalse(Proxy.isProxyClass(model.getClass()));
+        assertEquals(child, model.getFirstChild());
+    }
+
+    private Resource mockResource(Map<String, Object> map) {
+        ValueMap vm = new ValueMapDecorator(map);
+        Resource res = mock(Resource.class);
+        when(res.adaptTo(ValueMap.class)).thenReturn(vm);
+        return res;
+    }
+}
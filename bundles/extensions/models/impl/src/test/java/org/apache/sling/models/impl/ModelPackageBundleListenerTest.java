@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.sling.models.testmodels.classes.SimplePropertyModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ModelPackageBundleListenerTest {
+
+    @Mock
+    private ComponentContext componentCtx;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundle;
+
+    @Mock
+    private ServiceRegistration registration;
+
+    private ModelAdapterFactory factory;
+
+    private ModelPackageBundleListener listener;
+
+    @Before
+    public void setup() throws Exception {
+        when(componentCtx.getBundleContext()).thenReturn(bundleContext);
+        when(bundleContext.registerService(anyString(), anyObject(), any(Dictionary.class))).thenReturn(registration);
+
+        factory = new ModelAdapterFactory();
+        factory.activate(componentCtx);
+        listener = new ModelPackageBundleListener(bundleContext, factory);
+
+        Hashtable<String, Object> headers = new Hashtable<String, Object>();
+        headers.put("Sling-Model-Packages", "org.apache.sling.models.testmodels.classes");
+        when(bundle.getHeaders()).thenReturn(headers);
+        when(bundle.findEntries("/org/apache/sling/models/testmodels/classes", "*.class", true)).thenReturn(
+                Collections.enumeration(Collections.singletonList(new URL(
+                        "file:/org/apache/sling/models/testmodels/classes/SimplePropertyModel.class"))));
+        when(bundle.loadClass(anyString())).thenAnswer(new Answer<Class<?>>() {
+            @Override
+            public Class<?> answer(InvocationOnMock invocation) throws Throwable {
+                return Class.forName((String) invocation.getArguments()[0]);
+            }
+        });
+    }
+
+    @Test
+    public void testDescriptorCachedWhileBundleActive() {
+        ModelDescriptor uncached = factory.getDescriptor(SimplePropertyModel.class);
+        assertNotNull(uncached);
+        assertNotSame(uncached, factory.getDescriptor(SimplePropertyModel.class));
+
+        Object models = listener.addingBundle(bundle, null);
+        ModelDescriptor cached = factory.getDescriptor(SimplePropertyModel.class);
+        assertSame(cached, factory.getDescriptor(SimplePropertyModel.class));
+        assertEquals(5, cached.getInjectableElements().length);
+        assertEquals(1, cached.getPostConstructMethods().length);
+
+        listener.removedBundle(bundle, null, models);
+        verify(registration).unregister();
+        assertNotSame(cached, factory.getDescriptor(SimplePropertyModel.class));
+    }
+
+    @Test
+    public void testNoDescriptorForNonModel() {
+        assertNull(factory.getDescriptor(String.class));
+        assertNull(factory.getAdapter(new Object(), String.class));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.testmodels.classes;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.models.annotations.Default;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.Optional;
+
+@Model(adaptables = Resource.class)
+public class PublicFieldModel {
+
+    private final Resource resource;
+
+    @Inject
+    public String first;
+
+    @Inject
+    @Optional
+    public String second;
+
+    @Inject
+    @Named("third")
+    public String thirdProperty;
+
+    @Inject
+    public int intProperty;
+
+    @Inject
+    @Default(values = "default-value")
+    public String defaultProperty;
+
+    @Inject
+    private String privateProperty;
+
+    public boolean postConstructCalled;
+
+    public PublicFieldModel(Resource resource) {
+        this.resource = resource;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public String getPrivateProperty() {
+        return privateProperty;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        postConstructCalled = true;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.it;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.junit.annotations.SlingAnnotationsTestRunner;
+import org.apache.sling.junit.annotations.TestReference;
+import org.apache.sling.models.it.models.PropertiesInterfaceModel;
+import org.apache.sling.models.it.models.PropertiesModel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the adaptation throughput of the reflective and the generated
+ * injection of the model adapter factory.
+ */
+@RunWith(SlingAnnotationsTestRunner.class)
+public class AdaptationBenchmarkTest {
+
+    private static final String FACTORY_PID = "org.apache.sling.models.impl.ModelAdapterFactory";
+
+    private static final String PROP_GENERATED_INJECTION = "models.generated.injection";
+
+    private static final int WARMUP_ADAPTATIONS = 10000;
+
+    private static final int ADAPTATIONS = 100000;
+
+    private static final long TIMEOUT = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @TestReference
+    private ResourceResolverFactory rrFactory;
+
+    @TestReference
+    private ConfigurationAdmin configAdmin;
+
+    @Test
+    public void testAdaptationThroughput() throws Exception {
+        String value = RandomStringUtils.randomAlphanumeric(10);
+
+        ResourceResolver resolver = null;
+        Node createdNode = null;
+        Configuration config = configAdmin.getConfiguration(FACTORY_PID, null);
+        try {
+            resolver = rrFactory.getAdministrativeResourceResolver(null);
+            Session session = resolver.adaptTo(Session.class);
+            Node rootNode = session.getRootNode();
+            createdNode = rootNode.addNode("test_" + RandomStringUtils.randomAlphanumeric(10));
+            createdNode.setProperty("testProperty", value);
+            createdNode.setProperty("longProperty", 42L);
+            session.save();
+
+            Resource resource = resolver.getResource(createdNode.getPath());
+
+            configure(config, resource, false);
+            long reflectiveClass = measure(resource, PropertiesModel.class, value);
+            long reflectiveInterface = measure(resource, PropertiesInterfaceModel.class, value);
+
+            configure(config, resource, true);
+            long generatedClass = measure(resource, PropertiesModel.class, value);
+            long generatedInterface = measure(resource, PropertiesInterfaceModel.class, value);
+
+            log.info("Class model adaptations per second: reflective {}, generated {}", reflectiveClass,
+                    generatedClass);
+            log.info("Interface model adaptations per second: proxy {}, generated {}", reflectiveInterface,
+                    generatedInterface);
+        } finally {
+            config.delete();
+            if (createdNode != null) {
+                createdNode.remove();
+                createdNode.getSession().save();
+            }
+            if (resolver != null) {
+                resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Update the configuration of the model adapter factory and wait for
+     * the restarted factory to adapt with the configured injection.
+     */
+    private void configure(Configuration config, Resource resource, boolean generated) throws Exception {
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(PROP_GENERATED_INJECTION, generated);
+        config.update(properties);
+
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < end) {
+            PropertiesInterfaceModel model = resource.adaptTo(PropertiesInterfaceModel.class);
+            if (model != null && Proxy.isProxyClass(model.getClass()) != generated) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Model adapter factory has not been reconfigured with generated injection " + generated);
+    }
+
+    /**
+     * @return the number of adaptations per second
+     */
+    private long measure(Resource resource, Class<?> type, String value) {
+        for (int i = 0; i < WARMUP_ADAPTATIONS; i++) {
+            check(resource.adaptTo(type), value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ADAPTATIONS; i++) {
+            check(resource.adaptTo(type), value);
+        }
+        long time = Math.max(1, System.nanoTime() - start);
+        return ADAPTATIONS * 1000000000L / time;
+    }
+
+    private void check(Object model, String value) {
+        assertNotNull("Model is null", model);
+        if (model instanceof PropertiesModel) {
+            PropertiesModel propertiesModel = (PropertiesModel) model;
+            assertEquals(value, propertiesModel.testProperty);
+            assertNull(propertiesModel.optionalProperty);
+            assertEquals(42L, propertiesModel.getLongProperty());
+        } else {
+            PropertiesInterfaceModel propertiesModel = (PropertiesInterfaceModel) model;
+            assertEquals(value, propertiesModel.getTestProperty());
+            assertNull(propertiesModel.getOptionalProperty());
+            assertEquals(42L, propertiesModel.getLongProperty());
+        }
+    }
+}
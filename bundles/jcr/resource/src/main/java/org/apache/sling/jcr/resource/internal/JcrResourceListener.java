@@ -20,12 +20,15 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -37,6 +40,9 @@ import org.apache.jackrabbit.api.observation.JackrabbitEvent;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.jmx.ObservationQueueMBean;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventProperties;
@@ -47,6 +53,10 @@ import org.slf4j.LoggerFactory;
  * The <code>JcrResourceListener</code> listens for JCR observation
  * events and creates resource events which are sent through the
  * OSGi event admin.
+ * <p>
+ * The OSGi events are queued in a bounded {@link OsgiEventQueue} merging
+ * changed events for the same path and dispatched by a single thread.
+ * No events are created for the configured excluded subtrees.
  */
 public class JcrResourceListener implements EventListener, Closeable {
 
@@ -59,26 +69,60 @@ public class JcrResourceListener implements EventListener, Closeable {
     /** Is the Jackrabbit event class available? */
     private final boolean hasJackrabbitEventClass;
 
+    /** Default maximum number of queued OSGi events. */
+    public static final int DEFAULT_QUEUE_SIZE = 100000;
+
+    /** Default time in milliseconds to wait for space in a full queue, 0 to never drop events. */
+    public static final long DEFAULT_QUEUE_TIMEOUT = 0;
+
+    /**
+     * The property of the changed event for the root path which is sent once
+     * the queue has space again after events have been dropped. Listeners
+     * receiving this event must reset any state derived from resource events.
+     */
+    public static final String PROPERTY_OVERFLOW = "event.overflow";
+
     /**
      * A queue of OSGi Events created by
-     * {@link #sendOsgiEvent(String, Event, String, EventAdmin, ChangedAttributes)}
+     * {@link #sendOsgiEvent(String, Map, String, ChangedAttributes)}
      * waiting for actual dispatching to the OSGi Event Admin in
      * {@link #processOsgiEventQueue()}
      */
-    private final LinkedBlockingQueue<Map<String, Object>> osgiEventQueue;
+    private final OsgiEventQueue osgiEventQueue;
+
+    /** The excluded subtrees, each ending with a slash. */
+    private final String[] excludedPrefixes;
+
+    /** Whether events are currently dropped as the queue is full. */
+    private volatile boolean dropping;
+
+    /** The registration of the queue statistics MBean. */
+    private ServiceRegistration mbeanRegistration;
 
     /** Helper object. */
     final ObservationListenerSupport support;
 
+    public JcrResourceListener(
+                    final String mountPrefix,
+                    final ObservationListenerSupport support)
+    throws RepositoryException {
+        this(mountPrefix, support, DEFAULT_QUEUE_SIZE, DEFAULT_QUEUE_TIMEOUT, null);
+    }
+
     /**
-     * Marker event for {@link #processOsgiEventQueue()} to be signaled to
-     * terminate processing Events.
+     * @param mountPrefix The path the repository is mounted at
+     * @param support The helper object
+     * @param queueSize The maximum number of OSGi events waiting to be dispatched
+     * @param queueTimeout The time in milliseconds to wait for space in a
+     *            full queue before dropping an event, 0 to never drop events
+     * @param excludedPaths The subtrees for which no events are created, may be <code>null</code>
      */
-    private final Map<String, Object> TERMINATE_PROCESSING = new HashMap<String, Object>(1);
-
     public JcrResourceListener(
                     final String mountPrefix,
-                    final ObservationListenerSupport support)
+                    final ObservationListenerSupport support,
+                    final int queueSize,
+                    final long queueTimeout,
+                    final String[] excludedPaths)
     throws RepositoryException {
         boolean foundClass = false;
         try {
@@ -95,7 +139,20 @@ public class JcrResourceListener implements EventListener, Closeable {
                         Event.NODE_ADDED|Event.NODE_REMOVED|Event.PROPERTY_ADDED|Event.PROPERTY_CHANGED|Event.PROPERTY_REMOVED,
                         "/", true, null, null, false);
 
-        this.osgiEventQueue = new LinkedBlockingQueue<Map<String,Object>>();
+        final List<String> prefixes = new ArrayList<String>();
+        if ( excludedPaths != null ) {
+            for(final String path : excludedPaths) {
+                if ( path != null && path.trim().length() > 0 ) {
+                    final String prefix = path.trim();
+                    prefixes.add(prefix.endsWith("/") ? prefix : prefix.concat("/"));
+                }
+            }
+        }
+        this.excludedPrefixes = prefixes.toArray(new String[prefixes.size()]);
+
+        this.osgiEventQueue = new OsgiEventQueue(queueSize, queueTimeout);
+        this.registerMBean(prefixes);
+
         final Thread oeqt = new Thread(new Runnable() {
             public void run() {
                 processOsgiEventQueue();
@@ -115,13 +172,44 @@ public class JcrResourceListener implements EventListener, Closeable {
             logger.warn("Unable to remove session listener: " + this, e);
         }
 
+        if ( this.mbeanRegistration != null ) {
+            this.mbeanRegistration.unregister();
+            this.mbeanRegistration = null;
+        }
+
         // drop any remaining OSGi Events not processed yet
-        this.osgiEventQueue.clear();
-        this.osgiEventQueue.offer(TERMINATE_PROCESSING);
+        this.osgiEventQueue.close();
 
         this.support.dispose();
     }
 
+    private void registerMBean(final List<String> excludedPaths) {
+        try {
+            final Dictionary<String, Object> props = new Hashtable<String, Object>();
+            props.put("jmx.objectname", "org.apache.sling:type=jcr,service=JcrResourceListener");
+            props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling JCR Resource Listener Queue Statistics");
+            props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+            final ObservationQueueMBean mbean = new ObservationQueueMBeanImpl(this.osgiEventQueue,
+                    excludedPaths.toArray(new String[excludedPaths.size()]));
+            this.mbeanRegistration = this.support.getBundleContext().registerService(
+                    ObservationQueueMBean.class.getName(), mbean, props);
+        } catch (final Throwable t) {
+            logger.warn("Unable to register JCR resource listener queue statistics MBean", t);
+        }
+    }
+
+    /**
+     * Check whether the path is in one of the excluded subtrees.
+     */
+    private boolean isExcluded(final String path) {
+        for(final String prefix : this.excludedPrefixes) {
+            if ( path.startsWith(prefix) || path.length() + 1 == prefix.length() && prefix.startsWith(path) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
      */
@@ -143,6 +231,9 @@ public class JcrResourceListener implements EventListener, Closeable {
                 } else {
                     eventPath = event.getPath();
                 }
+                if ( this.excludedPrefixes.length > 0 && this.isExcluded(eventPath) ) {
+                    continue;
+                }
                 if ( event.getType() == Event.PROPERTY_ADDED
                      || event.getType() == Event.PROPERTY_REMOVED
                      || event.getType() == Event.PROPERTY_CHANGED ) {
@@ -297,14 +388,38 @@ public class JcrResourceListener implements EventListener, Closeable {
         properties.put(SlingConstants.PROPERTY_PATH, path);
         properties.put(EventConstants.EVENT_TOPIC, topic);
 
+        // tell the listeners about the dropped events before any later event
+        if ( this.dropping ) {
+            if ( !this.osgiEventQueue.offer(createOverflowEvent()) ) {
+                return;
+            }
+            this.dropping = false;
+            logger.info("sendOsgiEvent: Queue has space again, sent overflow event after dropped events");
+        }
+
         // enqueue event for dispatching
-        this.osgiEventQueue.offer(properties);
+        if ( !this.osgiEventQueue.offer(properties) ) {
+            this.dropping = true;
+            logger.warn("sendOsgiEvent: Queue is full ({} events), dropping events starting with {}",
+                    this.osgiEventQueue.getMaxSize(), path);
+        }
+    }
+
+    /**
+     * Create the properties of the changed event for the root path marking
+     * that events have been dropped.
+     */
+    private Map<String, Object> createOverflowEvent() {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(SlingConstants.PROPERTY_PATH, this.mountPrefix == null ? "/" : this.mountPrefix);
+        properties.put(EventConstants.EVENT_TOPIC, SlingConstants.TOPIC_RESOURCE_CHANGED);
+        properties.put(PROPERTY_OVERFLOW, Boolean.TRUE);
+        return properties;
     }
 
     /**
      * Called by the Runnable.run method of the JCR Event Queue processor to
-     * process the {@link #osgiEventQueue} until the
-     * {@link #TERMINATE_PROCESSING} event is received.
+     * process the {@link #osgiEventQueue} until the queue is closed.
      */
     void processOsgiEventQueue() {
         while (true) {
@@ -316,7 +431,7 @@ public class JcrResourceListener implements EventListener, Closeable {
                 continue;
             }
 
-            if (event == null || event == TERMINATE_PROCESSING) {
+            if (event == null) {
                 break;
             }
 
@@ -379,8 +494,6 @@ public class JcrResourceListener implements EventListener, Closeable {
                 logger.warn("processOsgiEventQueue: Unexpected problem processing event " + event, e);
             }
         }
-
-        this.osgiEventQueue.clear();
     }
 
     private boolean isExternal(final Event event) {
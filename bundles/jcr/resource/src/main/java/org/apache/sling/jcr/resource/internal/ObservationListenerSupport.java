@@ -84,6 +84,10 @@ public class ObservationListenerSupport  {
         this.session.logout();
     }
 
+    public BundleContext getBundleContext() {
+        return this.bundleContext;
+    }
+
     public Session getSession() {
         return this.session;
     }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import org.apache.sling.jcr.resource.jmx.ObservationQueueMBean;
+
+/**
+ * The <code>ObservationQueueMBeanImpl</code> exposes the statistics of the
+ * {@link OsgiEventQueue} of the {@link JcrResourceListener}.
+ */
+class ObservationQueueMBeanImpl extends StandardMBean implements ObservationQueueMBean {
+
+    private final OsgiEventQueue queue;
+
+    private final String[] excludedPaths;
+
+    ObservationQueueMBeanImpl(final OsgiEventQueue queue, final String[] excludedPaths)
+    throws NotCompliantMBeanException {
+        super(ObservationQueueMBean.class);
+        this.queue = queue;
+        this.excludedPaths = excludedPaths;
+    }
+
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    public int getMaxQueueSize() {
+        return this.queue.getMaxSize();
+    }
+
+    public long getOldestEventAge() {
+        return this.queue.getOldestEventAge();
+    }
+
+    public long getProcessedEvents() {
+        return this.queue.getProcessedEvents();
+    }
+
+    public long getCoalescedEvents() {
+        return this.queue.getCoalescedEvents();
+    }
+
+    public long getDroppedEvents() {
+        return this.queue.getDroppedEvents();
+    }
+
+    public String[] getExcludedPaths() {
+        return this.excludedPaths.clone();
+    }
+
+    public void resetStatistics() {
+        this.queue.resetStatistics();
+    }
+}
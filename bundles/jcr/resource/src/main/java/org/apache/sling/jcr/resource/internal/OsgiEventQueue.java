@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.SlingConstants;
+import org.osgi.service.event.EventConstants;
+
+/**
+ * The <code>OsgiEventQueue</code> is the bounded queue of the properties of
+ * the OSGi events created by the {@link JcrResourceListener} waiting for
+ * being dispatched to the OSGi Event Admin.
+ * <p>
+ * A changed event for a path for which a changed event of the same origin
+ * is still queued is merged into the queued event: the added, changed and
+ * removed attributes are combined in the same way as for the events of a
+ * single observation event batch. A changed event is never merged into an
+ * event queued before an added or removed event for the same path or for a
+ * parent path, such that the order of the events for a path is kept.
+ * <p>
+ * If the queue is full, {@link #offer(Map)} waits for space. Dropping events
+ * is only enabled with a positive timeout: the event is dropped if there is
+ * still no space after waiting for this time.
+ */
+public class OsgiEventQueue {
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private static final String PROPERTY_APPLICATION = "event.application";
+
+    private final int maxSize;
+
+    private final long timeout;
+
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /** The queued changed events by path which other changed events may be merged into. */
+    private final TreeMap<String, Entry> pendingChanges = new TreeMap<String, Entry>();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private boolean closed;
+
+    /**
+     * @param maxSize The maximum number of queued events.
+     * @param timeout The time in milliseconds to wait for space if the queue
+     *            is full before dropping the event. With a timeout of 0 or less
+     *            events are never dropped.
+     */
+    public OsgiEventQueue(final int maxSize, final long timeout) {
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Add the properties of an event to the queue. The properties must
+     * contain the topic and the path of the event.
+     *
+     * @return <code>false</code> if the event has been dropped because the
+     *         queue is full or closed.
+     */
+    public synchronized boolean offer(final Map<String, Object> properties) {
+        if (this.closed) {
+            return false;
+        }
+        final String topic = (String) properties.get(EventConstants.EVENT_TOPIC);
+        final String path = (String) properties.get(SlingConstants.PROPERTY_PATH);
+        final boolean isChange = SlingConstants.TOPIC_RESOURCE_CHANGED.equals(topic);
+        if (isChange) {
+            final Entry pending = this.pendingChanges.get(path);
+            if (pending != null && isSameOrigin(pending.properties, properties)
+                    && !isOverflow(pending.properties) && !isOverflow(properties)) {
+                merge(pending.properties, properties);
+                this.coalesced.incrementAndGet();
+                return true;
+            }
+        } else if (!this.pendingChanges.isEmpty()) {
+            // later changes must not be merged into the changes queued before this event
+            this.pendingChanges.remove(path);
+            if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
+                this.pendingChanges.subMap(path.concat("/"), path.concat("0")).clear();
+            }
+        }
+
+        if (this.entries.size() >= this.maxSize) {
+            // without a timeout wait until there is space
+            final boolean dropping = this.timeout > 0;
+            final long end = System.currentTimeMillis() + this.timeout;
+            long wait = this.timeout;
+            while (this.entries.size() >= this.maxSize && !this.closed && (!dropping || wait > 0)) {
+                try {
+                    this.wait(dropping ? wait : 0);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                wait = end - System.currentTimeMillis();
+            }
+            if (this.entries.size() >= this.maxSize || this.closed) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+        final Entry entry = new Entry(properties);
+        this.entries.add(entry);
+        if (isChange) {
+            this.pendingChanges.put(path, entry);
+        }
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Remove the properties of the oldest event from the queue, waiting for
+     * an event if the queue is empty.
+     *
+     * @return The event properties or <code>null</code> if the queue has been closed.
+     */
+    public synchronized Map<String, Object> take() throws InterruptedException {
+        while (this.entries.isEmpty() && !this.closed) {
+            this.wait();
+        }
+        if (this.closed) {
+            return null;
+        }
+        final Entry entry = this.entries.removeFirst();
+        final String path = (String) entry.properties.get(SlingConstants.PROPERTY_PATH);
+        if (this.pendingChanges.get(path) == entry) {
+            this.pendingChanges.remove(path);
+        }
+        this.processed.incrementAndGet();
+        this.notifyAll();
+        return entry.properties;
+    }
+
+    /**
+     * Drop all queued events and release the waiting threads.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.entries.clear();
+        this.pendingChanges.clear();
+        this.notifyAll();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the time in milliseconds the oldest event is waiting or 0 if
+     * the queue is empty.
+     */
+    public synchronized long getOldestEventAge() {
+        if (this.entries.isEmpty()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - this.entries.getFirst().time;
+    }
+
+    public long getProcessedEvents() {
+        return this.processed.get();
+    }
+
+    public long getCoalescedEvents() {
+        return this.coalesced.get();
+    }
+
+    public long getDroppedEvents() {
+        return this.dropped.get();
+    }
+
+    public void resetStatistics() {
+        this.processed.set(0);
+        this.coalesced.set(0);
+        this.dropped.set(0);
+    }
+
+    private static boolean isSameOrigin(final Map<String, Object> a, final Map<String, Object> b) {
+        return equals(a.get(SlingConstants.PROPERTY_USERID), b.get(SlingConstants.PROPERTY_USERID))
+            && equals(a.get(PROPERTY_APPLICATION), b.get(PROPERTY_APPLICATION));
+    }
+
+    private static boolean isOverflow(final Map<String, Object> properties) {
+        return properties.containsKey(JcrResourceListener.PROPERTY_OVERFLOW);
+    }
+
+    private static boolean equals(final Object a, final Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Merge the attributes of a later changed event into the queued event.
+     */
+    private static void merge(final Map<String, Object> queued, final Map<String, Object> properties) {
+        final Set<String> added = getNames(queued, SlingConstants.PROPERTY_ADDED_ATTRIBUTES);
+        final Set<String> changed = getNames(queued, SlingConstants.PROPERTY_CHANGED_ATTRIBUTES);
+        final Set<String> removed = getNames(queued, SlingConstants.PROPERTY_REMOVED_ATTRIBUTES);
+        for (final String name : getNames(properties, SlingConstants.PROPERTY_ADDED_ATTRIBUTES)) {
+            removed.remove(name);
+            added.add(name);
+        }
+        for (final String name : getNames(properties, SlingConstants.PROPERTY_REMOVED_ATTRIBUTES)) {
+            added.remove(name);
+            removed.add(name);
+        }
+        changed.addAll(getNames(properties, SlingConstants.PROPERTY_CHANGED_ATTRIBUTES));
+        setNames(queued, SlingConstants.PROPERTY_ADDED_ATTRIBUTES, added);
+        setNames(queued, SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, changed);
+        setNames(queued, SlingConstants.PROPERTY_REMOVED_ATTRIBUTES, removed);
+    }
+
+    private static Set<String> getNames(final Map<String, Object> properties, final String key) {
+        final String[] names = (String[]) properties.get(key);
+        final Set<String> result = new LinkedHashSet<String>();
+        Collections.addAll(result, names == null ? NO_NAMES : names);
+        return result;
+    }
+
+    private static void setNames(final Map<String, Object> properties, final String key, final Set<String> names) {
+        if (names.isEmpty()) {
+            properties.remove(key);
+        } else {
+            properties.put(key, names.toArray(new String[names.size()]));
+        }
+    }
+
+    /** A queued event */
+    private static final class Entry {
+
+        final Map<String, Object> properties;
+
+        final long time = System.currentTimeMillis();
+
+        Entry(final Map<String, Object> properties) {
+            this.properties = properties;
+        }
+    }
+}
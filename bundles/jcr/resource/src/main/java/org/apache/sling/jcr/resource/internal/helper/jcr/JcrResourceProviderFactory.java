@@ -37,6 +37,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyUnbounded;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
@@ -88,6 +89,25 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
               description="If this switch is enabled, and Oak is used as the repository implementation, some optimized components are used.")
     private static final String PROPERTY_OPTIMIZE_FOR_OAK = "optimize.oak";
 
+    @Property(intValue=JcrResourceListener.DEFAULT_QUEUE_SIZE,
+              label="Observation Queue Size",
+              description="The maximum number of resource events waiting for being sent through the OSGi event admin. " +
+                          "Changed events for the same resource are merged while waiting.")
+    private static final String PROPERTY_QUEUE_SIZE = "observation.queue.size";
+
+    @Property(longValue=JcrResourceListener.DEFAULT_QUEUE_TIMEOUT,
+              label="Observation Queue Timeout",
+              description="The time in milliseconds to wait for space if the observation queue is full. " +
+                          "If there is still no space, the event is dropped and once there is space again a changed " +
+                          "event for the root with the event.overflow property is sent. With 0 (the default) the " +
+                          "observation waits for space and events are never dropped.")
+    private static final String PROPERTY_QUEUE_TIMEOUT = "observation.queue.timeout";
+
+    @Property(unbounded=PropertyUnbounded.ARRAY,
+              label="Observation Excluded Paths",
+              description="No resource events are sent for resources in these subtrees.")
+    private static final String PROPERTY_EXCLUDED_PATHS = "observation.excluded.paths";
+
     private static final String REPOSITORY_REFERNENCE_NAME = "repository";
 
     /** The dynamic class loader */
@@ -148,7 +168,10 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
                 }
             }
             if ( this.listener == null ) {
-                this.listener = new JcrResourceListener(root, support);
+                this.listener = new JcrResourceListener(root, support,
+                        PropertiesUtil.toInteger(context.getProperties().get(PROPERTY_QUEUE_SIZE), JcrResourceListener.DEFAULT_QUEUE_SIZE),
+                        PropertiesUtil.toLong(context.getProperties().get(PROPERTY_QUEUE_TIMEOUT), JcrResourceListener.DEFAULT_QUEUE_TIMEOUT),
+                        PropertiesUtil.toStringArray(context.getProperties().get(PROPERTY_EXCLUDED_PATHS)));
             }
             closeSupport = false;
         } finally {
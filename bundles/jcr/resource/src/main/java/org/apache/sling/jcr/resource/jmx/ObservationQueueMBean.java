@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.jmx;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * The <code>ObservationQueueMBean</code> provides the statistics of the
+ * queue of OSGi resource events created from JCR observation events which
+ * are waiting for being dispatched to the OSGi Event Admin.
+ */
+@ProviderType
+public interface ObservationQueueMBean {
+
+    /**
+     * Returns the number of events currently queued.
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the maximum number of queued events.
+     */
+    int getMaxQueueSize();
+
+    /**
+     * Returns the time in milliseconds the oldest queued event is waiting
+     * for being dispatched or 0 if the queue is empty.
+     */
+    long getOldestEventAge();
+
+    /**
+     * Returns the number of events dispatched.
+     */
+    long getProcessedEvents();
+
+    /**
+     * Returns the number of changed events merged into queued changed events
+     * for the same path.
+     */
+    long getCoalescedEvents();
+
+    /**
+     * Returns the number of events dropped as the queue was full.
+     */
+    long getDroppedEvents();
+
+    /**
+     * Returns the paths of the subtrees for which no events are created.
+     */
+    String[] getExcludedPaths();
+
+    /**
+     * Resets the processed, coalesced and dropped event counters.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.sling.api.SlingConstants;
+import org.junit.Test;
+import org.osgi.service.event.EventConstants;
+
+public class OsgiEventQueueTest {
+
+    private static Map<String, Object> event(final String topic, final String path) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(EventConstants.EVENT_TOPIC, topic);
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        return props;
+    }
+
+    private static Map<String, Object> changed(final String path, final String key, final String... names) {
+        final Map<String, Object> props = event(SlingConstants.TOPIC_RESOURCE_CHANGED, path);
+        props.put(key, names);
+        return props;
+    }
+
+    @Test
+    public void testCoalesceChanges() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(10, 0);
+        assertTrue(queue.offer(changed("/a", SlingConstants.PROPERTY_ADDED_ATTRIBUTES, "p1", "p2")));
+        assertTrue(queue.offer(changed("/b", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p1")));
+        assertTrue(queue.offer(changed("/a", SlingConstants.PROPERTY_REMOVED_ATTRIBUTES, "p2")));
+        assertTrue(queue.offer(changed("/a", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p3")));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getCoalescedEvents());
+
+        final Map<String, Object> first = queue.take();
+        assertEquals("/a", first.get(SlingConstants.PROPERTY_PATH));
+        assertArrayEquals(new String[] {"p1"}, (String[]) first.get(SlingConstants.PROPERTY_ADDED_ATTRIBUTES));
+        assertArrayEquals(new String[] {"p2"}, (String[]) first.get(SlingConstants.PROPERTY_REMOVED_ATTRIBUTES));
+        assertArrayEquals(new String[] {"p3"}, (String[]) first.get(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES));
+        assertEquals("/b", queue.take().get(SlingConstants.PROPERTY_PATH));
+
+        // no merging into events already taken
+        assertTrue(queue.offer(changed("/a", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p4")));
+        assertEquals(1, queue.size());
+        assertEquals(2, queue.getProcessedEvents());
+    }
+
+    @Test
+    public void testNoCoalescingAcrossRemoval() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(10, 0);
+        assertTrue(queue.offer(changed("/a/b", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p1")));
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_REMOVED, "/a")));
+        assertTrue(queue.offer(changed("/a/b", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p2")));
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.getCoalescedEvents());
+    }
+
+    @Test
+    public void testNoCoalescingOfDifferentUsers() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(10, 0);
+        final Map<String, Object> first = changed("/a", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p1");
+        first.put(SlingConstants.PROPERTY_USERID, "admin");
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(changed("/a", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p2")));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(2, 10);
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/a")));
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/b")));
+        assertFalse(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/c")));
+        assertEquals(1, queue.getDroppedEvents());
+        assertEquals(2, queue.size());
+        assertTrue(queue.getOldestEventAge() >= 0);
+
+        queue.take();
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/c")));
+    }
+
+    @Test
+    public void testBlockingWithoutTimeout() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(1, 0);
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/a")));
+
+        final AtomicBoolean offered = new AtomicBoolean();
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                offered.set(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/b")));
+            }
+        };
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        assertEquals("/a", queue.take().get(SlingConstants.PROPERTY_PATH));
+        producer.join(10000);
+        assertTrue(offered.get());
+        assertEquals("/b", queue.take().get(SlingConstants.PROPERTY_PATH));
+        assertEquals(0, queue.getDroppedEvents());
+    }
+
+    @Test
+    public void testOverflowEventNotCoalesced() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(10, 0);
+        assertTrue(queue.offer(changed("/", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p1")));
+        final Map<String, Object> overflow = event(SlingConstants.TOPIC_RESOURCE_CHANGED, "/");
+        overflow.put(JcrResourceListener.PROPERTY_OVERFLOW, Boolean.TRUE);
+        assertTrue(queue.offer(overflow));
+        assertTrue(queue.offer(changed("/", SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, "p2")));
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.getCoalescedEvents());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        final OsgiEventQueue queue = new OsgiEventQueue(2, 10);
+        assertTrue(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/a")));
+        queue.close();
+        assertNull(queue.take());
+        assertFalse(queue.offer(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/b")));
+        assertEquals(0, queue.getOldestEventAge());
+    }
+}
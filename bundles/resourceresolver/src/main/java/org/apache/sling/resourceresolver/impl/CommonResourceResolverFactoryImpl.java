@@ -30,6 +30,7 @@ import org.apache.sling.api.resource.ResourceProviderFactory;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.resourceresolver.impl.console.ResourceResolverWebConsolePlugin;
+import org.apache.sling.resourceresolver.impl.helper.NonExistingResourceCache;
 import org.apache.sling.resourceresolver.impl.helper.ResourceDecoratorTracker;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider;
@@ -50,6 +51,9 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
     /** Helper for the resource resolver. */
     private MapEntries mapEntries = MapEntries.EMPTY;
 
+    /** Cache of non existing paths, <code>null</code> if disabled. */
+    private volatile NonExistingResourceCache nonExistingResourceCache;
+
     /** The web console plugin. */
     private ResourceResolverWebConsolePlugin plugin;
 
@@ -115,6 +119,14 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return mapEntries;
     }
 
+    /**
+     * Returns the cache of non existing paths shared by all resource
+     * resolvers or <code>null</code> if the cache is disabled.
+     */
+    public NonExistingResourceCache getNonExistingResourceCache() {
+        return this.nonExistingResourceCache;
+    }
+
     /** Activates this component */
     protected void activate(final BundleContext bundleContext) {
         final Logger logger = LoggerFactory.getLogger(getClass());
@@ -131,6 +143,13 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         } catch (final Exception e) {
             logger.error("activate: Cannot access repository, failed setting up Mapping Support", e);
         }
+        // set up the cache of non existing paths
+        if (this.activator.getNonExistingCacheSize() > 0) {
+            final NonExistingResourceCache cache = new NonExistingResourceCache(
+                    this.activator.getNonExistingCacheSize(), this.activator.getNonExistingCacheMaxAge());
+            cache.register(bundleContext);
+            this.nonExistingResourceCache = cache;
+        }
     }
 
     /**
@@ -142,6 +161,11 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
             plugin = null;
         }
 
+        if (nonExistingResourceCache != null) {
+            nonExistingResourceCache.dispose();
+            nonExistingResourceCache = null;
+        }
+
         if (mapEntries != null) {
             mapEntries.dispose();
             mapEntries = MapEntries.EMPTY;
@@ -200,6 +224,14 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.isOptimizeAliasResolutionEnabled();
     }
 
+    public int getMapCacheSize() {
+        return this.activator.getMapCacheSize();
+    }
+
+    public boolean isIncrementalUpdateEnabled() {
+        return this.activator.isIncrementalUpdateEnabled();
+    }
+
     public List<VanityPathConfig> getVanityPathConfig() {
         final String[] includes = this.activator.getVanityPathWhiteList();
         final String[] excludes = this.activator.getVanityPathBlackList();
@@ -193,6 +193,41 @@ public class ResourceResolverFactoryActivator {
                       " and on the alias update time if the number of aliases is huge (over 10000).")
     private static final String PROP_ENABLE_OPTIMIZE_ALIAS_RESOLUTION = "resource.resolver.optimize.alias.resolution";
 
+    private static final boolean DEFAULT_ENABLE_INCREMENTAL_UPDATE = false;
+    @Property(boolValue = DEFAULT_ENABLE_INCREMENTAL_UPDATE,
+              label = "Incremental Mapping Update",
+              description ="This flag controls whether changes to vanity paths and aliases are applied" +
+                      " incrementally to the internal mapping tables instead of reloading all vanity paths" +
+                      " and aliases on each change. Changes below the mapping location always cause a full reload.")
+    private static final String PROP_ENABLE_INCREMENTAL_UPDATE = "resource.resolver.update.incremental";
+
+    private static final int DEFAULT_MAP_CACHE_SIZE = 0;
+    @Property(intValue = DEFAULT_MAP_CACHE_SIZE,
+              label = "Mapping Cache Size",
+              description ="The maximum number of map results and path segment aliases each resource" +
+                      " resolver keeps for repeated calls to the map methods. The cache of a resource resolver" +
+                      " is cleared on commit, revert and refresh and whenever the mappings change." +
+                      " A value of 0 disables the cache.")
+    private static final String PROP_MAP_CACHE_SIZE = "resource.resolver.map.cache.size";
+
+    private static final int DEFAULT_NON_EXISTING_CACHE_SIZE = 0;
+    @Property(intValue = DEFAULT_NON_EXISTING_CACHE_SIZE,
+              label = "Non Existing Resource Cache Size",
+              description ="The maximum number of paths, shared by all resource resolvers and kept per user," +
+                      " which are remembered as not resolving to a resource while resolving request paths. The" +
+                      " entries of a path are dropped when a resource is added at, above or below it and all" +
+                      " entries are dropped when a resource provider is added or access control information" +
+                      " changes. Resolvers with pending or committed changes do not use the cache. A value of 0" +
+                      " disables the cache.")
+    private static final String PROP_NON_EXISTING_CACHE_SIZE = "resource.resolver.nonexisting.cache.size";
+
+    private static final long DEFAULT_NON_EXISTING_CACHE_MAX_AGE = 10000;
+    @Property(longValue = DEFAULT_NON_EXISTING_CACHE_MAX_AGE,
+              label = "Non Existing Resource Cache Max Age",
+              description ="The time in milliseconds after which a path remembered as not resolving to a" +
+                      " resource is checked again.")
+    private static final String PROP_NON_EXISTING_CACHE_MAX_AGE = "resource.resolver.nonexisting.cache.maxage";
+
     @Property(unbounded=PropertyUnbounded.ARRAY,
             label = "Allowed Vanity Path Location",
             description ="This setting can contain a list of path prefixes, e.g. /libs/, /content/. If " +
@@ -253,6 +288,18 @@ public class ResourceResolverFactoryActivator {
     /** alias resource resolution optimization enabled? */
     private boolean enableOptimizeAliasResolution = DEFAULT_ENABLE_OPTIMIZE_ALIAS_RESOLUTION;
 
+    /** incremental update of vanity paths and aliases enabled? */
+    private boolean enableIncrementalUpdate = DEFAULT_ENABLE_INCREMENTAL_UPDATE;
+
+    /** maximum number of map results cached per resource resolver */
+    private int mapCacheSize = DEFAULT_MAP_CACHE_SIZE;
+
+    /** maximum number of cached non existing paths */
+    private int nonExistingCacheSize = DEFAULT_NON_EXISTING_CACHE_SIZE;
+
+    /** time in ms a non existing path is cached */
+    private long nonExistingCacheMaxAge = DEFAULT_NON_EXISTING_CACHE_MAX_AGE;
+
     /** Vanity path whitelist */
     private String[] vanityPathWhiteList;
 
@@ -325,6 +372,22 @@ public class ResourceResolverFactoryActivator {
         return this.enableOptimizeAliasResolution;
     }
 
+    public boolean isIncrementalUpdateEnabled() {
+        return this.enableIncrementalUpdate;
+    }
+
+    public int getMapCacheSize() {
+        return this.mapCacheSize;
+    }
+
+    public int getNonExistingCacheSize() {
+        return this.nonExistingCacheSize;
+    }
+
+    public long getNonExistingCacheMaxAge() {
+        return this.nonExistingCacheMaxAge;
+    }
+
     public String[] getVanityPathWhiteList() {
         return this.vanityPathWhiteList;
     }
@@ -434,6 +497,10 @@ public class ResourceResolverFactoryActivator {
         }
 
         this.enableOptimizeAliasResolution = PropertiesUtil.toBoolean(properties.get(PROP_ENABLE_OPTIMIZE_ALIAS_RESOLUTION), DEFAULT_ENABLE_OPTIMIZE_ALIAS_RESOLUTION);
+        this.enableIncrementalUpdate = PropertiesUtil.toBoolean(properties.get(PROP_ENABLE_INCREMENTAL_UPDATE), DEFAULT_ENABLE_INCREMENTAL_UPDATE);
+        this.mapCacheSize = PropertiesUtil.toInteger(properties.get(PROP_MAP_CACHE_SIZE), DEFAULT_MAP_CACHE_SIZE);
+        this.nonExistingCacheSize = PropertiesUtil.toInteger(properties.get(PROP_NON_EXISTING_CACHE_SIZE), DEFAULT_NON_EXISTING_CACHE_SIZE);
+        this.nonExistingCacheMaxAge = PropertiesUtil.toLong(properties.get(PROP_NON_EXISTING_CACHE_MAX_AGE), DEFAULT_NON_EXISTING_CACHE_MAX_AGE);
 
         final BundleContext bc = componentContext.getBundleContext();
 
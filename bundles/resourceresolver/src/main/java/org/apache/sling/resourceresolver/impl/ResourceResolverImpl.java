@@ -45,6 +45,8 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ResourceWrapper;
+import org.apache.sling.resourceresolver.impl.helper.MappingCache;
+import org.apache.sling.resourceresolver.impl.helper.NonExistingResourceCache;
 import org.apache.sling.resourceresolver.impl.helper.RedirectResource;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIteratorDecorator;
@@ -53,6 +55,7 @@ import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
 import org.apache.sling.resourceresolver.impl.helper.StarResource;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
+import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,12 +97,30 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     /** Resource resolver context. */
     private final ResourceResolverContext context;
 
+    /** Cache of map results, <code>null</code> if disabled. */
+    private final MappingCache mappingCache;
+
+    /** Shared cache of non existing paths, <code>null</code> if disabled. */
+    private final NonExistingResourceCache nonExistingResourceCache;
+
+    /** The user id used for the non existing resource cache, resolved lazily. */
+    private String nonExistingCacheUserId;
+
+    /**
+     * Set once resources have been changed or committed with this resolver,
+     * as the shared cache only learns about persisted changes asynchronously.
+     */
+    private boolean nonExistingCacheBypassed;
+
     /**
      * The resource resolver context.
      */
     public ResourceResolverImpl(final CommonResourceResolverFactoryImpl factory, final ResourceResolverContext ctx) {
         this.factory = factory;
         this.context = ctx;
+        final int mapCacheSize = factory.getMapCacheSize();
+        this.mappingCache = (mapCacheSize > 0 ? new MappingCache(mapCacheSize) : null);
+        this.nonExistingResourceCache = factory.getNonExistingResourceCache();
     }
 
     /**
@@ -370,6 +391,15 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     public String map(final HttpServletRequest request, final String resourcePath) {
         checkClosed();
 
+        final MapEntries mapEntries = this.factory.getMapEntries();
+        if (this.mappingCache != null) {
+            final String cachedPath = this.mappingCache.getMappedPath(mapEntries, request, resourcePath);
+            if (cachedPath != null) {
+                logger.debug("map: Returning cached URL {} as mapping for path {}", cachedPath, resourcePath);
+                return cachedPath;
+            }
+        }
+
         // find a fragment or query
         int fragmentQueryMark = resourcePath.indexOf('#');
         if (fragmentQueryMark < 0) {
@@ -424,19 +454,30 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             String path = res.getPath();
             while (path != null) {
                 String alias = null;
-                if (current != null && !path.endsWith(JCR_CONTENT_LEAF)) {
-                    alias = ResourceResolverContext.getProperty(current, PROP_ALIAS);
+                if (this.mappingCache != null) {
+                    alias = this.mappingCache.getSegmentName(mapEntries, path);
                 }
-                if (alias == null || alias.length() == 0) {
-                    alias = ResourceUtil.getName(path);
+                if (alias == null) {
+                    if (current == null) {
+                        current = res.getResourceResolver().resolve(path);
+                    }
+                    if (current != null && !path.endsWith(JCR_CONTENT_LEAF)) {
+                        alias = ResourceResolverContext.getProperty(current, PROP_ALIAS);
+                    }
+                    if (alias == null || alias.length() == 0) {
+                        alias = ResourceUtil.getName(path);
+                    }
+                    if (this.mappingCache != null) {
+                        this.mappingCache.putSegmentName(path, alias);
+                    }
                 }
                 names.add(alias);
                 path = ResourceUtil.getParent(path);
                 if ("/".equals(path)) {
                     path = null;
-                } else if (path != null) {
-                    current = res.getResourceResolver().resolve(path);
                 }
+                // the parent is only resolved if its name is not cached
+                current = null;
             }
 
             // build path from segment names
@@ -465,7 +506,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
 
         boolean mappedPathIsUrl = false;
-        for (final MapEntry mapEntry : this.factory.getMapEntries().getMapMaps()) {
+        final Iterator<MapEntry> mapEntriesIterator = mapEntries.getMapMapsIterator(mappedPath);
+        while (mapEntriesIterator.hasNext()) {
+            final MapEntry mapEntry = mapEntriesIterator.next();
             final String[] mappedPaths = mapEntry.replace(mappedPath);
             if (mappedPaths != null) {
 
@@ -540,6 +583,10 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             mappedPath = mappedPath.concat(fragmentQuery);
         }
 
+        if (this.mappingCache != null) {
+            this.mappingCache.putMappedPath(request, resourcePath, mappedPath);
+        }
+
         return mappedPath;
     }
 
@@ -930,16 +977,48 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     private Resource getResourceInternal(final String path, final boolean isResolve) {
 
+        // only paths probed while resolving are cached as non existing,
+        // the cache does not reflect changes not persisted yet
+        final boolean useCache = isResolve && this.nonExistingResourceCache != null
+                && !this.nonExistingCacheBypassed && !this.hasChanges();
+        final long generation;
+        if (useCache) {
+            if (this.nonExistingResourceCache.isNonExisting(this.getNonExistingCacheUserId(), path)) {
+                logger.debug("getResourceInternal: Path '{}' is cached as non existing", path);
+                return null;
+            }
+            generation = this.nonExistingResourceCache.getGeneration();
+        } else {
+            generation = 0;
+        }
+
         final Resource resource = this.factory.getRootProviderEntry().getResource(this.context, this, path ,isResolve);
         if (resource != null) {
             resource.getResourceMetadata().setResolutionPath(path);
             return resource;
         }
 
+        if (useCache) {
+            this.nonExistingResourceCache.addNonExisting(this.getNonExistingCacheUserId(), path, generation);
+        }
+
         logger.debug("getResourceInternal: Cannot resolve path '{}' to a resource", path);
         return null;
     }
 
+    /**
+     * Returns the user id used to key the entries in the non existing
+     * resource cache. Administrative resolvers are kept apart from regular
+     * resolvers of the same user.
+     */
+    private String getNonExistingCacheUserId() {
+        if (this.nonExistingCacheUserId == null) {
+            final String userId = this.getUserID();
+            this.nonExistingCacheUserId = (this.context.isAdmin() ? "a:" : "u:").concat(userId == null ? "" : userId);
+        }
+        return this.nonExistingCacheUserId;
+    }
+
     /**
      * Returns the <code>path</code> as an absolute path. If the path is already
      * absolute it is returned unmodified (the same instance actually). If the
@@ -1025,6 +1104,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
         // if resource is null, we get an NPE as stated in the API
         this.factory.getRootProviderEntry().delete(this.context, this, resource);
+        this.clearMappingCache();
+        this.nonExistingCacheBypassed = true;
     }
 
     /**
@@ -1051,6 +1132,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             this.create(parent.getParent(), parent.getName(), null);
         }
         final Resource rsrc = this.factory.getRootProviderEntry().create(this.context, this, path, properties);
+        this.clearMappingCache();
+        this.nonExistingCacheBypassed = true;
         return this.factory.getResourceDecoratorTracker().decorate(rsrc);
     }
 
@@ -1059,6 +1142,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     public void revert() {
         this.context.revert(this);
+        this.clearMappingCache();
     }
 
     /**
@@ -1066,6 +1150,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     public void commit() throws PersistenceException {
         this.context.commit(this);
+        this.clearMappingCache();
+        this.nonExistingCacheBypassed = true;
     }
 
     /**
@@ -1134,5 +1220,16 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     public void refresh() {
         this.context.refresh();
+        this.clearMappingCache();
+    }
+
+    /**
+     * Drops all cached map results as the content they are based on might
+     * have changed.
+     */
+    private void clearMappingCache() {
+        if (this.mappingCache != null) {
+            this.mappingCache.clear();
+        }
     }
 }
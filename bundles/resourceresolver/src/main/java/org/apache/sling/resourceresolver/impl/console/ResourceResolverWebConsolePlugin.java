@@ -37,6 +37,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.sling.api.request.ResponseUtil;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.helper.NonExistingResourceCache;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
@@ -123,6 +124,12 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         pw.print(resolverFactory.getMapRoot());
         pw.print("</td>");
         pw.println("</tr>");
+        pw.println("<tr class='content'>");
+        pw.println("<td class='content'>Non Existing Resource Cache</td>");
+        pw.print("<td class='content' colspan='2'>");
+        pw.print(ResponseUtil.escapeXml(getNonExistingCacheStatistics()));
+        pw.print("</td>");
+        pw.println("</tr>");
 
         separatorHtml(pw);
 
@@ -255,6 +262,10 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
     public void printConfiguration(PrintWriter pw) {
         final MapEntries mapEntries = resolverFactory.getMapEntries();
 
+        pw.println("Non Existing Resource Cache: " + getNonExistingCacheStatistics());
+
+        separatorText(pw);
+
         dumpMapText(pw, "Resolver Map Entries", mapEntries.getResolveMaps());
 
         separatorText(pw);
@@ -264,6 +275,15 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
 
     // ---------- internal
 
+    private String getNonExistingCacheStatistics() {
+        final NonExistingResourceCache cache = resolverFactory.getNonExistingResourceCache();
+        if (cache == null) {
+            return "Disabled";
+        }
+        return "Entries: " + cache.size() + ", Hits: " + cache.getHits() + ", Misses: " + cache.getMisses()
+                + ", Invalidations: " + cache.getInvalidations();
+    }
+
     private void dumpMapHtml(PrintWriter pw, String title, String description,
             Collection<MapEntry> list) {
 
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
+
+/**
+ * The <code>MappingCache</code> keeps the results of the
+ * <code>ResourceResolver.map</code> calls and the path segment names
+ * (aliases) used for them for a single resource resolver.
+ * <p>
+ * The cache is cleared whenever the resource resolver is committed, reverted
+ * or refreshed and whenever the mappings of the {@link MapEntries} have
+ * changed, that is after a {@link org.apache.sling.api.SlingConstants#TOPIC_RESOURCE_RESOLVER_MAPPING_CHANGED}
+ * event has been sent.
+ * Like a resource resolver itself, this class is not thread safe.
+ */
+public class MappingCache {
+
+    private final Map<String, String> mappedPaths;
+
+    private final Map<String, String> segmentNames;
+
+    private MapEntries mapEntries;
+
+    private long mapEntriesChangeCount;
+
+    /**
+     * Creates a cache keeping at most <code>maxEntries</code> mapped paths
+     * and segment names each.
+     */
+    public MappingCache(final int maxEntries) {
+        this.mappedPaths = new LRUMap(maxEntries);
+        this.segmentNames = new LRUMap(maxEntries);
+    }
+
+    /**
+     * Returns the cached result of mapping the path for the request or
+     * <code>null</code> if not cached or if the mappings have changed since.
+     */
+    public String getMappedPath(final MapEntries currentMapEntries, final HttpServletRequest request, final String resourcePath) {
+        this.validate(currentMapEntries);
+        return this.mappedPaths.get(getKey(request, resourcePath));
+    }
+
+    public void putMappedPath(final HttpServletRequest request, final String resourcePath, final String mappedPath) {
+        this.mappedPaths.put(getKey(request, resourcePath), mappedPath);
+    }
+
+    /**
+     * Returns the cached name (alias or name) used for the last segment of
+     * the path when mapping or <code>null</code> if not cached.
+     */
+    public String getSegmentName(final MapEntries currentMapEntries, final String path) {
+        this.validate(currentMapEntries);
+        return this.segmentNames.get(path);
+    }
+
+    public void putSegmentName(final String path, final String name) {
+        this.segmentNames.put(path, name);
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clear() {
+        this.mappedPaths.clear();
+        this.segmentNames.clear();
+    }
+
+    /**
+     * Clears the cache if the mappings have changed since the entries have
+     * been added.
+     */
+    private void validate(final MapEntries currentMapEntries) {
+        final long changeCount = currentMapEntries.getChangeCount();
+        if (this.mapEntries != currentMapEntries || this.mapEntriesChangeCount != changeCount) {
+            this.clear();
+            this.mapEntries = currentMapEntries;
+            this.mapEntriesChangeCount = changeCount;
+        }
+    }
+
+    private static String getKey(final HttpServletRequest request, final String resourcePath) {
+        if (request == null) {
+            return "|".concat(resourcePath);
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append(request.getScheme()).append("://").append(request.getServerName());
+        sb.append(':').append(request.getServerPort());
+        if (request.getContextPath() != null) {
+            sb.append(request.getContextPath());
+        }
+        sb.append('|').append(resourcePath);
+        return sb.toString();
+    }
+
+    private static final class LRUMap extends LinkedHashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LRUMap(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > this.maxEntries;
+        }
+    }
+}
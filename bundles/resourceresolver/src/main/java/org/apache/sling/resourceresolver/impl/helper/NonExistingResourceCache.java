@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.SlingConstants;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>NonExistingResourceCache</code> remembers the paths which could
+ * not be resolved to a resource while resolving a request path, such that
+ * the many probes done by <code>ResourceResolver.resolve</code> for paths
+ * with selectors and extensions do not hit the resource providers again.
+ * <p>
+ * As the existence of a resource depends on the access rights of the user,
+ * the entries are kept per user. Resolvers with pending changes or which
+ * have changed resources do not use the cache, as it only reflects the
+ * persisted content.
+ * <p>
+ * When a resource is added, the entries for its path, its ancestors and its
+ * descendants are dropped. To find the descendants, the entries are grouped
+ * by the parent path of their path. All entries are dropped if a resource
+ * provider is added or removed or if access control or group membership
+ * information is changed. Changes of existing resources and removals do not
+ * make a non existing resource appear and thus do not affect the cache.
+ * <p>
+ * As events are delivered asynchronously, a resource persisted by another
+ * resolver might be reported as non existing until the event has been handled
+ * or the entry has expired. If the cache is full, all entries are dropped.
+ * <p>
+ * This class is thread safe, it is shared by all resource resolvers of the
+ * factory.
+ */
+public class NonExistingResourceCache implements EventHandler {
+
+    /** Prefix of the names of items (nodes and properties) holding access control information. */
+    private static final String ACCESS_CONTROL_PREFIX = "rep:";
+
+    /** Separates the path from the user in the keys of the entries. */
+    private static final char USER_SEPARATOR = '\u0000';
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The entries grouped by parent path, each mapping path and user to the time the entry expires. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> folders = new ConcurrentHashMap<String, ConcurrentMap<String, Long>>();
+
+    /** The approximate number of entries, used to bound the cache. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int maxEntries;
+
+    private final long maxAge;
+
+    /** Incremented whenever entries are dropped due to changes. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private ServiceRegistration registration;
+
+    /**
+     * Creates a cache of at most <code>maxEntries</code> entries each of them
+     * being valid for <code>maxAge</code> milliseconds.
+     */
+    public NonExistingResourceCache(final int maxEntries, final long maxAge) {
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Registers this cache as an event handler for resource events.
+     */
+    public void register(final BundleContext bundleContext) {
+        final Dictionary<String, String> props = new Hashtable<String, String>();
+        props.put(EventConstants.EVENT_TOPIC, "org/apache/sling/api/resource/*");
+        props.put(Constants.SERVICE_DESCRIPTION, "Non Existing Resource Cache Observation");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        this.registration = bundleContext.registerService(EventHandler.class.getName(), this, props);
+    }
+
+    /**
+     * Unregisters the event handler and drops all entries.
+     */
+    public void dispose() {
+        if (this.registration != null) {
+            this.registration.unregister();
+            this.registration = null;
+        }
+        this.clear();
+    }
+
+    /**
+     * Returns the current generation, which has to be passed to
+     * {@link #addNonExisting(String, String, long)} for a path looked up
+     * afterwards.
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Returns <code>true</code> if the path is known to not exist for the user.
+     */
+    public boolean isNonExisting(final String userId, final String path) {
+        final ConcurrentMap<String, Long> folder = this.folders.get(getFolder(path));
+        if (folder != null) {
+            final String key = getKey(userId, path);
+            final Long expires = folder.get(key);
+            if (expires != null) {
+                if (expires.longValue() > System.currentTimeMillis()) {
+                    this.hits.incrementAndGet();
+                    return true;
+                }
+                if (folder.remove(key, expires)) {
+                    this.size.decrementAndGet();
+                }
+            }
+        }
+        this.misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Remembers that the path does not exist for the user. The path is not
+     * remembered if entries have been dropped since the generation has been
+     * read, as the path might have been looked up before the change.
+     */
+    public void addNonExisting(final String userId, final String path, final long generation) {
+        if (this.size.get() >= this.maxEntries) {
+            logger.debug("addNonExisting: Cache is full, dropping {} entries", this.size.get());
+            this.folders.clear();
+            this.size.set(0);
+        }
+
+        final String parent = getFolder(path);
+        ConcurrentMap<String, Long> folder = this.folders.get(parent);
+        if (folder == null) {
+            final ConcurrentMap<String, Long> newFolder = new ConcurrentHashMap<String, Long>();
+            folder = this.folders.putIfAbsent(parent, newFolder);
+            if (folder == null) {
+                folder = newFolder;
+            }
+        }
+        if (folder.put(getKey(userId, path), System.currentTimeMillis() + this.maxAge) == null) {
+            this.size.incrementAndGet();
+        }
+
+        // drop the entry again if it might be outdated
+        if (generation != this.generation.get()) {
+            this.removePath(path);
+        }
+    }
+
+    /**
+     * Drops the entries of the added path, its ancestors and descendants.
+     */
+    public void invalidate(final String path) {
+        this.generation.incrementAndGet();
+        this.invalidations.incrementAndGet();
+
+        // the path and its ancestors
+        String current = path;
+        while (current != null) {
+            this.removePath(current);
+            current = getParent(current);
+        }
+
+        // the descendants
+        final String prefix = path.endsWith("/") ? path : path.concat("/");
+        for (final Iterator<Map.Entry<String, ConcurrentMap<String, Long>>> i = this.folders.entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<String, ConcurrentMap<String, Long>> folder = i.next();
+            if (folder.getKey().equals(path) || folder.getKey().startsWith(prefix)) {
+                i.remove();
+                this.size.addAndGet(-folder.getValue().size());
+            }
+        }
+    }
+
+    /**
+     * Drops all entries.
+     */
+    public void clear() {
+        this.generation.incrementAndGet();
+        this.invalidations.incrementAndGet();
+        this.folders.clear();
+        this.size.set(0);
+    }
+
+    public int size() {
+        return this.size.get();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+     */
+    public void handleEvent(final Event event) {
+        final String topic = event.getTopic();
+        if (SlingConstants.TOPIC_RESOURCE_PROVIDER_ADDED.equals(topic)
+                || SlingConstants.TOPIC_RESOURCE_PROVIDER_REMOVED.equals(topic)
+                || isAccessControlChange(event)) {
+            logger.debug("handleEvent: Dropping non existing resource entries on {}", topic);
+            this.clear();
+        } else if (SlingConstants.TOPIC_RESOURCE_ADDED.equals(topic)) {
+            final Object path = event.getProperty(SlingConstants.PROPERTY_PATH);
+            if (path instanceof String) {
+                logger.debug("handleEvent: Dropping non existing resource entries for {}", path);
+                this.invalidate((String) path);
+            } else {
+                this.clear();
+            }
+        }
+    }
+
+    /**
+     * Drops the entries of all users for the path.
+     */
+    private void removePath(final String path) {
+        final ConcurrentMap<String, Long> folder = this.folders.get(getFolder(path));
+        if (folder != null) {
+            final String prefix = path + USER_SEPARATOR;
+            for (final Iterator<String> i = folder.keySet().iterator(); i.hasNext();) {
+                if (i.next().startsWith(prefix)) {
+                    i.remove();
+                    this.size.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static boolean isAccessControlChange(final Event event) {
+        final Object path = event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (path != null && path.toString().indexOf(ACCESS_CONTROL_PREFIX) != -1) {
+            return true;
+        }
+        return containsAccessControlName(event.getProperty(SlingConstants.PROPERTY_ADDED_ATTRIBUTES))
+                || containsAccessControlName(event.getProperty(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES))
+                || containsAccessControlName(event.getProperty(SlingConstants.PROPERTY_REMOVED_ATTRIBUTES));
+    }
+
+    private static boolean containsAccessControlName(final Object names) {
+        if (names instanceof String[]) {
+            for (final String name : (String[]) names) {
+                if (name.startsWith(ACCESS_CONTROL_PREFIX)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the parent path or <code>null</code> for the root path.
+     */
+    private static String getParent(final String path) {
+        final int slash = path.lastIndexOf('/', path.length() - 2);
+        if (slash > 0) {
+            return path.substring(0, slash);
+        } else if (slash == 0 && path.length() > 1) {
+            return "/";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key of the group of entries of the path, which is the
+     * parent path or an empty string for the root path.
+     */
+    private static String getFolder(final String path) {
+        final String parent = getParent(path);
+        return parent == null ? "" : parent;
+    }
+
+    private static String getKey(final String userId, final String path) {
+        return path + USER_SEPARATOR + userId;
+    }
+}
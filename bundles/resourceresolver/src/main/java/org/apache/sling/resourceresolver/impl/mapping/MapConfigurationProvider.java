@@ -42,6 +42,13 @@ public interface MapConfigurationProvider extends ResourceResolverFactory {
 
     boolean isOptimizeAliasResolutionEnabled();
 
+    /**
+     * Whether changes to vanity paths and aliases are applied to the
+     * existing mapping structures instead of reloading them completely.
+     * Changes to the map root always cause a full reload.
+     */
+    boolean isIncrementalUpdateEnabled();
+
     public class VanityPathConfig implements Comparable<VanityPathConfig> {
         public final boolean isExclude;
         public final String prefix;
@@ -23,21 +23,26 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.servlet.http.HttpServletResponse;
@@ -82,8 +87,20 @@ public class MapEntries implements EventHandler {
 
     private static final String JCR_SYSTEM_PREFIX = "/jcr:system/";
 
+    private static final String JCR_CONTENT = "jcr:content";
+
+    private static final String PROP_VANITY_PATH = "sling:vanityPath";
+
+    private static final String PROP_VANITY_ORDER = "sling:vanityOrder";
+
     static final String ANY_SCHEME_HOST = "[^/]+/[^/]+";
 
+    /**
+     * Maximum number of resources walked to apply an added or removed
+     * subtree incrementally. Larger subtrees cause a full reload.
+     */
+    private static final int MAX_INCREMENTAL_SUBTREE_SIZE = 1000;
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -97,10 +114,48 @@ public class MapEntries implements EventHandler {
 
     private Collection<MapEntry> mapMaps;
 
+    private MapEntryIndex mapMapsIndex;
+
     private Collection<String> vanityTargets;
 
     private Map<String, Map<String, String>> aliasMap;
 
+    /**
+     * The resources providing vanity paths mapped to the keys of the
+     * {@link #resolveMapsMap} they contribute to. Only built for
+     * incremental updates, <code>null</code> otherwise, and only accessed
+     * while holding the {@link #initializing} lock.
+     */
+    private SortedMap<String, Set<String>> vanityKeysByHolder;
+
+    /**
+     * The keys of the {@link #resolveMapsMap} mapped to the resources
+     * providing vanity paths for them. Only built for incremental updates,
+     * <code>null</code> otherwise, and only accessed while holding the
+     * {@link #initializing} lock.
+     */
+    private Map<String, Set<String>> vanityHoldersByKey;
+
+    /**
+     * The sorted keys of the {@link #aliasMap}, such that the alias parents
+     * of a subtree can be found without scanning the whole map. Only built
+     * for incremental updates, <code>null</code> otherwise, and only
+     * accessed while holding the {@link #initializing} lock.
+     */
+    private SortedSet<String> aliasParentPaths;
+
+    /**
+     * Resource paths to be applied by the next incremental update mapped to
+     * whether the subtree of the resource has been added or removed.
+     */
+    private final Map<String, Boolean> pendingUpdates = new LinkedHashMap<String, Boolean>();
+
+    /** Number of mapping changes, incremented for each change event sent. */
+    private volatile long changeCount;
+
+    /** Whether the next run of the update thread has to reload everything. */
+    private final AtomicBoolean fullInitPending = new AtomicBoolean(false);
+
     private ServiceRegistration registration;
 
     private EventAdmin eventAdmin;
@@ -113,6 +168,8 @@ public class MapEntries implements EventHandler {
 
     private final boolean enableOptimizeAliasResolution;
 
+    private final boolean enableIncrementalUpdate;
+
     private final List<VanityPathConfig> vanityPathConfig;
 
     @SuppressWarnings("unchecked")
@@ -123,12 +180,14 @@ public class MapEntries implements EventHandler {
 
         this.resolveMapsMap = Collections.singletonMap(GLOBAL_LIST_KEY, (List<MapEntry>)Collections.EMPTY_LIST);
         this.mapMaps = Collections.<MapEntry> emptyList();
+        this.mapMapsIndex = new MapEntryIndex(this.mapMaps);
         this.vanityTargets = Collections.<String> emptySet();
         this.aliasMap = Collections.<String, Map<String, String>>emptyMap();
         this.registration = null;
         this.eventAdmin = null;
         this.enabledVanityPaths = true;
         this.enableOptimizeAliasResolution = true;
+        this.enableIncrementalUpdate = false;
         this.vanityPathConfig = null;
     }
 
@@ -141,10 +200,12 @@ public class MapEntries implements EventHandler {
         this.enabledVanityPaths = factory.isVanityPathEnabled();
         this.vanityPathConfig = factory.getVanityPathConfig();
         this.enableOptimizeAliasResolution = factory.isOptimizeAliasResolutionEnabled();
+        this.enableIncrementalUpdate = factory.isIncrementalUpdateEnabled();
         this.eventAdmin = eventAdmin;
 
         this.resolveMapsMap = Collections.singletonMap(GLOBAL_LIST_KEY, (List<MapEntry>)Collections.EMPTY_LIST);
         this.mapMaps = Collections.<MapEntry> emptyList();
+        this.mapMapsIndex = new MapEntryIndex(this.mapMaps);
         this.vanityTargets = Collections.<String> emptySet();
         this.aliasMap = Collections.<String, Map<String, String>>emptyMap();
 
@@ -170,6 +231,16 @@ public class MapEntries implements EventHandler {
      * Signals the init method that a the doInit method should be called.
      */
     private void triggerInit() {
+        this.fullInitPending.set(true);
+        this.triggerUpdate();
+    }
+
+    /**
+     * Signals the init method that pending changes should be applied. If no
+     * full initialization has been requested, only the {@link #doUpdate()}
+     * method is called.
+     */
+    private void triggerUpdate() {
         // only release if there is not one in the queue already
         if (initTrigger.availablePermits() < 1) {
             initTrigger.release();
@@ -178,14 +249,19 @@ public class MapEntries implements EventHandler {
 
     /**
      * Runs as the method of the update thread. Waits for the triggerInit method
-     * to trigger a call to doInit. Terminates when the resolver has been
-     * null-ed after having been triggered.
+     * to trigger a call to doInit (or the triggerUpdate method to trigger a
+     * call to doUpdate). Terminates when the resolver has been null-ed after
+     * having been triggered.
      */
     private void init() {
         while (this.resolver != null) {
             try {
                 this.initTrigger.acquire();
-                this.doInit();
+                if (this.fullInitPending.getAndSet(false)) {
+                    this.doInit();
+                } else {
+                    this.doUpdate();
+                }
             } catch (final InterruptedException ie) {
                 // just continue acquisition
             }
@@ -208,7 +284,15 @@ public class MapEntries implements EventHandler {
                 return;
             }
 
-            final Map<String, List<MapEntry>> newResolveMapsMap = new HashMap<String, List<MapEntry>>();
+            // pending incremental updates are covered by the full reload
+            synchronized (this.pendingUpdates) {
+                this.pendingUpdates.clear();
+            }
+
+            final Map<String, List<MapEntry>> newResolveMapsMap = new ConcurrentHashMap<String, List<MapEntry>>();
+            // the vanity path holders are only needed for the incremental updates
+            final SortedMap<String, Set<String>> newVanityKeysByHolder = (this.enableIncrementalUpdate ? new TreeMap<String, Set<String>>() : null);
+            final Map<String, Set<String>> newVanityHoldersByKey = (this.enableIncrementalUpdate ? new HashMap<String, Set<String>>() : null);
             final List<MapEntry> globalResolveMap = new ArrayList<MapEntry>();
             final SortedMap<String, MapEntry> newMapMaps = new TreeMap<String, MapEntry>();
 
@@ -216,7 +300,7 @@ public class MapEntries implements EventHandler {
             loadResolverMap(resolver, globalResolveMap, newMapMaps);
 
             // load the configuration into the resolver map
-            final Collection<String> vanityTargets = (this.enabledVanityPaths ? this.loadVanityPaths(resolver, newResolveMapsMap) : Collections.<String> emptySet());
+            final Collection<String> vanityTargets = (this.enabledVanityPaths ? this.loadVanityPaths(resolver, newResolveMapsMap, newVanityKeysByHolder, newVanityHoldersByKey) : Collections.<String> emptySet());
             loadConfiguration(factory, globalResolveMap);
 
             // load the configuration into the mapper map
@@ -225,16 +309,31 @@ public class MapEntries implements EventHandler {
             // sort global list and add to map
             Collections.sort(globalResolveMap);
             newResolveMapsMap.put(GLOBAL_LIST_KEY, globalResolveMap);
+            for (final Map.Entry<String, List<MapEntry>> entry : newResolveMapsMap.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
 
             //optimization made in SLING-2521
             if (enableOptimizeAliasResolution){
                 final Map<String, Map<String, String>> aliasMap = this.loadAliases(resolver);
                 this.aliasMap = makeUnmodifiableMap(aliasMap);
+                if (this.enableIncrementalUpdate) {
+                    this.aliasParentPaths = new TreeSet<String>(aliasMap.keySet());
+                }
             }
 
-            this.vanityTargets = Collections.unmodifiableCollection(vanityTargets);
-            this.resolveMapsMap = Collections.unmodifiableMap(newResolveMapsMap);
-            this.mapMaps = Collections.unmodifiableSet(new TreeSet<MapEntry>(newMapMaps.values()));
+            if (this.enableIncrementalUpdate) {
+                // maintained by the incremental updates
+                this.vanityTargets = Collections.synchronizedSet(new HashSet<String>(vanityTargets));
+            } else {
+                this.vanityTargets = Collections.unmodifiableCollection(vanityTargets);
+            }
+            this.resolveMapsMap = newResolveMapsMap;
+            this.vanityKeysByHolder = newVanityKeysByHolder;
+            this.vanityHoldersByKey = newVanityHoldersByKey;
+            final Collection<MapEntry> mapMaps = Collections.unmodifiableSet(new TreeSet<MapEntry>(newMapMaps.values()));
+            this.mapMapsIndex = new MapEntryIndex(mapMaps);
+            this.mapMaps = mapMaps;
 
             sendChangeEvent();
 
@@ -254,12 +353,320 @@ public class MapEntries implements EventHandler {
     }
 
 
+    /**
+     * Applies the pending changes collected by {@link #handleEvent(Event)} to
+     * the current vanity path and alias structures. Only the entries of the
+     * affected vanity paths and alias parents are rebuilt, each being replaced
+     * as a whole such that concurrent readers always see a consistent list.
+     * Added or removed subtrees are walked, as the events are only sent for
+     * the root of the subtree. Guards itself against concurrent use by using
+     * the same lock as the {@link #doInit()} method. Falls back to a full
+     * initialization in case of an error or if a subtree is too large.
+     */
+    protected void doUpdate() {
+
+        this.initializing.lock();
+        try {
+            final ResourceResolver resolver = this.resolver;
+            final MapConfigurationProvider factory = this.factory;
+            if (resolver == null || factory == null) {
+                return;
+            }
+
+            final Map<String, Boolean> updates;
+            synchronized (this.pendingUpdates) {
+                updates = new LinkedHashMap<String, Boolean>(this.pendingUpdates);
+                this.pendingUpdates.clear();
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+
+            final Set<String> vanityKeys = new HashSet<String>();
+            final Set<String> aliasParents = new HashSet<String>();
+            for (final Map.Entry<String, Boolean> update : updates.entrySet()) {
+                final String path = update.getKey();
+                final Resource resource = resolver.getResource(path);
+                if (update.getValue()) {
+                    this.removeSubtree(path, vanityKeys, aliasParents);
+                    if (resource != null && !this.addSubtree(resource, vanityKeys, aliasParents)) {
+                        log.debug("doUpdate: Subtree {} exceeds {} resources, reloading all mappings", path,
+                                MAX_INCREMENTAL_SUBTREE_SIZE);
+                        this.triggerInit();
+                        return;
+                    }
+                } else {
+                    if (this.enabledVanityPaths) {
+                        this.removeVanityPathHolder(path, vanityKeys);
+                        if (resource != null) {
+                            this.addVanityPathHolder(resource, vanityKeys);
+                        }
+                    }
+                    if (this.enableOptimizeAliasResolution) {
+                        final String aliasParent = getAliasParentPath(path);
+                        if (aliasParent != null
+                                && (this.aliasMap.containsKey(aliasParent) || hasAlias(resource))) {
+                            aliasParents.add(aliasParent);
+                        }
+                    }
+                }
+            }
+
+            for (final String key : vanityKeys) {
+                this.updateVanityPathKey(resolver, key);
+            }
+            for (final String parentPath : aliasParents) {
+                this.updateAliasParent(resolver, parentPath);
+            }
+
+            log.debug("doUpdate: Applied {} changes affecting {} vanity paths and {} alias parents", new Object[] {
+                    updates.size(), vanityKeys.size(), aliasParents.size() });
+
+            sendChangeEvent();
+
+        } catch (final Exception e) {
+
+            log.warn("doUpdate: Unexpected problem during incremental update, reloading all mappings", e);
+            this.triggerInit();
+
+        } finally {
+
+            this.initializing.unlock();
+
+        }
+    }
+
+    /**
+     * Removes all vanity path and alias information provided by the resource
+     * at the given path or any of its descendants. The vanity path keys and
+     * alias parents to be rebuilt are added to the given sets.
+     */
+    private void removeSubtree(final String path, final Set<String> vanityKeys, final Set<String> aliasParents) {
+        if (this.enabledVanityPaths) {
+            final List<String> holders = new ArrayList<String>();
+            if (this.vanityKeysByHolder.containsKey(path)) {
+                holders.add(path);
+            }
+            // all descendants sort between "path/" and "path0"
+            final String prefix = path.endsWith("/") ? path : path.concat("/");
+            holders.addAll(this.vanityKeysByHolder.subMap(prefix, prefix.substring(0, prefix.length() - 1).concat("0")).keySet());
+            for (final String holder : holders) {
+                this.removeVanityPathHolder(holder, vanityKeys);
+            }
+        }
+
+        if (this.enableOptimizeAliasResolution) {
+            final List<String> parentPaths = new ArrayList<String>();
+            if (this.aliasParentPaths.contains(path)) {
+                parentPaths.add(path);
+            }
+            final String prefix = path.endsWith("/") ? path : path.concat("/");
+            parentPaths.addAll(this.aliasParentPaths.subSet(prefix, prefix.substring(0, prefix.length() - 1).concat("0")));
+            for (final String parentPath : parentPaths) {
+                this.aliasMap.remove(parentPath);
+                this.aliasParentPaths.remove(parentPath);
+            }
+            final String aliasParent = getAliasParentPath(path);
+            if (aliasParent != null && this.aliasMap.containsKey(aliasParent)) {
+                aliasParents.add(aliasParent);
+            }
+        }
+    }
+
+    /**
+     * Registers the vanity paths and aliases of the given resource and all
+     * its descendants. The vanity path keys and alias parents to be rebuilt
+     * are added to the given sets.
+     * @return <code>false</code> if the subtree has more than
+     *         {@link #MAX_INCREMENTAL_SUBTREE_SIZE} resources and has not been
+     *         walked completely.
+     */
+    private boolean addSubtree(final Resource root, final Set<String> vanityKeys, final Set<String> aliasParents) {
+        final List<Resource> stack = new ArrayList<Resource>();
+        stack.add(root);
+        int count = 0;
+        while (!stack.isEmpty()) {
+            if (++count > MAX_INCREMENTAL_SUBTREE_SIZE) {
+                return false;
+            }
+            final Resource resource = stack.remove(stack.size() - 1);
+            if (this.enabledVanityPaths) {
+                this.addVanityPathHolder(resource, vanityKeys);
+            }
+            if (this.enableOptimizeAliasResolution && hasAlias(resource)) {
+                final String aliasParent = getAliasParentPath(resource.getPath());
+                if (aliasParent != null) {
+                    aliasParents.add(aliasParent);
+                }
+            }
+            final Iterator<Resource> children = resource.listChildren();
+            if (children != null) {
+                while (children.hasNext()) {
+                    stack.add(children.next());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the path of the resource targeted by the vanity paths of the
+     * given holder.
+     */
+    private static String getVanityTargetPath(final String holder) {
+        if (ResourceUtil.getName(holder).equals(JCR_CONTENT)) {
+            return ResourceUtil.getParent(holder);
+        }
+        return holder;
+    }
+
+    /**
+     * Forgets the vanity path keys registered for the given holder and adds
+     * them to the given set of keys to be rebuilt.
+     */
+    private void removeVanityPathHolder(final String holder, final Set<String> vanityKeys) {
+        final Set<String> oldKeys = this.vanityKeysByHolder.remove(holder);
+        if (oldKeys != null) {
+            // the target may still be provided by the node or its jcr:content
+            final String target = getVanityTargetPath(holder);
+            if (target != null && !this.vanityKeysByHolder.containsKey(target)
+                    && !this.vanityKeysByHolder.containsKey(target.concat("/").concat(JCR_CONTENT))) {
+                this.vanityTargets.remove(target);
+            }
+            for (final String key : oldKeys) {
+                final Set<String> holders = this.vanityHoldersByKey.get(key);
+                if (holders != null) {
+                    holders.remove(holder);
+                    if (holders.isEmpty()) {
+                        this.vanityHoldersByKey.remove(key);
+                    }
+                }
+                vanityKeys.add(key);
+            }
+        }
+    }
+
+    /**
+     * Reads the vanity paths of the given resource and registers the keys it
+     * contributes to. All keys affected by the new vanity paths are added to
+     * the given set of keys to be rebuilt.
+     */
+    private void addVanityPathHolder(final Resource resource, final Set<String> vanityKeys) {
+        if (!this.isAllowedVanityPathHolder(resource)) {
+            return;
+        }
+        final String path = resource.getPath();
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        if (props == null) {
+            return;
+        }
+        for (final String pVanityPath : props.get(PROP_VANITY_PATH, new String[0])) {
+            final String[] result = this.getVanityPathDefinition(pVanityPath);
+            if (result != null) {
+                registerVanityPathHolder(this.vanityKeysByHolder, this.vanityHoldersByKey, path, result[1]);
+                this.vanityTargets.add(getVanityTargetPath(path));
+                vanityKeys.add(result[1]);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the resolve map entries for a single vanity path key from all
+     * resources currently registered for it, honoring their vanity order.
+     */
+    private void updateVanityPathKey(final ResourceResolver resolver, final String key) {
+        final List<Resource> resources = new ArrayList<Resource>();
+        final Set<String> holders = this.vanityHoldersByKey.get(key);
+        if (holders != null) {
+            for (final String holder : holders) {
+                final Resource resource = resolver.getResource(holder);
+                if (resource != null) {
+                    resources.add(resource);
+                }
+            }
+        }
+        Collections.sort(resources, new Comparator<Resource>() {
+
+            public int compare(final Resource r1, final Resource r2) {
+                // descending order as for the query in loadVanityPaths
+                return getVanityOrder(r2).compareTo(getVanityOrder(r1));
+            }
+        });
+
+        final Map<String, List<MapEntry>> entryMap = new HashMap<String, List<MapEntry>>();
+        final Set<String> processedVanityPaths = new HashSet<String>();
+        for (final Resource resource : resources) {
+            this.loadVanityPath(resource, entryMap, new HashSet<String>(), processedVanityPaths);
+        }
+
+        final List<MapEntry> entries = entryMap.get(key);
+        if (entries == null || entries.isEmpty()) {
+            this.resolveMapsMap.remove(key);
+        } else {
+            this.resolveMapsMap.put(key, Collections.unmodifiableList(entries));
+        }
+    }
+
+    private static Long getVanityOrder(final Resource resource) {
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        return props == null ? Long.valueOf(0) : props.get(PROP_VANITY_ORDER, Long.valueOf(0));
+    }
+
+    /**
+     * Rebuilds the alias map of the given parent from its children.
+     */
+    private void updateAliasParent(final ResourceResolver resolver, final String parentPath) {
+        final Map<String, String> parentMap = new HashMap<String, String>();
+        final Resource parent = resolver.getResource(parentPath);
+        if (parent != null) {
+            final Iterator<Resource> children = parent.listChildren();
+            while (children.hasNext()) {
+                final Resource child = children.next();
+                if (hasAlias(child)) {
+                    this.loadAlias(child.adaptTo(ValueMap.class), parentPath, child.getName(), parentMap);
+                }
+                final Resource content = child.getChild(JCR_CONTENT);
+                if (hasAlias(content)) {
+                    this.loadAlias(content.adaptTo(ValueMap.class), parentPath, child.getName(), parentMap);
+                }
+            }
+        }
+        if (parentMap.isEmpty()) {
+            this.aliasMap.remove(parentPath);
+            this.aliasParentPaths.remove(parentPath);
+        } else {
+            this.aliasMap.put(parentPath, Collections.unmodifiableMap(parentMap));
+            this.aliasParentPaths.add(parentPath);
+        }
+    }
+
+    private static boolean hasAlias(final Resource resource) {
+        if (resource == null) {
+            return false;
+        }
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        return props != null && props.containsKey(ResourceResolverImpl.PROP_ALIAS);
+    }
+
+    /**
+     * Returns the path of the resource whose alias map is affected by a
+     * sling:alias property of the resource at the given path or
+     * <code>null</code> if there is no such parent.
+     */
+    private static String getAliasParentPath(final String path) {
+        String parentPath = ResourceUtil.getParent(path);
+        if (parentPath != null && ResourceUtil.getName(path).equals(JCR_CONTENT)) {
+            parentPath = ResourceUtil.getParent(parentPath);
+        }
+        return parentPath;
+    }
+
     private <K1, K2, V> Map<K1, Map<K2, V>> makeUnmodifiableMap(final Map<K1, Map<K2, V>> map) {
-        final Map<K1, Map<K2, V>> newMap = new HashMap<K1, Map<K2, V>>();
+        final Map<K1, Map<K2, V>> newMap = new ConcurrentHashMap<K1, Map<K2, V>>();
         for (final K1 key : map.keySet()) {
             newMap.put(key, Collections.unmodifiableMap(map.get(key)));
         }
-        return Collections.unmodifiableMap(newMap);
+        return newMap;
     }
 
     /**
@@ -349,6 +756,25 @@ public class MapEntries implements EventHandler {
         return mapMaps;
     }
 
+    /**
+     * Returns the map entries which may match the given path in the order of
+     * the {@link #getMapMaps()} collection. Entries whose pattern cannot match
+     * because the path does not start with the literal prefix of the pattern
+     * are skipped.
+     */
+    public Iterator<MapEntry> getMapMapsIterator(final String mappedPath) {
+        return mapMapsIndex.getCandidates(mappedPath);
+    }
+
+    /**
+     * Returns the number of times the mappings have changed. This allows
+     * callers caching mapping results to detect changes without listening
+     * for the mapping changed event.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
     public Map<String, String> getAliasMap(final String parentPath) {
         return aliasMap.get(parentPath);
     }
@@ -378,6 +804,18 @@ public class MapEntries implements EventHandler {
             return;
         }
 
+        // apply changes outside of the map root as deltas
+        if (this.enableIncrementalUpdate && !path.startsWith(this.mapRoot)
+                && !this.mapRoot.startsWith(path.endsWith("/") ? path : path.concat("/"))) {
+            synchronized (this.pendingUpdates) {
+                final boolean subtree = !SlingConstants.TOPIC_RESOURCE_CHANGED.equals(event.getTopic());
+                final Boolean pending = this.pendingUpdates.remove(path);
+                this.pendingUpdates.put(path, subtree || Boolean.TRUE.equals(pending));
+            }
+            triggerUpdate();
+            return;
+        }
+
         // check whether a remove event has an influence on vanity paths
         boolean doInit = true;
         if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic()) && !path.startsWith(this.mapRoot)) {
@@ -414,6 +852,7 @@ public class MapEntries implements EventHandler {
      * Send an OSGi event
      */
     private void sendChangeEvent() {
+        this.changeCount++;
         if (this.eventAdmin != null) {
             final Event event = new Event(SlingConstants.TOPIC_RESOURCE_RESOLVER_MAPPING_CHANGED,
                             (Dictionary<?, ?>) null);
@@ -530,37 +969,13 @@ public class MapEntries implements EventHandler {
                 resourceName = resource.getName();
             }
             Map<String, String> parentMap = map.get(parentPath);
-            for (final String alias : props.get(ResourceResolverImpl.PROP_ALIAS, String[].class)) {
-                if (parentMap != null && parentMap.containsKey(alias)) {
-                    log.warn("Encountered duplicate alias {} under parent path {}. Refusing to replace current target {} with {}.", new Object[] {
-                            alias,
-                            parentPath,
-                            parentMap.get(alias),
-                            resourceName
-                    });
-                } else {
-                    // check alias
-                    boolean invalid = alias.equals("..") || alias.equals(".");
-                    if ( !invalid ) {
-                        for(final char c : alias.toCharArray()) {
-                            // invalid if / or # or a ?
-                            if ( c == '/' || c == '#' || c == '?' ) {
-                                invalid = true;
-                                break;
-                            }
-                        }
-                    }
-                    if ( invalid ) {
-                        log.warn("Encountered invalid alias {} under parent path {}. Refusing to use it.",
-                                alias, parentPath);
-                    } else {
-                        if (parentMap == null) {
-                            parentMap = new HashMap<String, String>();
-                            map.put(parentPath, parentMap);
-                        }
-                        parentMap.put(alias, resourceName);
-                    }
-                }
+            if (parentMap == null) {
+                parentMap = new HashMap<String, String>();
+                map.put(parentPath, parentMap);
+            }
+            this.loadAlias(props, parentPath, resourceName, parentMap);
+            if (parentMap.isEmpty()) {
+                map.remove(parentPath);
             }
         }
 
@@ -568,11 +983,48 @@ public class MapEntries implements EventHandler {
 
     }
 
+    /**
+     * Adds the valid aliases of a resource to the alias map of its parent.
+     */
+    private void loadAlias(final ValueMap props, final String parentPath, final String resourceName,
+            final Map<String, String> parentMap) {
+        for (final String alias : props.get(ResourceResolverImpl.PROP_ALIAS, new String[0])) {
+            if (parentMap.containsKey(alias)) {
+                log.warn("Encountered duplicate alias {} under parent path {}. Refusing to replace current target {} with {}.", new Object[] {
+                        alias,
+                        parentPath,
+                        parentMap.get(alias),
+                        resourceName
+                });
+            } else {
+                // check alias
+                boolean invalid = alias.equals("..") || alias.equals(".");
+                if ( !invalid ) {
+                    for(final char c : alias.toCharArray()) {
+                        // invalid if / or # or a ?
+                        if ( c == '/' || c == '#' || c == '?' ) {
+                            invalid = true;
+                            break;
+                        }
+                    }
+                }
+                if ( invalid ) {
+                    log.warn("Encountered invalid alias {} under parent path {}. Refusing to use it.",
+                            alias, parentPath);
+                } else {
+                    parentMap.put(alias, resourceName);
+                }
+            }
+        }
+    }
+
     /**
      * Load vanity paths Search for all nodes inheriting the sling:VanityPath
-     * mixin
+     * mixin. The resources providing the vanity paths are only registered in
+     * the given holder maps if these are not <code>null</code>.
      */
-    private Collection<String> loadVanityPaths(final ResourceResolver resolver, final Map<String, List<MapEntry>> entryMap) {
+    private Collection<String> loadVanityPaths(final ResourceResolver resolver, final Map<String, List<MapEntry>> entryMap,
+            final Map<String, Set<String>> keysByHolder, final Map<String, Set<String>> holdersByKey) {
         // sling:VanityPath (uppercase V) is the mixin name
         // sling:vanityPath (lowercase) is the property name
         final Set<String> targetPaths = new HashSet<String>();
@@ -584,88 +1036,139 @@ public class MapEntries implements EventHandler {
         while (i.hasNext()) {
             final Resource resource = i.next();
 
-            // ignore system tree
-            if (resource.getPath().startsWith(JCR_SYSTEM_PREFIX)) {
-                log.debug("loadVanityPaths: Ignoring {}", resource);
+            if ( !this.isAllowedVanityPathHolder(resource) ) {
                 continue;
             }
-
-            // check whitelist
-            if ( this.vanityPathConfig != null ) {
-                boolean allowed = false;
-                for(final VanityPathConfig config : this.vanityPathConfig) {
-                    if ( resource.getPath().startsWith(config.prefix) ) {
-                        allowed = !config.isExclude;
-                        break;
-                    }
+            final Collection<String> keys = this.loadVanityPath(resource, entryMap, targetPaths, processedVanityPaths);
+            if (keysByHolder != null) {
+                for (final String key : keys) {
+                    registerVanityPathHolder(keysByHolder, holdersByKey, resource.getPath(), key);
                 }
-                if ( !allowed ) {
-                    log.debug("loadVanityPaths: Ignoring as not in white list {}", resource);
-                    continue;
+            }
+        }
+        return targetPaths;
+    }
+
+    /**
+     * Checks whether vanity paths of the given resource are considered at all
+     */
+    private boolean isAllowedVanityPathHolder(final Resource resource) {
+        // ignore system tree
+        if (resource.getPath().startsWith(JCR_SYSTEM_PREFIX)) {
+            log.debug("loadVanityPaths: Ignoring {}", resource);
+            return false;
+        }
+
+        // check whitelist
+        if ( this.vanityPathConfig != null ) {
+            boolean allowed = false;
+            for(final VanityPathConfig config : this.vanityPathConfig) {
+                if ( resource.getPath().startsWith(config.prefix) ) {
+                    allowed = !config.isExclude;
+                    break;
                 }
             }
-            // require properties
-            final ValueMap props = resource.adaptTo(ValueMap.class);
-            if (props == null) {
-                log.debug("loadVanityPaths: Ignoring {} without properties", resource);
-                continue;
+            if ( !allowed ) {
+                log.debug("loadVanityPaths: Ignoring as not in white list {}", resource);
+                return false;
             }
+        }
+        return true;
+    }
 
-            // url is ignoring scheme and host.port and the path is
-            // what is stored in the sling:vanityPath property
-            final String[] pVanityPaths = props.get("sling:vanityPath", new String[0]);
-            for (final String pVanityPath : pVanityPaths) {
-                final String[] result = this.getVanityPathDefinition(pVanityPath);
-                if (result != null) {
-                    final String url = result[0] + result[1];
-
-                    if ( !processedVanityPaths.contains(url) ) {
-                        processedVanityPaths.add(url);
-                        // redirect target is the node providing the
-                        // sling:vanityPath
-                        // property (or its parent if the node is called
-                        // jcr:content)
-                        final Resource redirectTarget;
-                        if (resource.getName().equals("jcr:content")) {
-                            redirectTarget = resource.getParent();
-                        } else {
-                            redirectTarget = resource;
-                        }
-                        final String redirect = redirectTarget.getPath();
-                        final String redirectName = redirectTarget.getName();
+    /**
+     * Adds the resolve map entries for the vanity paths of a single resource.
+     * Vanity paths already contained in <code>processedVanityPaths</code> are
+     * skipped.
+     * @return The keys of all valid vanity paths of the resource, including
+     *         the skipped ones.
+     */
+    private Collection<String> loadVanityPath(final Resource resource, final Map<String, List<MapEntry>> entryMap,
+            final Set<String> targetPaths, final Set<String> processedVanityPaths) {
+        // require properties
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        if (props == null) {
+            log.debug("loadVanityPaths: Ignoring {} without properties", resource);
+            return Collections.<String> emptySet();
+        }
 
-                        // whether the target is attained by a external redirect or
-                        // by an internal redirect is defined by the sling:redirect
-                        // property
-                        final int status = props.get("sling:redirect", false) ? props.get(
-                                        PROP_REDIRECT_EXTERNAL_REDIRECT_STATUS, factory.getDefaultVanityPathRedirectStatus())
-                                        : -1;
+        final Set<String> keys = new HashSet<String>();
+
+        // url is ignoring scheme and host.port and the path is
+        // what is stored in the sling:vanityPath property
+        final String[] pVanityPaths = props.get(PROP_VANITY_PATH, new String[0]);
+        for (final String pVanityPath : pVanityPaths) {
+            final String[] result = this.getVanityPathDefinition(pVanityPath);
+            if (result != null) {
+                final String url = result[0] + result[1];
+                keys.add(result[1]);
+
+                if ( !processedVanityPaths.contains(url) ) {
+                    processedVanityPaths.add(url);
+                    // redirect target is the node providing the
+                    // sling:vanityPath
+                    // property (or its parent if the node is called
+                    // jcr:content)
+                    final Resource redirectTarget;
+                    if (resource.getName().equals(JCR_CONTENT)) {
+                        redirectTarget = resource.getParent();
+                    } else {
+                        redirectTarget = resource;
+                    }
+                    final String redirect = redirectTarget.getPath();
+                    final String redirectName = redirectTarget.getName();
 
-                        final String checkPath = result[1];
+                    // whether the target is attained by a external redirect or
+                    // by an internal redirect is defined by the sling:redirect
+                    // property
+                    final int status = props.get("sling:redirect", false) ? props.get(
+                                    PROP_REDIRECT_EXTERNAL_REDIRECT_STATUS, factory.getDefaultVanityPathRedirectStatus())
+                                    : -1;
 
-                        if (redirectName.indexOf('.') > -1) {
-                            // 1. entry with exact match
-                            this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, redirect));
+                    final String checkPath = result[1];
 
-                            final int idx = redirectName.lastIndexOf('.');
-                            final String extension = redirectName.substring(idx + 1);
+                    if (redirectName.indexOf('.') > -1) {
+                        // 1. entry with exact match
+                        this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, redirect));
 
-                            // 2. entry with extension
-                            this.addEntry(entryMap, checkPath, getMapEntry(url + "\\." + extension, status, false, redirect));
-                        } else {
-                            // 1. entry with exact match
-                            this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, redirect + ".html"));
+                        final int idx = redirectName.lastIndexOf('.');
+                        final String extension = redirectName.substring(idx + 1);
 
-                            // 2. entry with match supporting selectors and extension
-                            this.addEntry(entryMap, checkPath, getMapEntry(url + "(\\..*)", status, false, redirect + "$1"));
-                        }
-                        // 3. keep the path to return
-                        targetPaths.add(redirect);
+                        // 2. entry with extension
+                        this.addEntry(entryMap, checkPath, getMapEntry(url + "\\." + extension, status, false, redirect));
+                    } else {
+                        // 1. entry with exact match
+                        this.addEntry(entryMap, checkPath, getMapEntry(url + "$", status, false, redirect + ".html"));
+
+                        // 2. entry with match supporting selectors and extension
+                        this.addEntry(entryMap, checkPath, getMapEntry(url + "(\\..*)", status, false, redirect + "$1"));
                     }
+                    // 3. keep the path to return
+                    targetPaths.add(redirect);
                 }
             }
         }
-        return targetPaths;
+        return keys;
+    }
+
+    /**
+     * Remembers that the resource at <code>holder</code> provides a vanity
+     * path for the given resolve map key.
+     */
+    private static void registerVanityPathHolder(final Map<String, Set<String>> keysByHolder,
+            final Map<String, Set<String>> holdersByKey, final String holder, final String key) {
+        Set<String> keys = keysByHolder.get(holder);
+        if (keys == null) {
+            keys = new HashSet<String>();
+            keysByHolder.put(holder, keys);
+        }
+        keys.add(key);
+        Set<String> holders = holdersByKey.get(key);
+        if (holders == null) {
+            holders = new HashSet<String>();
+            holdersByKey.put(key, holders);
+        }
+        holders.add(holder);
     }
 
     /**
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The <code>MapEntryIndex</code> is an immutable lookup structure over an
+ * ordered collection of map entries. Each entry is stored in a character trie
+ * under the literal prefix of its pattern, that is the part of the pattern
+ * any matching string must start with. Entries without such a prefix (e.g.
+ * patterns starting with a group or containing an alternation) are kept in
+ * the root node and are candidates for every lookup.
+ * <p>
+ * A lookup walks the trie along the characters of the path and returns the
+ * entries found on the way in the order of the original collection, so the
+ * first entry whose pattern matches is the same one a linear scan over all
+ * entries would find.
+ */
+class MapEntryIndex {
+
+    /** Characters with a special meaning in a regular expression. */
+    private static final String SPECIAL_CHARS = "\\[](){}.*+?^$|";
+
+    /** Quantifiers making the preceding character optional. */
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    /** The entries in their original order. */
+    private final MapEntry[] entries;
+
+    private final Node root = new Node();
+
+    MapEntryIndex(final Collection<MapEntry> entries) {
+        this.entries = entries.toArray(new MapEntry[entries.size()]);
+        for (int i = 0; i < this.entries.length; i++) {
+            final String prefix = getLiteralPrefix(this.entries[i].getPattern());
+            Node node = this.root;
+            for (int c = 0; c < prefix.length(); c++) {
+                node = node.getOrCreateChild(prefix.charAt(c));
+            }
+            node.add(i);
+        }
+        this.root.seal();
+    }
+
+    /**
+     * Returns the entries whose pattern may match the given path in the order
+     * of the collection this index has been created from.
+     */
+    Iterator<MapEntry> getCandidates(final String path) {
+        int[] candidates = this.root.ordinals;
+        int count = candidates.length;
+        boolean copied = false;
+        Node node = this.root;
+        for (int c = 0; c < path.length(); c++) {
+            node = node.getChild(path.charAt(c));
+            if (node == null) {
+                break;
+            }
+            if (node.ordinals.length > 0) {
+                if (!copied || count + node.ordinals.length > candidates.length) {
+                    final int[] grown = new int[Math.max(count + node.ordinals.length, candidates.length * 2)];
+                    System.arraycopy(candidates, 0, grown, 0, count);
+                    candidates = grown;
+                    copied = true;
+                }
+                System.arraycopy(node.ordinals, 0, candidates, count, node.ordinals.length);
+                count += node.ordinals.length;
+            }
+        }
+        if (copied) {
+            Arrays.sort(candidates, 0, count);
+        }
+        return new CandidateIterator(this.entries, candidates, count);
+    }
+
+    /**
+     * Returns the literal string any string matched by the given pattern
+     * must start with. The pattern must be hooked to the start of the string,
+     * otherwise the empty string is returned.
+     */
+    static String getLiteralPrefix(final String pattern) {
+        if (!pattern.startsWith("^") || pattern.indexOf('|') != -1) {
+            return "";
+        }
+        final StringBuilder prefix = new StringBuilder();
+        int i = 1;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                // only escaped non alphanumeric characters are literals
+                if (next >= pattern.length() || Character.isLetterOrDigit(pattern.charAt(next))) {
+                    break;
+                }
+                c = pattern.charAt(next);
+                next++;
+            } else if (SPECIAL_CHARS.indexOf(c) != -1) {
+                break;
+            }
+            if (next < pattern.length()) {
+                final char following = pattern.charAt(next);
+                if (OPTIONAL_QUANTIFIERS.indexOf(following) != -1) {
+                    break;
+                }
+                if (following == '+') {
+                    // at least one occurrence, but nothing known beyond
+                    prefix.append(c);
+                    break;
+                }
+            }
+            prefix.append(c);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private static final class Node {
+
+        private static final int[] NO_ORDINALS = new int[0];
+
+        private Map<Character, Node> children;
+
+        private List<Integer> collected;
+
+        private int[] ordinals = NO_ORDINALS;
+
+        Node getChild(final char c) {
+            return this.children == null ? null : this.children.get(c);
+        }
+
+        Node getOrCreateChild(final char c) {
+            if (this.children == null) {
+                this.children = new HashMap<Character, Node>();
+            }
+            Node child = this.children.get(c);
+            if (child == null) {
+                child = new Node();
+                this.children.put(c, child);
+            }
+            return child;
+        }
+
+        void add(final int ordinal) {
+            if (this.collected == null) {
+                this.collected = new ArrayList<Integer>();
+            }
+            this.collected.add(ordinal);
+        }
+
+        /**
+         * Converts the collected ordinals of this node and all children into
+         * the compact array representation.
+         */
+        void seal() {
+            if (this.collected != null) {
+                this.ordinals = new int[this.collected.size()];
+                for (int i = 0; i < this.ordinals.length; i++) {
+                    this.ordinals[i] = this.collected.get(i);
+                }
+                this.collected = null;
+            }
+            if (this.children != null) {
+                for (final Node child : this.children.values()) {
+                    child.seal();
+                }
+            }
+        }
+    }
+
+    private static final class CandidateIterator implements Iterator<MapEntry> {
+
+        private final MapEntry[] entries;
+
+        private final int[] ordinals;
+
+        private final int count;
+
+        private int index;
+
+        CandidateIterator(final MapEntry[] entries, final int[] ordinals, final int count) {
+            this.entries = entries;
+            this.ordinals = ordinals;
+            this.count = count;
+        }
+
+        /**
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return this.index < this.count;
+        }
+
+        /**
+         * @see java.util.Iterator#next()
+         */
+        public MapEntry next() {
+            if (this.index >= this.count) {
+                throw new NoSuchElementException();
+            }
+            return this.entries[this.ordinals[this.index++]];
+        }
+
+        /**
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
+import org.junit.Test;
+
+public class MappingCacheTest {
+
+    @Test
+    public void testMappedPathPerRequestHost() {
+        final MappingCache cache = new MappingCache(10);
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn("http");
+        when(request.getServerName()).thenReturn("example.com");
+        when(request.getServerPort()).thenReturn(80);
+
+        // a lookup always precedes storing a result
+        assertNull(cache.getMappedPath(MapEntries.EMPTY, null, "/content/a"));
+        cache.putMappedPath(null, "/content/a", "/a");
+        assertNull(cache.getMappedPath(MapEntries.EMPTY, request, "/content/a"));
+        cache.putMappedPath(request, "/content/a", "http://example.com/a");
+
+        assertEquals("/a", cache.getMappedPath(MapEntries.EMPTY, null, "/content/a"));
+        assertEquals("http://example.com/a", cache.getMappedPath(MapEntries.EMPTY, request, "/content/a"));
+    }
+
+    @Test
+    public void testInvalidationOnMappingChange() {
+        final MapEntries mapEntries = mock(MapEntries.class);
+        when(mapEntries.getChangeCount()).thenReturn(1L);
+
+        final MappingCache cache = new MappingCache(10);
+        assertNull(cache.getSegmentName(mapEntries, "/content/a"));
+        cache.putSegmentName("/content/a", "alias");
+        cache.putMappedPath(null, "/content/a", "/alias");
+        assertEquals("alias", cache.getSegmentName(mapEntries, "/content/a"));
+
+        when(mapEntries.getChangeCount()).thenReturn(2L);
+        assertNull(cache.getSegmentName(mapEntries, "/content/a"));
+        assertNull(cache.getMappedPath(mapEntries, null, "/content/a"));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        final MappingCache cache = new MappingCache(2);
+        assertNull(cache.getSegmentName(MapEntries.EMPTY, "/a"));
+        cache.putSegmentName("/a", "a");
+        cache.putSegmentName("/b", "b");
+        // access /a such that /b is the eldest entry
+        assertEquals("a", cache.getSegmentName(MapEntries.EMPTY, "/a"));
+        cache.putSegmentName("/c", "c");
+
+        assertNull(cache.getSegmentName(MapEntries.EMPTY, "/b"));
+        assertEquals("a", cache.getSegmentName(MapEntries.EMPTY, "/a"));
+        assertEquals("c", cache.getSegmentName(MapEntries.EMPTY, "/c"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Hashtable;
+
+import org.apache.sling.api.SlingConstants;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class NonExistingResourceCacheTest {
+
+    private static final String USER = "u:user";
+
+    private static final String OTHER_USER = "u:other";
+
+    @Test
+    public void testEntriesPerUser() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, 60000);
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+        add(cache, USER, "/content/a.html");
+
+        assertTrue(cache.isNonExisting(USER, "/content/a.html"));
+        assertFalse(cache.isNonExisting(OTHER_USER, "/content/a.html"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiry() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, -1);
+        add(cache, USER, "/content/a.html");
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBoundedSize() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(2, 60000);
+        add(cache, USER, "/a");
+        add(cache, USER, "/b");
+        add(cache, USER, "/c");
+        assertTrue(cache.size() <= 2);
+        assertTrue(cache.isNonExisting(USER, "/c"));
+    }
+
+    @Test
+    public void testRoot() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, 60000);
+        add(cache, USER, "/");
+        assertTrue(cache.isNonExisting(USER, "/"));
+
+        cache.invalidate("/");
+        assertFalse(cache.isNonExisting(USER, "/"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidatePath() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, 60000);
+        add(cache, USER, "/content");
+        add(cache, USER, "/content/a");
+        add(cache, OTHER_USER, "/content/a");
+        add(cache, USER, "/content/a.html");
+        add(cache, USER, "/content/a/b");
+        add(cache, USER, "/content/a/b/c.html");
+        add(cache, USER, "/content/ab");
+        add(cache, USER, "/libs/a");
+        assertEquals(8, cache.size());
+
+        // the path, its ancestors and its descendants are dropped
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/content/a", null));
+        assertFalse(cache.isNonExisting(USER, "/content"));
+        assertFalse(cache.isNonExisting(USER, "/content/a"));
+        assertFalse(cache.isNonExisting(OTHER_USER, "/content/a"));
+        assertFalse(cache.isNonExisting(USER, "/content/a/b"));
+        assertFalse(cache.isNonExisting(USER, "/content/a/b/c.html"));
+
+        // siblings and unrelated paths are kept
+        assertTrue(cache.isNonExisting(USER, "/content/a.html"));
+        assertTrue(cache.isNonExisting(USER, "/content/ab"));
+        assertTrue(cache.isNonExisting(USER, "/libs/a"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testInvalidation() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, 60000);
+        add(cache, USER, "/content/a.html");
+
+        // changes and removals do not make resources appear
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/content/b", "jcr:title"));
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/content/c", null));
+        assertTrue(cache.isNonExisting(USER, "/content/a.html"));
+
+        // access control changes drop all entries
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/home/groups/g", "rep:members"));
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+
+        add(cache, USER, "/content/a.html");
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/content/rep:policy", null));
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+
+        // as do resource provider changes
+        add(cache, USER, "/content/a.html");
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_PROVIDER_ADDED, "/content", null));
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+        assertEquals(3, cache.getInvalidations());
+    }
+
+    @Test
+    public void testNoEntryForLookupBeforeChange() {
+        final NonExistingResourceCache cache = new NonExistingResourceCache(10, 60000);
+
+        // the path is looked up, then the resource is added before the miss is remembered
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+        final long generation = cache.getGeneration();
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/content/a.html", null));
+        cache.addNonExisting(USER, "/content/a.html", generation);
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.isNonExisting(USER, "/content/a.html"));
+    }
+
+    private static void add(final NonExistingResourceCache cache, final String userId, final String path) {
+        cache.addNonExisting(userId, path, cache.getGeneration());
+    }
+
+    private static Event createEvent(final String topic, final String path, final String changedAttribute) {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        if (changedAttribute != null) {
+            props.put(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, new String[] { changedAttribute });
+        }
+        return new Event(topic, props);
+    }
+}
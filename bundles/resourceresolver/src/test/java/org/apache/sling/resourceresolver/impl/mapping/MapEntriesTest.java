@@ -19,6 +19,7 @@ package org.apache.sling.resourceresolver.impl.mapping;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -30,11 +31,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
@@ -48,6 +51,7 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
+import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 public class MapEntriesTest {
@@ -277,4 +281,163 @@ public class MapEntriesTest {
             assertTrue(resultSet.remove(entry.getRedirect()[0]));
         }
     }
+
+    private Event createEvent(final String topic, final String path) {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        return new Event(topic, props);
+    }
+
+    @Test
+    public void test_incremental_vanity_path_update() throws Exception {
+        when(resourceResolverFactory.isIncrementalUpdateEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getMapRoot()).thenReturn(MapEntries.DEFAULT_MAP_ROOT);
+        final MapEntries incrementalEntries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            final Resource vanityResource = getVanityPathResource("/foo/a");
+            when(resourceResolver.getResource("/foo/a")).thenReturn(vanityResource);
+
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/foo/a"));
+            incrementalEntries.doUpdate();
+
+            List<MapEntry> entries = incrementalEntries.getResolveMaps();
+            assertEquals(2, entries.size());
+            for (final MapEntry entry : entries) {
+                assertTrue(entry.getPattern().contains("/vanity/foo/a"));
+            }
+
+            // the full queries are not run again for the change
+            when(resourceResolver.getResource("/foo/a")).thenReturn(null);
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/foo"));
+            incrementalEntries.doUpdate();
+
+            assertEquals(0, incrementalEntries.getResolveMaps().size());
+        } finally {
+            incrementalEntries.dispose();
+        }
+    }
+
+    @Test
+    public void test_incremental_alias_update() throws Exception {
+        when(resourceResolverFactory.isIncrementalUpdateEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getMapRoot()).thenReturn(MapEntries.DEFAULT_MAP_ROOT);
+        final MapEntries incrementalEntries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            final Resource parent = mock(Resource.class);
+            when(parent.getPath()).thenReturn("/parent");
+
+            final Resource child = mock(Resource.class);
+            when(child.getParent()).thenReturn(parent);
+            when(child.getPath()).thenReturn("/parent/child");
+            when(child.getName()).thenReturn("child");
+            when(child.adaptTo(ValueMap.class)).thenReturn(buildValueMap("sling:alias", "alias"));
+
+            when(parent.listChildren()).thenAnswer(new Answer<Iterator<Resource>>() {
+
+                public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                    return Collections.singleton(child).iterator();
+                }
+            });
+            when(resourceResolver.getResource("/parent")).thenReturn(parent);
+            when(resourceResolver.getResource("/parent/child")).thenReturn(child);
+
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/parent/child"));
+            incrementalEntries.doUpdate();
+
+            Map<String, String> aliasMap = incrementalEntries.getAliasMap("/parent");
+            assertNotNull(aliasMap);
+            assertEquals("child", aliasMap.get("alias"));
+
+            when(child.adaptTo(ValueMap.class)).thenReturn(buildValueMap("sling:alias", "other"));
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/parent/child"));
+            incrementalEntries.doUpdate();
+
+            aliasMap = incrementalEntries.getAliasMap("/parent");
+            assertNull(aliasMap.get("alias"));
+            assertEquals("child", aliasMap.get("other"));
+
+            when(parent.listChildren()).thenAnswer(new Answer<Iterator<Resource>>() {
+
+                public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                    return Collections.<Resource> emptySet().iterator();
+                }
+            });
+            when(resourceResolver.getResource("/parent/child")).thenReturn(null);
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/parent/child"));
+            incrementalEntries.doUpdate();
+
+            assertNull(incrementalEntries.getAliasMap("/parent"));
+        } finally {
+            incrementalEntries.dispose();
+        }
+    }
+
+    private void mockChildren(final Resource parent, final Resource... children) {
+        when(parent.listChildren()).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                return Arrays.asList(children).iterator();
+            }
+        });
+    }
+
+    @Test
+    public void test_incremental_update_of_moved_subtree() throws Exception {
+        when(resourceResolverFactory.isIncrementalUpdateEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getMapRoot()).thenReturn(MapEntries.DEFAULT_MAP_ROOT);
+        final MapEntries incrementalEntries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            // /foo/new/page has a vanity path, /foo/new/child an alias
+            final Resource root = mock(Resource.class);
+            when(root.getPath()).thenReturn("/foo/new");
+            when(root.getName()).thenReturn("new");
+            final Resource page = getVanityPathResource("/foo/new/page");
+            when(page.getParent()).thenReturn(root);
+            final Resource child = mock(Resource.class);
+            when(child.getPath()).thenReturn("/foo/new/child");
+            when(child.getName()).thenReturn("child");
+            when(child.getParent()).thenReturn(root);
+            when(child.adaptTo(ValueMap.class)).thenReturn(buildValueMap("sling:alias", "alias"));
+            mockChildren(root, page, child);
+            mockChildren(page);
+            mockChildren(child);
+            when(resourceResolver.getResource("/foo/new")).thenReturn(root);
+            when(resourceResolver.getResource("/foo/new/page")).thenReturn(page);
+            when(resourceResolver.getResource("/foo/new/child")).thenReturn(child);
+
+            // a move only sends events for the roots of the subtrees
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/foo/old"));
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/foo/new"));
+            incrementalEntries.doUpdate();
+
+            List<MapEntry> entries = incrementalEntries.getResolveMaps();
+            assertEquals(2, entries.size());
+            for (final MapEntry entry : entries) {
+                assertTrue(entry.getPattern().contains("/vanity/foo/new/page"));
+            }
+            Map<String, String> aliasMap = incrementalEntries.getAliasMap("/foo/new");
+            assertNotNull(aliasMap);
+            assertEquals("child", aliasMap.get("alias"));
+
+            // replacing the subtree through a remove and add keeps the descendants
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/foo/new"));
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/foo/new"));
+            incrementalEntries.doUpdate();
+
+            assertEquals(2, incrementalEntries.getResolveMaps().size());
+            assertEquals("child", incrementalEntries.getAliasMap("/foo/new").get("alias"));
+
+            // moving it away removes the mappings of all descendants
+            when(resourceResolver.getResource("/foo/new")).thenReturn(null);
+            when(resourceResolver.getResource("/foo/new/page")).thenReturn(null);
+            when(resourceResolver.getResource("/foo/new/child")).thenReturn(null);
+            incrementalEntries.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/foo/new"));
+            incrementalEntries.doUpdate();
+
+            assertEquals(0, incrementalEntries.getResolveMaps().size());
+            assertNull(incrementalEntries.getAliasMap("/foo/new"));
+        } finally {
+            incrementalEntries.dispose();
+        }
+    }
 }
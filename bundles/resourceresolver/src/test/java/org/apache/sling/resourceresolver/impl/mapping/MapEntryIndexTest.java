@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class MapEntryIndexTest {
+
+    @Test
+    public void test_literal_prefix() {
+        assertEquals("/content/", MapEntryIndex.getLiteralPrefix("^/content/"));
+        assertEquals("/content", MapEntryIndex.getLiteralPrefix("^/content$"));
+        assertEquals("/content/a.html", MapEntryIndex.getLiteralPrefix("^/content/a\\.html$"));
+        assertEquals("/conten", MapEntryIndex.getLiteralPrefix("^/content?"));
+        assertEquals("/content", MapEntryIndex.getLiteralPrefix("^/content+/"));
+        assertEquals("/content/", MapEntryIndex.getLiteralPrefix("^/content/(.*)"));
+        assertEquals("/content/", MapEntryIndex.getLiteralPrefix("^/content/\\d"));
+        assertEquals("", MapEntryIndex.getLiteralPrefix("^(/content|/apps)/"));
+        assertEquals("", MapEntryIndex.getLiteralPrefix("^/content/|/apps/"));
+        assertEquals("", MapEntryIndex.getLiteralPrefix("/content/"));
+    }
+
+    @Test
+    public void test_candidates_in_original_order() {
+        final TreeSet<MapEntry> entries = new TreeSet<MapEntry>();
+        entries.add(new MapEntry("^/content/site/en/", -1, false, "/en/"));
+        entries.add(new MapEntry("^/content/site/", -1, false, "/"));
+        entries.add(new MapEntry("^/content/other/", -1, false, "/other/"));
+        entries.add(new MapEntry("^(/libs|/apps)/", -1, false, "/code/"));
+        entries.add(new MapEntry("^/", -1, false, "/"));
+
+        final MapEntryIndex index = new MapEntryIndex(entries);
+
+        final String[] paths = { "/content/site/en/page.html", "/content/site/de/page.html", "/content/other/x",
+                "/apps/x", "/etc/x", "" };
+        for (final String path : paths) {
+            // the candidates are the matching entries in their original order
+            final List<MapEntry> expected = new ArrayList<MapEntry>();
+            for (final MapEntry entry : entries) {
+                if (entry.replace(path) != null) {
+                    expected.add(entry);
+                }
+            }
+            final Iterator<MapEntry> candidates = index.getCandidates(path);
+            for (final MapEntry entry : expected) {
+                MapEntry candidate = candidates.next();
+                while (candidate.replace(path) == null) {
+                    candidate = candidates.next();
+                }
+                assertSame(entry, candidate);
+            }
+        }
+
+        // entries with a non matching literal prefix are skipped
+        final Iterator<MapEntry> candidates = index.getCandidates("/content/site/de/page.html");
+        while (candidates.hasNext()) {
+            final String pattern = candidates.next().getPattern();
+            assertFalse(pattern.startsWith("^/content/site/en/"));
+            assertFalse(pattern.startsWith("^/content/other/"));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.core.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+import org.apache.sling.api.SlingConstants;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * The <code>CompiledScriptCache</code> keeps the compiled form of scripts
+ * of engines implementing <code>javax.script.Compilable</code> such that
+ * scripts are not parsed again on each evaluation.
+ * <p>
+ * An entry is only used if the last modification time of the script
+ * resource and the script engine factory are still the same as when the
+ * script was compiled. Additionally entries are removed on resource
+ * events for the script path and the whole cache is flushed if a script
+ * engine factory is added or removed.
+ * <p>
+ * Scripts are looked up on each evaluation, so lookups must not lock: a
+ * lookup only marks the entry found as referenced. If the cache is full,
+ * entries are evicted with the clock algorithm: a hand moves over the
+ * entries, giving referenced entries a second chance by clearing the mark
+ * and removing the first entry not referenced since the hand passed it.
+ * <p>
+ * As compiled scripts are shared between threads, only scripts of engines
+ * declaring to be thread safe through the <code>THREADING</code>
+ * parameter are cached.
+ */
+class CompiledScriptCache implements EventHandler {
+
+    private static final String THREADING = "THREADING";
+
+    private final int maxSize;
+
+    private final ConcurrentMap<String, Entry> entries;
+
+    /** The clock hand, guarded by the eviction lock. */
+    private Iterator<Map.Entry<String, Entry>> hand;
+
+    /** Serializes the evictions. */
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong compileTime = new AtomicLong();
+
+    private final AtomicLong savedCompileTime = new AtomicLong();
+
+    CompiledScriptCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Returns <code>true</code> if scripts of the engine can be compiled
+     * and the compiled scripts may be used concurrently.
+     */
+    static boolean isCacheable(final ScriptEngine engine) {
+        if (!(engine instanceof Compilable)) {
+            return false;
+        }
+        try {
+            return engine.getFactory().getParameter(THREADING) != null;
+        } catch (final RuntimeException e) {
+            // engines are not required to support the parameter
+            return false;
+        }
+    }
+
+    /**
+     * Returns the compiled script or <code>null</code> if the script has not
+     * been compiled yet or if it has been modified since.
+     */
+    CompiledScript get(final String path, final long lastModified, final ScriptEngineFactory factory) {
+        final Entry entry = this.entries.get(path);
+        if (entry != null && entry.lastModified == lastModified && entry.factory == factory) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            this.hits.incrementAndGet();
+            this.savedCompileTime.addAndGet(entry.compileTime);
+            return entry.script;
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the compiled script.
+     *
+     * @param compileTime The time in nanoseconds used to compile the script.
+     */
+    void put(final String path, final long lastModified, final ScriptEngineFactory factory,
+            final CompiledScript script, final long compileTime) {
+        this.compileTime.addAndGet(compileTime);
+        final Entry entry = new Entry(lastModified, factory, script, compileTime);
+        this.entries.put(path, entry);
+        if (this.entries.size() > this.maxSize) {
+            this.evict(entry);
+        }
+    }
+
+    /**
+     * Moves the clock hand until the cache is not larger than its maximum
+     * size, removing the entries not referenced since the last pass.
+     *
+     * @param added The new entry, which is not removed.
+     */
+    private void evict(final Entry added) {
+        synchronized (this.evictionLock) {
+            int removed = 0;
+            while (this.entries.size() > this.maxSize) {
+                if (this.hand == null || !this.hand.hasNext()) {
+                    this.hand = this.entries.entrySet().iterator();
+                    if (!this.hand.hasNext()) {
+                        break;
+                    }
+                }
+                final Map.Entry<String, Entry> candidate = this.hand.next();
+                final Entry entry = candidate.getValue();
+                if (entry == added) {
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else if (this.entries.remove(candidate.getKey(), entry)) {
+                    removed++;
+                }
+            }
+            this.evictions.addAndGet(removed);
+        }
+    }
+
+    /**
+     * Removes all entries for scripts at, below or above the path.
+     */
+    void invalidate(final String path) {
+        final String prefix = path.endsWith("/") ? path : path.concat("/");
+        final Iterator<String> i = this.entries.keySet().iterator();
+        while (i.hasNext()) {
+            final String scriptPath = i.next();
+            if (scriptPath.equals(path) || scriptPath.startsWith(prefix) || path.startsWith(scriptPath.concat("/"))) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void flush() {
+        this.entries.clear();
+    }
+
+    /**
+     * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+     */
+    public void handleEvent(final Event event) {
+        if (event.getTopic().startsWith("javax/script/ScriptEngineFactory/")) {
+            this.flush();
+        } else {
+            final Object path = event.getProperty(SlingConstants.PROPERTY_PATH);
+            if (path != null) {
+                this.invalidate(path.toString());
+            }
+        }
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    long getHits() {
+        return this.hits.get();
+    }
+
+    long getMisses() {
+        return this.misses.get();
+    }
+
+    long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Returns the time in nanoseconds spent compiling scripts.
+     */
+    long getCompileTime() {
+        return this.compileTime.get();
+    }
+
+    /**
+     * Returns the time in nanoseconds which would have been spent compiling
+     * the scripts found in the cache.
+     */
+    long getSavedCompileTime() {
+        return this.savedCompileTime.get();
+    }
+
+    void resetStatistics() {
+        this.hits.set(0);
+        this.misses.set(0);
+        this.evictions.set(0);
+        this.compileTime.set(0);
+        this.savedCompileTime.set(0);
+    }
+
+    private static final class Entry {
+
+        final long lastModified;
+
+        final ScriptEngineFactory factory;
+
+        final CompiledScript script;
+
+        final long compileTime;
+
+        /** Whether the entry has been used since the clock hand passed it. */
+        volatile boolean referenced;
+
+        Entry(final long lastModified, final ScriptEngineFactory factory,
+                final CompiledScript script, final long compileTime) {
+            this.lastModified = lastModified;
+            this.factory = factory;
+            this.script = script;
+            this.compileTime = compileTime;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.core.impl;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import org.apache.sling.scripting.core.jmx.CompiledScriptCacheMBean;
+
+/**
+ * This is the implementation of the management interface for the cache of
+ * compiled scripts.
+ */
+class CompiledScriptCacheMBeanImpl extends StandardMBean implements CompiledScriptCacheMBean {
+
+    private static final long NANOS_PER_MSEC = 1000000L;
+
+    private final CompiledScriptCache cache;
+
+    CompiledScriptCacheMBeanImpl(final CompiledScriptCache cache) throws NotCompliantMBeanException {
+        super(CompiledScriptCacheMBean.class);
+        this.cache = cache;
+    }
+
+    public int getCacheSize() {
+        return this.cache.size();
+    }
+
+    public int getMaximumCacheSize() {
+        return this.cache.getMaxSize();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return this.cache.getEvictions();
+    }
+
+    public long getCompileTimeMsec() {
+        return this.cache.getCompileTime() / NANOS_PER_MSEC;
+    }
+
+    public long getSavedCompileTimeMsec() {
+        return this.cache.getSavedCompileTime() / NANOS_PER_MSEC;
+    }
+
+    public void flushCache() {
+        this.cache.flush();
+    }
+
+    public void resetStatistics() {
+        this.cache.resetStatistics();
+    }
+}
@@ -46,9 +46,12 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 import javax.servlet.Servlet;
@@ -116,6 +119,9 @@ class DefaultSlingScript implements SlingScript, Servlet, ServletConfig {
     /** The cache for services. */
     private final ServiceCache cache;
 
+    /** The cache for compiled scripts, <code>null</code> if disabled. */
+    private final CompiledScriptCache compiledScriptCache;
+
     /**
      * Constructor
      * @param bundleContext The bundle context
@@ -123,17 +129,21 @@ class DefaultSlingScript implements SlingScript, Servlet, ServletConfig {
      * @param scriptEngine The script engine
      * @param bindingsValuesProviders additional bindings values providers
      * @param cache serviceCache
+     * @param compiledScriptCache cache for compiled scripts, may be <code>null</code>
      */
     DefaultSlingScript(final BundleContext bundleContext,
             final Resource scriptResource,
             final ScriptEngine scriptEngine,
             final Collection<BindingsValuesProvider> bindingsValuesProviders,
-            final ServiceCache cache) {
+            final ServiceCache cache,
+            final CompiledScriptCache compiledScriptCache) {
         this.scriptResource = scriptResource;
         this.scriptEngine = scriptEngine;
         this.bundleContext = bundleContext;
         this.bindingsValuesProviders = bindingsValuesProviders;
         this.cache = cache;
+        this.compiledScriptCache = (compiledScriptCache != null && CompiledScriptCache.isCacheable(scriptEngine)
+                ? compiledScriptCache : null);
         this.scriptName = this.scriptResource.getPath();
         // Now know how to get the input stream, we still have to decide
         // on the encoding of the stream's data. Primarily we assume it is
@@ -352,13 +362,19 @@ class DefaultSlingScript implements SlingScript, Servlet, ServletConfig {
             ctx.setAttribute(SlingScriptConstants.ATTR_SCRIPT_RESOURCE_RESOLVER,
                     this.scriptResource.getResourceResolver(), SlingScriptConstants.SLING_SCOPE);
 
-            reader = getScriptReader();
-            if ( method != null && !(this.scriptEngine instanceof Invocable)) {
-                reader = getWrapperReader(reader, method, args);
-            }
+            // evaluate the script, preferably using the cached compiled script
+            final CompiledScript compiledScript = (method == null ? getCompiledScript() : null);
+            final Object result;
+            if ( compiledScript != null ) {
+                result = compiledScript.eval(ctx);
+            } else {
+                reader = getScriptReader();
+                if ( method != null && !(this.scriptEngine instanceof Invocable)) {
+                    reader = getWrapperReader(reader, method, args);
+                }
 
-            // evaluate the script
-            final Object result = scriptEngine.eval(reader, ctx);
+                result = scriptEngine.eval(reader, ctx);
+            }
 
             // call method - if supplied and script engine supports direct invocation
             if ( method != null && (this.scriptEngine instanceof Invocable)) {
@@ -533,6 +549,36 @@ class DefaultSlingScript implements SlingScript, Servlet, ServletConfig {
 
     // ---------- internal -----------------------------------------------------
 
+    /**
+     * Returns the compiled script from the compiled script cache, compiling
+     * and caching it if required. If the cache is disabled or the last
+     * modification time of the script is unknown, <code>null</code> is
+     * returned and the script has to be evaluated from its source.
+     */
+    private CompiledScript getCompiledScript() throws IOException, ScriptException {
+        if ( this.compiledScriptCache == null ) {
+            return null;
+        }
+        final long lastModified = this.scriptResource.getResourceMetadata().getModificationTime();
+        if ( lastModified <= 0 ) {
+            return null;
+        }
+        final ScriptEngineFactory factory = this.scriptEngine.getFactory();
+        CompiledScript compiledScript = this.compiledScriptCache.get(this.scriptName, lastModified, factory);
+        if ( compiledScript == null ) {
+            final long start = System.nanoTime();
+            final Reader reader = getScriptReader();
+            try {
+                this.scriptEngine.put(ScriptEngine.FILENAME, this.scriptName);
+                compiledScript = ((Compilable) this.scriptEngine).compile(reader);
+            } finally {
+                reader.close();
+            }
+            this.compiledScriptCache.put(this.scriptName, lastModified, factory, compiledScript, System.nanoTime() - start);
+        }
+        return compiledScript;
+    }
+
     private Reader getScriptReader() throws IOException {
         // access the value as a stream and return a buffered reader
         // converting the stream data using UTF-8 encoding, which is
@@ -17,6 +17,8 @@
 package org.apache.sling.scripting.core.impl;
 
 import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.List;
 
 import javax.script.ScriptEngine;
@@ -29,28 +31,45 @@ import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.adapter.AdapterFactory;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.commons.mime.MimeTypeProvider;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.scripting.api.BindingsValuesProvider;
 import org.apache.sling.scripting.api.BindingsValuesProvidersByContext;
 import org.apache.sling.scripting.core.impl.helper.SlingScriptEngineManager;
+import org.apache.sling.scripting.core.jmx.CompiledScriptCacheMBean;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.LoggerFactory;
 
 /**
  * AdapterFactory that adapts Resources to the DefaultSlingScript servlet, which
  * executes the Resources as scripts.
  */
-@Component(metatype=false, immediate=true)
+@Component(metatype=true, immediate=true,
+           label="Apache Sling Script Adapter Factory",
+           description="Adapts script resources to Sling scripts and caches compiled scripts.")
 @Service({AdapterFactory.class, MimeTypeProvider.class})
 @Properties({
     @Property(name="service.vendor", value="The Apache Software Foundation"),
     @Property(name="service.description", value="Default SlingScriptResolver"),
-    @Property(name="adaptables", value="org.apache.sling.api.resource.Resource"),
+    @Property(name="adaptables", value="org.apache.sling.api.resource.Resource", propertyPrivate=true),
     @Property(name="adapters", value={"org.apache.sling.api.scripting.SlingScript",
-                                      "javax.servlet.Servlet"}),
-    @Property(name="adapter.condition", value="If the resource's path ends in an extension registered by a script engine.")
+                                      "javax.servlet.Servlet"}, propertyPrivate=true),
+    @Property(name="adapter.condition", value="If the resource's path ends in an extension registered by a script engine.", propertyPrivate=true)
 })
 public class SlingScriptAdapterFactory implements AdapterFactory, MimeTypeProvider {
 
+    private static final int DEFAULT_COMPILED_SCRIPT_CACHE_SIZE = 200;
+
+    @Property(intValue=DEFAULT_COMPILED_SCRIPT_CACHE_SIZE,
+              label="Compiled Script Cache Size",
+              description="The maximum number of compiled scripts kept for script engines supporting " +
+                          "compilation and declaring to be thread safe. A value of 0 disables the cache.")
+    private static final String PROP_COMPILED_SCRIPT_CACHE_SIZE = "compiled.script.cache.size";
+
     private BundleContext bundleContext;
 
     /** The context string to use to select BindingsValuesProviders */
@@ -61,6 +80,15 @@ public class SlingScriptAdapterFactory implements AdapterFactory, MimeTypeProvid
      */
     private ServiceCache serviceCache;
 
+    /**
+     * The cache of compiled scripts, <code>null</code> if disabled.
+     */
+    private CompiledScriptCache compiledScriptCache;
+
+    private ServiceRegistration compiledScriptCacheRegistration;
+
+    private ServiceRegistration compiledScriptCacheMBeanRegistration;
+
     /**
      * The script engine manager.
      */
@@ -88,7 +116,7 @@ public class SlingScriptAdapterFactory implements AdapterFactory, MimeTypeProvid
                     bindingsValuesProviderTracker.getBindingsValuesProviders(engine.getFactory(), BINDINGS_CONTEXT);
             // unchecked cast
             return (AdapterType) new DefaultSlingScript(this.bundleContext,
-                    resource, engine, bindingsValuesProviders, this.serviceCache);
+                    resource, engine, bindingsValuesProviders, this.serviceCache, this.compiledScriptCache);
         }
 
         return null;
@@ -147,9 +175,42 @@ public class SlingScriptAdapterFactory implements AdapterFactory, MimeTypeProvid
     protected void activate(ComponentContext context) {
         bundleContext = context.getBundleContext();
         this.serviceCache = new ServiceCache(this.bundleContext);
+
+        final int cacheSize = PropertiesUtil.toInteger(context.getProperties().get(PROP_COMPILED_SCRIPT_CACHE_SIZE),
+                DEFAULT_COMPILED_SCRIPT_CACHE_SIZE);
+        if (cacheSize > 0) {
+            this.compiledScriptCache = new CompiledScriptCache(cacheSize);
+
+            final Dictionary<String, Object> props = new Hashtable<String, Object>();
+            props.put(EventConstants.EVENT_TOPIC, new String[] {"org/apache/sling/api/resource/Resource/*",
+                    "javax/script/ScriptEngineFactory/*"});
+            props.put(Constants.SERVICE_DESCRIPTION, "Compiled Script Cache Observation");
+            props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+            this.compiledScriptCacheRegistration = this.bundleContext.registerService(EventHandler.class.getName(),
+                    this.compiledScriptCache, props);
+
+            try {
+                final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+                mbeanProps.put("jmx.objectname", "org.apache.sling:type=scripting,service=CompiledScriptCache");
+                this.compiledScriptCacheMBeanRegistration = this.bundleContext.registerService(
+                        CompiledScriptCacheMBean.class.getName(), new CompiledScriptCacheMBeanImpl(this.compiledScriptCache),
+                        mbeanProps);
+            } catch (final Throwable t) {
+                LoggerFactory.getLogger(this.getClass()).warn("Unable to register Compiled Script Cache MBean", t);
+            }
+        }
     }
 
     protected void deactivate(ComponentContext context) {
+        if (this.compiledScriptCacheMBeanRegistration != null) {
+            this.compiledScriptCacheMBeanRegistration.unregister();
+            this.compiledScriptCacheMBeanRegistration = null;
+        }
+        if (this.compiledScriptCacheRegistration != null) {
+            this.compiledScriptCacheRegistration.unregister();
+            this.compiledScriptCacheRegistration = null;
+        }
+        this.compiledScriptCache = null;
         this.serviceCache.dispose();
         this.serviceCache = null;
         this.bundleContext = null;
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.core.jmx;
+
+/**
+ * This is the management interface for the cache of compiled scripts.
+ */
+public interface CompiledScriptCacheMBean {
+
+    /**
+     * Returns the number of compiled scripts currently in the cache.
+     */
+    int getCacheSize();
+
+    /**
+     * Returns the maximum number of compiled scripts kept in the cache.
+     */
+    int getMaximumCacheSize();
+
+    /**
+     * Returns the number of evaluations using a cached compiled script since
+     * last resetting the statistics.
+     *
+     * @see #resetStatistics()
+     */
+    long getHits();
+
+    /**
+     * Returns the number of evaluations of compilable scripts not found in
+     * the cache since last resetting the statistics.
+     *
+     * @see #resetStatistics()
+     */
+    long getMisses();
+
+    /**
+     * Returns the number of compiled scripts not recently used evicted to
+     * make room for new entries since last resetting the statistics.
+     *
+     * @see #resetStatistics()
+     */
+    long getEvictions();
+
+    /**
+     * Returns the time in milliseconds spent compiling scripts since last
+     * resetting the statistics.
+     *
+     * @see #resetStatistics()
+     */
+    long getCompileTimeMsec();
+
+    /**
+     * Returns the time in milliseconds saved by using cached compiled scripts
+     * since last resetting the statistics. This is the sum of the compile
+     * times of the scripts for each cache hit.
+     *
+     * @see #resetStatistics()
+     */
+    long getSavedCompileTimeMsec();
+
+    /**
+     * Removes all compiled scripts from the cache.
+     */
+    void flushCache();
+
+    /**
+     * Resets all statistics values and restarts from zero.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+import org.apache.sling.api.SlingConstants;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+/**
+ * Test of the CompiledScriptCache.
+ */
+public class CompiledScriptCacheTest {
+
+    private final ScriptEngineFactory factory = new DummyScriptEngineFactory();
+
+    private final CompiledScript script = new CompiledScript() {
+
+        @Override
+        public Object eval(ScriptContext context) {
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return factory.getScriptEngine();
+        }
+    };
+
+    @Test
+    public void testNotCompilable() {
+        assertFalse(CompiledScriptCache.isCacheable(factory.getScriptEngine()));
+    }
+
+    @Test
+    public void testModificationTime() {
+        final CompiledScriptCache cache = new CompiledScriptCache(10);
+        assertNull(cache.get("/apps/a/html.dum", 1L, factory));
+        cache.put("/apps/a/html.dum", 1L, factory, script, 5L);
+
+        assertSame(script, cache.get("/apps/a/html.dum", 1L, factory));
+        assertNull(cache.get("/apps/a/html.dum", 2L, factory));
+        assertNull(cache.get("/apps/a/html.dum", 1L, new DummyScriptEngineFactory()));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(5L, cache.getCompileTime());
+        assertEquals(5L, cache.getSavedCompileTime());
+    }
+
+    @Test
+    public void testInvalidation() {
+        final CompiledScriptCache cache = new CompiledScriptCache(10);
+        cache.put("/apps/a/html.dum", 1L, factory, script, 0L);
+        cache.put("/apps/b/html.dum", 1L, factory, script, 0L);
+
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/apps/a/html.dum/jcr:content"));
+        assertNull(cache.get("/apps/a/html.dum", 1L, factory));
+        assertSame(script, cache.get("/apps/b/html.dum", 1L, factory));
+
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/apps/ab"));
+        assertSame(script, cache.get("/apps/b/html.dum", 1L, factory));
+
+        cache.handleEvent(createEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/apps/b"));
+        assertNull(cache.get("/apps/b/html.dum", 1L, factory));
+
+        cache.put("/apps/b/html.dum", 1L, factory, script, 0L);
+        cache.handleEvent(createEvent("javax/script/ScriptEngineFactory/REMOVED", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReferencedEntriesKept() {
+        final CompiledScriptCache cache = new CompiledScriptCache(2);
+        cache.put("/apps/a/html.dum", 1L, factory, script, 0L);
+        cache.put("/apps/b/html.dum", 1L, factory, script, 0L);
+        // a is referenced, so b is evicted
+        assertSame(script, cache.get("/apps/a/html.dum", 1L, factory));
+        cache.put("/apps/c/html.dum", 1L, factory, script, 0L);
+
+        assertNull(cache.get("/apps/b/html.dum", 1L, factory));
+        assertSame(script, cache.get("/apps/a/html.dum", 1L, factory));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    private static Event createEvent(final String topic, final String path) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        if (path != null) {
+            props.put(SlingConstants.PROPERTY_PATH, path);
+        }
+        return new Event(topic, props);
+    }
+}
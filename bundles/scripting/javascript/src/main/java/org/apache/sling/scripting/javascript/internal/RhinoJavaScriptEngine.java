@@ -16,13 +16,18 @@
  */
 package org.apache.sling.scripting.javascript.internal;
 
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptException;
 
@@ -33,6 +38,8 @@ import org.apache.sling.scripting.javascript.io.EspReader;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ImporterTopLevel;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -44,8 +51,12 @@ import org.slf4j.Logger;
 /**
  * A ScriptEngine that uses the Rhino interpreter to process Sling requests with
  * server-side javascript.
+ * <p>
+ * Scripts may be compiled once and evaluated many times. The compiled
+ * scripts do not keep any state between evaluations and may be evaluated
+ * concurrently.
  */
-public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
+public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine implements Compilable {
 
     private Scriptable rootScope;
 
@@ -71,6 +82,58 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             scriptReader = new EspReader(scriptReader);
         }
 
+        return evaluate(null, scriptReader, scriptName, rootScope, scriptContext);
+    }
+
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(new StringReader(script));
+    }
+
+    /**
+     * Compiles the script. The name of the script is taken from the
+     * {@link ScriptEngine#FILENAME} attribute of this engine.
+     */
+    public CompiledScript compile(Reader scriptReader) throws ScriptException {
+        final Object fileName = get(ScriptEngine.FILENAME);
+        final String scriptName = (fileName != null ? fileName.toString() : "NO_SCRIPT_NAME");
+
+        // wrap the reader in an EspReader for ESP scripts
+        if (scriptName.endsWith(RhinoJavaScriptEngineFactory.ESP_SCRIPT_EXTENSION)) {
+            scriptReader = new EspReader(scriptReader);
+        }
+
+        final Context rhinoContext = Context.enter();
+        try {
+            final int lineNumber = 1;
+            final Object securityDomain = null;
+
+            final Script script = rhinoContext.compileReader(scriptReader, scriptName,
+                    lineNumber, securityDomain);
+            return new RhinoCompiledScript(script, scriptName);
+
+        } catch (RhinoException re) {
+            throw new ScriptException(re.details(), re.sourceName(), re.lineNumber());
+
+        } catch (IOException ioe) {
+            final ScriptException se = new ScriptException(
+                "Failure compiling script " + scriptName + ": " + ioe.getMessage());
+            se.initCause(ioe);
+            throw se;
+
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Evaluates the compiled script or, if <code>null</code>, the script
+     * read from the reader.
+     */
+    private Object evaluate(final Script script, final Reader scriptReader,
+            final String scriptName, final Scriptable rootScope,
+            final ScriptContext scriptContext) throws ScriptException {
+        Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+
         // container for replaced properties
         Map<String, Object> replacedProperties = null;
         Scriptable scope = null;
@@ -109,11 +172,16 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             // add initial properties to the scope
             replacedProperties = setBoundProperties(scope, bindings);
 
-            final int lineNumber = 1;
-            final Object securityDomain = null;
+            Object result;
+            if (script != null) {
+                result = script.exec(rhinoContext, scope);
+            } else {
+                final int lineNumber = 1;
+                final Object securityDomain = null;
 
-            Object result = rhinoContext.evaluateReader(scope, scriptReader, scriptName,
-                    lineNumber, securityDomain);
+                result = rhinoContext.evaluateReader(scope, scriptReader, scriptName,
+                        lineNumber, securityDomain);
+            }
 
             if (result instanceof Wrapper) {
                 result = ((Wrapper) result).unwrap();
@@ -226,4 +294,32 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             }
         }
     }
+
+    /**
+     * The compiled form of a script. The script is evaluated with the
+     * current root scope of the script engine factory as the root scope may
+     * be replaced after the script has been compiled.
+     */
+    private final class RhinoCompiledScript extends CompiledScript {
+
+        private final Script script;
+
+        private final String scriptName;
+
+        RhinoCompiledScript(final Script script, final String scriptName) {
+            this.script = script;
+            this.scriptName = scriptName;
+        }
+
+        @Override
+        public Object eval(final ScriptContext scriptContext) throws ScriptException {
+            final Scriptable scope = ((RhinoJavaScriptEngineFactory) getFactory()).getScope();
+            return evaluate(this.script, null, this.scriptName, scope, scriptContext);
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return RhinoJavaScriptEngine.this;
+        }
+    }
 }
@@ -19,9 +19,13 @@
 package org.apache.sling.scripting.javascript.internal;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
 
 import junit.framework.TestCase;
 
@@ -47,15 +51,56 @@ public class RhinoJavaScriptEngineTest extends TestCase {
         assertEquals(2.0, result);
     }
 
+    public void testCompiledScript() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        engine.put(ScriptEngine.FILENAME, "/apps/test/test.ecma");
+        CompiledScript script = ((Compilable) engine).compile("var f = x; f += 1");
+
+        // the compiled script may be evaluated repeatedly with other bindings
+        assertEquals(2.0, script.eval(createContext(1)));
+        assertEquals(3.0, script.eval(createContext(2)));
+    }
+
+    public void testCompileSyntaxError() {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        engine.put(ScriptEngine.FILENAME, "/apps/test/test.ecma");
+        try {
+            ((Compilable) engine).compile("var f = ;");
+            fail("Expected ScriptException");
+        } catch (ScriptException e) {
+            assertEquals("/apps/test/test.ecma", e.getFileName());
+            assertEquals(1, e.getLineNumber());
+        }
+    }
+
+    private ScriptContext createContext(final int x) {
+        Bindings bindings = new SimpleBindings();
+        bindings.put("x", x);
+        ScriptContext context = new SimpleScriptContext();
+        context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        return context;
+    }
+
     private static class MockRhinoJavaScriptEngineFactory extends RhinoJavaScriptEngineFactory {
 
         protected SlingWrapFactory wrapFactory;
 
+        protected Scriptable scope;
+
         @Override
         public ScriptEngine getScriptEngine() {
-            final Context rhinoContext = Context.enter();
-            Scriptable scope = rhinoContext.initStandardObjects(new ImporterTopLevel(), false);
-            return new RhinoJavaScriptEngine(this, scope);
+            return new RhinoJavaScriptEngine(this, getScope());
+        }
+
+        @Override
+        public Scriptable getScope() {
+            if (scope == null) {
+                final Context rhinoContext = Context.enter();
+                scope = rhinoContext.initStandardObjects(new ImporterTopLevel(), false);
+            }
+            return scope;
         }
 
         @Override
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.ScriptEngineFactory;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>JspPrecompiler</code> compiles the JSPs found below the
+ * configured paths in the background when it is activated, such that the
+ * first requests after a startup or a deployment don't have to wait for
+ * the compilation of the JSPs they render.
+ * <p>
+ * The JSPs are compiled in parallel by a bounded number of threads, each
+ * compilation runs like the compilation on the first request, but without
+ * loading the compiled servlet. JSPs which have been compiled before and
+ * are not out dated are skipped. The precompiler is only active if it is
+ * configured.
+ */
+@Component(label="%jspprecompiler.name",
+           description="%jspprecompiler.description",
+           metatype=true,
+           policy=ConfigurationPolicy.REQUIRE)
+public class JspPrecompiler {
+
+    @Property(value={})
+    private static final String PROP_PATHS = "jsp.precompile.paths";
+
+    @Property(intValue=0)
+    private static final String PROP_THREADS = "jsp.precompile.threads";
+
+    /** The JSP extensions of the precompiled scripts. */
+    private static final String[] EXTENSIONS = { ".jsp", ".jspx" };
+
+    /** The number of queued JSPs per compiling thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /** Default logger */
+    private final Logger logger = LoggerFactory.getLogger(JspPrecompiler.class);
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    @Reference(target="(component.name=org.apache.sling.scripting.jsp.JspScriptEngineFactory)")
+    private ScriptEngineFactory scriptEngineFactory;
+
+    private ThreadPoolExecutor executor;
+
+    private Thread discoveryThread;
+
+    private volatile boolean running;
+
+    // ---------- SCR integration ----------------------------------------------
+
+    protected void activate(final ComponentContext componentContext) {
+        final Dictionary<?, ?> properties = componentContext.getProperties();
+        final String[] paths = PropertiesUtil.toStringArray(properties.get(PROP_PATHS));
+        int threads = PropertiesUtil.toInteger(properties.get(PROP_THREADS), 0);
+        if ( threads <= 0 ) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        if ( !(this.scriptEngineFactory instanceof JspScriptEngineFactory) ) {
+            logger.warn("activate: JSP script engine factory not available, JSPs are not precompiled");
+            return;
+        }
+        final JspScriptEngineFactory factory = (JspScriptEngineFactory) this.scriptEngineFactory;
+
+        // the queue is bounded, if it is full the discovering thread compiles itself
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD),
+            new PrecompilerThreadFactory(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.running = true;
+
+        final ThreadPoolExecutor pool = this.executor;
+        this.discoveryThread = new Thread("Apache Sling JSP Precompiler") {
+            @Override
+            public void run() {
+                precompile(factory, pool, paths);
+            }
+        };
+        this.discoveryThread.setDaemon(true);
+        this.discoveryThread.start();
+    }
+
+    protected void deactivate(final ComponentContext componentContext) {
+        this.running = false;
+        if ( this.executor != null ) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        if ( this.discoveryThread != null ) {
+            try {
+                this.discoveryThread.join(5000);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            this.discoveryThread = null;
+        }
+    }
+
+    // ---------- Internal -----------------------------------------------------
+
+    /**
+     * Find the JSPs below the paths, or the search path of the resource
+     * resolver if none is configured, and compile them with the executor.
+     */
+    private void precompile(final JspScriptEngineFactory factory,
+            final ThreadPoolExecutor pool,
+            final String[] configuredPaths) {
+        final long start = System.currentTimeMillis();
+        final AtomicInteger compiled = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final List<String> jsps = new ArrayList<String>();
+
+        ResourceResolver resolver = null;
+        try {
+            resolver = this.resourceResolverFactory.getAdministrativeResourceResolver(null);
+            final String[] paths = (configuredPaths == null || configuredPaths.length == 0
+                    ? resolver.getSearchPath() : configuredPaths);
+            for (final String path : paths) {
+                final Resource root = resolver.getResource(path);
+                if ( root != null ) {
+                    this.collectJsps(root, jsps);
+                }
+            }
+        } catch (final LoginException le) {
+            logger.error("precompile: Cannot get resource resolver to find the JSPs", le);
+            return;
+        } finally {
+            if ( resolver != null ) {
+                resolver.close();
+            }
+        }
+        logger.info("Precompiling {} JSPs with {} threads", jsps.size(), pool.getMaximumPoolSize());
+
+        for (final String jsp : jsps) {
+            if ( !this.running ) {
+                break;
+            }
+            try {
+                pool.execute(new Runnable() {
+                    public void run() {
+                        if ( running ) {
+                            compile(factory, jsp, compiled, failed);
+                        }
+                    }
+                });
+            } catch (final RuntimeException re) {
+                // the pool has been shut down
+                break;
+            }
+        }
+        pool.shutdown();
+        try {
+            while ( !pool.awaitTermination(1, TimeUnit.SECONDS) ) {
+                if ( !this.running ) {
+                    return;
+                }
+            }
+        } catch (final InterruptedException ie) {
+            return;
+        }
+        if ( this.running ) {
+            logger.info("Precompiled {} of {} JSPs in {} ms, {} failed", new Object[] {
+                compiled.get(), jsps.size(), System.currentTimeMillis() - start, failed.get()});
+        }
+    }
+
+    /**
+     * Compile a JSP with its own resource resolver.
+     */
+    private void compile(final JspScriptEngineFactory factory,
+            final String jsp,
+            final AtomicInteger compiled,
+            final AtomicInteger failed) {
+        ResourceResolver resolver = null;
+        try {
+            resolver = this.resourceResolverFactory.getAdministrativeResourceResolver(null);
+            if ( factory.compileJsp(jsp, resolver) ) {
+                compiled.incrementAndGet();
+            }
+        } catch (final Exception e) {
+            failed.incrementAndGet();
+            logger.warn("Cannot precompile " + jsp, e);
+        } finally {
+            if ( resolver != null ) {
+                resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Collect the paths of the JSPs at and below the resource.
+     */
+    private void collectJsps(final Resource resource, final List<String> jsps) {
+        final String path = resource.getPath();
+        for (final String extension : EXTENSIONS) {
+            if ( path.endsWith(extension) ) {
+                jsps.add(path);
+                return;
+            }
+        }
+        final Iterator<Resource> children = resource.getResourceResolver().listChildren(resource);
+        while ( this.running && children.hasNext() ) {
+            this.collectJsps(children.next(), jsps);
+        }
+    }
+
+    private static final class PrecompilerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Apache Sling JSP Precompiler " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
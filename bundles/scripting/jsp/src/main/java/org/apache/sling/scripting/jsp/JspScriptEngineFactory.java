@@ -20,6 +20,7 @@ import static org.apache.sling.api.scripting.SlingBindings.SLING;
 
 import java.io.Reader;
 import java.util.Dictionary;
+import java.util.Hashtable;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -32,6 +33,7 @@ import javax.servlet.ServletException;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.SlingConstants;
@@ -49,6 +51,7 @@ import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.scripting.api.AbstractScriptEngineFactory;
 import org.apache.sling.scripting.api.AbstractSlingScriptEngine;
+import org.apache.sling.scripting.jsp.jasper.JasperException;
 import org.apache.sling.scripting.jsp.jasper.Options;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext.JspFactoryHandler;
@@ -56,6 +59,7 @@ import org.apache.sling.scripting.jsp.jasper.runtime.AnnotationProcessor;
 import org.apache.sling.scripting.jsp.jasper.runtime.JspApplicationContextImpl;
 import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
 import org.apache.sling.scripting.jsp.util.TagUtil;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
@@ -76,6 +80,15 @@ import org.slf4j.LoggerFactory;
    @Property(name="service.vendor",value="The Apache Software Foundation"),
    @Property(name="jasper.classdebuginfo",boolValue=true),
    @Property(name="jasper.enablePooling",boolValue=true),
+   @Property(name="jasper.tagpoolClassName",
+             value="org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool",
+             options={
+                 @PropertyOption(name="org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool",
+                                 value="%jasper.tagpoolClassName.default"),
+                 @PropertyOption(name="org.apache.sling.scripting.jsp.jasper.runtime.LockFreeTagHandlerPool",
+                                 value="%jasper.tagpoolClassName.lockfree")
+             }),
+   @Property(name="jasper.tagpoolMaxSize",intValue=5),
    @Property(name="jasper.ieClassId",value="clsid:8AD9C840-044E-11D1-B3E9-00805F499D93"),
    @Property(name="jasper.genStringAsCharArray",boolValue=false),
    @Property(name="jasper.keepgenerated",boolValue=true),
@@ -108,6 +121,9 @@ public class JspScriptEngineFactory
     /** The io provider for reading and writing. */
     private SlingIOProvider ioProvider;
 
+    /** The last modification times of the JSPs and their dependencies. */
+    private LastModifiedCache lastModifiedCache;
+
     private SlingTldLocationsCache tldLocationsCache;
 
     private JspRuntimeContext jspRuntimeContext;
@@ -118,6 +134,9 @@ public class JspScriptEngineFactory
 
     private ServletConfig servletConfig;
 
+    /** The registration of the tag handler pool configuration printer. */
+    private ServiceRegistration tagPoolPrinterRegistration;
+
     private boolean defaultIsSession;
 
     /** The handler for the jsp factories. */
@@ -295,6 +314,38 @@ public class JspScriptEngineFactory
         return getJspWrapper(scriptName, bindings);
     }
 
+    /**
+     * Compile a JSP if it has not been compiled yet or is out dated, without
+     * loading it. Used by the {@link JspPrecompiler} to compile the JSPs
+     * before they are requested.
+     * @param scriptName The path of the JSP
+     * @param resolver The resource resolver to read the JSP and its dependencies
+     * @return <code>true</code> if the JSP has been compiled
+     * @throws JasperException if the JSP can't be compiled
+     */
+    boolean compileJsp(final String scriptName, final ResourceResolver resolver)
+    throws JasperException {
+        final SlingIOProvider io = this.ioProvider;
+        final JspFactoryHandler jspfh = this.jspFactoryHandler;
+
+        // abort if JSP Support is shut down concurrently
+        if (io == null || jspfh == null) {
+            return false;
+        }
+
+        final ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(this.dynamicClassLoader);
+        final ResourceResolver oldResolver = io.setRequestResourceResolver(resolver);
+        jspfh.incUsage();
+        try {
+            return getJspWrapper(scriptName, null).compile();
+        } finally {
+            jspfh.decUsage();
+            io.resetRequestResourceResolver(oldResolver);
+            Thread.currentThread().setContextClassLoader(old);
+        }
+    }
+
     // ---------- SCR integration ----------------------------------------------
 
     /**
@@ -315,17 +366,27 @@ public class JspScriptEngineFactory
             this.tldLocationsCache = new SlingTldLocationsCache(componentContext.getBundleContext());
 
             // prepare some classes
-            ioProvider = new SlingIOProvider(classLoaderWriter);
+            lastModifiedCache = new LastModifiedCache(LastModifiedCache.DEFAULT_MAX_SIZE);
+            ioProvider = new SlingIOProvider(classLoaderWriter, lastModifiedCache);
 
             // return options which use the jspClassLoader
-            options = new JspServletOptions(slingServletContext, ioProvider,
+            final JspServletOptions jspServletOptions = new JspServletOptions(slingServletContext, ioProvider,
                 componentContext, tldLocationsCache);
+            options = jspServletOptions;
 
             jspServletContext = new JspServletContext(ioProvider,
                 slingServletContext, tldLocationsCache);
 
+            // the compiled JSPs create the validated tag handler pool
             servletConfig = new JspServletConfig(jspServletContext,
-                properties);
+                properties, jspServletOptions);
+
+            final Dictionary<String, Object> printerProps = new Hashtable<String, Object>();
+            printerProps.put("felix.webconsole.label", "jsptagpools");
+            printerProps.put("felix.webconsole.title", "JSP Tag Handler Pools");
+            printerProps.put("felix.webconsole.configprinter.modes", "always");
+            this.tagPoolPrinterRegistration = componentContext.getBundleContext().registerService(
+                Object.class.getName(), new TagHandlerPoolConfigurationPrinter(jspServletOptions), printerProps);
 
         } finally {
             // make sure the context loader is reset after setting up the
@@ -342,6 +403,11 @@ public class JspScriptEngineFactory
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug("JspScriptEngine.deactivate()");
 
+        if ( this.tagPoolPrinterRegistration != null ) {
+            this.tagPoolPrinterRegistration.unregister();
+            this.tagPoolPrinterRegistration = null;
+        }
+
         if ( this.tldLocationsCache != null ) {
             this.tldLocationsCache.deactivate(componentContext.getBundleContext());
             this.tldLocationsCache = null;
@@ -352,6 +418,7 @@ public class JspScriptEngineFactory
         }
 
         ioProvider = null;
+        lastModifiedCache = null;
         this.jspFactoryHandler.destroy();
         this.jspFactoryHandler = null;
     }
@@ -539,6 +606,10 @@ public class JspScriptEngineFactory
     public void handleEvent(final Event event) {
         final String path = (String)event.getProperty(SlingConstants.PROPERTY_PATH);
         if ( path != null ) {
+            final LastModifiedCache cache = this.lastModifiedCache;
+            if ( cache != null ) {
+                cache.invalidate(path, !SlingConstants.TOPIC_RESOURCE_CHANGED.equals(event.getTopic()));
+            }
             final JspRuntimeContext rctxt = this.jspRuntimeContext;
             if ( rctxt != null && rctxt.handleModification(path) ) {
                 renewJspRuntimeContext();
@@ -556,6 +627,10 @@ public class JspScriptEngineFactory
             jrc = this.jspRuntimeContext;
             this.jspRuntimeContext = null;
         }
+        final LastModifiedCache cache = this.lastModifiedCache;
+        if ( cache != null ) {
+            cache.clear();
+        }
         final Thread t = new Thread() {
             @Override
             public void run() {
@@ -27,6 +27,7 @@ import java.util.Map;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool;
 import org.osgi.framework.Constants;
 
 class JspServletConfig implements ServletConfig {
@@ -35,7 +36,18 @@ class JspServletConfig implements ServletConfig {
 
     private String servletName;
 
-    private Map<String, String> properties;
+    private final Map<String, String> properties;
+
+    /**
+     * Creates the servlet config of the compiled JSPs from the "jasper."
+     * configuration properties. The tag handler pool implementation is
+     * taken from the given options, which validated it, such that the
+     * compiled JSPs create their tag handler pools with it.
+     */
+    JspServletConfig(ServletContext servletContext, Dictionary<?, ?> config, JspServletOptions options) {
+        this(servletContext, config);
+        properties.put(TagHandlerPool.OPTION_TAGPOOL, options.getTagPoolClassName());
+    }
 
     JspServletConfig(ServletContext servletContext, Dictionary<?, ?> config) {
         this.servletContext = servletContext;
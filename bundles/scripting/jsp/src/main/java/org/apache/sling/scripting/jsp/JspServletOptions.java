@@ -28,6 +28,7 @@ import org.apache.sling.scripting.jsp.jasper.compiler.JspConfig;
 import org.apache.sling.scripting.jsp.jasper.compiler.Localizer;
 import org.apache.sling.scripting.jsp.jasper.compiler.TagPluginManager;
 import org.apache.sling.scripting.jsp.jasper.compiler.TldLocationsCache;
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -149,6 +150,11 @@ public class JspServletOptions implements Options {
      */
     private boolean displaySourceFragments = false;
 
+    /**
+     * The class name of the tag handler pool implementation.
+     */
+    private String tagPoolClassName = TagHandlerPool.class.getName();
+
     public String getProperty(String name) {
         return this.settings.getProperty(name);
     }
@@ -173,6 +179,14 @@ public class JspServletOptions implements Options {
         return this.trimSpaces;
     }
 
+    /**
+     * Returns the class name of the tag handler pool implementation, which
+     * is the {@link TagHandlerPool} class or a subclass of it.
+     */
+    public String getTagPoolClassName() {
+        return tagPoolClassName;
+    }
+
     public boolean isPoolingEnabled() {
         return this.isPoolingEnabled;
     }
@@ -381,6 +395,24 @@ public class JspServletOptions implements Options {
             }
         }
 
+        String tagPoolClassName = getProperty(TagHandlerPool.OPTION_TAGPOOL);
+        if (tagPoolClassName != null) {
+            tagPoolClassName = tagPoolClassName.trim();
+            try {
+                // the pool implementations are provided by this bundle
+                Class<?> c = TagHandlerPool.class.getClassLoader().loadClass(tagPoolClassName);
+                if (TagHandlerPool.class.isAssignableFrom(c)) {
+                    this.tagPoolClassName = tagPoolClassName;
+                } else if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.tagpoolClassName"));
+                }
+            } catch (ClassNotFoundException cnfe) {
+                if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.tagpoolClassName"));
+                }
+            }
+        }
+
         String mapFile = getProperty("mappedfile");
         if (mapFile != null) {
             if (mapFile.equalsIgnoreCase("true")) {
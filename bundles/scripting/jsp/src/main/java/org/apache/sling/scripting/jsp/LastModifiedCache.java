@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>LastModifiedCache</code> caches the last modification times of
+ * the JSPs and their dependencies looked up by the {@link SlingIOProvider}
+ * while checking whether compiled JSPs are out dated. Includes and tag files
+ * shared by many JSPs are looked up once instead of once per JSP.
+ * <p>
+ * The cached times are invalidated by the resource events handled by the
+ * {@link JspScriptEngineFactory}. An event invalidates the time cached for its
+ * path and its parents, as the modification time of a file is taken from
+ * its content, and for resources added or removed all times cached below the
+ * path. Times of missing resources are not cached.
+ * <p>
+ * The times are grouped by the folder containing the path, such that
+ * invalidating the times below a path only checks the cached folders instead
+ * of all cached paths. Events outside of the folders of the JSPs, for example
+ * of content, thus do not walk the cached times.
+ */
+class LastModifiedCache {
+
+    /** The default maximum number of cached times. */
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** The cached times by path, grouped by the path of the parent folder. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> folders =
+        new ConcurrentHashMap<String, ConcurrentMap<String, Long>>();
+
+    /** The number of cached times. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Incremented on every invalidation to detect lookups racing with it. */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final int maxSize;
+
+    LastModifiedCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached time or <code>null</code> if no time is cached for
+     * the path.
+     */
+    Long get(final String path) {
+        final Map<String, Long> times = this.folders.get(getParent(path));
+        return (times == null) ? null : times.get(path);
+    }
+
+    /**
+     * Returns the generation to be passed to {@link #put(String, long, long)}
+     * which must be read before looking up the time to be cached.
+     */
+    long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Cache the time unless the cache has been invalidated since the given
+     * generation has been read. If the cache is full, it is cleared.
+     */
+    void put(final String path, final long time, final long generation) {
+        if ( this.size.get() >= this.maxSize ) {
+            this.folders.clear();
+            this.size.set(0);
+        }
+        final String parent = getParent(path);
+        ConcurrentMap<String, Long> times = this.folders.get(parent);
+        if ( times == null ) {
+            final ConcurrentMap<String, Long> newTimes = new ConcurrentHashMap<String, Long>();
+            times = this.folders.putIfAbsent(parent, newTimes);
+            if ( times == null ) {
+                times = newTimes;
+            }
+        }
+        final Long value = time;
+        if ( times.put(path, value) == null ) {
+            this.size.incrementAndGet();
+        }
+        if ( this.generation.get() != generation ) {
+            // the time might have been looked up before the invalidation
+            if ( times.remove(path, value) ) {
+                this.size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Invalidate the times cached for the path and its parents and, if
+     * requested, for all paths below.
+     */
+    void invalidate(final String path, final boolean includeChildren) {
+        this.generation.incrementAndGet();
+        String current = path;
+        while ( current.length() > 0 ) {
+            final String parent = getParent(current);
+            remove(this.folders.get(parent), current);
+            current = parent;
+        }
+        if ( includeChildren ) {
+            final String folder = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+            final String prefix = folder.concat("/");
+            for (final Map.Entry<String, ConcurrentMap<String, Long>> entry : this.folders.entrySet()) {
+                final String key = entry.getKey();
+                if ( key.equals(folder) || key.startsWith(prefix) ) {
+                    final ConcurrentMap<String, Long> times = entry.getValue();
+                    for (final String child : times.keySet()) {
+                        remove(times, child);
+                    }
+                }
+            }
+        }
+    }
+
+    void clear() {
+        this.generation.incrementAndGet();
+        this.folders.clear();
+        this.size.set(0);
+    }
+
+    /**
+     * Returns the number of cached times, which may be slightly off while
+     * times are added or invalidated concurrently.
+     */
+    int size() {
+        return this.size.get();
+    }
+
+    private void remove(final Map<String, Long> times, final String path) {
+        if ( times != null && times.remove(path) != null ) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    private static String getParent(final String path) {
+        return path.substring(0, Math.max(0, path.lastIndexOf('/')));
+    }
+}
@@ -49,9 +49,13 @@ class SlingIOProvider implements IOProvider {
 
     private final ClassLoaderWriter classLoaderWriter;
 
-    SlingIOProvider(final ClassLoaderWriter classLoaderWriter) {
+    private final LastModifiedCache lastModifiedCache;
+
+    SlingIOProvider(final ClassLoaderWriter classLoaderWriter,
+            final LastModifiedCache lastModifiedCache) {
         this.requestResourceResolver = new ThreadLocal<ResourceResolver>();
         this.classLoaderWriter = classLoaderWriter;
+        this.lastModifiedCache = lastModifiedCache;
     }
 
     /**
@@ -104,7 +108,8 @@ class SlingIOProvider implements IOProvider {
      * Returns the value of the last modified meta data field of the resource
      * found at file name or zero if the meta data field is not set. If the
      * resource does not exist or an error occurrs finding the resource, -1 is
-     * returned.
+     * returned. The times of existing resources are kept in the
+     * {@link LastModifiedCache}.
      */
     public long lastModified(final String path) {
         if ( path.startsWith(":") ) {
@@ -112,12 +117,20 @@ class SlingIOProvider implements IOProvider {
         }
         ResourceResolver resolver = requestResourceResolver.get();
         if (resolver != null) {
+            final String cleanedPath = cleanPath(path, true);
+            final Long cached = this.lastModifiedCache.get(cleanedPath);
+            if (cached != null) {
+                return cached;
+            }
+            final long generation = this.lastModifiedCache.getGeneration();
             try {
-                final Resource resource = resolver.getResource(cleanPath(path, true));
+                final Resource resource = resolver.getResource(cleanedPath);
                 if (resource != null) {
                     ResourceMetadata meta = resource.getResourceMetadata();
                     long modTime = meta.getModificationTime();
-                    return (modTime > 0) ? modTime : 0;
+                    modTime = (modTime > 0) ? modTime : 0;
+                    this.lastModifiedCache.put(cleanedPath, modTime, generation);
+                    return modTime;
                 }
             } catch (final SlingException se) {
                 log.error("Cannot get last modification time for " + path, se);
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.io.PrintWriter;
+
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPoolStatistics;
+
+/**
+ * The <code>TagHandlerPoolConfigurationPrinter</code> prints the configured
+ * tag handler pool implementation and the usage and contention statistics
+ * of all tag handler pools.
+ */
+public class TagHandlerPoolConfigurationPrinter {
+
+    private final JspServletOptions options;
+
+    TagHandlerPoolConfigurationPrinter(final JspServletOptions options) {
+        this.options = options;
+    }
+
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println("JSP Tag Handler Pools");
+        pw.println();
+        pw.printf("Pooling enabled: %s%n", options.isPoolingEnabled());
+        pw.printf("Pool implementation: %s%n", options.getTagPoolClassName());
+        pw.println();
+
+        final long reused = TagHandlerPoolStatistics.getReusedCount();
+        final long created = TagHandlerPoolStatistics.getCreatedCount();
+        final long requested = reused + created;
+        pw.printf("Tag handlers requested: %d%n", requested);
+        pw.printf("Tag handlers reused: %d (%.1f%%)%n", reused, requested > 0 ? 100.0 * reused / requested : 0.0);
+        pw.printf("Tag handlers created: %d%n", created);
+        pw.printf("Tag handlers returned: %d%n", TagHandlerPoolStatistics.getReturnedCount());
+        pw.printf("Tag handlers discarded: %d%n", TagHandlerPoolStatistics.getDiscardedCount());
+        pw.println();
+
+        // the pools contend differently: the default pool blocks on its lock,
+        // the lock-free pool retries with the next slot
+        pw.printf("Blocked lock waits (default pool): %d%n", TagHandlerPoolStatistics.getBlockedCount());
+        pw.printf("Time blocked waiting for pool locks: %d ms%n", TagHandlerPoolStatistics.getBlockedTime() / 1000000);
+        pw.printf("Failed compare-and-set retries (lock-free pool): %d%n", TagHandlerPoolStatistics.getRetriedCount());
+    }
+}
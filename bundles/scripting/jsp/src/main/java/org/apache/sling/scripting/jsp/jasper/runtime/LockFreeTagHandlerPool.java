@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.Tag;
+
+/**
+ * Pool of tag handlers that can be reused without locking.
+ * <p>
+ * The tag handlers are kept in a fixed number of slots, which are taken and
+ * filled with compare-and-set operations. Each thread starts looking for a
+ * tag handler or a free slot at a slot selected by its thread id, such that
+ * concurrent threads mostly access different slots. The slots are spread
+ * over separate cache lines to avoid false sharing between them.
+ * <p>
+ * This pool is used if the <code>tagpoolClassName</code> option is set to
+ * the name of this class.
+ */
+public class LockFreeTagHandlerPool extends TagHandlerPool {
+
+    /** Distance of the slots in the array, such that they use separate cache lines */
+    private static final int SPREAD = 16;
+
+    private AtomicReferenceArray<Tag> slots;
+
+    /** The number of slots */
+    private int length;
+
+    protected void init(ServletConfig config) {
+        this.length = getMaxSize(config);
+        this.slots = new AtomicReferenceArray<Tag>(length * SPREAD);
+        this.annotationProcessor =
+            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+    }
+
+    /**
+     * Gets the next available tag handler from this tag handler pool,
+     * instantiating one if this tag handler pool is empty.
+     *
+     * @param handlerClass Tag handler class
+     *
+     * @return Reused or newly instantiated tag handler
+     *
+     * @throws JspException if a tag handler cannot be instantiated
+     */
+    public Tag get(Class handlerClass) throws JspException {
+        int index = getStartIndex();
+        for (int i = 0; i < length; i++) {
+            final Tag handler = slots.get(index * SPREAD);
+            if (handler != null) {
+                if (slots.compareAndSet(index * SPREAD, handler, null)) {
+                    TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.REUSED);
+                    return handler;
+                }
+                // taken by another thread in the meantime
+                TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.RETRIED);
+            }
+            index = (index + 1 == length) ? 0 : index + 1;
+        }
+
+        return newHandler(handlerClass);
+    }
+
+    /**
+     * Adds the given tag handler to this tag handler pool, unless this tag
+     * handler pool has no free slot, in which case the tag handler's
+     * release() method is called.
+     *
+     * @param handler Tag handler to add to this tag handler pool
+     */
+    public void reuse(Tag handler) {
+        int index = getStartIndex();
+        for (int i = 0; i < length; i++) {
+            if (slots.get(index * SPREAD) == null) {
+                if (slots.compareAndSet(index * SPREAD, null, handler)) {
+                    TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.RETURNED);
+                    return;
+                }
+                // filled by another thread in the meantime
+                TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.RETRIED);
+            }
+            index = (index + 1 == length) ? 0 : index + 1;
+        }
+
+        TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.DISCARDED);
+        destroyHandler(handler);
+    }
+
+    /**
+     * Calls the release() method of all available tag handlers in this tag
+     * handler pool.
+     */
+    public void release() {
+        for (int i = 0; i < length; i++) {
+            final Tag handler = slots.getAndSet(i * SPREAD, null);
+            if (handler != null) {
+                destroyHandler(handler);
+            }
+        }
+    }
+
+    private int getStartIndex() {
+        return length == 0 ? 0 : (int) (Thread.currentThread().getId() % length);
+    }
+}
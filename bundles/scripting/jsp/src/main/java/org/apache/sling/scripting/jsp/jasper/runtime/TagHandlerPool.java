@@ -17,6 +17,8 @@
 
 package org.apache.sling.scripting.jsp.jasper.runtime;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.tagext.Tag;
@@ -27,6 +29,10 @@ import org.apache.sling.scripting.jsp.jasper.Constants;
 
 /**
  * Pool of tag handlers that can be reused.
+ * <p>
+ * The pool implementation is selected with the {@link #OPTION_TAGPOOL}
+ * option, which names a subclass of this class, for example the
+ * {@link LockFreeTagHandlerPool}.
  *
  * @author Jan Luehe
  */
@@ -43,14 +49,43 @@ public class TagHandlerPool {
     private int current;
     protected AnnotationProcessor annotationProcessor = null;
 
+    // guards handlers and current, try-locked first to count contention
+    private final ReentrantLock lock = new ReentrantLock();
+
     public static TagHandlerPool getTagHandlerPool( ServletConfig config) {
-        final TagHandlerPool result = new TagHandlerPool();
+        TagHandlerPool result = null;
+        String tpClassName = getOption(config, OPTION_TAGPOOL, null);
+        if (tpClassName != null && !tpClassName.equals(TagHandlerPool.class.getName())) {
+            try {
+                // the pool implementations are provided by this bundle
+                Class<?> c = TagHandlerPool.class.getClassLoader().loadClass(tpClassName);
+                result = (TagHandlerPool) c.newInstance();
+            } catch (Exception e) {
+                LogFactory.getLog(TagHandlerPool.class).warn(
+                    "Cannot create tag handler pool " + tpClassName + ", using default pool", e);
+                result = null;
+            }
+        }
+        if (result == null) {
+            result = new TagHandlerPool();
+        }
         result.init(config);
 
         return result;
     }
 
     protected void init( ServletConfig config ) {
+        this.handlers = new Tag[getMaxSize(config)];
+        this.current = -1;
+        this.annotationProcessor =
+            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+    }
+
+    /**
+     * Returns the capacity of a pool configured by the {@link #OPTION_MAXSIZE}
+     * option.
+     */
+    protected static int getMaxSize( ServletConfig config ) {
         int maxSize=-1;
         String maxSizeS=getOption(config, OPTION_MAXSIZE, null);
         if( maxSizeS != null ) {
@@ -63,10 +98,7 @@ public class TagHandlerPool {
         if( maxSize <0  ) {
             maxSize=Constants.MAX_POOL_SIZE;
         }
-        this.handlers = new Tag[maxSize];
-        this.current = -1;
-        this.annotationProcessor =
-            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+        return maxSize;
     }
 
     /**
@@ -101,22 +133,20 @@ public class TagHandlerPool {
      */
     public Tag get(Class handlerClass) throws JspException {
 	Tag handler = null;
-        synchronized( this ) {
+        lock();
+        try {
             if (current >= 0) {
                 handler = handlers[current--];
+                TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.REUSED);
                 return handler;
             }
+        } finally {
+            lock.unlock();
         }
 
         // Out of sync block - there is no need for other threads to
         // wait for us to construct a tag for this thread.
-        try {
-            Tag instance = (Tag) handlerClass.newInstance();
-            AnnotationHelper.postConstruct(annotationProcessor, instance);
-            return instance;
-        } catch (Exception e) {
-            throw new JspException(e.getMessage(), e);
-        }
+        return newHandler(handlerClass);
     }
 
     /**
@@ -127,13 +157,56 @@ public class TagHandlerPool {
      * @param handler Tag handler to add to this tag handler pool
      */
     public void reuse(Tag handler) {
-        synchronized( this ) {
+        lock();
+        try {
             if (current < (handlers.length - 1)) {
                 handlers[++current] = handler;
+                TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.RETURNED);
                 return;
             }
+        } finally {
+            lock.unlock();
         }
         // There is no need for other threads to wait for us to release
+        TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.DISCARDED);
+        destroyHandler(handler);
+    }
+
+    /**
+     * Calls the release() method of all available tag handlers in this tag
+     * handler pool.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            for (int i = current; i >= 0; i--) {
+                destroyHandler(handlers[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Instantiates a new tag handler.
+     *
+     * @throws JspException if the tag handler cannot be instantiated
+     */
+    protected Tag newHandler(Class handlerClass) throws JspException {
+        TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.CREATED);
+        try {
+            Tag instance = (Tag) handlerClass.newInstance();
+            AnnotationHelper.postConstruct(annotationProcessor, instance);
+            return instance;
+        } catch (Exception e) {
+            throw new JspException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Calls the release() method of a tag handler which is not pooled.
+     */
+    protected void destroyHandler(Tag handler) {
         handler.release();
         if (annotationProcessor != null) {
             try {
@@ -146,20 +219,15 @@ public class TagHandlerPool {
     }
 
     /**
-     * Calls the release() method of all available tag handlers in this tag
-     * handler pool.
+     * Acquires the pool lock, counting the time spent waiting for it if it
+     * is held by another thread.
      */
-    public synchronized void release() {
-        for (int i = current; i >= 0; i--) {
-            handlers[i].release();
-            if (annotationProcessor != null) {
-                try {
-                    AnnotationHelper.preDestroy(annotationProcessor, handlers[i]);
-                } catch (Exception e) {
-                    log.warn("Error processing preDestroy on tag instance of "
-                            + handlers[i].getClass().getName(), e);
-                }
-            }
+    private void lock() {
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            TagHandlerPoolStatistics.increment(TagHandlerPoolStatistics.BLOCKED);
+            TagHandlerPoolStatistics.add(TagHandlerPoolStatistics.BLOCKED_NANOS, System.nanoTime() - start);
         }
     }
 
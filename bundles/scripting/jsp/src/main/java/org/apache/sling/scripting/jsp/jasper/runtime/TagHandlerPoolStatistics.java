@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Usage and contention statistics of all tag handler pools.
+ * <p>
+ * The counters are striped by the id of the updating thread to not
+ * introduce contention themselves and are summed up when read.
+ */
+public final class TagHandlerPoolStatistics {
+
+    /** Tag handlers taken from a pool */
+    static final int REUSED = 0;
+
+    /** Tag handlers instantiated because the pool was empty */
+    static final int CREATED = 1;
+
+    /** Tag handlers returned to a pool */
+    static final int RETURNED = 2;
+
+    /** Tag handlers released because the pool was full */
+    static final int DISCARDED = 3;
+
+    /** Accesses of the default pool which blocked waiting for its lock */
+    static final int BLOCKED = 4;
+
+    /** Time in nanoseconds spent blocked waiting for pool locks */
+    static final int BLOCKED_NANOS = 5;
+
+    /** Failed compare-and-set operations of the lock-free pool */
+    static final int RETRIED = 6;
+
+    /** Number of longs per stripe, padded to avoid false sharing */
+    private static final int STRIPE_SIZE = 16;
+
+    private static final int MAX_STRIPES = 32;
+
+    private static final int MASK;
+
+    private static final AtomicLongArray COUNTERS;
+
+    static {
+        int stripes = 1;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        while (stripes < processors && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        MASK = stripes - 1;
+        COUNTERS = new AtomicLongArray(stripes * STRIPE_SIZE);
+    }
+
+    private TagHandlerPoolStatistics() {
+        // static only
+    }
+
+    static void increment(final int counter) {
+        add(counter, 1);
+    }
+
+    static void add(final int counter, final long value) {
+        final int stripe = (int) Thread.currentThread().getId() & MASK;
+        COUNTERS.addAndGet(stripe * STRIPE_SIZE + counter, value);
+    }
+
+    private static long get(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < COUNTERS.length(); i += STRIPE_SIZE) {
+            sum += COUNTERS.get(i);
+        }
+        return sum;
+    }
+
+    /** Returns the number of tag handlers taken from a pool */
+    public static long getReusedCount() {
+        return get(REUSED);
+    }
+
+    /** Returns the number of tag handlers instantiated on an empty pool */
+    public static long getCreatedCount() {
+        return get(CREATED);
+    }
+
+    /** Returns the number of tag handlers returned to a pool */
+    public static long getReturnedCount() {
+        return get(RETURNED);
+    }
+
+    /** Returns the number of tag handlers released because a pool was full */
+    public static long getDiscardedCount() {
+        return get(DISCARDED);
+    }
+
+    /**
+     * Returns the number of accesses of the default pool which blocked
+     * because another thread held the pool lock.
+     */
+    public static long getBlockedCount() {
+        return get(BLOCKED);
+    }
+
+    /** Returns the time in nanoseconds spent blocked waiting for pool locks */
+    public static long getBlockedTime() {
+        return get(BLOCKED_NANOS);
+    }
+
+    /**
+     * Returns the number of compare-and-set operations of the lock-free pool
+     * which failed because another thread updated the slot concurrently.
+     * These accesses do not block but continue with the next slot.
+     */
+    public static long getRetriedCount() {
+        return get(RETRIED);
+    }
+
+    /** Resets all counters */
+    public static void reset() {
+        for (int i = 0; i < COUNTERS.length(); i++) {
+            COUNTERS.set(i, 0);
+        }
+    }
+}
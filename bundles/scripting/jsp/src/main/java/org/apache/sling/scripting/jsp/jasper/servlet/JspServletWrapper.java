@@ -434,6 +434,32 @@ public class JspServletWrapper {
         this.theServlet = this.loadServlet();
     }
 
+    /**
+     * Compile the JSP if it has not been loaded yet and it is out dated,
+     * without loading it. A compile error is not kept, the compilation is
+     * repeated when the JSP is requested.
+     *
+     * @return <code>true</code> if the JSP has been compiled
+     * @throws JasperException if the JSP can't be compiled
+     */
+    public boolean compile() throws JasperException {
+        if ( theServlet == null ) {
+            synchronized ( this ) {
+                if ( theServlet == null && compileException == null && isOutDated() ) {
+                    if ( log.isDebugEnabled() ) {
+                        log.debug("Precompiling servlet " + this.jspUri);
+                    }
+                    final JasperException ex = ctxt.compile();
+                    if ( ex != null ) {
+                        throw ex;
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * @param bindings
      * @throws SlingIOException
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import javax.servlet.ServletContext;
+
+import org.apache.sling.scripting.jsp.jasper.runtime.LockFreeTagHandlerPool;
+import org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool;
+import org.junit.Test;
+import org.osgi.service.component.ComponentContext;
+
+public class JspServletConfigTest {
+
+    @Test
+    public void testLockFreeTagHandlerPool() {
+        final JspServletConfig config = createConfig(LockFreeTagHandlerPool.class.getName());
+
+        assertEquals(LockFreeTagHandlerPool.class.getName(), config.getInitParameter(TagHandlerPool.OPTION_TAGPOOL));
+        assertSame(LockFreeTagHandlerPool.class, TagHandlerPool.getTagHandlerPool(config).getClass());
+    }
+
+    @Test
+    public void testDefaultTagHandlerPool() {
+        assertSame(TagHandlerPool.class, TagHandlerPool.getTagHandlerPool(createConfig(null)).getClass());
+        assertSame(TagHandlerPool.class,
+            TagHandlerPool.getTagHandlerPool(createConfig(TagHandlerPool.class.getName())).getClass());
+    }
+
+    @Test
+    public void testInvalidTagHandlerPool() {
+        // neither a tag handler pool nor an existing class
+        for (final String className : new String[] { String.class.getName(), "org.example.MissingPool" }) {
+            final JspServletConfig config = createConfig(className);
+            assertEquals(TagHandlerPool.class.getName(), config.getInitParameter(TagHandlerPool.OPTION_TAGPOOL));
+            assertSame(TagHandlerPool.class, TagHandlerPool.getTagHandlerPool(config).getClass());
+        }
+    }
+
+    /**
+     * Creates the servlet config of the compiled JSPs like the
+     * {@link JspScriptEngineFactory} does from the component configuration.
+     */
+    private JspServletConfig createConfig(final String tagPoolClassName) {
+        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        if (tagPoolClassName != null) {
+            properties.put("jasper.tagpoolClassName", tagPoolClassName);
+        }
+        properties.put("jasper.tagpoolMaxSize", 3);
+        final ComponentContext componentContext = mock(ComponentContext.class);
+        when(componentContext.getProperties()).thenReturn(properties);
+        final ServletContext servletContext = mock(ServletContext.class);
+
+        final JspServletOptions options = new JspServletOptions(servletContext, null, componentContext, null);
+        return new JspServletConfig(servletContext, properties, options);
+    }
+}
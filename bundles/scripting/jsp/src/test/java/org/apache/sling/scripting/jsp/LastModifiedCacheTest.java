@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LastModifiedCacheTest {
+
+    private LastModifiedCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new LastModifiedCache(10);
+        put("/apps/a/page.jsp", 1);
+        put("/apps/a/include.jsp", 2);
+        put("/apps/a/b/tag.tag", 3);
+        put("/apps/ab/page.jsp", 4);
+        put("/libs/a/page.jsp", 5);
+    }
+
+    @Test
+    public void testPut() {
+        assertEquals(Long.valueOf(1), cache.get("/apps/a/page.jsp"));
+        assertEquals(Long.valueOf(3), cache.get("/apps/a/b/tag.tag"));
+        assertNull(cache.get("/apps/a/missing.jsp"));
+        assertNull(cache.get("/apps/a"));
+        assertEquals(5, cache.size());
+
+        put("/apps/a/page.jsp", 6);
+        assertEquals(Long.valueOf(6), cache.get("/apps/a/page.jsp"));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testInvalidateChanged() {
+        cache.invalidate("/apps/a/page.jsp", false);
+
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertEquals(Long.valueOf(2), cache.get("/apps/a/include.jsp"));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testInvalidateChangedContent() {
+        // the modification time of a file is the one of its content node
+        cache.invalidate("/apps/a/page.jsp/jcr:content", false);
+
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testInvalidateParent() {
+        put("/apps/a", 7);
+        cache.invalidate("/apps/a/b", false);
+
+        assertNull(cache.get("/apps/a"));
+        assertEquals(Long.valueOf(3), cache.get("/apps/a/b/tag.tag"));
+    }
+
+    @Test
+    public void testInvalidateChildren() {
+        cache.invalidate("/apps/a", true);
+
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertNull(cache.get("/apps/a/include.jsp"));
+        assertNull(cache.get("/apps/a/b/tag.tag"));
+        assertEquals(Long.valueOf(4), cache.get("/apps/ab/page.jsp"));
+        assertEquals(Long.valueOf(5), cache.get("/libs/a/page.jsp"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidateChildrenWithTrailingSlash() {
+        cache.invalidate("/apps/a/", true);
+
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertNull(cache.get("/apps/a/b/tag.tag"));
+        assertEquals(Long.valueOf(4), cache.get("/apps/ab/page.jsp"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidateUnrelated() {
+        cache.invalidate("/content/a/page", true);
+
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testInvalidationRace() {
+        // a time looked up before an invalidation is not cached
+        final long generation = cache.getGeneration();
+        cache.invalidate("/apps/c/page.jsp", false);
+        cache.put("/apps/c/page.jsp", 8, generation);
+        assertNull(cache.get("/apps/c/page.jsp"));
+        assertEquals(5, cache.size());
+
+        // an invalidation of any path discards it
+        final long other = cache.getGeneration();
+        cache.invalidate("/content/page", true);
+        cache.put("/apps/c/page.jsp", 8, other);
+        assertNull(cache.get("/apps/c/page.jsp"));
+
+        put("/apps/c/page.jsp", 9);
+        assertEquals(Long.valueOf(9), cache.get("/apps/c/page.jsp"));
+    }
+
+    @Test
+    public void testClear() {
+        final long generation = cache.getGeneration();
+        cache.clear();
+
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertEquals(0, cache.size());
+
+        cache.put("/apps/a/page.jsp", 1, generation);
+        assertNull(cache.get("/apps/a/page.jsp"));
+    }
+
+    @Test
+    public void testMaxSize() {
+        for (int i = 0; i < 5; i++) {
+            put("/apps/d/page" + i + ".jsp", i);
+        }
+        assertEquals(10, cache.size());
+
+        // the full cache is cleared
+        put("/apps/e/page.jsp", 10);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("/apps/a/page.jsp"));
+        assertEquals(Long.valueOf(10), cache.get("/apps/e/page.jsp"));
+    }
+
+    private void put(final String path, final long time) {
+        cache.put(path, time, cache.getGeneration());
+    }
+}
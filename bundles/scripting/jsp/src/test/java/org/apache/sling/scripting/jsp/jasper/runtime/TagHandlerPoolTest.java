@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.TagSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TagHandlerPoolTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 20000;
+
+    @Before
+    public void resetStatistics() {
+        TagHandlerPoolStatistics.reset();
+    }
+
+    @Test
+    public void testDefaultPoolSelected() {
+        assertSame(TagHandlerPool.class, TagHandlerPool.getTagHandlerPool(createConfig(null, null)).getClass());
+        assertSame(TagHandlerPool.class, TagHandlerPool.getTagHandlerPool(
+            createConfig(TagHandlerPool.class.getName(), null)).getClass());
+        assertSame(TagHandlerPool.class, TagHandlerPool.getTagHandlerPool(
+            createConfig("org.example.MissingPool", null)).getClass());
+    }
+
+    @Test
+    public void testLockFreePoolSelected() {
+        assertSame(LockFreeTagHandlerPool.class, TagHandlerPool.getTagHandlerPool(
+            createConfig(LockFreeTagHandlerPool.class.getName(), null)).getClass());
+    }
+
+    @Test
+    public void testDefaultPoolReuse() throws JspException {
+        assertReuse(TagHandlerPool.getTagHandlerPool(createConfig(null, "2")));
+    }
+
+    @Test
+    public void testLockFreePoolReuse() throws JspException {
+        assertReuse(TagHandlerPool.getTagHandlerPool(createConfig(LockFreeTagHandlerPool.class.getName(), "2")));
+    }
+
+    @Test
+    public void testDefaultPoolConcurrentAccess() throws Exception {
+        assertConcurrentAccess(TagHandlerPool.getTagHandlerPool(createConfig(null, "4")));
+
+        // the default pool never retries
+        assertEquals(0, TagHandlerPoolStatistics.getRetriedCount());
+    }
+
+    @Test
+    public void testLockFreePoolConcurrentAccess() throws Exception {
+        assertConcurrentAccess(TagHandlerPool.getTagHandlerPool(
+            createConfig(LockFreeTagHandlerPool.class.getName(), "4")));
+
+        // the lock-free pool never blocks
+        assertEquals(0, TagHandlerPoolStatistics.getBlockedCount());
+        assertEquals(0, TagHandlerPoolStatistics.getBlockedTime());
+    }
+
+    @Test
+    public void testDefaultPoolBlockedCount() throws Exception {
+        final TagHandlerPool pool = TagHandlerPool.getTagHandlerPool(createConfig(null, "2"));
+        final CountDownLatch releasing = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+
+        // release() destroys the pooled handlers while holding the pool lock
+        pool.reuse(new TagSupport() {
+            @Override
+            public void release() {
+                releasing.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                pool.release();
+            }
+        };
+        releaser.start();
+        assertTrue(releasing.await(10, TimeUnit.SECONDS));
+
+        final Thread getter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.get(CountingTag.class);
+                } catch (JspException je) {
+                    // fails the assertions below
+                }
+            }
+        };
+        getter.start();
+        final long end = System.currentTimeMillis() + 10000;
+        while (getter.getState() != Thread.State.WAITING && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(10);
+        proceed.countDown();
+        releaser.join(10000);
+        getter.join(10000);
+
+        assertEquals(1, TagHandlerPoolStatistics.getBlockedCount());
+        assertTrue(TagHandlerPoolStatistics.getBlockedTime() > 0);
+        assertEquals(0, TagHandlerPoolStatistics.getRetriedCount());
+    }
+
+    /**
+     * Asserts that handlers returned to the pool are reused, that handlers
+     * beyond the capacity are released and that all counters are updated.
+     */
+    private void assertReuse(final TagHandlerPool pool) throws JspException {
+        final CountingTag first = (CountingTag) pool.get(CountingTag.class);
+        final CountingTag second = (CountingTag) pool.get(CountingTag.class);
+        final CountingTag third = (CountingTag) pool.get(CountingTag.class);
+        assertNotSame(first, second);
+
+        pool.reuse(first);
+        pool.reuse(second);
+        pool.reuse(third);
+        assertEquals(0, first.released.get());
+        assertEquals(0, second.released.get());
+        assertEquals(1, third.released.get());
+
+        final List<Object> reused = new ArrayList<Object>();
+        reused.add(pool.get(CountingTag.class));
+        reused.add(pool.get(CountingTag.class));
+        assertTrue(reused.contains(first));
+        assertTrue(reused.contains(second));
+
+        assertEquals(2, TagHandlerPoolStatistics.getReusedCount());
+        assertEquals(3, TagHandlerPoolStatistics.getCreatedCount());
+        assertEquals(2, TagHandlerPoolStatistics.getReturnedCount());
+        assertEquals(1, TagHandlerPoolStatistics.getDiscardedCount());
+
+        pool.reuse(first);
+        pool.release();
+        assertEquals(1, first.released.get());
+    }
+
+    /**
+     * Asserts that concurrent threads never get the same handler at the same
+     * time and that every handler is either reused or created.
+     */
+    private void assertConcurrentAccess(final TagHandlerPool pool) throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < ITERATIONS; j++) {
+                            final CountingTag handler = (CountingTag) pool.get(CountingTag.class);
+                            if (!handler.inUse.compareAndSet(false, true)) {
+                                throw new AssertionError("Handler handed out twice");
+                            }
+                            handler.inUse.set(false);
+                            pool.reuse(handler);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        final long requested = (long) THREADS * ITERATIONS;
+        assertEquals(requested, TagHandlerPoolStatistics.getReusedCount() + TagHandlerPoolStatistics.getCreatedCount());
+        assertEquals(requested, TagHandlerPoolStatistics.getReturnedCount() + TagHandlerPoolStatistics.getDiscardedCount());
+        assertTrue(TagHandlerPoolStatistics.getReusedCount() > 0);
+    }
+
+    private ServletConfig createConfig(final String className, final String maxSize) {
+        final ServletContext context = mock(ServletContext.class);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        when(config.getInitParameter(TagHandlerPool.OPTION_TAGPOOL)).thenReturn(className);
+        when(config.getInitParameter(TagHandlerPool.OPTION_MAXSIZE)).thenReturn(maxSize);
+        return config;
+    }
+
+    public static class CountingTag extends TagSupport {
+
+        private static final long serialVersionUID = 1L;
+
+        final AtomicBoolean inUse = new AtomicBoolean();
+
+        final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public void release() {
+            released.incrementAndGet();
+        }
+    }
+}
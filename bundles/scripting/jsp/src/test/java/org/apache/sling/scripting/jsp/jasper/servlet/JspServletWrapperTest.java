@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.servlet;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.sling.scripting.jsp.jasper.IOProvider;
+import org.apache.sling.scripting.jsp.jasper.JasperException;
+import org.apache.sling.scripting.jsp.jasper.Options;
+import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JspServletWrapperTest {
+
+    private static final String JSP = "/apps/test/page.jsp";
+
+    private static final String INCLUDE = "/apps/test/include.jsp";
+
+    private IOProvider ioProvider;
+
+    private JspServletWrapper wrapper;
+
+    private String classFile;
+
+    @Before
+    public void setUp() {
+        final ServletContext servletContext = mock(ServletContext.class);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(servletContext);
+        final Options options = mock(Options.class);
+        when(options.getScratchDir()).thenReturn(":");
+        ioProvider = mock(IOProvider.class);
+        when(ioProvider.mkdirs(anyString())).thenReturn(true);
+
+        final JspRuntimeContext rctxt = new JspRuntimeContext(servletContext, options, ioProvider);
+        wrapper = new JspServletWrapper(config, options, JSP, false, rctxt, true);
+        classFile = wrapper.getJspEngineContext().getClassFileName();
+
+        when(ioProvider.lastModified(classFile)).thenReturn(2000L);
+        when(ioProvider.lastModified(JSP)).thenReturn(1000L);
+        when(ioProvider.lastModified(INCLUDE)).thenReturn(1500L);
+    }
+
+    @Test
+    public void testCompileUpToDate() throws Exception {
+        assertFalse(wrapper.compile());
+
+        verify(ioProvider, never()).delete(anyString());
+        verify(ioProvider, never()).getOutputStream(anyString());
+    }
+
+    @Test
+    public void testCompileUpToDateWithDependencies() throws Exception {
+        setDependencies(INCLUDE + "\ntld:/META-INF/test.tld\n");
+
+        assertFalse(wrapper.compile());
+
+        verify(ioProvider).lastModified(INCLUDE);
+        verify(ioProvider, never()).lastModified("tld:/META-INF/test.tld");
+        verify(ioProvider, never()).delete(anyString());
+    }
+
+    @Test
+    public void testCompileOutDatedDependency() throws Exception {
+        setDependencies(INCLUDE + "\n");
+        when(ioProvider.lastModified(INCLUDE)).thenReturn(3000L);
+
+        assertRecompiled();
+    }
+
+    @Test
+    public void testCompileOutDatedJsp() throws Exception {
+        when(ioProvider.lastModified(JSP)).thenReturn(3000L);
+
+        assertRecompiled();
+    }
+
+    @Test
+    public void testCompileMissingClass() throws Exception {
+        when(ioProvider.lastModified(classFile)).thenReturn(-1L);
+
+        assertRecompiled();
+    }
+
+    private void setDependencies(final String dependencies) throws Exception {
+        when(ioProvider.getInputStream(wrapper.getDependencyFilePath())).thenReturn(
+            new ByteArrayInputStream(dependencies.getBytes("UTF-8")));
+    }
+
+    /**
+     * Asserts that the JSP is compiled again, which first removes the
+     * generated files. The JSP source is not provided, so the compilation
+     * itself fails.
+     */
+    private void assertRecompiled() {
+        try {
+            wrapper.compile();
+        } catch (final JasperException expected) {
+            // missing JSP source
+        }
+        verify(ioProvider, atLeastOnce()).delete(classFile);
+    }
+}
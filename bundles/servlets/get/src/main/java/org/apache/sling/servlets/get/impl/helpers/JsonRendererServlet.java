@@ -52,8 +52,22 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
 
     private long maximumResults;
 
+    /** Whether the resources are written while traversing them */
+    private final boolean streaming;
+
     public JsonRendererServlet(long maximumResults) {
+        this(maximumResults, false);
+    }
+
+    /**
+     * @param maximumResults The maximum number of resources to render
+     * @param streaming If <code>true</code> the resources are written with a
+     *            {@link JsonResourceWriter} while traversing them instead of
+     *            building the JSON tree in memory first.
+     */
+    public JsonRendererServlet(long maximumResults, boolean streaming) {
         this.maximumResults = maximumResults;
+        this.streaming = streaming;
     }
 
     @Override
@@ -94,10 +108,26 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         resp.setContentType(req.getResponseContentType());
         resp.setCharacterEncoding("UTF-8");
 
+        final boolean tidy = isTidy(req);
+        if (streaming) {
+            final JsonResourceWriter jsonWriter = new JsonResourceWriter(maxRecursionLevels, maximumResults, r);
+            try {
+                final int allowedLevel = jsonWriter.write(resp.getWriter(), tidy);
+                if (allowedLevel != JsonResourceWriter.NESTED_TOO_DEEP) {
+                    if (allowedLevel != JsonResourceWriter.WRITTEN) {
+                        sendAllowedLevels(r, resp, tidy, allowedLevel);
+                    }
+                    return;
+                }
+            } catch (JSONException je) {
+                reportException(je);
+            }
+            // nested too deep for the JSONWriter, build the JSON tree
+        }
+
         // We check the tree to see if the nr of nodes isn't bigger than the allowed nr.
         boolean allowDump = true;
         int allowedLevel = 0;
-        final boolean tidy = isTidy(req);
         ResourceTraversor traversor = null;
         try {
             traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, tidy);
@@ -118,18 +148,31 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
                 }
 
             } else {
-                // We are not allowed to do the dump.
-                // Send a 300
-                String tidyUrl = (tidy) ? "tidy." : "";
-                resp.setStatus(HttpServletResponse.SC_MULTIPLE_CHOICES);
-                JSONWriter writer = new JSONWriter(resp.getWriter());
-                writer.array();
-                while (allowedLevel >= 0) {
-                    writer.value(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
-                    allowedLevel--;
-                }
-                writer.endArray();
+                sendAllowedLevels(r, resp, tidy, allowedLevel);
+            }
+        } catch (JSONException je) {
+            reportException(je);
+        }
+    }
+
+    /**
+     * We are not allowed to do the dump, send a 300 listing the urls of the
+     * levels which might be requested instead.
+     */
+    private void sendAllowedLevels(final Resource r,
+            final SlingHttpServletResponse resp,
+            final boolean tidy,
+            int allowedLevel) throws IOException {
+        try {
+            String tidyUrl = (tidy) ? "tidy." : "";
+            resp.setStatus(HttpServletResponse.SC_MULTIPLE_CHOICES);
+            JSONWriter writer = new JSONWriter(resp.getWriter());
+            writer.array();
+            while (allowedLevel >= 0) {
+                writer.value(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
+                allowedLevel--;
             }
+            writer.endArray();
         } catch (JSONException je) {
             reportException(je);
         }
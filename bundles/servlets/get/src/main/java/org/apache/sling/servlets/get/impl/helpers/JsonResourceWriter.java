@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONWriter;
+
+/**
+ * The <code>JsonResourceWriter</code> writes a resource tree depth first
+ * with a {@link JSONWriter} while traversing it. Unlike the
+ * {@link ResourceTraversor} it does not build the JSON tree in memory, only
+ * the resources on the current path and their children are held.
+ * <p>
+ * As the response can not be changed once writing has started, the output
+ * is buffered as long as the number of resources may still exceed the
+ * maximum, which is at most the output of the maximum number of resources.
+ * If the maximum is exceeded, the buffer is dropped and the level which
+ * might be requested instead is returned like by
+ * {@link ResourceTraversor#collectResources()}. The output is the same as
+ * the JSON object of the traversor, except for the whitespace of tidy
+ * output.
+ */
+public class JsonResourceWriter {
+
+    /** Returned by {@link #write(Writer, boolean)} if the resources have been written. */
+    public static final int WRITTEN = -1;
+
+    /**
+     * Returned by {@link #write(Writer, boolean)} if the resource tree is
+     * nested deeper than supported by the {@link JSONWriter}.
+     */
+    public static final int NESTED_TOO_DEEP = -2;
+
+    /** The maximum nesting of objects supported by the {@link JSONWriter}. */
+    private static final int MAX_NESTING = 50;
+
+    private final int maxRecursionLevels;
+
+    private final long maxResources;
+
+    private final Resource startResource;
+
+    private long count;
+
+    private boolean nestedTooDeep;
+
+    public JsonResourceWriter(final int levels, final long maxResources, final Resource resource) {
+        this.maxRecursionLevels = levels;
+        this.maxResources = maxResources;
+        this.startResource = resource;
+    }
+
+    /**
+     * Writes the resource tree. Nothing is written if the resource tree
+     * contains more resources than allowed or if it is nested too deep.
+     *
+     * @param out The writer
+     * @param tidy Whether the output should be nicely formatted
+     * @return {@link #WRITTEN} if the resources have been written,
+     *         {@link #NESTED_TOO_DEEP} if the resource tree is nested too
+     *         deep for the {@link JSONWriter}, or else the level which might
+     *         be requested instead as the resource tree contains more
+     *         resources than allowed.
+     * @throws JSONException
+     * @throws IOException
+     */
+    public int write(final Writer out, final boolean tidy) throws JSONException, IOException {
+        count = 0;
+        nestedTooDeep = false;
+
+        // SLING-2320: always allow enumeration of one's children;
+        // DOS-limitation is for deeper traversals.
+        if (maxRecursionLevels == 0 || maxRecursionLevels == 1) {
+            write(createWriter(out, tidy), startResource, 0, false);
+            return WRITTEN;
+        }
+
+        final CharArrayWriter buffer = new CharArrayWriter();
+        if (write(createWriter(buffer, tidy), startResource, 0, true)) {
+            buffer.writeTo(out);
+            return WRITTEN;
+        }
+        if (nestedTooDeep) {
+            return NESTED_TOO_DEEP;
+        }
+
+        // the limit is exceeded: look for the first level exceeding it
+        // like the breadth first traversal of the ResourceTraversor does
+        int level = 1;
+        while (true) {
+            count = 0;
+            if (!countChildren(startResource, 0, level)) {
+                return level - 1;
+            }
+            level++;
+        }
+    }
+
+    /**
+     * @return The number of resources counted or written.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private JSONWriter createWriter(final Writer out, final boolean tidy) {
+        final JSONWriter writer = new JSONWriter(out);
+        writer.setTidy(tidy);
+        return writer;
+    }
+
+    /**
+     * Counts the children of the resource up to the given level.
+     *
+     * @return <code>false</code> if the maximum number of resources is exceeded.
+     */
+    private boolean countChildren(final Resource resource, final int currentLevel, final int levels) {
+        if (levels == -1 || currentLevel < levels) {
+            final Iterator<Resource> children = ResourceUtil.listChildren(resource);
+            while (children.hasNext()) {
+                count++;
+                if (count > maxResources) {
+                    return false;
+                }
+                if (!countChildren(children.next(), currentLevel + 1, levels)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the resource and its children.
+     *
+     * @param limited Whether writing stops if the maximum number of
+     *            resources is exceeded.
+     * @return <code>false</code> if writing has been stopped as the maximum
+     *         number of resources is exceeded or the tree is nested too deep.
+     */
+    private boolean write(final JSONWriter writer, final Resource resource, final int currentLevel,
+            final boolean limited)
+    throws JSONException {
+        // entries of the JSON object in the order of the JSONObject of the traversor:
+        // the properties first, then the child resources replacing equally named entries
+        final Map<String, Object> entries = new LinkedHashMap<String, Object>();
+        final JSONObject properties = JsonObjectCreator.create(resource, 0);
+        final Iterator<String> keys = properties.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            entries.put(key, properties.get(key));
+        }
+        if (maxRecursionLevels == -1 || currentLevel < maxRecursionLevels) {
+            final Iterator<Resource> children = ResourceUtil.listChildren(resource);
+            while (children.hasNext()) {
+                count++;
+                if (limited && count > maxResources) {
+                    return false;
+                }
+                if (currentLevel + 1 >= MAX_NESTING) {
+                    nestedTooDeep = true;
+                    return false;
+                }
+                final Resource child = children.next();
+                entries.put(ResourceUtil.getName(child), child);
+            }
+        }
+
+        writer.object();
+        for (final Map.Entry<String, Object> entry : entries.entrySet()) {
+            writer.key(entry.getKey());
+            if (entry.getValue() instanceof Resource) {
+                if (!write(writer, (Resource) entry.getValue(), currentLevel + 1, limited)) {
+                    return false;
+                }
+            } else {
+                writer.value(entry.getValue());
+            }
+        }
+        writer.endObject();
+        return true;
+    }
+}
@@ -40,7 +40,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
@@ -84,10 +83,12 @@ import org.apache.sling.servlets.resolver.internal.defaults.DefaultErrorHandlerS
 import org.apache.sling.servlets.resolver.internal.defaults.DefaultServlet;
 import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.NamedScriptResourceCollector;
+import org.apache.sling.servlets.resolver.internal.helper.ResolutionCache;
 import org.apache.sling.servlets.resolver.internal.helper.ResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.SlingServletConfig;
 import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProvider;
 import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProviderFactory;
+import org.apache.sling.servlets.resolver.jmx.SlingServletResolverCacheMBean;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
@@ -185,14 +186,14 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
-
-    /** The cache size. */
-    private int cacheSize;
+    private ResolutionCache cache;
 
     /** Flag to log warning if cache size exceed only once. */
     private volatile boolean logCacheSizeWarning;
 
+    /** Registration of the cache management bean. */
+    private ServiceRegistration cacheMBeanRegistration;
+
     /** Registration as event handler. */
     private ServiceRegistration eventHandlerReg;
 
@@ -649,12 +650,10 @@ public class SlingServletResolver
                 boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
                 if (servletAcceptsRequest) {
                     if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
+                        if ( this.cache.put(locationUtil, candidate) && this.logCacheSizeWarning ) {
                             this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
-                                    this.cacheSize);
+                            LOGGER.warn("Script cache has reached its limit of {} and starts evicting entries. You might want to increase the cache size for the servlet resolver.",
+                                    this.cache.getMaxSize());
                         }
                     }
                     LOGGER.debug("Using servlet provided by candidate resource {}", candidateResource.getPath());
@@ -829,12 +828,11 @@ public class SlingServletResolver
         this.defaultExtensions = OsgiUtil.toStringArray(properties.get(PROP_DEFAULT_EXTENSIONS), DEFAULT_DEFAULT_EXTENSIONS);
 
         // create cache - if a cache size is configured
-        this.cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
-        if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<AbstractResourceCollector, Servlet>(cacheSize);
+        final int cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
+        if (cacheSize > 5) {
+            this.cache = new ResolutionCache(cacheSize);
             this.logCacheSizeWarning = true;
-        } else {
-            this.cacheSize = 0;
+            this.registerCacheMBean(context.getBundleContext());
         }
 
         // setup default servlet
@@ -864,6 +862,11 @@ public class SlingServletResolver
             this.eventHandlerReg = null;
         }
 
+        if (this.cacheMBeanRegistration != null) {
+            this.cacheMBeanRegistration.unregister();
+            this.cacheMBeanRegistration = null;
+        }
+
         // Copy the list of servlets first, to minimize the need for
         // synchronization
         final Collection<ServiceReference> refs;
@@ -898,6 +901,18 @@ public class SlingServletResolver
         this.servletResourceProviderFactory = null;
     }
 
+    private void registerCacheMBean(final BundleContext bundleContext) {
+        try {
+            final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+            mbeanProps.put("jmx.objectname", "org.apache.sling:type=servlets,service=SlingServletResolverCache");
+
+            final SlingServletResolverCacheMBeanImpl mbean = new SlingServletResolverCacheMBeanImpl(this.cache);
+            this.cacheMBeanRegistration = bundleContext.registerService(SlingServletResolverCacheMBean.class.getName(), mbean, mbeanProps);
+        } catch (final Throwable t) {
+            LOGGER.warn("Unable to register Servlet Resolver Cache MBean", t);
+        }
+    }
+
     protected void bindServlet(final ServiceReference reference) {
         boolean directCreate = true;
         if (context == null) {
@@ -1016,7 +1031,8 @@ public class SlingServletResolver
      * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
      */
     public void handleEvent(final Event event) {
-        if (this.cache != null) {
+        final ResolutionCache localCache = this.cache;
+        if (localCache != null) {
             boolean flushCache = false;
 
             // we may receive different events
@@ -1035,20 +1051,21 @@ public class SlingServletResolver
                 // this is a resource or resource provider event
 
                 // if the path of the event is a sub path of a search path
-                // we flush the whole cache
+                // we remove the entries whose resource type locations are
+                // affected by the change
                 final String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
                 if ( path != null ) {
-                    int index = 0;
-                    while (!flushCache && index < searchPaths.length) {
-                        if (path.startsWith(this.searchPaths[index])) {
-                            flushCache = true;
+                    for (final String searchPath : this.searchPaths) {
+                        if (path.startsWith(searchPath)) {
+                            final int removed = localCache.invalidate(path);
+                            LOGGER.debug("Removed {} cached entries for change at {}", removed, path);
+                            break;
                         }
-                        index++;
                     }
                 }
             }
             if (flushCache) {
-                this.cache.clear();
+                localCache.flush();
                 this.logCacheSizeWarning = true;
             }
         }
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import org.apache.sling.servlets.resolver.internal.helper.ResolutionCache;
+import org.apache.sling.servlets.resolver.jmx.SlingServletResolverCacheMBean;
+
+/**
+ * This is the implementation of the management interface for the
+ * script resolution cache.
+ */
+class SlingServletResolverCacheMBeanImpl extends StandardMBean implements SlingServletResolverCacheMBean {
+
+    private final ResolutionCache cache;
+
+    SlingServletResolverCacheMBeanImpl(final ResolutionCache cache) throws NotCompliantMBeanException {
+        super(SlingServletResolverCacheMBean.class);
+        this.cache = cache;
+    }
+
+    public int getCacheSize() {
+        return this.cache.size();
+    }
+
+    public int getMaximumCacheSize() {
+        return this.cache.getMaxSize();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return this.cache.getEvictions();
+    }
+
+    public long getInvalidations() {
+        return this.cache.getInvalidations();
+    }
+
+    public void flushCache() {
+        this.cache.flush();
+    }
+
+    public void resetStatistics() {
+        this.cache.resetStatistics();
+    }
+}
@@ -18,8 +18,10 @@
  */
 package org.apache.sling.servlets.resolver.internal.helper;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -52,6 +54,10 @@ public abstract class AbstractResourceCollector {
 
     protected final String[] executionPaths;
 
+    // the locations searched by the last call to getServlets, null if not
+    // called yet
+    private volatile String[] locations;
+
     public AbstractResourceCollector(final String baseResourceType,
             final String resourceType,
             final String resourceSuperType,
@@ -67,6 +73,7 @@ public abstract class AbstractResourceCollector {
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
+        final List<String> searchedLocations = new ArrayList<String>();
         final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
                                                                 baseResourceType, resolver);
         while (locations.hasNext()) {
@@ -81,13 +88,46 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
+            searchedLocations.add(path);
             final Resource locationRes = getResource(resolver, path);
             getWeightedResources(resources, locationRes);
         }
+        this.locations = searchedLocations.toArray(new String[searchedLocations.size()]);
 
         return resources;
     }
 
+    /**
+     * Returns <code>true</code> if a change at the given path may change the
+     * servlets found by {@link #getServlets(ResourceResolver)}. This is the
+     * case if the path is one of the locations searched - the resource type
+     * and super type locations - or is located below or above one of them.
+     * If the locations are not known yet, <code>true</code> is returned.
+     *
+     * @param path The absolute path of the changed resource
+     */
+    public boolean isAffectedBy(final String path) {
+        final String[] searched = this.locations;
+        if (searched == null) {
+            return true;
+        }
+        for (final String location : searched) {
+            if (isSameOrDescendant(path, location) || isSameOrDescendant(location, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrDescendant(final String path, final String ancestor) {
+        if (!path.startsWith(ancestor)) {
+            return false;
+        }
+        return path.length() == ancestor.length()
+            || ancestor.endsWith("/")
+            || path.charAt(ancestor.length()) == '/';
+    }
+
     abstract protected void getWeightedResources(final Set<Resource> resources,
                                                  final Resource location);
 
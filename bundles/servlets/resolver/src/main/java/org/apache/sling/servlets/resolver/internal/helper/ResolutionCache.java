@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+/**
+ * The <code>ResolutionCache</code> is a bounded cache of the servlets
+ * resolved for a resource collector. The entries are kept in access order,
+ * such that adding an entry to the full cache evicts the least recently
+ * used entry.
+ * <p>
+ * Entries may be invalidated selectively for a changed path: only the
+ * entries whose resource type or resource super type locations are affected
+ * by the path are removed (see {@link AbstractResourceCollector#isAffectedBy(String)}).
+ * <p>
+ * This class is thread safe.
+ */
+public class ResolutionCache {
+
+    private final int maxSize;
+
+    /** The entries in access order, guarded by their own lock. */
+    private final LinkedHashMap<AbstractResourceCollector, Servlet> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResolutionCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<AbstractResourceCollector, Servlet>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<AbstractResourceCollector, Servlet> eldest) {
+                if (size() > ResolutionCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached servlet for the collector or <code>null</code>.
+     */
+    public Servlet get(final AbstractResourceCollector collector) {
+        final Servlet servlet;
+        synchronized (this.entries) {
+            servlet = this.entries.get(collector);
+        }
+        if (servlet == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return servlet;
+    }
+
+    /**
+     * Caches the servlet for the collector.
+     *
+     * @return <code>true</code> if the least recently used entry has been
+     *         evicted to make room for the new entry.
+     */
+    public boolean put(final AbstractResourceCollector collector, final Servlet servlet) {
+        synchronized (this.entries) {
+            final long evicted = this.evictions.get();
+            this.entries.put(collector, servlet);
+            return this.evictions.get() != evicted;
+        }
+    }
+
+    /**
+     * Removes all entries affected by a change at the given path.
+     *
+     * @return The number of entries removed.
+     */
+    public int invalidate(final String path) {
+        int removed = 0;
+        synchronized (this.entries) {
+            final Iterator<AbstractResourceCollector> i = this.entries.keySet().iterator();
+            while (i.hasNext()) {
+                if (i.next().isAffectedBy(path)) {
+                    i.remove();
+                    removed++;
+                }
+            }
+        }
+        this.invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void flush() {
+        synchronized (this.entries) {
+            this.invalidations.addAndGet(this.entries.size());
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counters.
+     */
+    public void resetStatistics() {
+        this.hits.set(0);
+        this.misses.set(0);
+        this.evictions.set(0);
+        this.invalidations.set(0);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+public class ResolutionCacheTest extends HelperTestBase {
+
+    private final Servlet servlet = new HttpServlet() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    public void testIsAffectedBy() {
+        final ResourceCollector collector = ResourceCollector.create(request, null, new String[] {"html"});
+        // locations are not known before the first lookup
+        assertTrue(collector.isAffectedBy("/apps/other"));
+
+        collector.getServlets(request.getResourceResolver());
+        // scripts in the locations of the resource type or the default type
+        assertTrue(collector.isAffectedBy("/apps/" + resourceTypePath + "/html.esp"));
+        assertTrue(collector.isAffectedBy("/libs/" + resourceTypePath + "/print/a4.esp"));
+        assertTrue(collector.isAffectedBy("/libs/sling/servlet/default/GET.servlet"));
+        // the location itself or one of its ancestors
+        assertTrue(collector.isAffectedBy("/apps/" + resourceTypePath));
+        assertTrue(collector.isAffectedBy("/apps"));
+        // unrelated resource types
+        assertFalse(collector.isAffectedBy("/apps/other/html.esp"));
+        assertFalse(collector.isAffectedBy("/apps/" + resourceTypePath + "x/html.esp"));
+    }
+
+    public void testInvalidate() {
+        final ResolutionCache cache = new ResolutionCache(10);
+        final ResourceCollector collector = ResourceCollector.create(request, null, new String[] {"html"});
+        collector.getServlets(request.getResourceResolver());
+        assertNull(cache.get(collector));
+        cache.put(collector, servlet);
+        assertSame(servlet, cache.get(collector));
+
+        assertEquals(0, cache.invalidate("/apps/other/html.esp"));
+        assertSame(servlet, cache.get(collector));
+
+        assertEquals(1, cache.invalidate("/apps/" + resourceTypePath + "/html.esp"));
+        assertNull(cache.get(collector));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    public void testLeastRecentlyUsedEviction() {
+        final ResolutionCache cache = new ResolutionCache(2);
+        final ResourceCollector html = ResourceCollector.create(request, null, new String[] {"html"});
+        final ResourceCollector json = ResourceCollector.create(makeRequest("GET", null, "json"), null, new String[] {"html"});
+        final ResourceCollector txt = ResourceCollector.create(makeRequest("GET", null, "txt"), null, new String[] {"html"});
+
+        assertFalse(cache.put(html, servlet));
+        assertFalse(cache.put(json, servlet));
+        // access html such that json is the eldest entry
+        assertSame(servlet, cache.get(html));
+        assertTrue(cache.put(txt, servlet));
+
+        assertNull(cache.get(json));
+        assertSame(servlet, cache.get(html));
+        assertSame(servlet, cache.get(txt));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+
+    public void testEvictionInAccessOrder() {
+        final ResolutionCache cache = new ResolutionCache(3);
+        final ResourceCollector[] collectors = new ResourceCollector[5];
+        for (int i = 0; i < collectors.length; i++) {
+            collectors[i] = ResourceCollector.create(makeRequest("GET", null, "ext" + i), null, new String[] {"html"});
+        }
+        for (int i = 0; i < 3; i++) {
+            assertFalse(cache.put(collectors[i], servlet));
+        }
+        // the first collector is used after all others have been added
+        assertSame(servlet, cache.get(collectors[0]));
+        assertTrue(cache.put(collectors[3], servlet));
+        assertTrue(cache.put(collectors[4], servlet));
+
+        // only one entry is evicted for each new entry
+        assertEquals(2, cache.getEvictions());
+        assertEquals(3, cache.size());
+        assertSame(servlet, cache.get(collectors[0]));
+        assertNull(cache.get(collectors[1]));
+        assertNull(cache.get(collectors[2]));
+        assertSame(servlet, cache.get(collectors[3]));
+        assertSame(servlet, cache.get(collectors[4]));
+
+        // replacing an entry does not evict
+        assertFalse(cache.put(collectors[0], servlet));
+    }
+}
@@ -69,16 +69,23 @@ public class JcrResourceBundle extends ResourceBundle {
 
     private final Locale locale;
 
-    private final Set<String> languageRoots = new HashSet<String>();
+    private final Set<String> languageRoots;
+
+    /**
+     * The paths of all <code>mix:language</code> nodes matching the locale
+     * and base name of this bundle, whether or not they contain messages.
+     */
+    private final Set<String> potentialLanguageRoots;
 
     JcrResourceBundle(Locale locale, String baseName,
             ResourceResolver resourceResolver) {
         this.locale = locale;
+        this.languageRoots = new HashSet<String>();
 
         long start = System.currentTimeMillis();
         refreshSession(resourceResolver, true);
-        Set<String> roots = loadPotentialLanguageRoots(resourceResolver, locale, baseName);
-        this.resources = loadFully(resourceResolver, roots, this.languageRoots);
+        this.potentialLanguageRoots = loadPotentialLanguageRoots(resourceResolver, locale, baseName);
+        this.resources = loadFully(resourceResolver, this.potentialLanguageRoots, this.languageRoots);
         long end = System.currentTimeMillis();
         if (log.isDebugEnabled()) {
             log.debug(
@@ -89,6 +96,18 @@ public class JcrResourceBundle extends ResourceBundle {
         }
     }
 
+    /**
+     * Creates a resource bundle sharing the messages of the given bundle
+     * without accessing the repository. This is used to attach a bundle
+     * whose own messages are unchanged to a reloaded parent bundle.
+     */
+    JcrResourceBundle(JcrResourceBundle original) {
+        this.locale = original.locale;
+        this.resources = original.resources;
+        this.languageRoots = original.languageRoots;
+        this.potentialLanguageRoots = original.potentialLanguageRoots;
+    }
+
     static void refreshSession(ResourceResolver resolver, boolean keepChanges) {
         final Session s = resolver.adaptTo(Session.class);
         if(s == null) {
@@ -106,6 +125,20 @@ public class JcrResourceBundle extends ResourceBundle {
         return languageRoots;
     }
 
+    /**
+     * Returns <code>true</code> if a change at the given path may change the
+     * messages of this bundle, that is if the path is one of the
+     * <code>mix:language</code> nodes matching this bundle or is below one.
+     */
+    boolean isAffectedBy(String path) {
+        for (String root : potentialLanguageRoots) {
+            if (path.equals(root) || path.startsWith(root.concat("/"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected void setParent(ResourceBundle parent) {
         super.setParent(parent);
@@ -23,6 +23,7 @@ import static org.apache.sling.i18n.impl.JcrResourceBundle.PROP_LANGUAGE;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,6 +54,7 @@ import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.i18n.ResourceBundleProvider;
 import org.osgi.framework.BundleContext;
@@ -120,8 +122,6 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
      */
     private final ConcurrentHashMap<Key, JcrResourceBundle> resourceBundleCache = new ConcurrentHashMap<JcrResourceBundleProvider.Key, JcrResourceBundle>();
 
-    private final Set<String> languageRootPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
-
     /**
      * Return root resource bundle as created on-demand by
      * {@link #getRootResourceBundle()}.
@@ -130,7 +130,11 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
 
     private BundleContext bundleContext;
 
-    private List<ServiceRegistration> bundleServiceRegistrations;
+    /**
+     * The <code>ResourceBundle</code> service registrations of the cached
+     * resource bundles indexed by the key of the bundle.
+     */
+    private Map<Key, ServiceRegistration> bundleServiceRegistrations;
 
     private boolean preloadBundles;
 
@@ -172,42 +176,54 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
 
     /**
      * Observation support class that is used whenever something is changed inside of
-     * <code>sling:Message</code> nodes. We just removed all cached
-     * resource bundles in this case to force reloading them.
-     * <p>
-     * This is much simpler than analyzing the events and trying to be clever
-     * about which exact resource bundles to remove from the cache and at the
-     * same time care for any resource bundle dependencies.
+     * <code>sling:Message</code> nodes. Only the cached resource bundles
+     * whose language roots contain the changed messages are reloaded, along
+     * with the bundles having one of them as a parent. Messages outside of
+     * the language roots of the cached bundles do not affect any bundle.
      */
     private final EventListener messageChangeHandler = new EventListener() {
 
         public void onEvent(EventIterator events) {
-            log.debug("onEvent: Resource changes, removing cached ResourceBundles");
-            clearCache();
-            preloadBundles();
+            log.debug("onEvent: Resource changes, reloading affected ResourceBundles");
+            final Set<String> paths = new HashSet<String>();
+            while (events.hasNext()) {
+                try {
+                    paths.add(events.nextEvent().getPath());
+                } catch (RepositoryException re) {
+                    // ignore
+                }
+            }
+            reloadBundles(getAffectedKeys(paths));
         }
     };
 
     /**
      * Observation support class that listens for changes of <code>mix:language</code> nodes.
-     * In this case we check if the given language is already loaded and only then invalidate the cache.
+     * Messages added to or removed from the language root of a cached bundle
+     * just cause the affected bundles to be reloaded. If a language root
+     * itself is added, removed or changed, the locales and base names of
+     * the language roots may have changed and all cached bundles are reloaded.
      */
     private final EventListener languageChangeHandler = new EventListener() {
         public void onEvent(EventIterator events) {
             log.debug("onEvent: Resource changes. checking for cached bundle.");
+            final Set<String> paths = new HashSet<String>();
             while (events.hasNext()) {
                 Event e = events.nextEvent();
                 try {
-                    if (languageRootPaths.contains(e.getPath())) {
-                        log.debug("onEvent: Detected change of cached language root {}, removing cached ResourceBundles", e.getPath());
-                        clearCache();
+                    final String path = e.getPath();
+                    if (isLanguageRootChange(e.getType(), path)) {
+                        log.debug("onEvent: Detected change of language root {}, reloading all cached ResourceBundles", path);
+                        reloadBundles(resourceBundleCache.keySet());
                         preloadBundles();
                         return;
                     }
+                    paths.add(path);
                 } catch (RepositoryException e1) {
                     // ignore
                 }
             }
+            reloadBundles(getAffectedKeys(paths));
         }
     };
 
@@ -237,7 +253,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
         this.preloadBundles = PropertiesUtil.toBoolean(props.get(PROP_PRELOAD_BUNDLES), DEFAULT_PRELOAD_BUNDLES);
 
         this.bundleContext = context.getBundleContext();
-        this.bundleServiceRegistrations = new ArrayList<ServiceRegistration>();
+        this.bundleServiceRegistrations = new HashMap<Key, ServiceRegistration>();
         if (this.resourceResolverFactory != null) {
             final Thread t = new Thread() {
                 public void run() {
@@ -308,19 +324,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
                     new Object[] { baseName, locale
                             });
             } else {
-                Dictionary<Object, Object> serviceProps = new Hashtable<Object, Object>();
-                if (key.baseName != null) {
-                    serviceProps.put("baseName", key.baseName);
-                }
-                serviceProps.put("locale", key.locale.toString());
-                ServiceRegistration serviceReg = bundleContext.registerService(ResourceBundle.class.getName(),
-                    resourceBundle, serviceProps);
-                synchronized (this) {
-                    bundleServiceRegistrations.add(serviceReg);
-                }
-
-                // register language root paths
-                languageRootPaths.addAll(resourceBundle.getLanguageRootPaths());
+                registerResourceBundle(key, resourceBundle);
             }
         }
 
@@ -361,6 +365,142 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
         return bundle;
     }
 
+    /**
+     * Registers the resource bundle as a <code>ResourceBundle</code> service
+     * and unregisters the service of the resource bundle it replaces.
+     */
+    private void registerResourceBundle(Key key, JcrResourceBundle resourceBundle) {
+        Dictionary<Object, Object> serviceProps = new Hashtable<Object, Object>();
+        if (key.baseName != null) {
+            serviceProps.put("baseName", key.baseName);
+        }
+        serviceProps.put("locale", key.locale.toString());
+        ServiceRegistration serviceReg = bundleContext.registerService(ResourceBundle.class.getName(),
+            resourceBundle, serviceProps);
+        ServiceRegistration oldReg;
+        synchronized (this) {
+            oldReg = bundleServiceRegistrations.put(key, serviceReg);
+        }
+        if (oldReg != null) {
+            oldReg.unregister();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the observation event at the given path
+     * of a <code>mix:language</code> node concerns the language root itself
+     * rather than the messages below it: the root node itself is added or
+     * removed or one of the properties defining the language, the base name
+     * or the mixin types of the root is changed.
+     */
+    private boolean isLanguageRootChange(int type, String path) {
+        if (type == Event.NODE_ADDED || type == Event.NODE_REMOVED) {
+            for (JcrResourceBundle bundle : resourceBundleCache.values()) {
+                if (bundle.isAffectedBy(path) && !bundle.isAffectedBy(ResourceUtil.getParent(path))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final String name = ResourceUtil.getName(path);
+        return PROP_LANGUAGE.equals(name) || PROP_BASENAME.equals(name)
+            || "jcr:mixinTypes".equals(name);
+    }
+
+    /**
+     * Returns the keys of the cached resource bundles whose language roots
+     * contain any of the given paths.
+     */
+    private Set<Key> getAffectedKeys(Set<String> paths) {
+        final Set<Key> keys = new HashSet<Key>();
+        for (Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+            for (String path : paths) {
+                if (entry.getValue().isAffectedBy(path)) {
+                    keys.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Reloads the cached resource bundles of the given keys from the
+     * repository. The bundles having one of the reloaded bundles as a
+     * (transitive) parent get a copy attached to the reloaded parent without
+     * loading their messages again. Each cached bundle is only replaced once
+     * the new bundle is built, such that the old bundle is served until then.
+     */
+    private void reloadBundles(Set<Key> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // reload parents before their children
+        final List<Key> updates = new ArrayList<Key>();
+        for (Key key : resourceBundleCache.keySet()) {
+            for (Key k = key; k != null; k = getParentKey(k)) {
+                if (keys.contains(k)) {
+                    updates.add(key);
+                    break;
+                }
+            }
+        }
+        Collections.sort(updates, new Comparator<Key>() {
+            public int compare(Key k1, Key k2) {
+                return getDepth(k1) - getDepth(k2);
+            }
+        });
+
+        final ResourceResolver resolver = getResourceResolver();
+        if (resolver == null) {
+            log.info("reloadBundles: Missing Resource Resolver, removing cached Resource Bundles");
+            clearCache();
+            return;
+        }
+        for (Key key : updates) {
+            final JcrResourceBundle oldBundle = resourceBundleCache.get(key);
+            if (oldBundle == null) {
+                continue;
+            }
+
+            final JcrResourceBundle bundle;
+            if (keys.contains(key)) {
+                log.debug("reloadBundles: Reloading ResourceBundle {} ({})", key.locale, key.baseName);
+                bundle = new JcrResourceBundle(key.locale, key.baseName, resolver);
+            } else {
+                bundle = new JcrResourceBundle(oldBundle);
+            }
+            Locale parentLocale = getParentLocale(key.locale);
+            if (parentLocale != null) {
+                bundle.setParent(getResourceBundleInternal(key.baseName, parentLocale));
+            } else {
+                bundle.setParent(getRootResourceBundle());
+            }
+
+            if (resourceBundleCache.replace(key, oldBundle, bundle)) {
+                registerResourceBundle(key, bundle);
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the parent bundle of the bundle with the given key
+     * or <code>null</code> if the parent is the root resource bundle.
+     */
+    private Key getParentKey(Key key) {
+        final Locale parentLocale = getParentLocale(key.locale);
+        return (parentLocale == null) ? null : new Key(key.baseName, parentLocale);
+    }
+
+    private int getDepth(Key key) {
+        int depth = 0;
+        for (Key k = getParentKey(key); k != null; k = getParentKey(k)) {
+            depth++;
+        }
+        return depth;
+    }
+
     /**
      * Returns the parent locale of the given locale. The parent locale is the
      * locale of a locale is defined as follows:
@@ -466,11 +606,10 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider {
 
     private void clearCache() {
         resourceBundleCache.clear();
-        languageRootPaths.clear();
 
         ServiceRegistration[] serviceRegs;
         synchronized (this) {
-            serviceRegs = bundleServiceRegistrations.toArray(new ServiceRegistration[bundleServiceRegistrations.size()]);
+            serviceRegs = bundleServiceRegistrations.values().toArray(new ServiceRegistration[bundleServiceRegistrations.size()]);
             bundleServiceRegistrations.clear();
         }
 
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import junit.framework.TestCase;
+
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.testing.jcr.RepositoryUtil;
+import org.apache.sling.commons.testing.osgi.MockBundle;
+import org.apache.sling.commons.testing.osgi.MockBundleContext;
+import org.apache.sling.commons.testing.osgi.MockComponentContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Tests which cached bundles the {@link JcrResourceBundleProvider} reloads
+ * on changes of messages and language roots. The content and the resource
+ * resolver are the ones of the {@link JcrResourceBundleTest}.
+ */
+public class JcrResourceBundleProviderTest extends TestCase {
+
+    private static final long EVENT_TIMEOUT = 10000;
+
+    private static final Locale DE = new Locale("de");
+
+    private static final Locale EN = new Locale("en");
+
+    private static final Locale EN_UK = new Locale("en", "UK");
+
+    private JcrResourceBundleTest content;
+
+    /** Session used to change the content, the events of the resolver's own session are ignored */
+    private Session session;
+
+    private JcrResourceBundleProvider provider;
+
+    private ResourceResolverFactory factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        content = new JcrResourceBundleTest();
+        content.setUp();
+        session = RepositoryUtil.getRepository().loginAdministrative(null);
+
+        factory = (ResourceResolverFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { ResourceResolverFactory.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return content.resolver;
+                }
+            });
+
+        // the provider replaces the service registration of reloaded bundles
+        final MockBundleContext bundleContext = new MockBundleContext(new MockBundle(1)) {
+            @Override
+            public ServiceRegistration registerService(String clazz, Object service, Dictionary properties) {
+                return new ServiceRegistration() {
+                    public ServiceReference getReference() {
+                        return null;
+                    }
+
+                    public void setProperties(Dictionary properties) {
+                    }
+
+                    public void unregister() {
+                    }
+                };
+            }
+        };
+        final MockComponentContext context = new MockComponentContext(bundleContext);
+        context.setProperty("locale.default", "en");
+        provider = new JcrResourceBundleProvider();
+        provider.activate(context);
+        provider.bindResourceResolverFactory(factory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        provider.unbindResourceResolverFactory(factory);
+        provider.deactivate();
+        session.logout();
+        content.resolver.adaptTo(Session.class).logout();
+        super.tearDown();
+    }
+
+    public void test_message_change() throws Exception {
+        final ResourceBundle de = provider.getResourceBundle(DE);
+        final ResourceBundle en = provider.getResourceBundle(EN);
+        final ResourceBundle enUK = provider.getResourceBundle(EN_UK);
+        assertEquals("Teller", de.getString("plate"));
+
+        session.getNode("/libs/i18n/de/plate").setProperty("sling:message", "Platte");
+        session.save();
+        waitForMessage(null, DE, "plate", "Platte");
+
+        // only the bundle of the language root is reloaded
+        assertNotSame(de, provider.getResourceBundle(DE));
+        assertSame(en, provider.getResourceBundle(EN));
+        assertSame(enUK, provider.getResourceBundle(EN_UK));
+    }
+
+    public void test_parent_message_change() throws Exception {
+        final ResourceBundle de = provider.getResourceBundle(DE);
+        final ResourceBundle en = provider.getResourceBundle(EN);
+        final ResourceBundle enUK = provider.getResourceBundle(EN_UK);
+        final ResourceBundle enAU = provider.getResourceBundle(new Locale("en", "AU"));
+        assertEquals("cup", de.getString("cup"));
+
+        new Message("", "cup", "mug", true).add(session.getNode("/libs/i18n/en"));
+        session.save();
+        // the children get a copy attached to the reloaded parent
+        waitForMessage(null, DE, "cup", "mug");
+        waitForMessage(null, EN_UK, "cup", "mug");
+        waitForMessage(null, new Locale("en", "AU"), "cup", "mug");
+        final ResourceBundle newDe = provider.getResourceBundle(DE);
+        final ResourceBundle newEnUK = provider.getResourceBundle(EN_UK);
+        assertNotSame(en, provider.getResourceBundle(EN));
+        assertNotSame(de, newDe);
+        assertNotSame(enUK, newEnUK);
+        assertNotSame(enAU, provider.getResourceBundle(new Locale("en", "AU")));
+        assertEquals("mug", newDe.getString("cup"));
+        assertEquals("Teller", newDe.getString("plate"));
+        assertEquals("mug", newEnUK.getString("cup"));
+        assertEquals("colour", newEnUK.getString("pigment"));
+    }
+
+    public void test_unrelated_message_change() throws Exception {
+        final ResourceBundle en = provider.getResourceBundle(EN);
+        final ResourceBundle de = provider.getResourceBundle(DE);
+
+        // a language root without cached bundle, then one of a cached bundle
+        new Message("", "cup", "Tasse", true).add(session.getNode("/libs/i18n/en-US"));
+        session.save();
+        session.getNode("/libs/i18n/de/plate").setProperty("sling:message", "Platte");
+        session.save();
+        waitForMessage(null, DE, "plate", "Platte");
+
+        // events are delivered in order, so the first change has been handled
+        assertSame(en, provider.getResourceBundle(EN));
+        assertNotSame(de, provider.getResourceBundle(DE));
+    }
+
+    public void test_language_root_change() throws Exception {
+        final ResourceBundle de = provider.getResourceBundle(DE);
+        final ResourceBundle en = provider.getResourceBundle(EN);
+        final ResourceBundle enUK = provider.getResourceBundle(EN_UK);
+        assertEquals("Teller", de.getString("plate"));
+
+        session.getNode("/libs/i18n/de").setProperty("jcr:language", "fr");
+        session.save();
+        waitForMessage(null, DE, "plate", "plate");
+        waitForMessage(null, new Locale("fr"), "plate", "Teller");
+
+        // all cached bundles are reloaded
+        assertNotSame(en, provider.getResourceBundle(EN));
+        assertNotSame(enUK, provider.getResourceBundle(EN_UK));
+    }
+
+    public void test_language_root_added() throws Exception {
+        final ResourceBundle de = provider.getResourceBundle(DE);
+        final ResourceBundle en = provider.getResourceBundle(EN);
+        assertEquals("cup", de.getString("cup"));
+
+        final Node root = session.getNode("/libs/i18n").addNode("de_more", "nt:folder");
+        root.addMixin("mix:language");
+        root.setProperty("jcr:language", "de");
+        new Message("", "cup", "Tasse", true).add(root);
+        session.save();
+        waitForMessage(null, DE, "cup", "Tasse");
+
+        assertNotSame(en, provider.getResourceBundle(EN));
+    }
+
+    public void test_basename_change() throws Exception {
+        final Node root = session.getNode("/libs/i18n").addNode("de_foo", "nt:unstructured");
+        root.addMixin("mix:language");
+        root.setProperty("jcr:language", "de");
+        new Message("", "cup", "Becher", true).add(root);
+        session.save();
+        waitForMessage(null, DE, "cup", "Becher");
+
+        final ResourceBundle foo = provider.getResourceBundle("FOO", DE);
+        final ResourceBundle de = provider.getResourceBundle(DE);
+        assertEquals("cup", foo.getString("cup"));
+
+        root.setProperty("sling:basename", "FOO");
+        session.save();
+        waitForMessage("FOO", DE, "cup", "Becher");
+
+        assertNotSame(de, provider.getResourceBundle(DE));
+        assertEquals("Teller", provider.getResourceBundle(DE).getString("plate"));
+    }
+
+    /**
+     * Waits until the observation events have been handled and the cached
+     * bundle returns the expected message.
+     */
+    private void waitForMessage(String baseName, Locale locale, String key, String message)
+            throws InterruptedException {
+        final long end = System.currentTimeMillis() + EVENT_TIMEOUT;
+        while (!message.equals(provider.getResourceBundle(baseName, locale).getString(key))) {
+            if (System.currentTimeMillis() > end) {
+                fail("Bundle " + locale + " (" + baseName + ") not reloaded, " + key + "="
+                    + provider.getResourceBundle(baseName, locale).getString(key));
+            }
+            Thread.sleep(50);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Map;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
@@ -180,8 +181,15 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
                 return null;
             }
 
+            @SuppressWarnings("unchecked")
             public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
-                // TODO Auto-generated method stub
+                if (type == Session.class) {
+                    try {
+                        return (AdapterType) getSession();
+                    } catch (Exception e) {
+                        return null;
+                    }
+                }
                 return null;
             }
 
@@ -440,4 +448,29 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
         }
         assertEquals(MESSAGES_DE.size(), counter);
     }
+
+    public void test_isAffectedBy() {
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        assertTrue(bundle.isAffectedBy("/libs/i18n/de"));
+        assertTrue(bundle.isAffectedBy("/libs/i18n/de/kitchen"));
+        assertTrue(bundle.isAffectedBy("/libs/i18n/de/kitchen/sling:message"));
+        assertFalse(bundle.isAffectedBy("/libs/i18n"));
+        assertFalse(bundle.isAffectedBy("/libs/i18n/de_basename/kitchen"));
+        assertFalse(bundle.isAffectedBy("/libs/i18n/en/kitchen"));
+    }
+
+    public void test_copy() {
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        JcrResourceBundle copy = new JcrResourceBundle(bundle);
+        JcrResourceBundle parentBundle = new JcrResourceBundle(new Locale("en"), null, resolver);
+        copy.setParent(parentBundle);
+        parentBundle.setParent(new RootResourceBundle());
+
+        assertEquals(bundle.getLocale(), copy.getLocale());
+        assertEquals(bundle.getLanguageRootPaths(), copy.getLanguageRootPaths());
+        for (Message msg : MESSAGES_DE.values()) {
+            assertEquals(msg.message, copy.getString(msg.key));
+        }
+        assertEquals(PARENT_MSG.message, copy.getObject(PARENT_MSG.key));
+    }
 }
@@ -49,6 +49,7 @@ public class Activator implements BundleActivator {
 
     private OsgiInstallerImpl osgiControllerService;
     private ServiceRegistration osgiControllerServiceReg;
+    private ServiceRegistration taskStatisticsReg;
 
     /**
      * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
@@ -73,12 +74,26 @@ public class Activator implements BundleActivator {
                 RetryHandler.class.getName()
         };
         osgiControllerServiceReg = context.registerService(serviceInterfaces, osgiControllerService, props);
+
+        // register the task statistics as a web console configuration printer
+        final Hashtable<String, String> printerProps = new Hashtable<String, String>();
+        printerProps.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Installer Task Statistics Configuration Printer");
+        printerProps.put(Constants.SERVICE_VENDOR, VENDOR);
+        printerProps.put("felix.webconsole.label", "osgi-installer-tasks");
+        printerProps.put("felix.webconsole.title", "OSGi Installer Tasks");
+        printerProps.put("felix.webconsole.configprinter.modes", "always");
+        taskStatisticsReg = context.registerService(TaskStatistics.class.getName(),
+                osgiControllerService.getTaskStatistics(), printerProps);
     }
 
     /**
      * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
      */
     public void stop(final BundleContext context) {
+        if ( this.taskStatisticsReg != null ) {
+            this.taskStatisticsReg.unregister();
+            this.taskStatisticsReg = null;
+        }
         // stop osgi installer service
         if ( this.osgiControllerService != null ) {
             this.osgiControllerService.deactivate();
@@ -18,6 +18,8 @@
  */
 package org.apache.sling.installer.core.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -109,6 +111,36 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
         }
     }
 
+    /**
+     * Write the list in the compact format of the {@link PersistentResourceJournal}.
+     */
+    void writeTo(final DataOutput out)
+            throws IOException {
+        out.writeInt(resources.size());
+        for(final RegisteredResourceImpl rr : this.resources) {
+            rr.writeTo(out);
+        }
+        PersistentResourceJournal.writeString(out, this.alias);
+        PersistentResourceJournal.writeString(out, this.resourceId);
+    }
+
+    /**
+     * Read a list written by {@link #writeTo(DataOutput)}.
+     */
+    static EntityResourceList readFrom(final DataInput in, final InstallationListener listener)
+            throws IOException {
+        final int size = in.readInt();
+        final List<RegisteredResourceImpl> resources = new ArrayList<RegisteredResourceImpl>(size);
+        for(int i=0; i < size; i++) {
+            resources.add(RegisteredResourceImpl.readFrom(in));
+        }
+        final String alias = PersistentResourceJournal.readString(in);
+        final EntityResourceList erl = new EntityResourceList(PersistentResourceJournal.readString(in), listener);
+        erl.resources.addAll(resources);
+        erl.alias = alias;
+        return erl;
+    }
+
     /**
      * The resource list is empty if it contains no resources.
      */
@@ -35,6 +35,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.commons.osgi.PropertiesUtil;
@@ -76,6 +82,29 @@ import org.slf4j.LoggerFactory;
 public class OsgiInstallerImpl
 implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Runnable {
 
+    /**
+     * The name of the bundle context property defining the number of threads
+     * used to execute independent tasks in parallel (value is
+     * "sling.installer.parallel.threads"). If not set or lower than 2, all
+     * tasks are executed sequentially by the background thread.
+     */
+    private static final String PROP_PARALLEL_THREADS = "sling.installer.parallel.threads";
+
+    /**
+     * The sort key prefixes of the tasks which might be executed in parallel:
+     * the configuration removal and installation tasks, which are executed for
+     * different PIDs, and the bundle installation tasks, which are executed
+     * before any bundle is refreshed or started.
+     */
+    private static final String[] PARALLEL_ORDERS = {"10-", "20-", "40-"};
+
+    /**
+     * The sort key prefix of the bundle installation tasks. The start level
+     * following this prefix is part of the ordering: only bundles with the
+     * same start level are installed in parallel.
+     */
+    private static final String BUNDLE_INSTALL_ORDER = "40-";
+
     /** The logger */
     private final Logger logger =  LoggerFactory.getLogger(this.getClass());
 
@@ -121,6 +150,12 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
     private final InstallListener listener;
     private final AtomicLong backgroundTaskCounter = new AtomicLong();
 
+    /** The executor for parallel tasks or <code>null</code> if disabled. */
+    private final ExecutorService taskExecutor;
+
+    /** The execution time statistics of the tasks. */
+    private final TaskStatistics taskStatistics;
+
 
     /**
      *  Constructor
@@ -134,6 +169,23 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         final File f = FileDataStore.SHARED.getDataFile("RegisteredResourceList.ser");
         this.listener = new InstallListener(ctx, logger);
         this.persistentList = new PersistentResourceList(f, listener);
+
+        final int threads = PropertiesUtil.toInteger(ctx.getProperty(PROP_PARALLEL_THREADS), 0);
+        if ( threads > 1 ) {
+            final AtomicLong threadCounter = new AtomicLong();
+            this.taskExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, OsgiInstallerImpl.class.getSimpleName() + " Task Worker " + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            this.logger.info("Executing independent install tasks with {} threads.", threads);
+        } else {
+            this.taskExecutor = null;
+        }
+        this.taskStatistics = new TaskStatistics(this.taskExecutor == null ? 0 : threads);
     }
 
     /**
@@ -160,6 +212,10 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
 
         this.listener.dispose();
 
+        if ( this.taskExecutor != null ) {
+            this.taskExecutor.shutdown();
+        }
+
         if ( this.backgroundThread != null ) {
             if ( logger.isDebugEnabled() ) {
                 final Thread t = this.backgroundThread;
@@ -680,9 +736,23 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
             };
             while (this.active && !tasks.isEmpty()) {
                 InstallTask task = null;
+                final List<InstallTask> batch = new ArrayList<InstallTask>();
                 synchronized (tasks) {
                     task = tasks.first();
                     tasks.remove(task);
+                    // collect the following tasks which can be executed in parallel
+                    final String group = (this.taskExecutor == null ? null : getParallelGroup(task));
+                    if ( group != null ) {
+                        batch.add(task);
+                        while ( !tasks.isEmpty() && group.equals(getParallelGroup(tasks.first())) ) {
+                            batch.add(tasks.first());
+                            tasks.remove(tasks.first());
+                        }
+                    }
+                }
+                if ( batch.size() > 1 ) {
+                    this.executeParallel(batch, ctx);
+                    continue;
                 }
                 // async tasks are executed "immediately"
                 if ( task.isAsynchronousTask() ) {
@@ -728,12 +798,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                     t.start();
                     return ACTION.SHUTDOWN;
                 }
-                try {
-                    logger.debug("Executing task: {}", task);
-                    task.execute(ctx);
-                } catch (final Throwable t) {
-                    logger.error("Uncaught exception during task execution!", t);
-                }
+                this.executeTask(task, ctx);
             }
             // save new state
             final boolean newCycle = this.cleanupInstallableResources();
@@ -745,6 +810,89 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return ACTION.SLEEP;
     }
 
+    /**
+     * Execute a single task and record its execution time.
+     */
+    private void executeTask(final InstallTask task, final InstallationContext ctx) {
+        final long start = System.nanoTime();
+        try {
+            logger.debug("Executing task: {}", task);
+            task.execute(ctx);
+        } catch (final Throwable t) {
+            logger.error("Uncaught exception during task execution!", t);
+        }
+        this.taskStatistics.record(task, System.nanoTime() - start);
+    }
+
+    /**
+     * Execute a batch of independent tasks with the task executor and
+     * wait for all of them to finish.
+     */
+    private void executeParallel(final List<InstallTask> batch, final InstallationContext ctx) {
+        logger.debug("Executing {} tasks in parallel", batch.size());
+        final List<Future<?>> futures = new ArrayList<Future<?>>(batch.size());
+        for(final InstallTask task : batch) {
+            final Runnable r = new Runnable() {
+
+                public void run() {
+                    executeTask(task, ctx);
+                }
+            };
+            try {
+                futures.add(this.taskExecutor.submit(r));
+            } catch (final RejectedExecutionException ree) {
+                // the executor is shut down, execute the task directly
+                r.run();
+            }
+        }
+        for(final Future<?> future : futures) {
+            boolean done = false;
+            while ( !done ) {
+                try {
+                    future.get();
+                    done = true;
+                } catch (final InterruptedException ie) {
+                    // we simply ignore this and wait for the task to finish
+                } catch (final ExecutionException ee) {
+                    logger.error("Uncaught exception during task execution!", ee.getCause());
+                    done = true;
+                }
+            }
+        }
+        this.taskStatistics.recordParallelBatch(batch.size());
+    }
+
+    /**
+     * Return the group of tasks the task can be executed in parallel with.
+     * All tasks of a group are executed after the tasks sorted before the
+     * group and before the tasks sorted after the group, but in any order
+     * within the group.
+     * @return The group or <code>null</code> if the task must be executed on its own.
+     */
+    static String getParallelGroup(final InstallTask task) {
+        if ( task.isAsynchronousTask() ) {
+            return null;
+        }
+        final String sortKey = task.getSortKey();
+        for(final String order : PARALLEL_ORDERS) {
+            if ( sortKey.startsWith(order) ) {
+                if ( BUNDLE_INSTALL_ORDER.equals(order) ) {
+                    final int pos = sortKey.indexOf('-', order.length());
+                    return pos == -1 ? null : sortKey.substring(0, pos + 1);
+                }
+                return order;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the execution time statistics of the tasks.
+     */
+    public TaskStatistics getTaskStatistics() {
+        return this.taskStatistics;
+    }
+
     /**
      * Clean up and compact.
      * @return <code>true</code> if another cycle should be started.
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only journal of the entries of the {@link PersistentResourceList}.
+ * <p>
+ * Each entry is identified by a key and stored as an opaque byte array.
+ * Saving only appends records for the entries which changed or have been
+ * removed since the last save. When reading the journal, the last record
+ * for a key wins. Once the journal is considerably larger than the live
+ * entries, it is compacted by writing all live entries to a new file which
+ * then replaces the journal.
+ * <p>
+ * The file starts with a magic number and a format version, followed by the
+ * records. Each record consists of the record type, the key and, for
+ * written entries, the length, the data and a CRC-32 checksum of the data.
+ * A truncated or corrupt record at the end of the file, for example due to
+ * a crash while writing, is ignored and removed with the next compaction.
+ * <p>
+ * This class also provides the methods to write and read the values of the
+ * entries in a compact binary format.
+ */
+class PersistentResourceJournal {
+
+    /** Magic number at the start of the file ("SLRJ"). */
+    private static final int MAGIC = 0x534c524a;
+
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_PUT = 1;
+
+    private static final byte RECORD_REMOVE = 2;
+
+    /** Minimum size of a journal before it is compacted. */
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    /** Value types */
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_SHORT = 7;
+    private static final byte TYPE_BYTE = 8;
+    private static final byte TYPE_CHARACTER = 9;
+    private static final byte TYPE_STRING_ARRAY = 10;
+    private static final byte TYPE_SERIALIZED = 11;
+
+    /** The logger */
+    private final Logger logger =  LoggerFactory.getLogger(this.getClass());
+
+    /** The journal file. */
+    private final File file;
+
+    /** The current size of the journal file. */
+    private long fileSize;
+
+    /** The size the journal would have after compaction. */
+    private long liveSize;
+
+    /** Whether the journal must be rewritten with the next save. */
+    private boolean compactionRequired = true;
+
+    PersistentResourceJournal(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Check whether the file is a journal (and not a file
+     * written by older versions of the installer).
+     */
+    static boolean isJournal(final File file) {
+        if ( !file.exists() ) {
+            return false;
+        }
+        try {
+            final DataInputStream dis = new DataInputStream(new FileInputStream(file));
+            try {
+                return dis.readInt() == MAGIC;
+            } finally {
+                dis.close();
+            }
+        } catch (final IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Read the live entries from the journal.
+     * @return A map of the entry data by key in the order of the journal.
+     * @throws IOException If the journal can't be read at all.
+     */
+    Map<String, byte[]> read() throws IOException {
+        final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+        try {
+            if ( dis.readInt() != MAGIC ) {
+                throw new IOException("Not a resource journal: " + this.file);
+            }
+            final int version = dis.readInt();
+            if ( version < 1 || version > VERSION ) {
+                throw new IOException("Unknown version for resource journal: " + version);
+            }
+            int records = 0;
+            try {
+                while ( true ) {
+                    final int type = dis.read();
+                    if ( type == -1 ) {
+                        break;
+                    }
+                    final String key = readString(dis);
+                    if ( type == RECORD_PUT ) {
+                        final byte[] data = new byte[dis.readInt()];
+                        dis.readFully(data);
+                        if ( dis.readInt() != (int) checksum(data) ) {
+                            throw new IOException("Checksum mismatch for " + key);
+                        }
+                        entries.remove(key);
+                        entries.put(key, data);
+                    } else if ( type == RECORD_REMOVE ) {
+                        entries.remove(key);
+                    } else {
+                        throw new IOException("Unknown record type " + type);
+                    }
+                    records++;
+                }
+                this.compactionRequired = false;
+            } catch (final IOException ioe) {
+                // EOF or corrupt record: keep what has been read so far
+                logger.warn("Ignoring incomplete resource journal after " + records + " records: " + ioe.getMessage());
+            }
+        } finally {
+            dis.close();
+        }
+        this.fileSize = this.file.length();
+        this.liveSize = size(entries);
+        return entries;
+    }
+
+    /**
+     * Mark the journal as to be rewritten with the next save, for example
+     * because the data has been restored from a file in the old format.
+     */
+    void requireCompaction() {
+        this.compactionRequired = true;
+    }
+
+    /**
+     * Save the changes.
+     * @param entries All live entries
+     * @param changed The keys of the entries which changed since the last save
+     * @param removed The keys of the entries which have been removed since the last save
+     */
+    void save(final Map<String, byte[]> entries,
+            final Collection<String> changed,
+            final Collection<String> removed)
+    throws IOException {
+        this.liveSize = size(entries);
+        if ( this.compactionRequired
+             || this.fileSize > Math.max(MIN_COMPACTION_SIZE, 2 * this.liveSize) ) {
+            this.compact(entries);
+        } else if ( !changed.isEmpty() || !removed.isEmpty() ) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final DataOutputStream dos = new DataOutputStream(bos);
+            for(final String key : removed) {
+                dos.writeByte(RECORD_REMOVE);
+                writeString(dos, key);
+            }
+            for(final String key : changed) {
+                writePut(dos, key, entries.get(key));
+            }
+            dos.flush();
+
+            final FileOutputStream fos = new FileOutputStream(this.file, true);
+            try {
+                bos.writeTo(fos);
+            } finally {
+                fos.close();
+            }
+            this.fileSize += bos.size();
+            logger.debug("Appended {} changed and {} removed entries to resource journal.", changed.size(), removed.size());
+        }
+    }
+
+    /**
+     * Write all entries to a new file replacing the journal.
+     */
+    private void compact(final Map<String, byte[]> entries) throws IOException {
+        final File tmpFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+        final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            for(final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writePut(dos, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            dos.close();
+        }
+        this.file.delete();
+        if ( !tmpFile.renameTo(this.file) ) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + this.file);
+        }
+        this.fileSize = this.file.length();
+        this.compactionRequired = false;
+        logger.debug("Compacted resource journal with {} entries.", entries.size());
+    }
+
+    private static void writePut(final DataOutputStream dos, final String key, final byte[] data)
+    throws IOException {
+        dos.writeByte(RECORD_PUT);
+        writeString(dos, key);
+        dos.writeInt(data.length);
+        dos.write(data);
+        dos.writeInt((int) checksum(data));
+    }
+
+    private static long checksum(final byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * The size of the entries when written to a compacted journal.
+     */
+    private static long size(final Map<String, byte[]> entries) {
+        long size = 8;
+        for(final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            size += 13 + entry.getKey().length() + entry.getValue().length;
+        }
+        return size;
+    }
+
+    // ---------- value encoding -----------------------------------------------
+
+    /**
+     * Write a string which might be <code>null</code> or longer than
+     * supported by {@link DataOutput#writeUTF(String)}.
+     */
+    static void writeString(final DataOutput out, final String value)
+    throws IOException {
+        if ( value == null ) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(final DataInput in)
+    throws IOException {
+        final int length = in.readInt();
+        if ( length == -1 ) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Write a value. Strings, the primitive wrapper types and string arrays
+     * are written directly, all other values are serialized.
+     */
+    static void writeValue(final DataOutput out, final Object value)
+    throws IOException {
+        if ( value == null ) {
+            out.writeByte(TYPE_NULL);
+        } else if ( value instanceof String ) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if ( value instanceof Integer ) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if ( value instanceof Long ) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if ( value instanceof Boolean ) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if ( value instanceof Double ) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if ( value instanceof Float ) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if ( value instanceof Short ) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if ( value instanceof Byte ) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if ( value instanceof Character ) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) value);
+        } else if ( value instanceof String[] ) {
+            final String[] array = (String[]) value;
+            out.writeByte(TYPE_STRING_ARRAY);
+            out.writeInt(array.length);
+            for(final String s : array) {
+                writeString(out, s);
+            }
+        } else {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(TYPE_SERIALIZED);
+            out.writeInt(bos.size());
+            out.write(bos.toByteArray());
+        }
+    }
+
+    static Object readValue(final DataInput in)
+    throws IOException {
+        final byte type = in.readByte();
+        switch ( type ) {
+            case TYPE_NULL : return null;
+            case TYPE_STRING : return readString(in);
+            case TYPE_INTEGER : return in.readInt();
+            case TYPE_LONG : return in.readLong();
+            case TYPE_BOOLEAN : return in.readBoolean();
+            case TYPE_DOUBLE : return in.readDouble();
+            case TYPE_FLOAT : return in.readFloat();
+            case TYPE_SHORT : return in.readShort();
+            case TYPE_BYTE : return in.readByte();
+            case TYPE_CHARACTER : return in.readChar();
+            case TYPE_STRING_ARRAY :
+                final String[] array = new String[in.readInt()];
+                for(int i=0; i<array.length; i++) {
+                    array[i] = readString(in);
+                }
+                return array;
+            case TYPE_SERIALIZED :
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                final InputStream is = new ByteArrayInputStream(bytes);
+                final ObjectInputStream ois = new ObjectInputStream(is);
+                try {
+                    return ois.readObject();
+                } catch (final ClassNotFoundException cnfe) {
+                    throw new IOException("Unable to read value: " + cnfe.getMessage());
+                } finally {
+                    ois.close();
+                }
+            default : throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Write a map of values, <code>null</code> is written as an empty map.
+     */
+    static void writeMap(final DataOutput out, final Map<String, Object> map)
+    throws IOException {
+        if ( map == null ) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(map.size());
+            for(final Map.Entry<String, Object> entry : map.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+    }
+
+    static void readMap(final DataInput in, final Map<String, Object> map)
+    throws IOException {
+        final int size = in.readInt();
+        for(int i=0; i<size; i++) {
+            final String key = readString(in);
+            map.put(key, readValue(in));
+        }
+    }
+
+    /**
+     * Write a dictionary, <code>null</code> is written as size -1.
+     */
+    static void writeDictionary(final DataOutput out, final Dictionary<String, Object> dict)
+    throws IOException {
+        if ( dict == null ) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(dict.size());
+            final Enumeration<String> keys = dict.keys();
+            while ( keys.hasMoreElements() ) {
+                final String key = keys.nextElement();
+                writeString(out, key);
+                writeValue(out, dict.get(key));
+            }
+        }
+    }
+
+    static Dictionary<String, Object> readDictionary(final DataInput in)
+    throws IOException {
+        final int size = in.readInt();
+        if ( size == -1 ) {
+            return null;
+        }
+        final Dictionary<String, Object> dict = new Hashtable<String, Object>();
+        for(int i=0; i<size; i++) {
+            final String key = readString(in);
+            dict.put(key, readValue(in));
+        }
+        return dict;
+    }
+}
@@ -19,14 +19,16 @@
 package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -47,9 +49,12 @@ import org.slf4j.LoggerFactory;
  */
 public class PersistentResourceList {
 
-    /** Serialization version. */
+    /** Serialization version of the format used before the journal. */
     private static final int VERSION = 2;
 
+    /** Journal key of the untransformed resources, entity ids are never empty. */
+    private static final String UNTRANSFORMED_KEY = "";
+
     /** Entity id for restart active bundles. */
     public static final String RESTART_ACTIVE_BUNDLES_TYPE = "org.apache.sling.installer.core.restart.bundles";
     public static final String RESTART_ACTIVE_BUNDLES_ID = "org.apache.sling.installer.core.restart.bundles";
@@ -66,22 +71,56 @@ public class PersistentResourceList {
      */
     private final Map<String, EntityResourceList> data;
 
-    /** The persistence file. */
-    private final File dataFile;
-
     /** All untransformed resources. */
     private final List<RegisteredResource> untransformedResources;
 
     private final InstallationListener listener;
 
+    /** The journal the changes are written to. */
+    private final PersistentResourceJournal journal;
+
+    /** The data of the journal entries as of the last save, by key. */
+    private Map<String, byte[]> persistedEntries = new HashMap<String, byte[]>();
+
     @SuppressWarnings("unchecked")
     public PersistentResourceList(final File dataFile, final InstallationListener listener) {
-        this.dataFile = dataFile;
         this.listener = listener;
+        this.journal = new PersistentResourceJournal(dataFile);
 
         Map<String, EntityResourceList> restoredData = null;
         List<RegisteredResource> unknownList = null;
-        if ( dataFile.exists() ) {
+        if ( PersistentResourceJournal.isJournal(dataFile) ) {
+            try {
+                final Map<String, byte[]> entries = this.journal.read();
+                restoredData = new HashMap<String, EntityResourceList>();
+                unknownList = new ArrayList<RegisteredResource>();
+                for(final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(entry.getValue()));
+                    try {
+                        if ( UNTRANSFORMED_KEY.equals(entry.getKey()) ) {
+                            final int size = dis.readInt();
+                            for(int i=0; i<size; i++) {
+                                unknownList.add(RegisteredResourceImpl.readFrom(dis));
+                            }
+                        } else {
+                            restoredData.put(entry.getKey(), EntityResourceList.readFrom(dis, listener));
+                        }
+                        this.persistedEntries.put(entry.getKey(), entry.getValue());
+                    } catch (final IOException ioe) {
+                        logger.warn("Unable to restore entry " + entry.getKey() + ", ignoring it (" + ioe.getMessage() + ")", ioe);
+                        this.journal.requireCompaction();
+                    }
+                }
+                logger.debug("Restored resource list: {}", restoredData);
+                logger.debug("Restored unknown resource list: {}", unknownList);
+            } catch (final IOException ioe) {
+                logger.warn("Unable to restore data, starting with empty list (" + ioe.getMessage() + ")", ioe);
+                restoredData = null;
+                unknownList = null;
+                this.persistedEntries.clear();
+            }
+        } else if ( dataFile.exists() ) {
+            // migrate the data written by older versions, the journal is created with the next save
             ObjectInputStream ois = null;
             try {
                 ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dataFile)));
@@ -156,21 +195,54 @@ public class PersistentResourceList {
     }
 
     /**
-     * Persist the current state
+     * Persist the current state.
+     * Only the entity groups (and the list of untransformed resources) which
+     * changed since the last save are appended to the journal.
      */
     public void save() {
         try {
-            final ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
-            try {
-                oos.writeInt(VERSION);
-                oos.writeObject(data);
-                oos.writeObject(untransformedResources);
-                logger.debug("Persisted resource list.");
-            } finally {
-                oos.close();
+            final Map<String, byte[]> entries = new HashMap<String, byte[]>();
+            final List<String> changed = new ArrayList<String>();
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final DataOutputStream dos = new DataOutputStream(bos);
+            for(final Map.Entry<String, EntityResourceList> entry : this.data.entrySet()) {
+                bos.reset();
+                entry.getValue().writeTo(dos);
+                dos.flush();
+                this.addEntry(entries, changed, entry.getKey(), bos.toByteArray());
             }
+            bos.reset();
+            dos.writeInt(this.untransformedResources.size());
+            for(final RegisteredResource rr : this.untransformedResources) {
+                ((RegisteredResourceImpl)rr).writeTo(dos);
+            }
+            dos.flush();
+            this.addEntry(entries, changed, UNTRANSFORMED_KEY, bos.toByteArray());
+
+            final List<String> removed = new ArrayList<String>();
+            for(final String key : this.persistedEntries.keySet()) {
+                if ( !entries.containsKey(key) ) {
+                    removed.add(key);
+                }
+            }
+
+            this.journal.save(entries, changed, removed);
+            this.persistedEntries = entries;
+            logger.debug("Persisted resource list.");
         } catch (final Exception e) {
             logger.warn("Unable to save persistent list: " + e.getMessage(), e);
+            // rewrite everything with the next save
+            this.journal.requireCompaction();
+        }
+    }
+
+    private void addEntry(final Map<String, byte[]> entries,
+            final List<String> changed,
+            final String key,
+            final byte[] entry) {
+        entries.put(key, entry);
+        if ( !Arrays.equals(entry, this.persistedEntries.get(key)) ) {
+            changed.add(key);
         }
     }
 
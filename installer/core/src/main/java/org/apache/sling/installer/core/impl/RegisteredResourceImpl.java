@@ -19,6 +19,8 @@
 package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -153,6 +155,59 @@ public class RegisteredResourceImpl
         }
     }
 
+    /**
+     * Write the resource in the compact format of the {@link PersistentResourceJournal}.
+     */
+    void writeTo(final DataOutput out)
+    throws IOException {
+        PersistentResourceJournal.writeString(out, url);
+        PersistentResourceJournal.writeString(out, urlScheme);
+        PersistentResourceJournal.writeString(out, digest);
+        PersistentResourceJournal.writeString(out, entity);
+        PersistentResourceJournal.writeDictionary(out, dictionary);
+        PersistentResourceJournal.writeMap(out, attributes);
+        PersistentResourceJournal.writeString(out, dataFile == null ? null : dataFile.getName());
+        PersistentResourceJournal.writeString(out, resourceType);
+        out.writeInt(priority);
+        PersistentResourceJournal.writeString(out, state.toString());
+        out.writeLong(this.lastChange);
+        PersistentResourceJournal.writeString(out, this.dataUri);
+    }
+
+    /**
+     * Read a resource written by {@link #writeTo(DataOutput)}.
+     */
+    static RegisteredResourceImpl readFrom(final DataInput in)
+    throws IOException {
+        final String url = PersistentResourceJournal.readString(in);
+        final String urlScheme = PersistentResourceJournal.readString(in);
+        final String digest = PersistentResourceJournal.readString(in);
+        final String entity = PersistentResourceJournal.readString(in);
+        final Dictionary<String, Object> dictionary = PersistentResourceJournal.readDictionary(in);
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        PersistentResourceJournal.readMap(in, attributes);
+        final String dataFileName = PersistentResourceJournal.readString(in);
+        final String resourceType = PersistentResourceJournal.readString(in);
+        final int priority = in.readInt();
+        final String state = PersistentResourceJournal.readString(in);
+        final long lastChange = in.readLong();
+        final String dataUri = PersistentResourceJournal.readString(in);
+
+        final RegisteredResourceImpl rr = new RegisteredResourceImpl(url.substring(urlScheme.length() + 1),
+                dataUri,
+                dataFileName == null ? null : FileDataStore.SHARED.getDataFile(dataFileName),
+                dictionary,
+                resourceType,
+                digest,
+                priority,
+                urlScheme);
+        rr.entity = entity;
+        rr.attributes.putAll(attributes);
+        rr.state = ResourceState.valueOf(state);
+        rr.lastChange = lastChange;
+        return rr;
+    }
+
     /**
      * Try to create a registered resource.
      */
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.installer.api.tasks.InstallTask;
+
+/**
+ * Execution time statistics of the install tasks by task type.
+ * The statistics are printed in the web console configuration status
+ * and help tuning the parallel execution of the tasks.
+ */
+public class TaskStatistics {
+
+    private static final String HEADLINE = "Apache Sling OSGi Installer Task Statistics";
+
+    /** Statistics by task type. */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /** Number of batches of tasks executed in parallel. */
+    private final AtomicLong parallelBatches = new AtomicLong();
+
+    /** Number of tasks executed in parallel batches. */
+    private final AtomicLong parallelTasks = new AtomicLong();
+
+    /** Number of threads for parallel execution, 0 if disabled. */
+    private final int threads;
+
+    public TaskStatistics(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Record the execution time of a task.
+     * @param task The task
+     * @param nanos The execution time in nanoseconds
+     */
+    public void record(final InstallTask task, final long nanos) {
+        String type = task.getClass().getSimpleName();
+        if ( type.length() == 0 ) {
+            type = task.getClass().getName();
+        }
+        Entry entry = this.entries.get(type);
+        if ( entry == null ) {
+            final Entry newEntry = new Entry();
+            entry = this.entries.putIfAbsent(type, newEntry);
+            if ( entry == null ) {
+                entry = newEntry;
+            }
+        }
+        entry.add(nanos);
+    }
+
+    /**
+     * Record a batch of tasks executed in parallel.
+     * @param size The number of tasks of the batch.
+     */
+    public void recordParallelBatch(final int size) {
+        this.parallelBatches.incrementAndGet();
+        this.parallelTasks.addAndGet(size);
+    }
+
+    /**
+     * Print the statistics.
+     * @see org.apache.felix.webconsole.ConfigurationPrinter#printConfiguration(java.io.PrintWriter)
+     */
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println(HEADLINE);
+        pw.println();
+        if ( this.threads > 1 ) {
+            pw.printf("Parallel execution: %d threads, %d tasks in %d batches%n",
+                    this.threads, this.parallelTasks.get(), this.parallelBatches.get());
+        } else {
+            pw.println("Parallel execution: disabled");
+        }
+        pw.println();
+        pw.printf("%-40s %10s %12s %10s %10s%n", "Task Type", "Count", "Total (ms)", "Mean (ms)", "Max (ms)");
+        for(final Map.Entry<String, Entry> e : new TreeMap<String, Entry>(this.entries).entrySet()) {
+            final long count = e.getValue().count.get();
+            final long total = e.getValue().totalNanos.get();
+            pw.printf("%-40s %10d %12.1f %10.2f %10.1f%n", e.getKey(), count,
+                    total / 1000000.0,
+                    count == 0 ? 0.0 : total / 1000000.0 / count,
+                    e.getValue().maxNanos.get() / 1000000.0);
+        }
+    }
+
+    private static final class Entry {
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong totalNanos = new AtomicLong();
+
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void add(final long nanos) {
+            this.count.incrementAndGet();
+            this.totalNanos.addAndGet(nanos);
+            long current;
+            while ( nanos > (current = this.maxNanos.get()) && !this.maxNanos.compareAndSet(current, nanos) ) {
+                // retry
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.event.InstallationEvent;
+import org.apache.sling.installer.api.event.InstallationListener;
+import org.apache.sling.installer.api.tasks.RegisteredResource;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentResourceListTest {
+
+    private static final String CONFIG_ENTITY_ID = InstallableResource.TYPE_CONFIG + ":a.b.c";
+
+    private final InstallationListener listener = new InstallationListener() {
+
+        public void onEvent(final InstallationEvent event) {
+            // nothing to do
+        }
+    };
+
+    private File dataFile;
+
+    @Before public void setup() throws Exception {
+        new FileDataStore(new MockBundleContext());
+        dataFile = Utilities.getTestFile();
+        dataFile.delete();
+    }
+
+    @After public void cleanup() {
+        dataFile.delete();
+    }
+
+    @Test public void testSaveAndRestore() throws Exception {
+        final PersistentResourceList list = new PersistentResourceList(dataFile, listener);
+        addConfig(list);
+        list.save();
+        assertTrue(PersistentResourceJournal.isJournal(dataFile));
+
+        final PersistentResourceList restored = new PersistentResourceList(dataFile, listener);
+        final EntityResourceList erl = restored.getEntityResourceList(CONFIG_ENTITY_ID);
+        assertNotNull(erl);
+        final TaskResource rr = erl.getFirstResource();
+        assertEquals("test:configuration:1", rr.getURL());
+        assertEquals(ResourceState.INSTALL, rr.getState());
+        assertEquals("bar", rr.getDictionary().get("foo"));
+        assertEquals(2, rr.getDictionary().get("other"));
+        assertEquals("a.b.c", rr.getAttribute("pid"));
+        assertEquals(((String[]) rr.getDictionary().get("list"))[1], "two");
+        assertNotNull(restored.getEntityResourceList(PersistentResourceList.RESTART_ACTIVE_BUNDLES_ENTITY_ID));
+    }
+
+    @Test public void testSaveChangesOnly() throws Exception {
+        final PersistentResourceList list = new PersistentResourceList(dataFile, listener);
+        addConfig(list);
+        list.save();
+        final long initialSize = dataFile.length();
+
+        // no changes
+        list.save();
+        assertEquals(initialSize, dataFile.length());
+
+        // a single changed resource is appended
+        ((RegisteredResourceImpl) list.getEntityResourceList(CONFIG_ENTITY_ID).getFirstResource()).setState(ResourceState.INSTALLED);
+        list.save();
+        assertTrue(dataFile.length() > initialSize);
+        assertTrue(dataFile.length() < 2 * initialSize);
+
+        final PersistentResourceList restored = new PersistentResourceList(dataFile, listener);
+        assertEquals(ResourceState.INSTALLED, restored.getEntityResourceList(CONFIG_ENTITY_ID).getFirstResource().getState());
+
+        // uninstalled resources are removed from the journal
+        ((RegisteredResourceImpl) list.getEntityResourceList(CONFIG_ENTITY_ID).getFirstResource()).setState(ResourceState.UNINSTALLED);
+        list.compact();
+        list.save();
+        assertEquals(null, new PersistentResourceList(dataFile, listener).getEntityResourceList(CONFIG_ENTITY_ID));
+    }
+
+    @Test public void testMigration() throws Exception {
+        final PersistentResourceList list = new PersistentResourceList(dataFile, listener);
+        addConfig(list);
+        final Map<String, EntityResourceList> data = new HashMap<String, EntityResourceList>();
+        data.put(CONFIG_ENTITY_ID, list.getEntityResourceList(CONFIG_ENTITY_ID));
+
+        // write the format of previous versions
+        final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(dataFile));
+        oos.writeInt(2);
+        oos.writeObject(data);
+        oos.writeObject(new ArrayList<RegisteredResource>());
+        oos.close();
+        assertFalse(PersistentResourceJournal.isJournal(dataFile));
+
+        final PersistentResourceList migrated = new PersistentResourceList(dataFile, listener);
+        assertNotNull(migrated.getEntityResourceList(CONFIG_ENTITY_ID));
+        migrated.save();
+        assertTrue(PersistentResourceJournal.isJournal(dataFile));
+
+        final PersistentResourceList restored = new PersistentResourceList(dataFile, listener);
+        assertEquals("bar", restored.getEntityResourceList(CONFIG_ENTITY_ID).getFirstResource().getDictionary().get("foo"));
+    }
+
+    private void addConfig(final PersistentResourceList list) throws Exception {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put("foo", "bar");
+        props.put("other", 2);
+        props.put("list", new String[] {"one", "two"});
+        final InstallableResource is = new InstallableResource("configuration:1", null, props, null, null, null);
+        final RegisteredResource rr = list.addOrUpdate(InternalResource.create("test", is));
+
+        final TransformationResult result = new TransformationResult();
+        result.setId("a.b.c");
+        result.setResourceType(InstallableResource.TYPE_CONFIG);
+        final Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("pid", "a.b.c");
+        result.setAttributes(attrs);
+        list.transform(rr, new TransformationResult[] {result});
+    }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.sling.installer.core.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -28,6 +30,7 @@ import java.util.TreeSet;
 
 import org.apache.sling.installer.api.InstallableResource;
 import org.apache.sling.installer.api.tasks.InstallTask;
+import org.apache.sling.installer.api.tasks.InstallationContext;
 import org.apache.sling.installer.api.tasks.TransformationResult;
 import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
 import org.apache.sling.installer.core.impl.tasks.BundleRemoveTask;
@@ -211,4 +214,38 @@ public class TaskOrderingTest {
 
         assertOrder(testIndex++, taskSet, tasksInOrder);
 	}
+
+	@org.junit.Test
+	public void testParallelGroups() throws Exception {
+	    final InstallTask install1 = new BundleInstallTask(getRegisteredResource("test:url1.jar"), null);
+	    final InstallTask install2 = new BundleInstallTask(getRegisteredResource("test:url2.jar"), null);
+	    assertEquals(OsgiInstallerImpl.getParallelGroup(install1), OsgiInstallerImpl.getParallelGroup(install2));
+	    assertEquals("40-999-", OsgiInstallerImpl.getParallelGroup(install1));
+
+	    assertEquals("20-", OsgiInstallerImpl.getParallelGroup(new MockTask("20-a.b.c")));
+	    assertEquals("10-", OsgiInstallerImpl.getParallelGroup(new MockTask("10-a.b.c")));
+	    assertNull(OsgiInstallerImpl.getParallelGroup(new BundleStartTask(null, 0, null)));
+	    assertNull(OsgiInstallerImpl.getParallelGroup(new RefreshBundlesTask(null)));
+	    assertNull(OsgiInstallerImpl.getParallelGroup(new BundleUpdateTask(getRegisteredResource("test:url"), null)));
+	}
+
+	private static final class MockTask extends InstallTask {
+
+	    private final String sortKey;
+
+	    MockTask(final String sortKey) {
+	        super(null);
+	        this.sortKey = sortKey;
+	    }
+
+	    @Override
+	    public void execute(final InstallationContext ctx) {
+	        // nothing to do
+	    }
+
+	    @Override
+	    public String getSortKey() {
+	        return sortKey;
+	    }
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.file.impl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>DirectoryWatcher</code> watches a directory tree with the Java 7
+ * <code>WatchService</code> and calls the listener whenever something has
+ * changed, such that the {@link FileMonitor} checks the tree right away
+ * instead of waiting for the next scan interval.
+ * <p>
+ * This class is compiled for Java 7 and loaded by the monitor by reflection
+ * only, so the bundle still runs on older platforms.
+ */
+public class DirectoryWatcher implements Runnable, Closeable {
+
+    /** The logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final WatchService watchService;
+
+    private final Runnable listener;
+
+    private final Thread thread;
+
+    public DirectoryWatcher(final File rootDir, final Runnable listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.register(rootDir);
+        this.thread = new Thread(this, "Apache Sling File Installer Watcher " + rootDir);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Registers the directory and all directories below it.
+     */
+    private void register(final File dir) throws IOException {
+        if ( dir.isDirectory() ) {
+            Paths.get(dir.getPath()).register(this.watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            final File[] children = dir.listFiles();
+            if ( children != null ) {
+                for(final File child : children) {
+                    register(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        try {
+            while ( true ) {
+                // handle all pending keys before notifying the listener once
+                WatchKey key = this.watchService.take();
+                while ( key != null ) {
+                    this.handle(key);
+                    key = this.watchService.poll();
+                }
+                this.listener.run();
+            }
+        } catch (final ClosedWatchServiceException e) {
+            // closed
+        } catch (final InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void handle(final WatchKey key) {
+        final Path dir = (Path) key.watchable();
+        for(final WatchEvent<?> event : key.pollEvents()) {
+            if ( event.kind() == ENTRY_CREATE ) {
+                final File created = dir.resolve((Path) event.context()).toFile();
+                try {
+                    this.register(created);
+                } catch (final IOException ioe) {
+                    logger.debug("Unable to watch " + created, ioe);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        this.watchService.close();
+        this.thread.interrupt();
+    }
+}
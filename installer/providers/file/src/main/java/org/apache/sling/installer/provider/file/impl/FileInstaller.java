@@ -74,7 +74,7 @@ public class FileInstaller
         for(final ScanConfiguration config : this.scanConfigurations) {
             logger.debug("Starting monitor for {}", config.directory);
             this.monitors.add(new FileMonitor(new File(config.directory),
-                    config.scanInterval, new Installer(installer, hash(config.directory))));
+                    config.scanInterval, config.debounce, new Installer(installer, hash(config.directory))));
         }
     }
 
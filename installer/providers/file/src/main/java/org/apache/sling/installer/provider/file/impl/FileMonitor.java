@@ -18,9 +18,14 @@
  */
 package org.apache.sling.installer.provider.file.impl;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -30,6 +35,16 @@ import org.slf4j.LoggerFactory;
 /**
  * This class is a monitor for the file system
  * that periodically checks for changes.
+ * <p>
+ * On Java 7 and later the tree is also watched with the
+ * {@link DirectoryWatcher} and checked as soon as something changes. The
+ * periodic checks are kept in case the watch service misses a change.
+ * <p>
+ * If a debounce time is configured, added and changed files are only
+ * reported once their size and last modification time have not changed
+ * for that time, such that files which are still being written are not
+ * picked up. Files waiting for being reported are checked more often than
+ * the whole tree, at most every debounce time.
  */
 public class FileMonitor extends TimerTask {
 
@@ -44,19 +59,104 @@ public class FileMonitor extends TimerTask {
 
     private final FileChangesListener listener;
 
+    /** The interval between checks of the whole tree, in milliseconds. */
+    private final long interval;
+
+    /** The time files have to be unchanged before being reported, in milliseconds. */
+    private final long debounce;
+
+    /** The time of the last check of the whole tree. */
+    private long lastCheck;
+
+    /** The watcher triggering checks on changes or <code>null</code> if not available. */
+    private final Closeable watcher;
+
+    /** Whether a check triggered by the watcher is scheduled already. */
+    private boolean checkScheduled;
+
+    /** Added or changed files not reported yet as they might still be written. */
+    private final Map<File, PendingFile> pendingFiles = new LinkedHashMap<File, PendingFile>();
+
     /**
      * Creates a new instance of this class.
      * @param interval The interval between executions of the task, in milliseconds.
      */
     public FileMonitor(final File rootDir, final Long interval, final FileChangesListener listener) {
+        this(rootDir, interval, null, listener);
+    }
+
+    /**
+     * Creates a new instance of this class.
+     * @param interval The interval between executions of the task, in milliseconds.
+     * @param debounce The time in milliseconds added or changed files have to be
+     *                 unchanged before being reported or <code>null</code> to
+     *                 report them immediately.
+     */
+    public FileMonitor(final File rootDir, final Long interval, final Long debounce, final FileChangesListener listener) {
         this.listener = listener;
+        this.interval = (interval != null ? interval : 5000);
+        this.debounce = (debounce != null ? debounce : 0);
         this.root = new Monitorable(rootDir);
         createStatus(this.root);
         final List<File> files = new ArrayList<File>();
         collect(this.root.file, files);
         this.listener.initialSet(files);
-        logger.debug("Starting file monitor for {} with an interval of {}ms", this.root.file, interval);
-        timer.schedule(this, 0, (interval != null ? interval : 5000));
+        logger.debug("Starting file monitor for {} with an interval of {}ms", this.root.file, this.interval);
+        final long period = (this.debounce > 0 ? Math.min(this.interval, this.debounce) : this.interval);
+        timer.schedule(this, 0, period);
+        this.watcher = this.createWatcher();
+    }
+
+    /**
+     * Creates the watcher of the tree if the platform provides the watch
+     * service. The watcher is compiled for Java 7 and thus loaded by
+     * reflection.
+     */
+    private Closeable createWatcher() {
+        if ( !this.root.file.isDirectory() ) {
+            return null;
+        }
+        final Runnable trigger = new Runnable() {
+            public void run() {
+                scheduleCheck();
+            }
+        };
+        try {
+            final Class<?> watcherClass = this.getClass().getClassLoader().loadClass(
+                    "org.apache.sling.installer.provider.file.impl.DirectoryWatcher");
+            final Closeable watcher = (Closeable) watcherClass.getConstructor(File.class, Runnable.class)
+                    .newInstance(this.root.file, trigger);
+            logger.debug("Watching {} for changes", this.root.file);
+            return watcher;
+        } catch (final Throwable t) {
+            // watch service not available (Java 6 or older) or not supported
+            logger.debug("Unable to watch " + this.root.file + ", only checking every " + this.interval + "ms", t);
+            return null;
+        }
+    }
+
+    /**
+     * Schedules a check of the whole tree right away, unless one is
+     * scheduled already.
+     */
+    private void scheduleCheck() {
+        synchronized (timer) {
+            if (stop || checkScheduled) {
+                return;
+            }
+            checkScheduled = true;
+            timer.schedule(new TimerTask() {
+                public void run() {
+                    synchronized (timer) {
+                        checkScheduled = false;
+                    }
+                    synchronized (FileMonitor.this) {
+                        lastCheck = 0;
+                    }
+                    FileMonitor.this.run();
+                }
+            }, 0);
+        }
     }
 
     public File getRoot() {
@@ -104,6 +204,13 @@ public class FileMonitor extends TimerTask {
      * never run (again).
      */
     void stop() {
+        if (this.watcher != null) {
+            try {
+                this.watcher.close();
+            } catch (final IOException ioe) {
+                // ignore
+            }
+        }
         synchronized (timer) {
             if (!stop) {
                 stop = true;
@@ -141,9 +248,22 @@ public class FileMonitor extends TimerTask {
         }
         synchronized ( this ) {
             try {
-                final Collector c = new Collector();
-                this.check(this.root, c);
-                this.listener.updated(c.added, c.changed, c.removed);
+                final long now = System.currentTimeMillis();
+                if ( now - this.lastCheck >= this.interval || this.debounce <= 0 ) {
+                    this.lastCheck = now;
+                    final Collector c = new Collector();
+                    this.check(this.root, c);
+                    if ( this.debounce > 0 ) {
+                        this.debounce(c, now);
+                    }
+                    this.listener.updated(c.added, c.changed, c.removed);
+                } else if ( !this.pendingFiles.isEmpty() ) {
+                    final Collector c = new Collector();
+                    this.debounce(c, now);
+                    if ( !c.added.isEmpty() || !c.changed.isEmpty() ) {
+                        this.listener.updated(c.added, c.changed, c.removed);
+                    }
+                }
             } catch (Exception e) {
                 // ignore this
             }
@@ -154,6 +274,55 @@ public class FileMonitor extends TimerTask {
         }
     }
 
+    /**
+     * Move the added and changed files to the pending files and move the
+     * pending files which have not been changed for the debounce time
+     * back to the collector.
+     */
+    private void debounce(final Collector collector, final long now) {
+        for(final File file : collector.added) {
+            this.pendingFiles.put(file, new PendingFile(file, true, now));
+        }
+        for(final File file : collector.changed) {
+            final PendingFile pending = this.pendingFiles.get(file);
+            this.pendingFiles.put(file, new PendingFile(file, pending != null && pending.added, now));
+        }
+        collector.added.clear();
+        collector.changed.clear();
+        final Iterator<File> removed = collector.removed.iterator();
+        while ( removed.hasNext() ) {
+            final PendingFile pending = this.pendingFiles.remove(removed.next());
+            if ( pending != null && pending.added ) {
+                // never reported
+                removed.remove();
+            }
+        }
+
+        final Iterator<PendingFile> i = this.pendingFiles.values().iterator();
+        while ( i.hasNext() ) {
+            final PendingFile pending = i.next();
+            final long lastModified = pending.file.lastModified();
+            final long length = pending.file.length();
+            if ( lastModified == 0 ) {
+                // removed, the next check of the tree reports this
+                continue;
+            }
+            if ( lastModified != pending.lastModified || length != pending.length ) {
+                pending.lastModified = lastModified;
+                pending.length = length;
+                pending.since = now;
+            } else if ( now - pending.since >= this.debounce ) {
+                logger.debug("File {} is unchanged since {}ms", pending.file, this.debounce);
+                if ( pending.added ) {
+                    collector.added.add(pending.file);
+                } else {
+                    collector.changed.add(pending.file);
+                }
+                i.remove();
+            }
+        }
+    }
+
     /**
      * Check the monitorable
      * @param monitorable The monitorable to check
@@ -173,8 +342,10 @@ public class FileMonitor extends TimerTask {
                 }
             }
         } else {
-            // check if the file has been removed
-            if ( !monitorable.file.exists() ) {
+            // check if the file has been removed, a last modification time
+            // of 0 avoids a second call to the file system for existing files
+            final long lastModified = monitorable.file.lastModified();
+            if ( lastModified == 0 && !monitorable.file.exists() ) {
                 // removed file and update status
                 final List<File> files = new ArrayList<File>();
                 collectDeleted(monitorable, files);
@@ -186,10 +357,10 @@ public class FileMonitor extends TimerTask {
                 // check for changes
                 final FileStatus fs = (FileStatus)monitorable.status;
                 boolean changed = false;
-                if ( fs.lastModified < monitorable.file.lastModified() ) {
-                    fs.lastModified = monitorable.file.lastModified();
+                if ( fs.lastModified < lastModified ) {
+                    fs.lastModified = lastModified;
                     // changed
-                    if ( monitorable.file.isFile() ) {
+                    if ( !(fs instanceof DirStatus) ) {
                         collector.changed.add(monitorable.file);
                     }
                     changed = true;
@@ -280,6 +451,23 @@ public class FileMonitor extends TimerTask {
         }
     }
 
+    /** An added or changed file waiting for being unchanged for the debounce time. */
+    private static final class PendingFile {
+        public final File file;
+        public final boolean added;
+        public long lastModified;
+        public long length;
+        public long since;
+
+        public PendingFile(final File file, final boolean added, final long now) {
+            this.file = file;
+            this.added = added;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.since = now;
+        }
+    }
+
     /** Status for non existing files. */
     private static final class NonExistingStatus {
         public static NonExistingStatus SINGLETON = new NonExistingStatus();
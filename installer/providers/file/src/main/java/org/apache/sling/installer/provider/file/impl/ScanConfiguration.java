@@ -26,4 +26,6 @@ public class ScanConfiguration {
     public String directory;
 
     public Long   scanInterval;
+
+    public Long   debounce;
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.file.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileMonitorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecordingListener listener = new RecordingListener();
+
+    private FileMonitor monitor;
+
+    @After
+    public void stopMonitor() {
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    public void testInitialSet() throws Exception {
+        final File file = write(folder.newFile("a.jar"), 10);
+        monitor = new FileMonitor(folder.getRoot(), 100L, listener);
+
+        assertEquals(Collections.singletonList(file), listener.initial);
+    }
+
+    @Test
+    public void testAddedWithoutDebounce() throws Exception {
+        monitor = new FileMonitor(folder.getRoot(), 100L, listener);
+        final File file = write(new File(folder.getRoot(), "a.jar"), 10);
+
+        assertTrue(listener.waitForAdded(file, 5000));
+    }
+
+    @Test
+    public void testAddedAndRemovedBeforeReported() throws Exception {
+        monitor = new FileMonitor(folder.getRoot(), 100L, 2000L, listener);
+        final File file = write(new File(folder.getRoot(), "a.jar"), 10);
+        Thread.sleep(500);
+        assertTrue(file.delete());
+
+        // neither the addition nor the removal is reported
+        Thread.sleep(3000);
+        assertFalse(listener.added.contains(file));
+        assertFalse(listener.removed.contains(file));
+    }
+
+    @Test
+    public void testGrowingFile() throws Exception {
+        monitor = new FileMonitor(folder.getRoot(), 100L, 1000L, listener);
+        final File file = new File(folder.getRoot(), "a.jar");
+
+        // the file is not reported while it is still being written
+        for (int i = 1; i <= 15; i++) {
+            write(file, i * 100);
+            Thread.sleep(100);
+        }
+        assertFalse(listener.added.contains(file));
+
+        assertTrue(listener.waitForAdded(file, 5000));
+        Thread.sleep(1500);
+        assertEquals(1, Collections.frequency(listener.added, file));
+        assertFalse(listener.changed.contains(file));
+    }
+
+    @Test
+    public void testWatchedChangeReportedBeforeInterval() throws Exception {
+        // the first check of the tree is done right away, the next one after an hour
+        monitor = new FileMonitor(folder.getRoot(), 3600000L, listener);
+        Thread.sleep(500);
+        final File dir = new File(folder.getRoot(), "install");
+        assertTrue(dir.mkdir());
+        final File file = write(new File(dir, "a.jar"), 10);
+
+        assertTrue(listener.waitForAdded(file, 5000));
+    }
+
+    private static File write(final File file, final int length) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static final class RecordingListener implements FileChangesListener {
+
+        final List<File> initial = new ArrayList<File>();
+
+        final List<File> added = Collections.synchronizedList(new ArrayList<File>());
+
+        final List<File> changed = Collections.synchronizedList(new ArrayList<File>());
+
+        final List<File> removed = Collections.synchronizedList(new ArrayList<File>());
+
+        public void initialSet(final List<File> files) {
+            initial.addAll(files);
+        }
+
+        public void updated(final List<File> added, final List<File> changed, final List<File> removed) {
+            this.added.addAll(added);
+            this.changed.addAll(changed);
+            this.removed.addAll(removed);
+        }
+
+        public String getScheme() {
+            return "test";
+        }
+
+        boolean waitForAdded(final File file, final long timeout) throws InterruptedException {
+            final long end = System.currentTimeMillis() + timeout;
+            while (!added.contains(file)) {
+                if (System.currentTimeMillis() > end) {
+                    return false;
+                }
+                Thread.sleep(50);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.output.FileWriterWithEncoding;
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.stat.descriptive.StatisticalSummaryValues;
+import org.apache.commons.math.stat.inference.TestUtils;
+
+/**
+ * Compares the CSV reports of a performance test run with the reports of a
+ * baseline run and flags the statistically significant regressions.
+ * <p>
+ * The results of a test method are compared with Welch's t-test on the
+ * mean, the number and the standard deviation of the invocation times. A
+ * result is a regression if the difference is significant at the level
+ * given by the <code>performance.alpha</code> system property (default
+ * 0.01) and the mean is slower by more than the fraction given by
+ * <code>performance.threshold</code> (default 0.05), such that negligible
+ * but significant differences of long runs are not flagged.
+ * <p>
+ * The comparison is written to <code>baseline-comparison.txt</code> in the
+ * report directory of the current run.
+ * <p>
+ * Usage: <code>BaselineComparison &lt;baseline reports&gt; &lt;current reports&gt;</code>,
+ * where the reports are report directories or aggregated reports. Results
+ * are matched by module and test method. If only one side has been
+ * aggregated, results are matched by test method only. Fails if no result
+ * matches the baseline. Fails if there are regressions, unless the
+ * <code>performance.failOnRegression</code> system property is false.
+ */
+public class BaselineComparison {
+
+    public static final String COMPARISON_REPORT = "baseline-comparison.txt";
+
+    public static final double DEFAULT_ALPHA = 0.01;
+
+    public static final double DEFAULT_THRESHOLD = 0.05;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: BaselineComparison <baseline reports> <current reports>");
+        }
+        double alpha = Double.parseDouble(System.getProperty("performance.alpha", String.valueOf(DEFAULT_ALPHA)));
+        double threshold = Double.parseDouble(System.getProperty("performance.threshold",
+                String.valueOf(DEFAULT_THRESHOLD)));
+        int regressions = compare(new File(args[0]), new File(args[1]), alpha, threshold);
+        System.out.println(regressions + " performance regression(s) found");
+        if (regressions > 0 && !"false".equals(System.getProperty("performance.failOnRegression"))) {
+            throw new IllegalStateException(regressions + " performance regression(s) found, see "
+                    + COMPARISON_REPORT);
+        }
+    }
+
+    /**
+     * Compare the results of the current run with the baseline run.
+     *
+     * @return the number of regressions
+     * @throws IllegalStateException if no result of the current run matches
+     *             a result of the baseline
+     */
+    public static int compare(File baseline, File current, double alpha, double threshold) throws IOException {
+        Map<String, Map<String, String>> baselineResults = ReportAggregator.readResults(baseline);
+        Map<String, Map<String, String>> currentResults = ReportAggregator.readResults(current);
+
+        // results without a module are matched by test method only
+        Map<String, Map<String, String>> baselineByTest = new HashMap<String, Map<String, String>>();
+        Set<String> ambiguousTests = new HashSet<String>();
+        for (Map<String, String> row : baselineResults.values()) {
+            String testKey = ReportAggregator.getTestKey(row);
+            if (baselineByTest.put(testKey, row) != null) {
+                ambiguousTests.add(testKey);
+            }
+        }
+        baselineByTest.keySet().removeAll(ambiguousTests);
+
+        File reportDir = current.isFile() ? current.getParentFile() : current;
+        if (reportDir == null) {
+            reportDir = new File(".");
+        }
+        int regressions = 0;
+        int matches = 0;
+        PrintWriter writer = new PrintWriter(new FileWriterWithEncoding(new File(reportDir, COMPARISON_REPORT),
+                "UTF-8"));
+        try {
+            writer.format("# %-78.78s|  baseline |   current |  change |  p-value | status%n", "Mean (ms)");
+            for (Map.Entry<String, Map<String, String>> result : currentResults.entrySet()) {
+                Map<String, String> baselineResult = baselineResults.get(result.getKey());
+                if (baselineResult == null) {
+                    baselineResult = baselineByTest.get(ReportAggregator.getTestKey(result.getValue()));
+                    if (baselineResult != null && hasModule(baselineResult) && hasModule(result.getValue())) {
+                        // different modules of aggregated results
+                        baselineResult = null;
+                    }
+                }
+                String label = getLabel(result.getValue());
+                if (baselineResult == null) {
+                    writer.format("%-80.80s|%11s|%11s|%9s|%10s| %s%n", label, "-",
+                            result.getValue().get("mean"), "-", "-", "NEW");
+                    continue;
+                }
+                matches++;
+                StatisticalSummaryValues before = getSummary(baselineResult);
+                StatisticalSummaryValues after = getSummary(result.getValue());
+                double change = before.getMean() > 0 ? (after.getMean() - before.getMean()) / before.getMean() : 0;
+                double pValue = getPValue(before, after);
+                String status = "UNCHANGED";
+                if (pValue < alpha && Math.abs(change) > threshold) {
+                    if (change > 0) {
+                        status = "REGRESSION";
+                        regressions++;
+                    } else {
+                        status = "IMPROVEMENT";
+                    }
+                }
+                writer.format("%-80.80s|%11.3f|%11.3f|%8.1f%%|%10.4f| %s%n", label, before.getMean(),
+                        after.getMean(), change * 100, pValue, status);
+            }
+        } finally {
+            writer.close();
+        }
+        if (matches == 0) {
+            throw new IllegalStateException("None of the " + currentResults.size() + " results of " + current
+                    + " matches a result of the baseline " + baseline);
+        }
+        return regressions;
+    }
+
+    private static boolean hasModule(Map<String, String> row) {
+        String module = row.get(ReportAggregator.MODULE_COLUMN);
+        return module != null && module.length() > 0;
+    }
+
+    /**
+     * @return the two-sided p-value of Welch's t-test, 1 if there are not
+     *         enough invocations to compare the results
+     */
+    static double getPValue(StatisticalSummaryValues before, StatisticalSummaryValues after) {
+        if (before.getN() < 2 || after.getN() < 2) {
+            return 1;
+        }
+        if (before.getVariance() == 0 && after.getVariance() == 0) {
+            // constant results, e.g. for invocations faster than the timer resolution
+            return before.getMean() == after.getMean() ? 1 : 0;
+        }
+        try {
+            return TestUtils.tTest(before, after);
+        } catch (MathException e) {
+            return 1;
+        }
+    }
+
+    private static StatisticalSummaryValues getSummary(Map<String, String> row) {
+        double mean = getValue(row, "mean");
+        double stdDev = getValue(row, "stdDev");
+        long n = (long) getValue(row, "n");
+        return new StatisticalSummaryValues(mean, stdDev * stdDev, n, getValue(row, "max"), getValue(row, "min"),
+                mean * n);
+    }
+
+    private static double getValue(Map<String, String> row, String column) {
+        String value = row.get(column);
+        return value == null || value.length() == 0 ? 0 : Double.parseDouble(value);
+    }
+
+    private static String getLabel(Map<String, String> row) {
+        String module = row.get(ReportAggregator.MODULE_COLUMN);
+        return (module == null ? "" : module + ": ") + ReportAggregator.getLabel(row);
+    }
+}
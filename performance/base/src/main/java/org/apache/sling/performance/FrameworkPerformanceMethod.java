@@ -103,6 +103,7 @@ class FrameworkPerformanceMethod extends FrameworkMethod {
 		int runinvocations = performanceAnnotation.runinvocations();
 
 		DescriptiveStatistics statistics = new DescriptiveStatistics();
+		ResourceUsage usage = new ResourceUsage();
 
 		// System.out.println("Warmup started - test :" +
 		// testMethodToInvoke.getName());
@@ -162,7 +163,7 @@ class FrameworkPerformanceMethod extends FrameworkMethod {
 			for (int invocationIndex = 0; invocationIndex < runinvocations; invocationIndex++) {
 
 				response = this.invokeTimedTestMethod(testMethodToInvoke,
-						statistics, params);
+						statistics, usage, params);
 			}
 		} else {
 			// Run test iterations and capture the execution times
@@ -171,14 +172,16 @@ class FrameworkPerformanceMethod extends FrameworkMethod {
 			while (System.currentTimeMillis() < runtimeEnd) {
 
 				response = this.invokeTimedTestMethod(testMethodToInvoke,
-						statistics, params);
+						statistics, usage, params);
 
 			}
 		}
 
 		if (statistics.getN() > 0) {
-		    ReportLogger.writeReport(this.performanceSuiteState.testSuiteName, testCaseName, ((String )this.target.getClass().getMethod("toString", null).invoke(this.target, null)),
-                    getMethod().getName(), statistics, ReportLogger.ReportType.TXT, reportLevel);
+		    for (ReportLogger.ReportType reportType : ReportLogger.getReportTypes()) {
+		        ReportLogger.writeReport(this.performanceSuiteState.testSuiteName, testCaseName, ((String )this.target.getClass().getMethod("toString", null).invoke(this.target, null)),
+		                getMethod().getName(), statistics, usage, reportType, reportLevel);
+		    }
 		}
 
 		// In case of a PerformanceSuite we need to run the methods annotated
@@ -218,13 +221,15 @@ class FrameworkPerformanceMethod extends FrameworkMethod {
 	 *            the test method to invoke
 	 * @param statistics
 	 *            the statistics object that collects the results
+	 * @param usage
+	 *            collects the garbage collections and allocations
 	 * @param params
 	 *            the parameters for the invocation of the test method
 	 * @return the response from the method invocation
 	 * @throws Throwable
 	 */
 	private Object invokeTimedTestMethod(Method testMethodToInvoke,
-			DescriptiveStatistics statistics, Object... params)
+			DescriptiveStatistics statistics, ResourceUsage usage, Object... params)
 			throws Throwable {
 
 		Object response = null;
@@ -238,10 +243,12 @@ class FrameworkPerformanceMethod extends FrameworkMethod {
 
 		// timing the test method execution
 		// System.out.println("Start test: " + testMethodToInvoke.getName());
+		usage.start();
 		long start = System.nanoTime();
 		response = super.invokeExplosively(this.target, params);
 		long timeMilliseconds = TimeUnit.MILLISECONDS.convert(System.nanoTime()
 				- start, TimeUnit.NANOSECONDS);
+		usage.stop();
 		statistics.addValue(timeMilliseconds);
 
 		// System.out.println("End test: " + testMethodToInvoke.getName());
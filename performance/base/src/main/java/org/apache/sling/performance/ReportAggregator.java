@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.FileWriterWithEncoding;
+
+/**
+ * Aggregates the CSV reports of several performance test modules, like the
+ * <code>jcr-resource-*</code> modules running the same tests against different
+ * versions, into one report.
+ * <p>
+ * Writes <code>aggregate.csv</code> with the last result of each test method
+ * per module, prefixed by a <code>module</code> column, and
+ * <code>aggregate.txt</code> comparing the medians of the test methods side
+ * by side.
+ * <p>
+ * Usage: <code>ReportAggregator &lt;output dir&gt; &lt;module dir&gt;...</code>
+ */
+public class ReportAggregator {
+
+    public static final String AGGREGATE_REPORT = "aggregate";
+
+    public static final String MODULE_COLUMN = "module";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ReportAggregator <output dir> <module dir>...");
+        }
+        List<File> moduleDirs = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            moduleDirs.add(new File(args[i]));
+        }
+        aggregate(new File(args[0]), moduleDirs);
+    }
+
+    /**
+     * Aggregate the CSV reports found in <code>target/performance-reports</code>
+     * of the module directories.
+     *
+     * @return the number of test results aggregated
+     */
+    public static int aggregate(File outputDir, List<File> moduleDirs) throws IOException {
+        // module name -> test key -> last result
+        Map<String, Map<String, Map<String, String>>> results = new LinkedHashMap<String, Map<String, Map<String, String>>>();
+        // all test keys in the order they were found
+        Map<String, String> tests = new LinkedHashMap<String, String>();
+        for (File moduleDir : moduleDirs) {
+            Map<String, Map<String, String>> moduleResults = readResults(new File(moduleDir, "target/"
+                    + ReportLogger.REPORTS_DIR));
+            if (!moduleResults.isEmpty()) {
+                results.put(moduleDir.getName(), moduleResults);
+                for (Map.Entry<String, Map<String, String>> result : moduleResults.entrySet()) {
+                    tests.put(result.getKey(), getLabel(result.getValue()));
+                }
+            }
+        }
+
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create " + outputDir);
+        }
+
+        int count = 0;
+        PrintWriter csv = new PrintWriter(new FileWriterWithEncoding(new File(outputDir, AGGREGATE_REPORT + ".csv"),
+                "UTF-8"));
+        try {
+            String[] header = new String[ReportLogger.COLUMNS.length + 1];
+            header[0] = MODULE_COLUMN;
+            System.arraycopy(ReportLogger.COLUMNS, 0, header, 1, ReportLogger.COLUMNS.length);
+            csv.println(CsvReport.toLine(header));
+            for (Map.Entry<String, Map<String, Map<String, String>>> module : results.entrySet()) {
+                for (Map<String, String> result : module.getValue().values()) {
+                    String[] values = new String[header.length];
+                    values[0] = module.getKey();
+                    for (int i = 1; i < header.length; i++) {
+                        values[i] = result.get(header[i]);
+                    }
+                    csv.println(CsvReport.toLine(values));
+                    count++;
+                }
+            }
+        } finally {
+            csv.close();
+        }
+
+        PrintWriter txt = new PrintWriter(new FileWriterWithEncoding(new File(outputDir, AGGREGATE_REPORT + ".txt"),
+                "UTF-8"));
+        try {
+            txt.format("# %-78.78s", "Median (ms)");
+            for (String module : results.keySet()) {
+                txt.format("|%20.20s", module);
+            }
+            txt.println();
+            for (Map.Entry<String, String> test : tests.entrySet()) {
+                txt.format("%-80.80s", test.getValue());
+                for (Map<String, Map<String, String>> moduleResults : results.values()) {
+                    Map<String, String> result = moduleResults.get(test.getKey());
+                    txt.format("|%20.20s", result == null ? "-" : result.get("p50"));
+                }
+                txt.println();
+            }
+        } finally {
+            txt.close();
+        }
+        return count;
+    }
+
+    /**
+     * Read the CSV reports of a directory or a single CSV report, like an
+     * aggregated report.
+     *
+     * @return the last result of each test method by {@link #getKey(Map)}
+     */
+    static Map<String, Map<String, String>> readResults(File reportDir) throws IOException {
+        Map<String, Map<String, String>> results = new LinkedHashMap<String, Map<String, String>>();
+        if (reportDir.isFile()) {
+            for (Map<String, String> row : CsvReport.read(reportDir)) {
+                results.put(getKey(row), row);
+            }
+            return results;
+        }
+        File[] reports = reportDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".csv") && !name.startsWith(AGGREGATE_REPORT + ".");
+            }
+        });
+        if (reports != null) {
+            Arrays.sort(reports);
+            for (File report : reports) {
+                for (Map<String, String> row : CsvReport.read(report)) {
+                    results.put(getKey(row), row);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the key identifying the test method of a result across runs,
+     *         prefixed by the module of aggregated results
+     */
+    static String getKey(Map<String, String> row) {
+        String module = row.get(MODULE_COLUMN);
+        return (module == null || module.length() == 0 ? "" : module + "|") + getTestKey(row);
+    }
+
+    /**
+     * @return the key identifying the test method of a result across runs,
+     *         regardless of the module
+     */
+    static String getTestKey(Map<String, String> row) {
+        return row.get("suite") + "|" + row.get("testCase") + "|" + row.get("className") + "|" + row.get("method");
+    }
+
+    /**
+     * @return the short description of the test method of a result
+     */
+    static String getLabel(Map<String, String> row) {
+        String className = row.get("className");
+        StringBuilder label = new StringBuilder(className.substring(className.lastIndexOf('.') + 1));
+        label.append('.').append(row.get("method"));
+        String testCase = row.get("testCase");
+        if (testCase != null && testCase.length() > 0) {
+            label.append(" [").append(testCase).append(']');
+        }
+        return label.toString();
+    }
+}
@@ -5,7 +5,10 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
@@ -14,10 +17,41 @@ public class ReportLogger {
 
     public static final String REPORTS_DIR = "performance-reports";
 
+    /**
+     * The system property listing the comma separated report types to write,
+     * {@link #DEFAULT_REPORT_TYPES} if not set.
+     */
+    public static final String REPORT_TYPES_PROPERTY = "performance.reports";
+
+    public static final String DEFAULT_REPORT_TYPES = "TXT,CSV";
+
+    /**
+     * The columns of the CSV report, also used as the keys of the JSON report.
+     * The times are in milliseconds.
+     */
+    public static final String[] COLUMNS = { "suite", "testCase", "className", "method", "date", "n", "min", "mean",
+            "stdDev", "p10", "p50", "p90", "p95", "p99", "max", "allocatedBytesPerInvocation", "allocationRate",
+            "gcCount", "gcTime" };
+
 	public enum ReportType {
-		TXT
+		TXT,
+		JSON,
+		CSV
 	}
 
+    /**
+     * @return the report types configured by the {@link #REPORT_TYPES_PROPERTY} system property
+     */
+    public static List<ReportType> getReportTypes() {
+        List<ReportType> types = new ArrayList<ReportType>();
+        for (String type : System.getProperty(REPORT_TYPES_PROPERTY, DEFAULT_REPORT_TYPES).split(",")) {
+            if (type.trim().length() > 0) {
+                types.add(ReportType.valueOf(type.trim().toUpperCase(Locale.ENGLISH)));
+            }
+        }
+        return types;
+    }
+
     /**
      * Method the writes the performance report after a test is run
      * @param testSuiteName
@@ -31,10 +65,35 @@ public class ReportLogger {
      */
     public static void writeReport(String testSuiteName, String testCaseName, String className, String methodName,
             DescriptiveStatistics statistics, ReportType reportType, PerformanceRunner.ReportLevel reportLevel) throws Exception {
+        writeReport(testSuiteName, testCaseName, className, methodName, statistics, null, reportType, reportLevel);
+    }
+
+    /**
+     * Method the writes the performance report after a test is run, including
+     * the garbage collection and allocation figures if available
+     * @param testSuiteName
+     * @param testCaseName
+     * @param className
+     * @param methodName
+     * @param statistics
+     * @param usage the resource usage of the timed invocations, may be <code>null</code>
+     * @param reportType
+     * @param reportLevel
+     * @throws Exception
+     */
+    static void writeReport(String testSuiteName, String testCaseName, String className, String methodName,
+            DescriptiveStatistics statistics, ResourceUsage usage, ReportType reportType,
+            PerformanceRunner.ReportLevel reportLevel) throws Exception {
 		switch (reportType) {
 		case TXT:
                 writeReportTxt(testSuiteName, testCaseName, className, methodName, statistics, reportLevel);
 			break;
+        case JSON:
+            writeReportJson(testSuiteName, testCaseName, className, methodName, statistics, usage);
+            break;
+        case CSV:
+            writeReportCsv(testSuiteName, testCaseName, className, methodName, statistics, usage);
+            break;
 		default:
                 throw new Exception("The specified reporting format is not yet supported");
 		}
@@ -162,6 +221,119 @@ public class ReportLogger {
     }
 	    
 	
+    /**
+     * Method the writes the performance report after a test is run, as one
+     * JSON object per line and test method, with the keys of {@link #COLUMNS}
+     */
+    static void writeReportJson(String testSuiteName, String testCaseName, String className, String methodName,
+            DescriptiveStatistics statistics, ResourceUsage usage) throws IOException {
+        String[] values = getValues(testSuiteName, testCaseName, className, methodName, statistics, usage);
+        PrintWriter writer = new PrintWriter(new FileWriterWithEncoding(getReportFile(className, ".json"), "UTF-8", true));
+        try {
+            StringBuilder line = new StringBuilder("{");
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(COLUMNS[i]).append("\":");
+                // the first five columns are strings, the others numbers
+                if (i < 5) {
+                    appendJsonString(line, values[i]);
+                } else {
+                    line.append(values[i]);
+                }
+            }
+            writer.println(line.append('}'));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Method the writes the performance report after a test is run, as one
+     * CSV row per test method with the {@link #COLUMNS}
+     */
+    static void writeReportCsv(String testSuiteName, String testCaseName, String className, String methodName,
+            DescriptiveStatistics statistics, ResourceUsage usage) throws IOException {
+        File report = getReportFile(className, ".csv");
+        boolean needsHeader = !report.exists();
+        PrintWriter writer = new PrintWriter(new FileWriterWithEncoding(report, "UTF-8", true));
+        try {
+            if (needsHeader) {
+                writer.println(CsvReport.toLine(COLUMNS));
+            }
+            writer.println(CsvReport.toLine(getValues(testSuiteName, testCaseName, className, methodName,
+                    statistics, usage)));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String[] getValues(String testSuiteName, String testCaseName, String className,
+            String methodName, DescriptiveStatistics statistics, ResourceUsage usage) {
+        if (testSuiteName.equals(ParameterizedTestList.TEST_CASE_ONLY) && System.getProperty("testsuitename") != null) {
+            testSuiteName = System.getProperty("testsuitename");
+        }
+        long allocatedPerInvocation = -1;
+        double allocationRate = -1;
+        long gcCount = -1;
+        long gcTime = -1;
+        if (usage != null) {
+            if (usage.getAllocatedBytes() >= 0) {
+                allocatedPerInvocation = usage.getAllocatedBytes() / Math.max(1, statistics.getN());
+            }
+            allocationRate = usage.getAllocationRate();
+            gcCount = usage.getGcCount();
+            gcTime = usage.getGcTime();
+        }
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        return new String[] { testSuiteName, testCaseName, className, methodName, dateFormat.format(new Date()),
+                String.valueOf(statistics.getN()),
+                format(statistics.getMin()),
+                format(statistics.getMean()),
+                format(statistics.getStandardDeviation()),
+                format(statistics.getPercentile(10.0)),
+                format(statistics.getPercentile(50.0)),
+                format(statistics.getPercentile(90.0)),
+                format(statistics.getPercentile(95.0)),
+                format(statistics.getPercentile(99.0)),
+                format(statistics.getMax()),
+                String.valueOf(allocatedPerInvocation),
+                format(allocationRate),
+                String.valueOf(gcCount),
+                String.valueOf(gcTime) };
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "0";
+        }
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private static File getReportFile(String className, String extension) throws IOException {
+        File reportDir = new File("target/" + REPORTS_DIR);
+        if (!reportDir.exists() && !reportDir.mkdirs()) {
+            throw new IOException("Unable to create " + REPORTS_DIR + " directory");
+        }
+        return new File(reportDir, className.substring(className.lastIndexOf(".") + 1) + extension);
+    }
+
 	/**
 	 * Get the date that will be written into the result file
 	 */
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Collects the garbage collections and the memory allocated by the current
+ * thread while the timed test method invocations are running.
+ * <p>
+ * The allocated memory is only available on JVMs providing the
+ * <code>com.sun.management.ThreadMXBean</code> extension, it is reported as
+ * -1 otherwise.
+ */
+class ResourceUsage {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Method GET_ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+    private long gcCount;
+
+    private long gcTime;
+
+    private long allocatedBytes = GET_ALLOCATED_BYTES == null ? -1 : 0;
+
+    private long elapsedNanos;
+
+    private long startGcCount;
+
+    private long startGcTime;
+
+    private long startAllocatedBytes;
+
+    private long startNanos;
+
+    /**
+     * Start measuring, to be called right before a timed invocation.
+     */
+    void start() {
+        final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        startGcCount = getCollectionCount(gcBeans);
+        startGcTime = getCollectionTime(gcBeans);
+        startAllocatedBytes = getThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stop measuring, to be called right after a timed invocation.
+     */
+    void stop() {
+        elapsedNanos += System.nanoTime() - startNanos;
+        if (allocatedBytes >= 0) {
+            allocatedBytes += getThreadAllocatedBytes() - startAllocatedBytes;
+        }
+        final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        gcCount += getCollectionCount(gcBeans) - startGcCount;
+        gcTime += getCollectionTime(gcBeans) - startGcTime;
+    }
+
+    /**
+     * @return the number of garbage collections
+     */
+    long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @return the accumulated garbage collection time in milliseconds
+     */
+    long getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * @return the number of bytes allocated or -1 if not supported by the JVM
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the allocation rate in MB per second or -1 if not supported by the JVM
+     */
+    double getAllocationRate() {
+        if (allocatedBytes < 0 || elapsedNanos == 0) {
+            return -1;
+        }
+        return (allocatedBytes / (1024.0 * 1024.0)) / (elapsedNanos / 1000000000.0);
+    }
+
+    private static long getCollectionCount(List<GarbageCollectorMXBean> gcBeans) {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            // -1 if undefined for this collector
+            count += Math.max(0, gcBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getCollectionTime(List<GarbageCollectorMXBean> gcBeans) {
+        long time = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            time += Math.max(0, gcBean.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long getThreadAllocatedBytes() {
+        if (GET_ALLOCATED_BYTES == null) {
+            return 0;
+        }
+        try {
+            return (Long) GET_ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static Method getAllocatedBytesMethod() {
+        try {
+            Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (sunBean.isInstance(THREAD_BEAN)) {
+                Method method = sunBean.getMethod("getThreadAllocatedBytes", long.class);
+                // -1 if the measurement is disabled
+                Long allocated = (Long) method.invoke(THREAD_BEAN, Thread.currentThread().getId());
+                if (allocated >= 0) {
+                    return method;
+                }
+            }
+        } catch (Throwable t) {
+            // not available on this JVM
+        }
+        return null;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.FileWriterWithEncoding;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BaselineComparisonTest {
+
+    private static final String CLASS_NAME = "org.apache.sling.performance.tests.ResolveTest";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAggregate() throws IOException {
+        File outputDir = aggregate("current", 10, 12);
+
+        Map<String, Map<String, String>> results = ReportAggregator.readResults(new File(outputDir,
+                ReportAggregator.AGGREGATE_REPORT + ".csv"));
+        assertEquals(2, results.size());
+        for (Map<String, String> row : results.values()) {
+            assertTrue(row.get(ReportAggregator.MODULE_COLUMN).startsWith("module"));
+        }
+        String table = FileUtils.readFileToString(new File(outputDir, ReportAggregator.AGGREGATE_REPORT + ".txt"),
+                "UTF-8");
+        assertTrue(table.contains("ResolveTest.testResolve"));
+    }
+
+    @Test
+    public void testCompareAggregates() throws IOException {
+        File baseline = new File(aggregate("baseline", 10, 10), ReportAggregator.AGGREGATE_REPORT + ".csv");
+        File current = new File(aggregate("current", 10, 20), ReportAggregator.AGGREGATE_REPORT + ".csv");
+
+        assertEquals(1, BaselineComparison.compare(baseline, current, 0.01, 0.05));
+        String comparison = readComparison(current.getParentFile());
+        assertTrue(comparison.contains("module1: ResolveTest.testResolve"));
+        assertTrue(comparison.contains("REGRESSION"));
+        assertFalse(comparison.contains("NEW"));
+    }
+
+    @Test
+    public void testCompareReportDirectoryWithAggregate() throws IOException {
+        File baseline = folder.newFolder("baseline");
+        writeReport(new File(baseline, CLASS_NAME + ".csv"), 10);
+        File current = new File(aggregate("current", 10, 10), ReportAggregator.AGGREGATE_REPORT + ".csv");
+
+        assertEquals(0, BaselineComparison.compare(baseline, current, 0.01, 0.05));
+        String comparison = readComparison(current.getParentFile());
+        assertTrue(comparison.contains("UNCHANGED"));
+        assertFalse(comparison.contains("NEW"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoMatchingBaseline() throws IOException {
+        File baseline = folder.newFolder("baseline");
+        writeReport(new File(baseline, "Other.csv"), "org.apache.sling.performance.tests.OtherTest", 10);
+        File current = new File(aggregate("current", 10, 10), ReportAggregator.AGGREGATE_REPORT + ".csv");
+
+        BaselineComparison.compare(baseline, current, 0.01, 0.05);
+    }
+
+    /**
+     * Aggregate the reports of two modules, each with one result of the
+     * given mean.
+     *
+     * @return the output directory
+     */
+    private File aggregate(String run, double mean1, double mean2) throws IOException {
+        File runDir = folder.newFolder(run);
+        File module1 = new File(runDir, "module1");
+        File module2 = new File(runDir, "module2");
+        writeReport(new File(module1, "target/" + ReportLogger.REPORTS_DIR + "/" + CLASS_NAME + ".csv"), mean1);
+        writeReport(new File(module2, "target/" + ReportLogger.REPORTS_DIR + "/" + CLASS_NAME + ".csv"), mean2);
+
+        File outputDir = new File(runDir, "aggregate");
+        List<File> moduleDirs = Arrays.asList(module1, module2);
+        assertEquals(2, ReportAggregator.aggregate(outputDir, moduleDirs));
+        return outputDir;
+    }
+
+    private static void writeReport(File report, double mean) throws IOException {
+        writeReport(report, CLASS_NAME, mean);
+    }
+
+    private static void writeReport(File report, String className, double mean) throws IOException {
+        report.getParentFile().mkdirs();
+        PrintWriter writer = new PrintWriter(new FileWriterWithEncoding(report, "UTF-8"));
+        try {
+            writer.println(CsvReport.toLine(ReportLogger.COLUMNS));
+            writer.println(CsvReport.toLine(new String[] { "ResolveSuite", "", className, "testResolve",
+                    "2014-01-01 00:00:00", "100", String.valueOf(mean - 2), String.valueOf(mean), "1",
+                    String.valueOf(mean - 1), String.valueOf(mean), String.valueOf(mean + 1),
+                    String.valueOf(mean + 1), String.valueOf(mean + 2), String.valueOf(mean + 2), "-1", "-1", "0",
+                    "0" }));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String readComparison(File reportDir) throws IOException {
+        return FileUtils.readFileToString(new File(reportDir, BaselineComparison.COMPARISON_REPORT), "UTF-8");
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.sling.jcr.resource.internal.JcrResourceResolverFactoryImpl;
 import org.apache.sling.jcr.resource.internal.helper.MapEntries;
 import org.apache.sling.jcr.resource.internal.helper.Mapping;
 import org.apache.sling.performance.annotation.PerformanceTestSuite;
+import org.apache.sling.performance.tests.MapWithManyMappingsTest;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyAliasTest;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyVanityPathTest;
 import org.junit.runner.RunWith;
@@ -111,6 +112,9 @@ public class PerformanceTest {
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWithManyAliasTest",helper, 1000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith5000AliasTest",helper, 5000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith10000AliasTest",helper, 10000));
+
+        testCenter.addTestObject(new MapWithManyMappingsTest("MapWith100MappingsTest",helper, 100, 500));
+        testCenter.addTestObject(new MapWithManyMappingsTest("MapWith1000MappingsTest",helper, 1000, 500));
                 
         return testCenter;
     }
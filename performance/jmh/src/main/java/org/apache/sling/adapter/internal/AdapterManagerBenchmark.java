@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.adapter.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.adapter.AdapterFactory;
+import org.apache.sling.commons.testing.osgi.MockBundle;
+import org.apache.sling.commons.testing.osgi.MockBundleContext;
+import org.apache.sling.commons.testing.osgi.MockComponentContext;
+import org.apache.sling.commons.testing.osgi.MockServiceReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+
+/**
+ * Benchmarks {@link AdapterManagerImpl#getAdapter(Object, Class)} for an
+ * adapter factory registered for the class of the adaptable, for one
+ * registered for an interface of a super class and for an adapter type
+ * without any factory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdapterManagerBenchmark {
+
+    public interface Adaptable {
+    }
+
+    public static class BaseAdaptable implements Adaptable {
+    }
+
+    public static class ConcreteAdaptable extends BaseAdaptable {
+    }
+
+    public interface DirectAdapter {
+    }
+
+    public interface InheritedAdapter {
+    }
+
+    public interface MissingAdapter {
+    }
+
+    private static final Object ADAPTER = new DirectAdapter() {
+    };
+
+    private static final Object INHERITED_ADAPTER = new InheritedAdapter() {
+    };
+
+    private final Object adaptable = new ConcreteAdaptable();
+
+    private AdapterManagerImpl adapterManager;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final MockBundle bundle = new MockBundle(1L);
+        final MockComponentContext context = new MockComponentContext(new MockBundleContext(bundle));
+
+        adapterManager = new AdapterManagerImpl();
+        adapterManager.activate(context);
+        register(context, bundle, 1L, ConcreteAdaptable.class, DirectAdapter.class, ADAPTER);
+        register(context, bundle, 2L, Adaptable.class, InheritedAdapter.class, INHERITED_ADAPTER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        adapterManager.deactivate(null);
+    }
+
+    @Benchmark
+    public Object adaptDirect() {
+        return adapterManager.getAdapter(adaptable, DirectAdapter.class);
+    }
+
+    @Benchmark
+    public Object adaptInherited() {
+        return adapterManager.getAdapter(adaptable, InheritedAdapter.class);
+    }
+
+    @Benchmark
+    public Object adaptMissing() {
+        return adapterManager.getAdapter(adaptable, MissingAdapter.class);
+    }
+
+    private void register(final MockComponentContext context, final MockBundle bundle, final long serviceId,
+            final Class<?> adaptableClass, final Class<?> adapterClass, final Object adapter) {
+        final MockServiceReference reference = new MockServiceReference(bundle);
+        reference.setProperty(Constants.SERVICE_ID, serviceId);
+        reference.setProperty(AdapterFactory.ADAPTABLE_CLASSES, new String[] { adaptableClass.getName() });
+        reference.setProperty(AdapterFactory.ADAPTER_CLASSES, new String[] { adapterClass.getName() });
+        context.addService(reference, new AdapterFactory() {
+
+            @SuppressWarnings("unchecked")
+            public <AdapterType> AdapterType getAdapter(final Object adaptable, final Class<AdapterType> type) {
+                return (AdapterType) adapter;
+            }
+        });
+        adapterManager.bindAdapterFactory(reference);
+    }
+}
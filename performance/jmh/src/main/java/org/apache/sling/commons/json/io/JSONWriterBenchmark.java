@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.json.io;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the output of a {@link JSONWriter} for a tree of objects shaped
+ * like the JSON rendering of a resource tree: each object has a number of
+ * string, number, boolean and array properties and a number of child objects.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JSONWriterBenchmark {
+
+    private static final int PROPERTY_COUNT = 10;
+
+    private static final int CHILD_COUNT = 10;
+
+    private static final int DEPTH = 2;
+
+    private static final String[] TAGS = { "news", "sport", "weather" };
+
+    @Param({ "false", "true" })
+    public boolean tidy;
+
+    private final StringWriter out = new StringWriter(64 * 1024);
+
+    @Benchmark
+    public int write() throws JSONException {
+        out.getBuffer().setLength(0);
+        final JSONWriter writer = new JSONWriter(out);
+        writer.setTidy(tidy);
+        writeObject(writer, 0);
+        return out.getBuffer().length();
+    }
+
+    private static void writeObject(final JSONWriter writer, final int level) throws JSONException {
+        writer.object();
+        writer.key("jcr:primaryType").value("nt:unstructured");
+        writer.key("sling:resourceType").value("site/component");
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            writer.key("text" + i).value("Some \"quoted\" text\twith escapes </script>");
+            writer.key("number" + i).value(i * 1000L);
+            writer.key("flag" + i).value(i % 2 == 0);
+        }
+        writer.key("tags").array();
+        for (final String tag : TAGS) {
+            writer.value(tag);
+        }
+        writer.endArray();
+        if (level < DEPTH) {
+            for (int i = 0; i < CHILD_COUNT; i++) {
+                writer.key("child" + i);
+                writeObject(writer, level + 1);
+            }
+        }
+        writer.endObject();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletInputStream;
+
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parsing of the request parameters by the
+ * {@link ParameterSupport} from the query string of a GET request and from
+ * the body of a <code>application/x-www-form-urlencoded</code> POST request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParameterSupportBenchmark {
+
+    @Param({ "10", "100" })
+    public int parameterCount;
+
+    private String query;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws Exception {
+        final StringBuilder sb = new StringBuilder("_charset_=UTF-8");
+        for (int i = 0; i < parameterCount; i++) {
+            sb.append("&name").append(i).append("=value+").append(i);
+            if (i % 5 == 0) {
+                sb.append("&text").append(i).append("=%C3%A4%C3%B6%C3%BC%20%E2%82%AC");
+            }
+        }
+        query = sb.toString();
+        body = query.getBytes("ISO-8859-1");
+    }
+
+    @Benchmark
+    public Map<String, String[]> parseQueryString() {
+        final MockSlingHttpServletRequest request = new MockSlingHttpServletRequest("/content/site/page", null,
+            "html", null, query);
+        request.setMethod("GET");
+        return ParameterSupport.getInstance(request).getParameterMap();
+    }
+
+    @Benchmark
+    public Map<String, String[]> parseFormPost() {
+        return ParameterSupport.getInstance(new FormPostRequest(body)).getParameterMap();
+    }
+
+    /**
+     * A POST request with a form encoded body.
+     */
+    private static final class FormPostRequest extends MockSlingHttpServletRequest {
+
+        private final byte[] body;
+
+        private String characterEncoding;
+
+        FormPostRequest(final byte[] body) {
+            super("/content/site/page", null, "html", null, null);
+            setMethod("POST");
+            this.body = body;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/x-www-form-urlencoded";
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return characterEncoding;
+        }
+
+        @Override
+        public void setCharacterEncoding(final String encoding) {
+            this.characterEncoding = encoding;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.sling.commons.testing.jcr.MockNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link JcrPropertyMap#get(Object)} and
+ * {@link JcrPropertyMap#get(String, Class)} on a map which already cached
+ * the property, on a new map as created for each adaption of a resource to
+ * a value map and for a property which does not exist.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JcrPropertyMapBenchmark {
+
+    private static final int PROPERTY_COUNT = 20;
+
+    private Node node;
+
+    private JcrPropertyMap map;
+
+    @Setup(Level.Trial)
+    public void setup() throws RepositoryException {
+        node = new SessionMockNode("/content/site/page/jcr:content");
+        node.setProperty("jcr:title", "Benchmark");
+        node.setProperty("count", "42");
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            node.setProperty("property" + i, "value" + i);
+        }
+
+        map = new JcrPropertyMap(node);
+        map.get("jcr:title");
+        map.get("count");
+    }
+
+    @Benchmark
+    public Object getCached() {
+        return map.get("jcr:title");
+    }
+
+    @Benchmark
+    public String[] getConverted() {
+        return map.get("count", String[].class);
+    }
+
+    @Benchmark
+    public Object getUncached() {
+        return new JcrPropertyMap(node).get("jcr:title");
+    }
+
+    @Benchmark
+    public Object getMissing() {
+        return map.get("missing");
+    }
+
+    /**
+     * A mock node with a session providing the namespace prefixes.
+     */
+    private static final class SessionMockNode extends MockNode {
+
+        private static final String[] PREFIXES = { "jcr", "nt", "mix", "sling" };
+
+        private final Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+            new Class<?>[] { Session.class }, new InvocationHandler() {
+
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    if ("getNamespacePrefixes".equals(method.getName())) {
+                        return PREFIXES.clone();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+        SessionMockNode(final String path) {
+            super(path);
+        }
+
+        @Override
+        public Session getSession() {
+            return session;
+        }
+    }
+}
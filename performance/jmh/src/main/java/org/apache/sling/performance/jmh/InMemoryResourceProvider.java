@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.QueriableResourceProvider;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+
+/**
+ * The <code>InMemoryResourceProvider</code> is a resource provider serving
+ * a tree of resources held in memory. It is used as the mock repository of
+ * the benchmarks such that they measure the Sling code and not the
+ * persistence.
+ * <p>
+ * Queries are only supported in the form used by the resource resolver to
+ * load vanity paths and aliases: all resources having the property of the
+ * <code>WHERE &lt;property&gt; IS NOT NULL</code> clause are returned.
+ */
+public class InMemoryResourceProvider implements QueriableResourceProvider {
+
+    private static final Pattern NOT_NULL_CLAUSE = Pattern.compile("WHERE\\s+(\\S+)\\s+IS\\s+NOT\\s+NULL",
+        Pattern.CASE_INSENSITIVE);
+
+    private final SortedMap<String, Map<String, Object>> resources = new TreeMap<String, Map<String, Object>>();
+
+    public InMemoryResourceProvider() {
+        this.resources.put("/", new HashMap<String, Object>());
+    }
+
+    /**
+     * Adds a resource and any missing ancestors.
+     *
+     * @param path The absolute path of the resource
+     * @param properties Alternating property names and values
+     */
+    public void add(final String path, final Object... properties) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        for (int i = 0; i + 1 < properties.length; i += 2) {
+            props.put((String) properties[i], properties[i + 1]);
+        }
+        this.resources.put(path, props);
+
+        String parent = path;
+        int pos;
+        while ((pos = parent.lastIndexOf('/')) > 0) {
+            parent = parent.substring(0, pos);
+            if (!this.resources.containsKey(parent)) {
+                this.resources.put(parent, new HashMap<String, Object>());
+            }
+        }
+    }
+
+    public int size() {
+        return this.resources.size();
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ResourceProvider#getResource(org.apache.sling.api.resource.ResourceResolver, javax.servlet.http.HttpServletRequest, java.lang.String)
+     */
+    public Resource getResource(final ResourceResolver resourceResolver, final HttpServletRequest request,
+            final String path) {
+        return getResource(resourceResolver, path);
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ResourceProvider#getResource(org.apache.sling.api.resource.ResourceResolver, java.lang.String)
+     */
+    public Resource getResource(final ResourceResolver resourceResolver, final String path) {
+        final Map<String, Object> properties = this.resources.get(path);
+        if (properties == null) {
+            return null;
+        }
+        return new InMemoryResource(resourceResolver, path, properties);
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ResourceProvider#listChildren(org.apache.sling.api.resource.Resource)
+     */
+    public Iterator<Resource> listChildren(final Resource parent) {
+        final String prefix = "/".equals(parent.getPath()) ? "/" : parent.getPath().concat("/");
+        final List<Resource> children = new ArrayList<Resource>();
+        for (final Map.Entry<String, Map<String, Object>> entry : this.resources.tailMap(prefix).entrySet()) {
+            final String path = entry.getKey();
+            if (!path.startsWith(prefix)) {
+                break;
+            }
+            if (path.length() > prefix.length() && path.indexOf('/', prefix.length()) == -1) {
+                children.add(new InMemoryResource(parent.getResourceResolver(), path, entry.getValue()));
+            }
+        }
+        return children.iterator();
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.QueriableResourceProvider#findResources(org.apache.sling.api.resource.ResourceResolver, java.lang.String, java.lang.String)
+     */
+    public Iterator<Resource> findResources(final ResourceResolver resolver, final String query,
+            final String language) {
+        final Matcher m = NOT_NULL_CLAUSE.matcher(query);
+        if (!m.find()) {
+            return Collections.<Resource> emptyList().iterator();
+        }
+        final String name = m.group(1);
+        final List<Resource> result = new ArrayList<Resource>();
+        for (final Map.Entry<String, Map<String, Object>> entry : this.resources.entrySet()) {
+            if (entry.getValue().get(name) != null) {
+                result.add(new InMemoryResource(resolver, entry.getKey(), entry.getValue()));
+            }
+        }
+        return result.iterator();
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.QueriableResourceProvider#queryResources(org.apache.sling.api.resource.ResourceResolver, java.lang.String, java.lang.String)
+     */
+    public Iterator<ValueMap> queryResources(final ResourceResolver resolver, final String query,
+            final String language) {
+        return Collections.<ValueMap> emptyList().iterator();
+    }
+
+    /**
+     * A resource of the provider adapting to its properties.
+     */
+    private static final class InMemoryResource extends SyntheticResource {
+
+        private final Map<String, Object> properties;
+
+        InMemoryResource(final ResourceResolver resolver, final String path, final Map<String, Object> properties) {
+            super(resolver, path, getResourceType(properties));
+            this.properties = properties;
+        }
+
+        private static String getResourceType(final Map<String, Object> properties) {
+            final Object type = properties.get("sling:resourceType");
+            return type == null ? "nt:unstructured" : type.toString();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if (type == ValueMap.class || type == Map.class) {
+                return (AdapterType) new ValueMapDecorator(this.properties);
+            }
+            return super.adaptTo(type);
+        }
+    }
+}
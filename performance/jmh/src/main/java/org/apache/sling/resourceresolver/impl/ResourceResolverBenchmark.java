@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.performance.ResourceResolverTestRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link ResourceResolverImpl#resolve(HttpServletRequest, String)}
+ * and {@link ResourceResolverImpl#map(String)} for existing, vanity, aliased
+ * and non existing paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceResolverBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Factory {
+
+        @Param({ "1000", "10000" })
+        public int nodeCount;
+
+        ResourceResolverFixture fixture;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            fixture = new ResourceResolverFixture(nodeCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            fixture.dispose();
+        }
+    }
+
+    /** The resource resolver is not thread safe, each thread uses its own. */
+    @State(Scope.Thread)
+    public static class Resolver {
+
+        ResourceResolver resolver;
+
+        String existingPath;
+
+        String vanityPath;
+
+        String aliasPath;
+
+        String nonExistingPath;
+
+        @Setup(Level.Trial)
+        public void setup(final Factory factory) {
+            resolver = factory.fixture.createResourceResolver();
+            final int n = factory.nodeCount / 2;
+            existingPath = ResourceResolverFixture.CONTENT_ROOT + "/page" + n + ".print.html";
+            vanityPath = "/vanity" + n;
+            aliasPath = ResourceResolverFixture.CONTENT_ROOT + "/alias" + (n - n % 10) + ".html";
+            nonExistingPath = ResourceResolverFixture.CONTENT_ROOT + "/missing" + n + ".print.html";
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            resolver.close();
+        }
+    }
+
+    @Benchmark
+    public Resource resolveExisting(final Resolver state) {
+        return resolve(state, state.existingPath);
+    }
+
+    @Benchmark
+    public Resource resolveVanityPath(final Resolver state) {
+        return resolve(state, state.vanityPath);
+    }
+
+    @Benchmark
+    public Resource resolveAlias(final Resolver state) {
+        return resolve(state, state.aliasPath);
+    }
+
+    @Benchmark
+    public Resource resolveNonExisting(final Resolver state) {
+        return resolve(state, state.nonExistingPath);
+    }
+
+    @Benchmark
+    public String map(final Resolver state) {
+        return state.resolver.map(state.existingPath);
+    }
+
+    private static Resource resolve(final Resolver state, final String path) {
+        final HttpServletRequest request = new ResourceResolverTestRequest(path);
+        return state.resolver.resolve(request, path);
+    }
+}
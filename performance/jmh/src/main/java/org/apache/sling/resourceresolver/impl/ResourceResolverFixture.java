@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.api.resource.QueriableResourceProvider;
+import org.apache.sling.api.resource.ResourceProvider;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.performance.jmh.InMemoryResourceProvider;
+import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.EventAdmin;
+
+/**
+ * The <code>ResourceResolverFixture</code> sets up a resource resolver
+ * factory with an {@link InMemoryResourceProvider} mounted at the root.
+ * <p>
+ * The content consists of <code>nodeCount</code> pages below
+ * {@link #CONTENT_ROOT}, each with a vanity path <code>/vanity&lt;n&gt;</code>
+ * and every tenth with an alias <code>alias&lt;n&gt;</code>, and a few
+ * mappings below <code>/etc/map</code>.
+ */
+public class ResourceResolverFixture {
+
+    public static final String CONTENT_ROOT = "/content/site";
+
+    private static final String PROVIDER_PID = "org.apache.sling.performance.jmh.InMemoryResourceProvider";
+
+    private final InMemoryResourceProvider provider = new InMemoryResourceProvider();
+
+    private final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator();
+
+    private final CommonResourceResolverFactoryImpl factory;
+
+    public ResourceResolverFixture(final int nodeCount) {
+        createContent(nodeCount);
+
+        final BundleContext bundleContext = mock(BundleContext.class);
+        final ComponentContext componentContext = mock(ComponentContext.class);
+        when(componentContext.getBundleContext()).thenReturn(bundleContext);
+        when(componentContext.getProperties()).thenReturn(createConfiguration());
+
+        activator.eventAdmin = mock(EventAdmin.class);
+        activator.resourceAccessSecurityTracker = new ResourceAccessSecurityTracker();
+        activator.bindResourceProvider(provider, createProviderProperties());
+        activator.activate(componentContext);
+
+        factory = new CommonResourceResolverFactoryImpl(activator);
+        factory.activate(bundleContext);
+    }
+
+    public CommonResourceResolverFactoryImpl getFactory() {
+        return factory;
+    }
+
+    public ResourceResolver createResourceResolver() {
+        return new ResourceResolverImpl(factory, new ResourceResolverContext(false, null,
+            activator.getResourceAccessSecurityTracker()));
+    }
+
+    public void dispose() {
+        factory.deactivate();
+        activator.deactivate();
+    }
+
+    private void createContent(final int nodeCount) {
+        provider.add("/etc/map/http/localhost.80");
+        provider.add("/etc/map/https/localhost.443");
+        provider.add("/etc/map/http/www.example.com.80", "sling:internalRedirect", CONTENT_ROOT);
+        provider.add("/etc/map/http/any_example.com.80", "sling:match", ".+\\.example\\.com\\.80",
+            "sling:redirect", "http://www.example.com/");
+
+        for (int i = 0; i < nodeCount; i++) {
+            final String path = CONTENT_ROOT + "/page" + i;
+            if (i % 10 == 0) {
+                provider.add(path, "sling:resourceType", "site/page", "sling:vanityPath", "/vanity" + i,
+                    "sling:alias", "alias" + i);
+            } else {
+                provider.add(path, "sling:resourceType", "site/page", "sling:vanityPath", "/vanity" + i);
+            }
+            provider.add(path + "/jcr:content", "sling:resourceType", "site/page/content", "jcr:title", "Page " + i);
+        }
+    }
+
+    private static Dictionary<String, Object> createConfiguration() {
+        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("resource.resolver.virtual", new String[] { "/:/" });
+        properties.put("resource.resolver.mapping", new String[] { "/:/", "/content/:/", "/content.html-/$" });
+        properties.put("resource.resolver.allowDirect", true);
+        properties.put("resource.resolver.searchpath", new String[] { "/apps", "/libs" });
+        properties.put("resource.resolver.manglenamespaces", true);
+        properties.put("resource.resolver.map.location", "/etc/map");
+        properties.put("resource.resolver.enable.vanitypath", true);
+        properties.put("resource.resolver.optimize.alias.resolution", true);
+        properties.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        properties.put(Constants.SERVICE_DESCRIPTION, "Benchmark Resource Resolver Factory");
+        return properties;
+    }
+
+    private static Map<String, Object> createProviderProperties() {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Constants.SERVICE_PID, PROVIDER_PID);
+        properties.put(Constants.SERVICE_ID, 1L);
+        properties.put(ResourceProvider.ROOTS, new String[] { "/" });
+        properties.put(QueriableResourceProvider.LANGUAGES, new String[] { "sql" });
+        return properties;
+    }
+}
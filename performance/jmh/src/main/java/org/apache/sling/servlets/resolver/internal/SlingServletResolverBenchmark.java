@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.testing.osgi.MockBundle;
+import org.apache.sling.commons.testing.osgi.MockBundleContext;
+import org.apache.sling.commons.testing.osgi.MockComponentContext;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockResourceResolver;
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Benchmarks {@link SlingServletResolver#resolveServlet(org.apache.sling.api.SlingHttpServletRequest)}
+ * for a script found for the resource type, for a script found for the
+ * resource super type and for a resource type without any script, with and
+ * without the resolution cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlingServletResolverBenchmark {
+
+    private static final String SEARCH_PATH = "/apps/";
+
+    @Param({ "0", "200" })
+    public int cacheSize;
+
+    private SlingServletResolver servletResolver;
+
+    private BenchmarkResourceResolver resourceResolver;
+
+    private MockSlingHttpServletRequest pageRequest;
+
+    private MockSlingHttpServletRequest articleRequest;
+
+    private MockSlingHttpServletRequest unknownRequest;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        resourceResolver = new BenchmarkResourceResolver();
+        resourceResolver.setSearchPath(SEARCH_PATH);
+        addScript("site/page", "html.servlet");
+        addScript("site/page", "print.html.servlet");
+        addScript("site/page", "page.json.servlet");
+
+        final ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getAdministrativeResourceResolver(anyMapOf(String.class, Object.class))).thenReturn(
+            resourceResolver);
+
+        servletResolver = new SlingServletResolver();
+        final Field factoryField = SlingServletResolver.class.getDeclaredField("resourceResolverFactory");
+        factoryField.setAccessible(true);
+        factoryField.set(servletResolver, factory);
+
+        final MockBundleContext bundleContext = new MockBundleContext(new MockBundle(1L)) {
+
+            @Override
+            public ServiceRegistration registerService(final String clazz, final Object service,
+                    final Dictionary properties) {
+                return null;
+            }
+
+            @Override
+            public ServiceRegistration registerService(final String[] clazzes, final Object service,
+                    final Dictionary properties) {
+                return null;
+            }
+        };
+        final MockComponentContext context = new MockComponentContext(bundleContext);
+        context.setProperty(SlingServletResolver.PROP_CACHE_SIZE, cacheSize);
+        servletResolver.activate(context);
+
+        pageRequest = createRequest("/content/site/page", "site/page", null);
+        articleRequest = createRequest("/content/site/article", "site/article", "site/page");
+        unknownRequest = createRequest("/content/site/unknown", "site/unknown", null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servletResolver.deactivate(null);
+    }
+
+    @Benchmark
+    public Servlet resolveResourceType() {
+        return servletResolver.resolveServlet(pageRequest);
+    }
+
+    @Benchmark
+    public Servlet resolveResourceSuperType() {
+        return servletResolver.resolveServlet(articleRequest);
+    }
+
+    @Benchmark
+    public Servlet resolveDefault() {
+        return servletResolver.resolveServlet(unknownRequest);
+    }
+
+    private MockSlingHttpServletRequest createRequest(final String path, final String resourceType,
+            final String resourceSuperType) {
+        final MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(path, "print", "html", null,
+            null);
+        final MockResource resource = new MockResource(resourceResolver, path, resourceType);
+        resource.setResourceSuperType(resourceSuperType);
+        request.setResource(resource);
+        request.setResourceResolver(resourceResolver);
+        return request;
+    }
+
+    private void addScript(final String resourceType, final String name) {
+        final String folderPath = SEARCH_PATH + resourceType;
+        Resource folder = resourceResolver.getResource(folderPath);
+        if (folder == null) {
+            folder = new MockResource(resourceResolver, folderPath, "nt:folder");
+            resourceResolver.addResource(folder);
+        }
+        final Resource script = new ServletMockResource(resourceResolver, folderPath + "/" + name);
+        resourceResolver.addResource(script);
+        resourceResolver.addChild(folder, script);
+    }
+
+    /**
+     * A script resource adapting to a servlet.
+     */
+    private static final class ServletMockResource extends MockResource {
+
+        private final Servlet servlet = new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+        };
+
+        ServletMockResource(final ResourceResolver resolver, final String path) {
+            super(resolver, path, "nt:file");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if (type == Servlet.class) {
+                return (AdapterType) servlet;
+            }
+            return super.adaptTo(type);
+        }
+    }
+
+    /**
+     * The mock resource resolver implementing the methods added to the
+     * resource resolver API after the mock has been released.
+     */
+    private static final class BenchmarkResourceResolver extends MockResourceResolver {
+
+        private final Map<Resource, List<Resource>> children = new HashMap<Resource, List<Resource>>();
+
+        void addChild(final Resource parent, final Resource child) {
+            List<Resource> list = children.get(parent);
+            if (list == null) {
+                list = new ArrayList<Resource>();
+                children.put(parent, list);
+            }
+            list.add(child);
+            addChildren(parent, list);
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            return null;
+        }
+
+        public void refresh() {
+            // nothing to do
+        }
+
+        public Iterable<Resource> getChildren(final Resource parent) {
+            final List<Resource> list = children.get(parent);
+            return list == null ? Collections.<Resource> emptyList() : list;
+        }
+
+        public boolean hasChildren(final Resource resource) {
+            return children.containsKey(resource);
+        }
+
+        public String getParentResourceType(final Resource resource) {
+            return resource == null ? null : resource.getResourceSuperType();
+        }
+
+        public String getParentResourceType(final String resourceType) {
+            return null;
+        }
+
+        public boolean isResourceType(final Resource resource, final String resourceType) {
+            return resource != null && ResourceUtil.isA(resource, resourceType);
+        }
+
+        public void delete(final Resource resource) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Resource create(final Resource parent, final String name, final Map<String, Object> properties) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void revert() {
+            // nothing to do
+        }
+
+        public void commit() {
+            // nothing to do
+        }
+
+        public boolean hasChanges() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance.tests;
+
+import javax.jcr.Node;
+import javax.servlet.http.HttpServletRequest;
+import junit.framework.Assert;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.testing.jcr.RepositoryUtil;
+import org.apache.sling.performance.AbstractRepositoryTest;
+import org.apache.sling.performance.ResourceResolverTestRequest;
+import org.apache.sling.performance.TestHelper;
+import org.apache.sling.performance.annotation.PerformanceTest;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Maps a page worth of links with many <code>/etc/map</code> entries in place,
+ * each of them mapping a distinct content subtree to its own path.
+ */
+public class MapWithManyMappingsTest extends AbstractRepositoryTest {
+
+    private static final String PN_INTERNAL_REDIRECT = "sling:internalRedirect";
+
+    private final TestHelper helper;
+
+    private Node mapRoot;
+
+    private ResourceResolver resResolver;
+
+    private Node rootNode;
+
+    private String rootPath;
+
+    private final int mappingCount;
+
+    private final int linkCount;
+
+    private String[] links;
+
+    public MapWithManyMappingsTest(String testInstanceName,
+            TestHelper helper, int mappingCount, int linkCount) {
+        super(testInstanceName);
+        this.helper = helper;
+        this.mappingCount = mappingCount;
+        this.linkCount = linkCount;
+    }
+
+    @After
+    protected void afterSuite() throws Exception {
+        if (helper != null) {
+            helper.dispose();
+        }
+
+        if (rootNode != null) {
+            rootNode.remove();
+        }
+        if (mapRoot != null) {
+            mapRoot.remove();
+        }
+        session.save();
+    }
+
+    @Before
+    protected void beforeSuite() throws Exception {
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/folder.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/resource.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/vanitypath.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/mapping.cnd"));
+
+        // test data
+        rootPath = "/test" + System.currentTimeMillis();
+        rootNode = getSession().getRootNode().addNode(rootPath.substring(1), "nt:unstructured");
+
+        // test mappings
+        mapRoot = getSession().getRootNode().addNode("etc", JcrConstants.NT_FOLDER);
+        Node map = mapRoot.addNode("map", "sling:Mapping");
+        Node http = map.addNode("http", "sling:Mapping");
+        Node localhost = http.addNode("localhost.80", "sling:Mapping");
+        Node https = map.addNode("https", "sling:Mapping");
+        https.addNode("localhost.443", "sling:Mapping");
+
+        // creating <mappingCount> sites each with its own mapping
+        for (int j = 0; j < mappingCount; j++) {
+            Node content = rootNode.addNode("site" + j, JcrConstants.NT_UNSTRUCTURED);
+            content.addNode("page", JcrConstants.NT_UNSTRUCTURED);
+            Node mapping = localhost.addNode("site" + j, "sling:Mapping");
+            mapping.setProperty(PN_INTERNAL_REDIRECT, content.getPath());
+            if (j % 100 == 0) {
+                session.save();
+            }
+        }
+
+        session.save();
+
+        // the links of a page spread over all sites
+        links = new String[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            links[i] = rootPath + "/site" + (i * mappingCount / linkCount) + "/page.html";
+        }
+
+        helper.init(rootPath, session, getRepository());
+
+        resResolver = helper.getResourceResolver();
+
+    }
+
+    @PerformanceTest
+    public void runTest() throws Exception {
+        HttpServletRequest request = new ResourceResolverTestRequest(null, null, -1, rootPath);
+        for (String link : links) {
+            String mapped = resResolver.map(request, link);
+            Assert.assertNotNull(mapped);
+        }
+    }
+
+}